@@ -0,0 +1,45 @@
+package com.playtech.benchmark;
+
+import com.playtech.report.Report;
+import com.playtech.util.xml.XmlParser;
+import jakarta.xml.bind.JAXBException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// report definitions bundled with the benchmarks, XmlParser only reads from files
+public final class BenchmarkReports {
+    private BenchmarkReports() {
+    }
+
+    public static Report load(String name) {
+        try (InputStream in = BenchmarkReports.class.getResourceAsStream("/reports/" + name + ".xml")) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown benchmark report: " + name);
+            }
+            Path file = Files.createTempFile(name, ".xml");
+            try {
+                Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+                return XmlParser.parseReport(file.toString());
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (JAXBException e) {
+            throw new IllegalStateException("Benchmark report " + name + " can't be parsed", e);
+        }
+    }
+
+    public static Path outputDirectory() {
+        try {
+            return Files.createTempDirectory("report-benchmark-");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
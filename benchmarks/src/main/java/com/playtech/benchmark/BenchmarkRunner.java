@@ -0,0 +1,20 @@
+package com.playtech.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// runs the benchmarks matching the optional regex with the GC profiler, so allocation rate regressions show up
+// next to throughput. java -jar target/benchmarks.jar gives the full JMH command line instead, e.g.
+// java -jar target/benchmarks.jar IngestBenchmark -p rows=10000,1000000 -prof gc
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : "com.playtech.benchmark.*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
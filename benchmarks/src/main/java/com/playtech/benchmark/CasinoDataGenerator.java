@@ -0,0 +1,101 @@
+package com.playtech.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.UUID;
+
+// writes csv files shaped like input/casino_gaming_results.csv with any number of rows.
+// the same row count always gives the same file, so results of different runs can be compared
+public class CasinoDataGenerator {
+    public static final String HEADER = "PlayerID,GameID,BetAmount,WinAmount,LossAmount,GameType,Location,Device,SessionID,"
+            + "StartDateTime,EndDateTime,BetCount,WinCount,LossCount,JackpotWin,BonusWin,FreeSpins,Multiplier";
+    private static final String[] GAME_TYPES = {"Roulette", "Blackjack", "Poker", "Slot", "Baccarat"};
+    private static final String[] LOCATIONS = {"Las Vegas", "Monte Carlo", "Macau", "Atlantic City", "Online"};
+    private static final String[] DEVICES = {"Desktop", "Mobile", "Tablet"};
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss'Z'").withZone(ZoneOffset.UTC);
+    // sessions start between 2020-01-01 and 2024-12-31
+    private static final long FIRST_START = Instant.parse("2020-01-01T00:00:00Z").getEpochSecond();
+    private static final long START_RANGE = Instant.parse("2025-01-01T00:00:00Z").getEpochSecond() - FIRST_START;
+
+    // usage: CasinoDataGenerator <rows> <output file>
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CasinoDataGenerator <rows> <output file>");
+            System.exit(1);
+        }
+        write(Long.parseLong(args[0]), Path.of(args[1]));
+    }
+
+    // file with the given number of rows in the temp directory, generated on first use
+    public static Path generate(long rows) {
+        Path file = Path.of(System.getProperty("java.io.tmpdir"), "casino_gaming_results-" + rows + ".csv");
+        if (Files.exists(file)) {
+            return file;
+        }
+        try {
+            Path partial = Files.createTempFile(file.getParent(), "casino_gaming_results-", ".tmp");
+            write(rows, partial);
+            Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void write(long rows, Path file) throws IOException {
+        Random random = new Random(rows);
+        StringBuilder line = new StringBuilder(256);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            for (long i = 0; i < rows; i++) {
+                line.setLength(0);
+                appendRow(line, random);
+                writer.append(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    private static void appendRow(StringBuilder line, Random random) {
+        int betCount = 1 + random.nextInt(20);
+        int winCount = random.nextInt(betCount + 1);
+        long start = FIRST_START + (long) (random.nextDouble() * START_RANGE);
+        long end = start + random.nextInt(6 * 3600);
+
+        line.append(1 + random.nextInt(99_999)).append(',')
+                .append(1 + random.nextInt(999)).append(',');
+        appendAmount(line, 10 + random.nextInt(901)).append(',');
+        appendAmount(line, random.nextInt(1001)).append(',');
+        appendAmount(line, random.nextInt(1001)).append(',');
+        line.append(GAME_TYPES[random.nextInt(GAME_TYPES.length)]).append(',')
+                .append(LOCATIONS[random.nextInt(LOCATIONS.length)]).append(',')
+                .append(DEVICES[random.nextInt(DEVICES.length)]).append(',')
+                .append(new UUID(random.nextLong(), random.nextLong())).append(',');
+        TIMESTAMP.formatTo(Instant.ofEpochSecond(start), line);
+        line.append(',');
+        TIMESTAMP.formatTo(Instant.ofEpochSecond(end), line);
+        line.append(',')
+                .append(betCount).append(',')
+                .append(winCount).append(',')
+                .append(betCount - winCount).append(',')
+                .append(random.nextInt(2)).append(',')
+                .append(random.nextInt(2)).append(',')
+                .append(random.nextInt(2)).append(',');
+        appendAmount(line, 10 + random.nextInt(11));
+    }
+
+    // tenths as a decimal with one fraction digit, like 51.1
+    private static StringBuilder appendAmount(StringBuilder line, int tenths) {
+        return line.append(tenths / 10).append('.').append(tenths % 10);
+    }
+}
@@ -0,0 +1,67 @@
+package com.playtech.benchmark;
+
+import com.playtech.report.Report;
+import com.playtech.report.pipeline.CsvIngest;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.util.csv.CsvReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// csv bytes to typed row batches, once with every column and once with only the columns the report reads
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IngestBenchmark {
+    @Param({"10000", "1000000", "100000000"})
+    private long rows;
+
+    private Path file;
+    private CsvIngest allColumns;
+    private CsvIngest reportColumns;
+
+    @Setup
+    public void setup() throws IOException {
+        file = CasinoDataGenerator.generate(rows);
+        Report report = BenchmarkReports.load("DailyBetWinLossReport");
+        try (CsvReader reader = CsvReader.open(file)) {
+            String[] headers = CsvIngest.readHeaders(reader);
+            allColumns = new CsvIngest(headers, IntStream.range(0, headers.length).toArray(), report.getInputs());
+            reportColumns = new CsvIngest(headers, ExecutionPlan.compile(report, headers).getIngestFields(), report.getInputs());
+        }
+    }
+
+    @Benchmark
+    public int allColumns(Blackhole blackhole) throws IOException {
+        return read(allColumns, blackhole);
+    }
+
+    @Benchmark
+    public int reportColumns(Blackhole blackhole) throws IOException {
+        return read(reportColumns, blackhole);
+    }
+
+    private int read(CsvIngest ingest, Blackhole blackhole) throws IOException {
+        try (CsvReader reader = CsvReader.open(file)) {
+            CsvIngest.readHeaders(reader);
+            return ingest.read(reader, blackhole::consume);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.playtech.benchmark;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+import com.playtech.report.pipeline.CsvIngest;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.RowTransformer;
+import com.playtech.report.transformer.Transformer;
+import com.playtech.report.transformer.TransformerState;
+import com.playtech.report.transformer.impl.AggregatorTransformer;
+import com.playtech.report.transformer.impl.DateTimeFormatterTransformer;
+import com.playtech.report.transformer.impl.MathOperationTransformer;
+import com.playtech.report.transformer.impl.OrderingTransformer;
+import com.playtech.report.transformer.impl.StringFormatterTransformer;
+import com.playtech.util.csv.CsvReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// every transformer on its own over batches that are already in memory, so parsing and writing are not measured.
+// 100M rows don't fit in memory as batches, the end-to-end benchmarks cover that size
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransformerBenchmark {
+    @Param({"10000", "1000000"})
+    private long rows;
+
+    private Report report;
+    private final List<RowBatch> batches = new ArrayList<>();
+    private StringFormatterTransformer stringFormatter;
+    private DateTimeFormatterTransformer dateTimeFormatter;
+    private MathOperationTransformer mathOperation;
+    private AggregatorTransformer aggregator;
+    private OrderingTransformer ordering;
+
+    @Setup
+    public void setup() throws IOException {
+        report = BenchmarkReports.load("Transformers");
+        for (Transformer transformer : report.getTransformers()) {
+            switch (transformer) {
+                case StringFormatterTransformer t -> stringFormatter = t;
+                case DateTimeFormatterTransformer t -> dateTimeFormatter = t;
+                case MathOperationTransformer t -> mathOperation = t;
+                case AggregatorTransformer t -> aggregator = t;
+                case OrderingTransformer t -> ordering = t;
+                default -> throw new IllegalStateException("Unexpected transformer " + transformer.describe());
+            }
+        }
+
+        try (CsvReader reader = CsvReader.open(CasinoDataGenerator.generate(rows))) {
+            String[] headers = CsvIngest.readHeaders(reader);
+            CsvIngest ingest = new CsvIngest(headers, IntStream.range(0, headers.length).toArray(), report.getInputs());
+            ingest.read(reader, batches::add);
+        }
+    }
+
+    @Benchmark
+    public void stringFormatter(Blackhole blackhole) {
+        compute(stringFormatter, blackhole);
+    }
+
+    @Benchmark
+    public void dateTimeFormatter(Blackhole blackhole) {
+        compute(dateTimeFormatter, blackhole);
+    }
+
+    @Benchmark
+    public void mathOperation(Blackhole blackhole) {
+        compute(mathOperation, blackhole);
+    }
+
+    @Benchmark
+    public void aggregator(Blackhole blackhole) {
+        run(aggregator, blackhole);
+    }
+
+    @Benchmark
+    public void ordering(Blackhole blackhole) {
+        run(ordering, blackhole);
+    }
+
+    // compute() leaves the batch alone, so the same batches can be used on every invocation
+    private void compute(RowTransformer transformer, Blackhole blackhole) {
+        List<Column> inputColumns = transformer.inputColumns();
+        ColumnVector[] inputs = new ColumnVector[inputColumns.size()];
+        for (RowBatch batch : batches) {
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = batch.vector(inputColumns.get(i).getName());
+            }
+            blackhole.consume(transformer.compute(batch, inputs));
+        }
+    }
+
+    private void run(BlockingTransformer transformer, Blackhole blackhole) {
+        TransformerState state = transformer.createState(report);
+        for (RowBatch batch : batches) {
+            state.accept(batch);
+        }
+        state.finish(blackhole::consume);
+    }
+}
@@ -0,0 +1,52 @@
+package com.playtech.benchmark;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.pipeline.ParallelIngest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// reports without transformers that write every input column, so the time goes into reading and writing.
+// compare with IngestBenchmark.allColumns for the share of the writer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WriterBenchmark {
+    @Param({"10000", "1000000", "100000000"})
+    private long rows;
+
+    @Param({"JSONL", "CSV"})
+    private String format;
+
+    private Path file;
+    private Report report;
+    private String outputDirectory;
+
+    @Setup
+    public void setup() {
+        file = CasinoDataGenerator.generate(rows);
+        report = BenchmarkReports.load("Passthrough-" + format);
+        outputDirectory = BenchmarkReports.outputDirectory() + "/";
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        ReportGenerator.readAndTransformCsv(file.toString(), outputDirectory, report, 1, ParallelIngest.DEFAULT_CHUNK_SIZE);
+    }
+}
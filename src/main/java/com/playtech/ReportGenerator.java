@@ -1,18 +1,36 @@
 package com.playtech;
 
 import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
 import com.playtech.report.column.Column;
-import com.playtech.report.transformer.Transformer;
-import com.playtech.report.transformer.impl.*;
+import com.playtech.report.metrics.PipelineMetrics;
+import com.playtech.report.output.ReportOutput;
+import com.playtech.report.pipeline.CacheIngest;
+import com.playtech.report.pipeline.Checkpoint;
+import com.playtech.report.pipeline.ColumnCache;
+import com.playtech.report.pipeline.CsvIngest;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.report.pipeline.ParallelIngest;
+import com.playtech.report.pipeline.Pipeline;
+import com.playtech.report.plan.ScanPlan;
+import com.playtech.report.reject.RejectionLimitException;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.PersistentState;
+import com.playtech.server.ReportServer;
+import com.playtech.util.cli.Arguments;
+import com.playtech.util.csv.CsvReader;
 import com.playtech.util.xml.XmlParser;
 import com.sun.net.httpserver.Authenticator;
 import jakarta.xml.bind.JAXBException;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
 
 public class ReportGenerator {
     public static final String ERROR = "\u001B[31m";
@@ -20,16 +38,75 @@ public class ReportGenerator {
     public static final String RESET = "\u001B[0m";
 
     public static void main(String[] args) {
-        if (args.length != 3) {
-            System.err.println(ERROR + "Application should have 3 paths as arguments: csv file path, xml file path and output directory" + ERROR);
+        Arguments arguments = new Arguments(args, Set.of("cache", "explain", "incremental", "metrics", "rejects"));
+        if (arguments.has("serve")) {
+            serve(arguments);
+            return;
+        }
+        List<String> paths = arguments.positional();
+        if (paths.size() < 3) {
+            System.err.println(ERROR + "Application should have at least 3 paths as arguments: csv file path, xml file path(s) or directory and output directory" + ERROR);
+            System.err.println("Options: --threads <count> --chunk-size <bytes> --explain --incremental --metrics --max-error-rate <0..1> --rejects --cache[=verify]");
+            System.err.println("Server mode: --serve <port> [--jobs <count>] [--queue <count>] [--threads <count per job>] [--job-memory <bytes>] [--metrics]"
+                    + " [--csv-root <directory>] [--report-root <directory>] [--output-root <directory>]");
             System.exit(1);
         }
-        String csvDataFilePath = args[0], reportXmlFilePath = args[1], outputDirectoryPath = args[2];
+        String csvDataFilePath = paths.get(0), outputDirectoryPath = paths.get(paths.size() - 1);
+        int threads = arguments.getInt("threads", Runtime.getRuntime().availableProcessors());
+        long chunkSize = arguments.getLong("chunk-size", ParallelIngest.DEFAULT_CHUNK_SIZE);
+        boolean metrics = arguments.has("metrics");
+        // with --cache the csv is parsed once into <csv>.colcache and later runs read that instead,
+        // --cache=verify also checks that the whole csv is still the one the cache was made from
+        ColumnCache.Mode cache = cacheMode(arguments.get("cache", null));
+        Rejections rejections = null;
         try {
-            Report report = XmlParser.parseReport(reportXmlFilePath);
+            List<Path> reportXmlFilePaths = reportFiles(paths.subList(1, paths.size() - 1));
+            List<Report> reports = new ArrayList<>();
+            for (Path reportXmlFilePath : reportXmlFilePaths) {
+                reports.add(XmlParser.parseReport(reportXmlFilePath.toString()));
+            }
+            // with --rejects the skipped csv lines are written to <report name>.rejected.csv, or rejected.csv for several reports
+            String rejectFile = outputDirectoryPath + (reports.size() == 1 ? reports.get(0).getReportName() + ".rejected.csv" : "rejected.csv");
+            rejections = new Rejections(Rejections.DEFAULT_SAMPLE_SIZE, arguments.getDouble("max-error-rate", 1),
+                    arguments.has("rejects") ? Path.of(rejectFile) : null);
 
-            readAndTransformCsv(csvDataFilePath, outputDirectoryPath, report);
+            if (reports.size() == 1) {
+                if (arguments.has("explain")) {
+                    System.out.println(compilePlan(csvDataFilePath, reports.get(0)).explain());
+                    return;
+                }
+                if (arguments.has("incremental")) {
+                    if (cache != ColumnCache.Mode.OFF) {
+                        throw new IllegalArgumentException(ERROR + "--incremental reads the csv itself and can't be combined with --cache" + RESET);
+                    }
+                    int skippedLines = transformCsvIncrementally(csvDataFilePath, outputDirectoryPath, reports.get(0), threads, chunkSize, metrics, rejections);
+                    System.out.println("\n\n" + SUCCESS + "Finished transforming data! " + RESET + "\n\n");
+                    System.out.println("Skipped lines: " + skippedLines);
+                    rejections.report(System.err);
+                    return;
+                }
+                readAndTransformCsv(csvDataFilePath, outputDirectoryPath, reports.get(0), threads, chunkSize, metrics, rejections, cache);
+            } else {
+                if (arguments.has("incremental") || metrics) {
+                    throw new IllegalArgumentException(ERROR + "--incremental and --metrics work with a single report" + RESET);
+                }
+                if (arguments.has("explain")) {
+                    for (ScanPlan scan : compileScans(csvDataFilePath, reports)) {
+                        System.out.println(scan.explain());
+                    }
+                    return;
+                }
+                readAndTransformCsv(csvDataFilePath, outputDirectoryPath, reports, threads, chunkSize, rejections, cache);
+            }
 
+        } catch (RejectionLimitException e) {
+            System.err.println(e.getMessage());
+            try {
+                rejections.report(System.err);
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            System.exit(2);
         } catch (JAXBException e) {
             System.err.println(ERROR + "Parsing of the xml file failed:" + RESET);
             throw new RuntimeException(e);
@@ -39,122 +116,393 @@ public class ReportGenerator {
         }
     }
 
-    // parse the CSV file, transform the data and output it line by line
-    public static void readAndTransformCsv(String filePath, String outputFilePath, Report report) throws IOException {
-        String reportName = report.getReportName();
-        Report.FileFormat outputFormat = report.getOutputFormat();
+    // runs until the process is stopped, see ReportServer for the endpoints
+    private static void serve(Arguments arguments) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int jobs = arguments.getInt("jobs", Math.max(1, processors / 2));
+        int queue = arguments.getInt("queue", 16);
+        int threads = arguments.getInt("threads", Math.max(1, processors / jobs));
+        long chunkSize = arguments.getLong("chunk-size", ParallelIngest.DEFAULT_CHUNK_SIZE);
+        // half of the heap is shared by the sort and lookup buffers of the running jobs
+        long jobMemory = arguments.getLong("job-memory", Runtime.getRuntime().maxMemory() / 2 / jobs);
+        if (jobs < 1 || queue < 1 || threads < 1 || jobMemory < 1) {
+            throw new IllegalArgumentException(ERROR + "--jobs, --queue, --threads and --job-memory have to be positive" + RESET);
+        }
+
+        try {
+            // clients only reach the files under these, all of them default to the working directory
+            ReportServer.Roots roots = new ReportServer.Roots(Path.of(arguments.get("csv-root", ".")), Path.of(arguments.get("report-root", ".")),
+                    Path.of(arguments.get("output-root", ".")));
+            ReportServer server = new ReportServer(arguments.getInt("serve", 8080), jobs, queue, threads, chunkSize, jobMemory, arguments.has("metrics"), roots);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    server.stop();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            System.out.println(SUCCESS + "Report server listening on http://localhost:" + server.port() + RESET
+                    + " (" + jobs + " jobs, " + queue + " queued, " + threads + " threads per job)");
+        } catch (IOException e) {
+            System.err.println(ERROR + "Failed to start the report server: " + e.getMessage() + RESET);
+            throw new UncheckedIOException(e);
+        }
+    }
 
-        List<Transformer> transformers = report.getTransformers();
-        final List<Column> outputColumns = report.getOutputs();
-        List<Map<String, Object>> rows = new ArrayList<>();
+    // report xml files given directly or as directories, the files of a directory in name order
+    private static List<Path> reportFiles(List<String> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String path : paths) {
+            Path file = Path.of(path);
+            if (!Files.isDirectory(file)) {
+                files.add(file);
+                continue;
+            }
+            try (Stream<Path> listing = Files.list(file)) {
+                listing.filter(entry -> entry.getFileName().toString().endsWith(".xml")).sorted().forEach(files::add);
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IOException(ERROR + "No report xml files found in " + paths + RESET);
+        }
+        return files;
+    }
 
-        // Create a set of output column names for filtering
-        Set<String> outputColumnNames = new HashSet<>();
-        for (Column column : outputColumns) {
-            outputColumnNames.add(column.getName());
+    // reports are scanned together as long as they agree on the types of their inputs
+    public static List<ScanPlan> compileScans(String filePath, List<Report> reports) throws IOException {
+        List<ScanPlan> scans = new ArrayList<>();
+        try (CsvReader reader = CsvReader.open(Path.of(filePath))) {
+            String[] headers = CsvIngest.readHeaders(reader);
+            for (List<Report> group : ScanPlan.partition(reports)) {
+                scans.add(ScanPlan.compile(group, headers));
+            }
         }
+        return scans;
+    }
 
+    // the plan only depends on the report and the csv header
+    public static ExecutionPlan compilePlan(String filePath, Report report) throws IOException {
+        try (CsvReader reader = CsvReader.open(Path.of(filePath))) {
+            return ExecutionPlan.compile(report, CsvIngest.readHeaders(reader));
+        }
+    }
 
+    public static void readAndTransformCsv(String filePath, String outputFilePath, Report report) throws IOException {
+        readAndTransformCsv(filePath, outputFilePath, report, 1, ParallelIngest.DEFAULT_CHUNK_SIZE);
+    }
+
+    public static void readAndTransformCsv(String filePath, String outputFilePath, Report report, int threads, long chunkSize) throws IOException {
+        readAndTransformCsv(filePath, outputFilePath, report, threads, chunkSize, false, new Rejections());
+    }
+
+    public static void readAndTransformCsv(String filePath, String outputFilePath, Report report, int threads, long chunkSize,
+                                           boolean metrics, Rejections rejections) throws IOException {
+        readAndTransformCsv(filePath, outputFilePath, report, threads, chunkSize, metrics, rejections, ColumnCache.Mode.OFF);
+    }
+
+    public static void readAndTransformCsv(String filePath, String outputFilePath, Report report, int threads, long chunkSize,
+                                           boolean metrics, Rejections rejections, ColumnCache.Mode cache) throws IOException {
+        int skippedLines = transformCsv(filePath, outputFilePath, report, threads, chunkSize, metrics, rejections, cache);
+
+        System.out.println("\n\n" + SUCCESS + "Finished transforming data! " + RESET + "\n\n");
+
+        System.out.println("Skipped lines: " + skippedLines);
+        rejections.report(System.err);
+    }
+
+    // parse the CSV file, transform the data and output it line by line, returns the number of skipped lines.
+    // with more than one thread, files larger than one chunk are read and transformed in parallel
+    // with metrics the time and rows of every stage go to outputFilePath + reportName + ".metrics.json"
+    // lines and values that can't be used are counted in rejections, which may also stop the run when there are too many
+    public static int transformCsv(String filePath, String outputFilePath, Report report, int threads, long chunkSize,
+                                   boolean metrics, Rejections rejections) throws IOException {
+        return transformCsv(filePath, outputFilePath, report, threads, chunkSize, metrics, rejections, ColumnCache.Mode.OFF);
+    }
+
+    // with cache the rows are read from the column cache of the csv, which is built first when it is missing or stale
+    public static int transformCsv(String filePath, String outputFilePath, Report report, int threads, long chunkSize,
+                                   boolean metrics, Rejections rejections, ColumnCache.Mode cache) throws IOException {
         // parse the csv
         int skippedLines;
-        try (Scanner scanner = new Scanner(new File(filePath));
-             BufferedWriter writer = new BufferedWriter(new FileWriter(outputFilePath + reportName + '.' + outputFormat))) {
+        PipelineMetrics pipelineMetrics = null;
+        try (CsvReader reader = CsvReader.open(Path.of(filePath));
+             ReportOutput writer = ReportOutput.open(outputPath(outputFilePath, report), report, threads)) {
 
-            if (!scanner.hasNextLine()) {
-                throw new IOException(ERROR + "Empty CSV file" + RESET);
+            String[] headers = CsvIngest.readHeaders(reader);
+            ExecutionPlan plan = ExecutionPlan.compile(report, headers);
+            pipelineMetrics = metrics ? new PipelineMetrics(plan, threads) : null;
+            CsvIngest ingest = new CsvIngest(headers, plan.getIngestFields(), plan.getInputColumns(), rejections, metrics ? pipelineMetrics.ingest() : null,
+                    plan.getIngestFilters());
+
+            // batches flow through the plan one at a time and are written as soon as they come out,
+            // only the aggregator and ordering stages hold on to data
+            Pipeline pipeline = Pipeline.create(plan, sink(writer), pipelineMetrics, rejections);
+
+            ColumnCache columnCache = cache != ColumnCache.Mode.OFF ? loadCache(filePath, headers, plan.getIngestFields(), plan.getInputColumns(), cache) : null;
+            if (columnCache != null) {
+                try (columnCache) {
+                    CacheIngest cacheIngest = new CacheIngest(columnCache, plan.getIngestFields(), rejections,
+                            metrics ? pipelineMetrics.ingest() : null, plan.getIngestFilters());
+                    PipelineMetrics stageMetrics = pipelineMetrics;
+                    skippedLines = readCache(cacheIngest, threads, blocks -> new ParallelIngest(plan, stageMetrics, rejections, threads, blocks), pipeline);
+                }
+            } else if (threads > 1 && reader.isCompressed()) {
+                // the size of a compressed csv isn't known up front, it is inflated chunk by chunk
+                ParallelIngest parallelIngest = new ParallelIngest(plan, pipelineMetrics, rejections, threads, chunkSize);
+                skippedLines = parallelIngest.run(reader, ingest, pipeline);
+            } else if (threads > 1 && reader.size() - reader.offset() > chunkSize) {
+                ParallelIngest parallelIngest = new ParallelIngest(plan, pipelineMetrics, rejections, threads, chunkSize);
+                skippedLines = parallelIngest.run(Path.of(filePath), ingest, reader.offset(), reader.size(), pipeline);
+            } else {
+                skippedLines = ingest.read(reader, pipeline::push);
             }
+            pipeline.finish();
 
-            String[] headers = scanner.nextLine().split(",");
+        } catch (UncheckedIOException e) {
+            System.err.println(ERROR + "Error writing data: " + e.getCause().getMessage() + RESET);
+            throw e.getCause();
+        } catch (IOException e) {
+            System.err.println(ERROR + "Error processing data: " + e.getMessage() + RESET);
+            throw e;
+        }
+        if (pipelineMetrics != null) {
+            saveMetrics(pipelineMetrics, outputFilePath, report);
+        }
+        return skippedLines;
+    }
 
-            int count = 0;
-            skippedLines = 0;
+    // append-only input: the aggregator state and the csv offset are saved to outputFilePath + reportName + ".state",
+    // the next run loads them, reads only the lines appended since and writes the whole report again.
+    // returns the number of lines skipped in the part that was read
+    public static int transformCsvIncrementally(String filePath, String outputFilePath, Report report, int threads, long chunkSize,
+                                                boolean metrics, Rejections rejections) throws IOException {
+        Path csvPath = Path.of(filePath);
+        Path statePath = Path.of(outputFilePath + report.getReportName() + ".state");
+        if (CsvReader.isCompressed(csvPath)) {
+            throw new IllegalArgumentException(ERROR + "--incremental continues at a byte offset of the csv and can't read a compressed file" + RESET);
+        }
+        String fingerprint;
+        Checkpoint checkpoint;
+        int skippedLines;
+        PipelineMetrics pipelineMetrics = null;
+        try (CsvReader reader = CsvReader.open(csvPath);
+             ReportOutput writer = ReportOutput.open(outputPath(outputFilePath, report), report, threads)) {
 
-            while (scanner.hasNextLine()) {
-                count++;
-                String[] values = scanner.nextLine().split(",");
+            String[] headers = CsvIngest.readHeaders(reader);
+            ExecutionPlan plan = ExecutionPlan.compile(report, headers);
+            fingerprint = Checkpoint.fingerprint(headers, plan);
+            pipelineMetrics = metrics ? new PipelineMetrics(plan, threads) : null;
+            CsvIngest ingest = new CsvIngest(headers, plan.getIngestFields(), plan.getInputColumns(), rejections, metrics ? pipelineMetrics.ingest() : null,
+                    plan.getIngestFilters());
+            Pipeline pipeline = Pipeline.create(plan, sink(writer), pipelineMetrics, rejections);
+            if (!(pipeline.state(0) instanceof PersistentState state)) {
+                throw new IllegalArgumentException(ERROR + "Incremental runs need an Aggregator as the first blocking transformer of the report" + RESET);
+            }
 
-                if (values.length != headers.length) {
-                    System.err.println(ERROR + "Skipping line " + count + ": Incorrect column count (" + values.length + " instead of " + headers.length + ")" + RESET);
-                    skippedLines++;
-                    continue;
+            long start = reader.offset();
+            Checkpoint.Prefix prefix = new Checkpoint.Prefix(csvPath);
+            Checkpoint saved = Checkpoint.read(statePath, fingerprint);
+            if (saved != null && saved.matches(prefix, reader.size())) {
+                saved.restore(state);
+                start = saved.offset();
+            } else if (saved != null) {
+                System.out.println("The CSV file changed before byte " + saved.offset() + ", reading it from the start");
+                prefix = new Checkpoint.Prefix(csvPath);
+            }
+            long end = Checkpoint.completeLinesEnd(csvPath, start, reader.size());
+
+            if (threads > 1 && end - start > chunkSize) {
+                ParallelIngest parallelIngest = new ParallelIngest(plan, pipelineMetrics, rejections, threads, chunkSize);
+                skippedLines = parallelIngest.run(csvPath, ingest, start, end, pipeline);
+            } else {
+                try (CsvReader tail = CsvReader.open(csvPath, start, end)) {
+                    skippedLines = ingest.read(tail, pipeline::push);
                 }
+            }
+            // saved before finish, which hands the aggregated rows on to the later transformers
+            prefix.extend(end);
+            checkpoint = Checkpoint.capture(prefix, state);
+            pipeline.finish();
 
-                Map<String, Object> row = new HashMap<>();
+        } catch (UncheckedIOException e) {
+            System.err.println(ERROR + "Error writing data: " + e.getCause().getMessage() + RESET);
+            throw e.getCause();
+        } catch (IOException e) {
+            System.err.println(ERROR + "Error processing data: " + e.getMessage() + RESET);
+            throw e;
+        }
 
-                // Iterate over the CSV headers and collect data
-                for (int i = 0; i < headers.length; i++) {
-                    row.put(headers[i], values[i]);
-                }
+        // only a completely written report moves the checkpoint forward
+        checkpoint.write(statePath, fingerprint);
+        if (pipelineMetrics != null) {
+            saveMetrics(pipelineMetrics, outputFilePath, report);
+        }
+        return skippedLines;
+    }
 
-                // Apply the transformers (e.g., DateTimeFormatterTransformer)
-                for (Transformer transformer : transformers) {
-                    if (transformer instanceof DateTimeFormatterTransformer dateTimeFormatterTransformer) {
-                        dateTimeFormatterTransformer.transform(report, Collections.singletonList(row));
-//                        System.out.println("Datetiming row!");
-                    }
+    // after the writer is closed, so the output size and the time of the whole run are known
+    private static void saveMetrics(PipelineMetrics metrics, String outputFilePath, Report report) throws IOException {
+        metrics.write().addBytes(outputSize(outputPath(outputFilePath, report)));
+        metrics.finish();
+        metrics.writeJson(Path.of(outputFilePath + report.getReportName() + ".metrics.json"));
+        metrics.publish();
+    }
 
-                    // store each row
-                    rows.add(row);
-                }
+    // batch mode: every group of compatible reports is produced from one scan of the csv, each report
+    // still goes to outputFilePath + reportName + '.' + format
+    public static void readAndTransformCsv(String filePath, String outputFilePath, List<Report> reports, int threads, long chunkSize,
+                                           Rejections rejections) throws IOException {
+        readAndTransformCsv(filePath, outputFilePath, reports, threads, chunkSize, rejections, ColumnCache.Mode.OFF);
+    }
+
+    public static void readAndTransformCsv(String filePath, String outputFilePath, List<Report> reports, int threads, long chunkSize,
+                                           Rejections rejections, ColumnCache.Mode cache) throws IOException {
+        Set<Path> outputs = new HashSet<>();
+        for (Report report : reports) {
+            if (!outputs.add(outputPath(outputFilePath, report))) {
+                throw new IllegalArgumentException(ERROR + "Two reports write to " + outputPath(outputFilePath, report) + RESET);
             }
+        }
 
-            for (Transformer transformer : transformers) {
-                // use the aggregator transformer
-                if (transformer instanceof AggregatorTransformer aggregatorTransformer) {
-                    aggregatorTransformer.transform(report, rows);  // Sort the rows
-                    System.out.println("Aggregating rows!");
-                }
-                // use the math transformer
-                if (transformer instanceof MathOperationTransformer mathOperationTransformer) {
-                    mathOperationTransformer.transform(report, rows);
-                    System.out.println("Mathing rows!");
-                }
-                // use the ordering transformer
-                if (transformer instanceof OrderingTransformer orderingTransformer) {
-                    orderingTransformer.transform(report, rows);  // Sort the rows
-                    System.out.println("Sorting rows!");
-                }
-                // use the string formatter transformer
-                if (transformer instanceof StringFormatterTransformer stringFormatterTransformer) {
-                    stringFormatterTransformer.transform(report, rows);  // Sort the rows
-                    System.out.println("Stringing rows!");
+        int skippedLines = 0;
+        for (ScanPlan scan : compileScans(filePath, reports)) {
+            skippedLines += scanCsv(filePath, outputFilePath, scan, threads, chunkSize, rejections, cache);
+        }
+
+        System.out.println("\n\n" + SUCCESS + "Finished transforming data for " + reports.size() + " reports! " + RESET + "\n\n");
+
+        System.out.println("Skipped lines: " + skippedLines);
+        rejections.report(System.err);
+    }
+
+    // a line is skipped for all reports of the scan when one of the columns the scan reads does not match its type
+    private static int scanCsv(String filePath, String outputFilePath, ScanPlan scan, int threads, long chunkSize, Rejections rejections,
+                               ColumnCache.Mode cache) throws IOException {
+        List<ReportOutput> writers = new ArrayList<>();
+        // the writers are closed before the errors are reported, so a failed flush is reported like any other
+        try {
+            try (CsvReader reader = CsvReader.open(Path.of(filePath))) {
+                List<Consumer<RowBatch>> sinks = new ArrayList<>();
+                for (Report report : scan.getReports()) {
+                    ReportOutput writer = ReportOutput.open(outputPath(outputFilePath, report), report, threads);
+                    writers.add(writer);
+                    sinks.add(sink(writer));
                 }
-            }
 
-            // Write the transformed rows to the output
-            for (Map<String, Object> row : rows) {
-                String jsonRow = createJsonObject(row);
-                writer.write(jsonRow);
-                writer.newLine();
-            }
+                CsvIngest.readHeaders(reader);
+                CsvIngest ingest = new CsvIngest(scan.getHeaders(), scan.getIngestFields(), scan.getInputColumns(), rejections);
+                Pipeline pipeline = Pipeline.create(scan, sinks, rejections);
 
+                int skippedLines;
+                ColumnCache columnCache = cache != ColumnCache.Mode.OFF ? loadCache(filePath, scan.getHeaders(), scan.getIngestFields(), scan.getInputColumns(), cache) : null;
+                if (columnCache != null) {
+                    try (columnCache) {
+                        CacheIngest cacheIngest = new CacheIngest(columnCache, scan.getIngestFields(), rejections, null, List.of());
+                        skippedLines = readCache(cacheIngest, threads, blocks -> new ParallelIngest(scan, rejections, threads, blocks), pipeline);
+                    }
+                } else if (threads > 1 && reader.isCompressed()) {
+                    ParallelIngest parallelIngest = new ParallelIngest(scan, rejections, threads, chunkSize);
+                    skippedLines = parallelIngest.run(reader, ingest, pipeline);
+                } else if (threads > 1 && reader.size() - reader.offset() > chunkSize) {
+                    ParallelIngest parallelIngest = new ParallelIngest(scan, rejections, threads, chunkSize);
+                    skippedLines = parallelIngest.run(Path.of(filePath), ingest, reader.offset(), reader.size(), pipeline);
+                } else {
+                    skippedLines = ingest.read(reader, pipeline::push);
+                }
+                pipeline.finish();
+                return skippedLines;
+            } finally {
+                closeAll(writers);
+            }
+        } catch (UncheckedIOException e) {
+            System.err.println(ERROR + "Error writing data: " + e.getCause().getMessage() + RESET);
+            throw e.getCause();
         } catch (IOException e) {
             System.err.println(ERROR + "Error processing data: " + e.getMessage() + RESET);
             throw e;
         }
+    }
 
-        System.out.println("\n\n" + SUCCESS + "Finished transforming data! " + RESET + "\n\n");
+    private static ColumnCache.Mode cacheMode(String value) {
+        if (value == null) {
+            return ColumnCache.Mode.OFF;
+        }
+        return switch (value) {
+            case "true" -> ColumnCache.Mode.ON;
+            case "verify" -> ColumnCache.Mode.VERIFY;
+            default -> throw new IllegalArgumentException(ERROR + "--cache takes no value or verify, got: " + value + RESET);
+        };
+    }
 
-        System.out.println("Skipped lines: " + skippedLines);
+    // null when the cache can't be built, the csv is then read as without --cache
+    private static ColumnCache loadCache(String filePath, String[] headers, int[] fields, Map<String, Column> inputColumns, ColumnCache.Mode mode) {
+        try {
+            return ColumnCache.load(Path.of(filePath), headers, fields, inputColumns, mode);
+        } catch (IOException e) {
+            System.err.println(ERROR + "Column cache not used: " + e.getMessage() + RESET);
+            return null;
+        }
+    }
+
+    // the blocks are read in parallel in a few chunks per thread, every chunk is a partial state that has to be merged
+    private static int readCache(CacheIngest ingest, int threads, LongFunction<ParallelIngest> parallelIngest, Pipeline pipeline) throws IOException {
+        if (threads > 1 && ingest.blockCount() > 1) {
+            long blocksPerChunk = Math.max(1, ingest.blockCount() / (threads * 4L));
+            return parallelIngest.apply(blocksPerChunk).run(ingest, 0, ingest.blockCount(), pipeline);
+        }
+        return ingest.read(pipeline::push);
     }
 
-    // method to convert objects to json
-    private static String createJsonObject(Map<String, Object> row) {
-        StringBuilder jsonBuilder = new StringBuilder();
-        jsonBuilder.append("{");
-        for (Map.Entry<String, Object> entry : row.entrySet()) {
-            jsonBuilder.append("\"")
-                    .append(entry.getKey())
-                    .append("\":\"")
-                    .append(entry.getValue())
-                    .append("\",");
+    // a partitioned report goes to the directory outputFilePath + reportName
+    public static Path outputPath(String outputFilePath, Report report) {
+        if (report.getOutputPartitioning() != null) {
+            return Path.of(outputFilePath + report.getReportName());
+        }
+        String compression = report.getOutputCompression() == Report.Compression.GZIP ? ".gz" : "";
+        return Path.of(outputFilePath + report.getReportName() + '.' + report.getOutputFormat() + compression);
+    }
+
+    // bytes of the output file, or of all the files of a partitioned output
+    private static long outputSize(Path output) throws IOException {
+        if (!Files.isDirectory(output)) {
+            return Files.size(output);
+        }
+        try (Stream<Path> files = Files.walk(output)) {
+            long size = 0;
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                size += Files.size(file);
+            }
+            return size;
+        }
+    }
+
+    private static Consumer<RowBatch> sink(ReportOutput writer) {
+        return batch -> {
+            try {
+                writer.write(batch);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static void closeAll(List<ReportOutput> writers) throws IOException {
+        IOException failure = null;
+        for (ReportOutput writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
         }
-        // Remove the last comma
-        if (jsonBuilder.length() > 1) {
-            jsonBuilder.setLength(jsonBuilder.length() - 1);
+        if (failure != null) {
+            throw failure;
         }
-        jsonBuilder.append("}");
-        return jsonBuilder.toString();
     }
 }
 
@@ -7,7 +7,9 @@ import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlElement;
 import jakarta.xml.bind.annotation.XmlElementWrapper;
+import jakarta.xml.bind.annotation.XmlIDREF;
 import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.XmlTransient;
 import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
 
 import java.util.List;
@@ -17,6 +19,10 @@ import java.util.List;
 public class Report {
     private String reportName;
     private FileFormat outputFormat;
+    // optional, GZIP writes the output as <name>.<format>.gz
+    private Compression outputCompression;
+    // optional, splits the output into a directory of files per value of a column
+    private Partitioning outputPartitioning;
     @XmlElementWrapper(name = "inputs")
     @XmlElement(name = "input")
     private List<Column> inputs;
@@ -27,12 +33,22 @@ public class Report {
     @XmlElement(name = "transformer")
     @XmlJavaTypeAdapter(TransformerAdapter.class)
     private List<Transformer> transformers;
+    // memory one run of the report may use for the rows the Ordering and Lookup transformers buffer before they spill
+    // to disk, given per run by the report server instead of the xml. Aggregation tables and batches in flight are not
+    // counted
+    @XmlTransient
+    private Long memoryLimit;
 
     public enum FileFormat {
         CSV,
         JSONL
     }
 
+    public enum Compression {
+        NONE,
+        GZIP
+    }
+
     public String getReportName() {
         return reportName;
     }
@@ -41,6 +57,14 @@ public class Report {
         return outputFormat;
     }
 
+    public Compression getOutputCompression() {
+        return outputCompression != null ? outputCompression : Compression.NONE;
+    }
+
+    public Partitioning getOutputPartitioning() {
+        return outputPartitioning;
+    }
+
     public List<Column> getInputs() {
         return inputs;
     }
@@ -50,4 +74,48 @@ public class Report {
     }
 
     public List<Transformer> getTransformers() { return transformers; }
+
+    public Long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    // the same report with its own memory limit, so runs of a shared report don't change each other's
+    public Report withMemoryLimit(long memoryLimit) {
+        Report copy = new Report();
+        copy.reportName = reportName;
+        copy.outputFormat = outputFormat;
+        copy.outputCompression = outputCompression;
+        copy.outputPartitioning = outputPartitioning;
+        copy.inputs = inputs;
+        copy.outputs = outputs;
+        copy.transformers = transformers;
+        copy.memoryLimit = memoryLimit;
+        return copy;
+    }
+
+    // rows go to <name>/<column>=<value>/part-<n>.<format>, a part is closed and the next one started once
+    // maxFileSize bytes were written to it. At most maxOpenFiles parts are open at a time, the least recently
+    // written one is closed to make room and its partition continues in a new part
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Partitioning {
+        public static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+        @XmlIDREF
+        private Column column;
+        private Long maxFileSize;
+        private Integer maxOpenFiles;
+
+        public Column getColumn() {
+            return column;
+        }
+
+        // bytes before compression, null when the parts are not rolled
+        public Long getMaxFileSize() {
+            return maxFileSize;
+        }
+
+        public int getMaxOpenFiles() {
+            return maxOpenFiles != null ? maxOpenFiles : DEFAULT_MAX_OPEN_FILES;
+        }
+    }
 }
@@ -0,0 +1,65 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.column.Column;
+import com.playtech.report.transformer.impl.AggregatorTransformer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// running state of one aggregate for all groups, kept in arrays indexed by group id
+public abstract class Accumulator {
+
+    // sums, averages and extremes of a column declared as DECIMAL are exact, see DecimalVector.
+    // weight is the loaded weight column of a weighted TOP_K, null otherwise
+    public static Accumulator create(AggregatorTransformer.AggregateBy aggregate, AggregateInput weight) {
+        AggregatorTransformer.Method method = aggregate.getMethod();
+        Column input = aggregate.getInput();
+        if (input.getType() == Column.DataType.DECIMAL) {
+            switch (method) {
+                case SUM, AVG -> {
+                    return new DecimalSumAccumulator(input.getScale(), method == AggregatorTransformer.Method.AVG);
+                }
+                case MIN, MAX -> {
+                    return new DecimalMinMaxAccumulator(input.getScale(), method == AggregatorTransformer.Method.MAX);
+                }
+                default -> {
+                }
+            }
+        }
+        return switch (method) {
+            case SUM -> new SumAccumulator();
+            case AVG -> new AvgAccumulator();
+            case MIN -> new MinMaxAccumulator(false);
+            case MAX -> new MinMaxAccumulator(true);
+            case COUNT -> new CountAccumulator();
+            case COUNT_DISTINCT -> new CountDistinctAccumulator();
+            case APPROX_COUNT_DISTINCT -> new ApproxCountDistinctAccumulator();
+            case QUANTILE -> new QuantileAccumulator(aggregate.getQuantile(), aggregate.getCompression(), aggregate.getExactLimit());
+            case TOP_K -> new TopKAccumulator(aggregate.getK(), aggregate.getCounters(), weight);
+        };
+    }
+
+    // makes room for group ids below groups
+    public abstract void ensureCapacity(int groups);
+
+    // folds a batch in, groups holds the group id of every row or -1 for rows that don't belong to a group
+    public abstract void add(int[] groups, int size, AggregateInput input);
+
+    // folds the state of a group of another accumulator of the same kind into a group of this one
+    public abstract void merge(int group, Accumulator other, int otherGroup);
+
+    public abstract ColumnVector newOutput(int capacity);
+
+    public abstract void write(int group, ColumnVector output, int row);
+
+    // state of the first groups, for incremental runs. load() reads it into a new accumulator sized for the groups
+    public abstract void save(DataOutput out, int groups) throws IOException;
+
+    public abstract void load(DataInput in, int groups) throws IOException;
+
+    protected static int grow(int length, int groups) {
+        return Math.max(groups, length * 2);
+    }
+}
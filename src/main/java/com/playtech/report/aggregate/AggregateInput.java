@@ -0,0 +1,149 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.reject.RejectReason;
+import com.playtech.report.reject.Rejections;
+
+import java.math.BigDecimal;
+
+// the input column of one aggregate for the current batch, the numeric view is only built when an accumulator needs it
+public class AggregateInput {
+    private final String columnName;
+    // values that are not numbers are left out of the numeric view and reported here
+    private final Rejections rejections;
+    private ColumnVector vector;
+    private int size;
+    private double[] numbers = new double[0];
+    private boolean[] present = new boolean[0];
+    private boolean numbersLoaded;
+    private long[] unscaled = new long[0];
+    private boolean[] scaled = new boolean[0];
+    // scale unscaled was loaded at, -1 when it is not loaded for the current batch
+    private int unscaledScale = -1;
+
+    public AggregateInput(String columnName, Rejections rejections) {
+        this.columnName = columnName;
+        this.rejections = rejections;
+    }
+
+    public String columnName() {
+        return columnName;
+    }
+
+    // vector may be null when the batch doesn't have the column
+    public void load(ColumnVector vector, int size) {
+        this.vector = vector;
+        this.size = size;
+        this.numbersLoaded = false;
+        this.unscaledScale = -1;
+    }
+
+    public ColumnVector vector() {
+        return vector;
+    }
+
+    public boolean isNull(int row) {
+        return vector == null || vector.isNull(row);
+    }
+
+    // value of every row as a double, only meaningful where present() is true
+    public double[] numbers() {
+        loadNumbers();
+        return numbers;
+    }
+
+    public boolean[] present() {
+        loadNumbers();
+        return present;
+    }
+
+    // value of every row as a long scaled by 10^scale, only meaningful where present() and scaled() are true.
+    // the other present rows are too large or too precise for the scale and are read with decimal()
+    public long[] unscaled(int scale) {
+        loadUnscaled(scale);
+        return unscaled;
+    }
+
+    public boolean[] scaled() {
+        return scaled;
+    }
+
+    // exact value of a present row, null for the odd number text that has no decimal value like NaN
+    public BigDecimal decimal(int row) {
+        if (vector instanceof DecimalVector decimals) {
+            return decimals.get(row);
+        } else if (vector instanceof LongVector longs) {
+            return BigDecimal.valueOf(longs.get(row));
+        }
+        double number = numbers()[row];
+        return Double.isFinite(number) ? BigDecimal.valueOf(number) : null;
+    }
+
+    private void loadUnscaled(int scale) {
+        if (unscaledScale == scale) {
+            return;
+        }
+        unscaledScale = scale;
+        if (unscaled.length < size) {
+            unscaled = new long[size];
+            scaled = new boolean[size];
+        }
+
+        if (vector instanceof DecimalVector decimals && decimals.scale() <= scale) {
+            long factor = DecimalVector.powerOfTen(scale - decimals.scale());
+            for (int row = 0; row < size; row++) {
+                long value = decimals.getUnscaled(row);
+                // the factor is 1 unless the column has a smaller scale than the aggregate
+                long result = value * factor;
+                scaled[row] = decimals.fits(row) && (factor == 1 || Math.multiplyHigh(value, factor) == result >> 63);
+                unscaled[row] = result;
+            }
+        } else if (vector instanceof LongVector longs && longs.isNumeric()) {
+            long factor = DecimalVector.powerOfTen(scale);
+            for (int row = 0; row < size; row++) {
+                long result = longs.get(row) * factor;
+                scaled[row] = Math.multiplyHigh(longs.get(row), factor) == result >> 63;
+                unscaled[row] = result;
+            }
+        } else {
+            // doubles, text and decimals with more digits after the point all go through decimal()
+            for (int row = 0; row < size; row++) {
+                scaled[row] = false;
+            }
+        }
+    }
+
+    private void loadNumbers() {
+        if (numbersLoaded) {
+            return;
+        }
+        numbersLoaded = true;
+        if (numbers.length < size) {
+            numbers = new double[size];
+            present = new boolean[size];
+        }
+
+        for (int row = 0; row < size; row++) {
+            present[row] = false;
+            if (isNull(row)) {
+                continue;
+            }
+            if (vector.isNumeric()) {
+                numbers[row] = vector.getDouble(row);
+                present[row] = true;
+            } else if (vector instanceof StringVector strings) {
+                try {
+                    numbers[row] = Double.parseDouble(strings.get(row));
+                    present[row] = true;
+                } catch (NumberFormatException e) {
+                    rejections.rejectValue(RejectReason.NOT_A_NUMBER, columnName, strings.get(row));
+                }
+            } else {
+                rejections.rejectValue(RejectReason.NOT_A_NUMBER, columnName, vector.getType() + " " + vector.getObject(row));
+            }
+        }
+    }
+}
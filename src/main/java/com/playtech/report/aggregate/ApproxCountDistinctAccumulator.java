@@ -0,0 +1,117 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.util.collection.LongIntHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// approximate number of distinct values with a fixed size HyperLogLog sketch per group
+public class ApproxCountDistinctAccumulator extends Accumulator {
+    private HyperLogLog[] sketches = new HyperLogLog[16];
+    private long[] hashes = new long[0];
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > sketches.length) {
+            sketches = Arrays.copyOf(sketches, grow(sketches.length, groups));
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        ColumnVector vector = input.vector();
+        if (vector == null) {
+            return;
+        }
+        hashValues(vector, size);
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && !vector.isNull(row)) {
+                sketch(groups[row]).add(hashes[row]);
+            }
+        }
+    }
+
+    private void hashValues(ColumnVector vector, int size) {
+        if (hashes.length < size) {
+            hashes = new long[size];
+        }
+        if (vector instanceof StringVector strings) {
+            // every distinct string of the batch is hashed once
+            long[] hashByCode = new long[strings.dictionarySize()];
+            for (int code = 0; code < hashByCode.length; code++) {
+                hashByCode[code] = HyperLogLog.hash(strings.decode(code));
+            }
+            for (int row = 0; row < size; row++) {
+                hashes[row] = strings.isNull(row) ? 0 : hashByCode[strings.getCode(row)];
+            }
+        } else if (vector instanceof DoubleVector doubles) {
+            for (int row = 0; row < size; row++) {
+                hashes[row] = LongIntHashMap.mix(Double.doubleToLongBits(doubles.get(row)));
+            }
+        } else if (vector instanceof DecimalVector decimals) {
+            // a column keeps its scale, so equal values that fit have equal scaled longs
+            for (int row = 0; row < size; row++) {
+                hashes[row] = decimals.fits(row)
+                        ? LongIntHashMap.mix(decimals.getUnscaled(row))
+                        : HyperLogLog.hash(decimals.get(row).stripTrailingZeros().toPlainString());
+            }
+        } else {
+            LongVector longs = (LongVector) vector;
+            for (int row = 0; row < size; row++) {
+                hashes[row] = LongIntHashMap.mix(longs.get(row));
+            }
+        }
+    }
+
+    private HyperLogLog sketch(int group) {
+        if (sketches[group] == null) {
+            sketches[group] = new HyperLogLog();
+        }
+        return sketches[group];
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        HyperLogLog partial = ((ApproxCountDistinctAccumulator) other).sketches[otherGroup];
+        if (partial != null) {
+            sketch(group).merge(partial);
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new LongVector(Column.DataType.INTEGER, capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        ((LongVector) output).set(row, sketches[group] == null ? 0 : sketches[group].estimate());
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeBoolean(sketches[group] != null);
+            if (sketches[group] != null) {
+                sketches[group].save(out);
+            }
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            if (in.readBoolean()) {
+                sketch(group).load(in);
+            }
+        }
+    }
+}
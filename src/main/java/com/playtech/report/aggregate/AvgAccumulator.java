@@ -0,0 +1,69 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DoubleVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class AvgAccumulator extends Accumulator {
+    private double[] sums = new double[16];
+    private long[] counts = new long[16];
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > sums.length) {
+            int capacity = grow(sums.length, groups);
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        double[] numbers = input.numbers();
+        boolean[] present = input.present();
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && present[row]) {
+                sums[groups[row]] += numbers[row];
+                counts[groups[row]]++;
+            }
+        }
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        AvgAccumulator partial = (AvgAccumulator) other;
+        sums[group] += partial.sums[otherGroup];
+        counts[group] += partial.counts[otherGroup];
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new DoubleVector(capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        ((DoubleVector) output).set(row, counts[group] == 0 ? 0 : sums[group] / counts[group]);
+    }
+
+    // the sum and the count are kept apart, so averages of two runs merge exactly
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeDouble(sums[group]);
+            out.writeLong(counts[group]);
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            sums[group] = in.readDouble();
+            counts[group] = in.readLong();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.column.Column;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// number of rows with a value in the input column, of any type
+public class CountAccumulator extends Accumulator {
+    private long[] counts = new long[16];
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > counts.length) {
+            counts = Arrays.copyOf(counts, grow(counts.length, groups));
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && !input.isNull(row)) {
+                counts[groups[row]]++;
+            }
+        }
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        counts[group] += ((CountAccumulator) other).counts[otherGroup];
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new LongVector(Column.DataType.INTEGER, capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        ((LongVector) output).set(row, counts[group]);
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeLong(counts[group]);
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            counts[group] = in.readLong();
+        }
+    }
+}
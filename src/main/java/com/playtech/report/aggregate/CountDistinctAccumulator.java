@@ -0,0 +1,133 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.column.Column;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// exact number of distinct values, keeps every distinct value of every group
+public class CountDistinctAccumulator extends Accumulator {
+    private static final byte STRING = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte DATE = 3;
+    private static final byte DATETIME = 4;
+    private static final byte DECIMAL = 5;
+
+    private Set<?>[] values = new Set<?>[16];
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > values.length) {
+            values = Arrays.copyOf(values, grow(values.length, groups));
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        ColumnVector vector = input.vector();
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && !input.isNull(row)) {
+                Object value = vector.getObject(row);
+                // 1.5 and 1.50 are one value
+                set(groups[row]).add(value instanceof BigDecimal decimal ? decimal.stripTrailingZeros() : value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Object> set(int group) {
+        if (values[group] == null) {
+            values[group] = new HashSet<>();
+        }
+        return (Set<Object>) values[group];
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        Set<?> partial = ((CountDistinctAccumulator) other).values[otherGroup];
+        if (partial != null) {
+            set(group).addAll(partial);
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new LongVector(Column.DataType.INTEGER, capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        ((LongVector) output).set(row, values[group] == null ? 0 : values[group].size());
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            Set<?> distinct = values[group];
+            out.writeInt(distinct == null ? 0 : distinct.size());
+            if (distinct == null) {
+                continue;
+            }
+            // the values are what the input vectors box, so the type tag tells how to read them back
+            for (Object value : distinct) {
+                switch (value) {
+                    case String text -> {
+                        out.writeByte(STRING);
+                        BatchSerializer.writeString(out, text);
+                    }
+                    case Long number -> {
+                        out.writeByte(LONG);
+                        out.writeLong(number);
+                    }
+                    case Double number -> {
+                        out.writeByte(DOUBLE);
+                        out.writeDouble(number);
+                    }
+                    case LocalDate date -> {
+                        out.writeByte(DATE);
+                        out.writeLong(date.toEpochDay());
+                    }
+                    case Instant instant -> {
+                        out.writeByte(DATETIME);
+                        out.writeLong(instant.getEpochSecond());
+                    }
+                    case BigDecimal decimal -> {
+                        out.writeByte(DECIMAL);
+                        BatchSerializer.writeString(out, decimal.toString());
+                    }
+                    default -> throw new IllegalStateException("Can't save a distinct value of type " + value.getClass().getSimpleName());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                byte tag = in.readByte();
+                set(group).add(switch (tag) {
+                    case STRING -> BatchSerializer.readString(in);
+                    case LONG -> in.readLong();
+                    case DOUBLE -> in.readDouble();
+                    case DATE -> LocalDate.ofEpochDay(in.readLong());
+                    case DATETIME -> Instant.ofEpochSecond(in.readLong());
+                    case DECIMAL -> new BigDecimal(BatchSerializer.readString(in));
+                    default -> throw new IOException("Unknown distinct value tag " + tag);
+                });
+            }
+        }
+    }
+}
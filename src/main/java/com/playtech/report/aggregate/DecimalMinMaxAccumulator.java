@@ -0,0 +1,124 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+// MIN or MAX of a DECIMAL column, compared as scaled longs unless a value doesn't fit the scale of the column
+public class DecimalMinMaxAccumulator extends Accumulator {
+    private final boolean max;
+    private DecimalVector values;
+    private boolean[] seen = new boolean[16];
+
+    public DecimalMinMaxAccumulator(int scale, boolean max) {
+        this.max = max;
+        this.values = new DecimalVector(scale, 16);
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > seen.length) {
+            int capacity = grow(seen.length, groups);
+            values = values.resized(capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        long[] numbers = input.unscaled(values.scale());
+        boolean[] scaled = input.scaled();
+        boolean[] present = input.present();
+        for (int row = 0; row < size; row++) {
+            int group = groups[row];
+            if (group < 0 || !present[row]) {
+                continue;
+            }
+            if (scaled[row] && (!seen[group] || values.fits(group))) {
+                accept(group, numbers[row]);
+            } else {
+                BigDecimal value = input.decimal(row);
+                if (value != null) {
+                    accept(group, value);
+                }
+            }
+        }
+    }
+
+    private void accept(int group, long value) {
+        if (!seen[group] || (max ? value > values.getUnscaled(group) : value < values.getUnscaled(group))) {
+            values.setUnscaled(group, value);
+            seen[group] = true;
+        }
+    }
+
+    private void accept(int group, BigDecimal value) {
+        if (!seen[group]) {
+            values.set(group, value);
+            seen[group] = true;
+            return;
+        }
+        int order = value.compareTo(values.get(group));
+        if (max ? order > 0 : order < 0) {
+            values.set(group, value);
+        }
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        DecimalMinMaxAccumulator partial = (DecimalMinMaxAccumulator) other;
+        if (!partial.seen[otherGroup]) {
+            return;
+        }
+        if (partial.values.fits(otherGroup) && (!seen[group] || values.fits(group))) {
+            accept(group, partial.values.getUnscaled(otherGroup));
+        } else {
+            accept(group, partial.values.get(otherGroup));
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new DecimalVector(values.scale(), capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        if (seen[group]) {
+            values.copyTo(group, output, row);
+        } else {
+            output.setNull(row);
+        }
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeBoolean(seen[group]);
+            out.writeBoolean(values.fits(group));
+            if (values.fits(group)) {
+                out.writeLong(values.getUnscaled(group));
+            } else {
+                BatchSerializer.writeString(out, values.get(group).toString());
+            }
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            seen[group] = in.readBoolean();
+            if (in.readBoolean()) {
+                values.setUnscaled(group, in.readLong());
+            } else {
+                values.set(group, new BigDecimal(BatchSerializer.readString(in)));
+            }
+        }
+    }
+}
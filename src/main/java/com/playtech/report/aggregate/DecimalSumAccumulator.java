@@ -0,0 +1,121 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+// SUM or AVG of a DECIMAL column. The sums are longs at the scale of the column, a group only moves to BigDecimal
+// once its sum no longer fits. Averages are rounded half even to the same scale
+public class DecimalSumAccumulator extends Accumulator {
+    private final boolean average;
+    private DecimalVector sums;
+    private long[] counts = new long[16];
+
+    public DecimalSumAccumulator(int scale, boolean average) {
+        this.average = average;
+        this.sums = new DecimalVector(scale, 16);
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > counts.length) {
+            int capacity = grow(counts.length, groups);
+            sums = sums.resized(capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        long[] values = input.unscaled(sums.scale());
+        boolean[] scaled = input.scaled();
+        boolean[] present = input.present();
+        for (int row = 0; row < size; row++) {
+            int group = groups[row];
+            if (group < 0 || !present[row]) {
+                continue;
+            }
+            if (scaled[row] && add(group, values[row])) {
+                counts[group]++;
+                continue;
+            }
+            BigDecimal value = input.decimal(row);
+            if (value != null) {
+                sums.set(group, sums.get(group).add(value));
+                counts[group]++;
+            }
+        }
+    }
+
+    // false when the group already is a BigDecimal or the sum would overflow
+    private boolean add(int group, long value) {
+        if (!sums.fits(group)) {
+            return false;
+        }
+        long sum = sums.getUnscaled(group);
+        long total = sum + value;
+        // overflow when both operands have another sign than the total
+        if (((sum ^ total) & (value ^ total)) < 0) {
+            return false;
+        }
+        sums.setUnscaled(group, total);
+        return true;
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        DecimalSumAccumulator partial = (DecimalSumAccumulator) other;
+        counts[group] += partial.counts[otherGroup];
+        if (!partial.sums.fits(otherGroup) || !add(group, partial.sums.getUnscaled(otherGroup))) {
+            sums.set(group, sums.get(group).add(partial.sums.get(otherGroup)));
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new DecimalVector(sums.scale(), capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        if (!average) {
+            sums.copyTo(group, output, row);
+        } else if (counts[group] == 0) {
+            ((DecimalVector) output).setUnscaled(row, 0);
+        } else {
+            ((DecimalVector) output).set(row, sums.get(group).divide(BigDecimal.valueOf(counts[group]), sums.scale(), RoundingMode.HALF_EVEN));
+        }
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeLong(counts[group]);
+            out.writeBoolean(sums.fits(group));
+            if (sums.fits(group)) {
+                out.writeLong(sums.getUnscaled(group));
+            } else {
+                BatchSerializer.writeString(out, sums.get(group).toString());
+            }
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            counts[group] = in.readLong();
+            if (in.readBoolean()) {
+                sums.setUnscaled(group, in.readLong());
+            } else {
+                sums.set(group, new BigDecimal(BatchSerializer.readString(in)));
+            }
+        }
+    }
+}
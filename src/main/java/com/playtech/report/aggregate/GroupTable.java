@@ -0,0 +1,346 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.util.collection.LongIntHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// assigns a dense id to every distinct combination of group-by values, in the order the groups first appear.
+// every key column numbers its distinct values, and the ids of the columns are combined pairwise through
+// long -> int maps, so finding the group of a row never allocates
+public class GroupTable {
+    private final KeyColumn[] keyColumns;
+    // prefixes[i] maps (id of the first i + 1 columns, value id of column i + 1) to the id of the first i + 2 columns
+    private final LongIntHashMap[] prefixes;
+    // value id of every key column for every group, to write the keys back out
+    private int[][] groupKeys;
+    private int groupCapacity = 16;
+    private int groupCount;
+    private int[] valueIds = new int[0];
+
+    public GroupTable(int keyColumnCount) {
+        keyColumns = new KeyColumn[keyColumnCount];
+        for (int i = 0; i < keyColumnCount; i++) {
+            keyColumns[i] = new KeyColumn();
+        }
+        prefixes = new LongIntHashMap[Math.max(keyColumnCount - 1, 0)];
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = new LongIntHashMap();
+        }
+        groupKeys = new int[keyColumnCount][groupCapacity];
+    }
+
+    public int size() {
+        return groupCount;
+    }
+
+    public int keyColumnCount() {
+        return keyColumns.length;
+    }
+
+    // fills groups with the group id of every row, -1 for rows with a missing key value
+    public void resolve(ColumnVector[] keys, int size, int[] groups) {
+        if (keyColumns.length == 0) {
+            // without group-by columns everything is one group
+            Arrays.fill(groups, 0, size, 0);
+            groupCount = Math.max(groupCount, size > 0 ? 1 : 0);
+            return;
+        }
+        if (valueIds.length < size) {
+            valueIds = new int[size];
+        }
+        for (int column = 0; column < keyColumns.length; column++) {
+            keyColumns[column].resolve(keys[column], size, valueIds);
+            if (column == 0) {
+                System.arraycopy(valueIds, 0, groups, 0, size);
+                continue;
+            }
+            LongIntHashMap prefix = prefixes[column - 1];
+            for (int row = 0; row < size; row++) {
+                if (groups[row] < 0 || valueIds[row] < 0) {
+                    groups[row] = -1;
+                } else {
+                    groups[row] = combine(prefix, groups[row], valueIds[row]);
+                }
+            }
+        }
+
+        // register the groups that were seen for the first time
+        for (int row = 0; row < size; row++) {
+            int group = groups[row];
+            if (group >= groupCount && group >= 0) {
+                addGroup(group, keys, row);
+            }
+        }
+    }
+
+    // group id of the given group of another table, created in this table when needed
+    public int groupOf(GroupTable other, int otherGroup) {
+        if (keyColumns.length == 0) {
+            groupCount = 1;
+            return 0;
+        }
+        int id = -1;
+        for (int column = 0; column < keyColumns.length; column++) {
+            int valueId = keyColumns[column].idOf(other.keyColumns[column], other.groupKeys[column][otherGroup]);
+            id = column == 0 ? valueId : combine(prefixes[column - 1], id, valueId);
+        }
+        if (id >= groupCount) {
+            ensureGroupCapacity(id + 1);
+            for (int column = 0; column < keyColumns.length; column++) {
+                groupKeys[column][id] = keyColumns[column].idOf(other.keyColumns[column], other.groupKeys[column][otherGroup]);
+            }
+            groupCount = id + 1;
+        }
+        return id;
+    }
+
+    // the key values of every group, read() builds a table with the same groups in the same order from it
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(keyColumns.length);
+        out.writeInt(groupCount);
+        for (int column = 0; column < keyColumns.length; column++) {
+            keyColumns[column].write(out);
+            for (int group = 0; group < groupCount; group++) {
+                out.writeInt(groupKeys[column][group]);
+            }
+        }
+    }
+
+    public static GroupTable read(DataInput in) throws IOException {
+        GroupTable saved = new GroupTable(in.readInt());
+        int groups = in.readInt();
+        saved.ensureGroupCapacity(groups);
+        for (int column = 0; column < saved.keyColumns.length; column++) {
+            saved.keyColumns[column].read(in);
+            for (int group = 0; group < groups; group++) {
+                saved.groupKeys[column][group] = in.readInt();
+            }
+        }
+        saved.groupCount = groups;
+
+        // adding the groups to a new table in order rebuilds the prefix maps and keeps every group id
+        GroupTable table = new GroupTable(saved.keyColumns.length);
+        for (int group = 0; group < groups; group++) {
+            table.groupOf(saved, group);
+        }
+        return table;
+    }
+
+    public ColumnVector newKeyVector(int column, int capacity) {
+        return keyColumns[column].template.newVector(capacity);
+    }
+
+    public void writeKey(int group, int column, ColumnVector target, int row) {
+        keyColumns[column].write(groupKeys[column][group], target, row);
+    }
+
+    private int combine(LongIntHashMap prefix, int prefixId, int valueId) {
+        long key = ((long) prefixId << 32) | valueId;
+        int id = prefix.get(key);
+        if (id < 0) {
+            id = prefix.size();
+            prefix.put(key, id);
+        }
+        return id;
+    }
+
+    private void addGroup(int group, ColumnVector[] keys, int row) {
+        ensureGroupCapacity(group + 1);
+        for (int column = 0; column < keyColumns.length; column++) {
+            groupKeys[column][group] = keyColumns[column].lastResolved(keys[column], row);
+        }
+        groupCount = group + 1;
+    }
+
+    private void ensureGroupCapacity(int groups) {
+        if (groups > groupCapacity) {
+            groupCapacity = Math.max(groups, groupCapacity * 2);
+            for (int column = 0; column < keyColumns.length; column++) {
+                groupKeys[column] = Arrays.copyOf(groupKeys[column], groupCapacity);
+            }
+        }
+    }
+
+    // distinct values of one group-by column, numbered in order of appearance
+    private static class KeyColumn {
+        private ColumnVector template;
+        // strings by value, numbers by their long (or double bits) value. Decimals are numbers by their long at the
+        // scale of the column, or strings by their plain text when they don't fit that scale
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private String[] strings = new String[16];
+        private final LongIntHashMap numberIds = new LongIntHashMap();
+        private long[] numbers = new long[16];
+        private int size;
+        // for bringing a decimal to the scale of the column
+        private DecimalVector rescaled;
+
+        private void resolve(ColumnVector vector, int rows, int[] valueIds) {
+            if (template == null) {
+                template = vector.newVector(0);
+            } else if (template.getClass() != vector.getClass()) {
+                throw new IllegalStateException("Group by column changed its type from " + template.getType() + " to " + vector.getType());
+            }
+
+            if (vector instanceof StringVector stringVector) {
+                // look up each distinct string of the batch only once
+                int[] idByCode = new int[stringVector.dictionarySize()];
+                Arrays.fill(idByCode, -1);
+                for (int row = 0; row < rows; row++) {
+                    if (stringVector.isNull(row)) {
+                        valueIds[row] = -1;
+                        continue;
+                    }
+                    int code = stringVector.getCode(row);
+                    if (idByCode[code] < 0) {
+                        idByCode[code] = stringId(stringVector.decode(code));
+                    }
+                    valueIds[row] = idByCode[code];
+                }
+            } else if (vector instanceof DecimalVector decimals) {
+                for (int row = 0; row < rows; row++) {
+                    valueIds[row] = decimals.isNull(row) ? -1 : decimalId(decimals, row);
+                }
+            } else {
+                for (int row = 0; row < rows; row++) {
+                    valueIds[row] = vector.isNull(row) ? -1 : numberId(numberBits(vector, row));
+                }
+            }
+        }
+
+        // value id of a row that was just resolved
+        private int lastResolved(ColumnVector vector, int row) {
+            if (vector instanceof StringVector stringVector) {
+                return stringIds.get(stringVector.get(row));
+            } else if (vector instanceof DecimalVector decimals) {
+                return decimalId(decimals, row);
+            }
+            return numberIds.get(numberBits(vector, row));
+        }
+
+        private int idOf(KeyColumn other, int otherId) {
+            if (template == null) {
+                template = other.template;
+            }
+            if (other.template instanceof StringVector || other.isDecimalText(otherId)) {
+                return stringId(other.strings[otherId]);
+            }
+            return numberId(other.numbers[otherId]);
+        }
+
+        private int decimalId(DecimalVector decimals, int row) {
+            int scale = ((DecimalVector) template).scale();
+            if (decimals.fits(row) && decimals.scale() == scale) {
+                return numberId(decimals.getUnscaled(row));
+            }
+            if (rescaled == null) {
+                rescaled = new DecimalVector(scale, 1);
+            }
+            BigDecimal value = decimals.get(row);
+            rescaled.set(0, value);
+            return rescaled.fits(0) ? numberId(rescaled.getUnscaled(0)) : stringId(value.stripTrailingZeros().toPlainString());
+        }
+
+        // a decimal id that stands for a value that is kept as text
+        private boolean isDecimalText(int id) {
+            return template instanceof DecimalVector && id < strings.length && strings[id] != null;
+        }
+
+        private int stringId(String value) {
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = size++;
+                // decimal columns use both arrays, so an id can be past the end of either
+                if (id >= strings.length) {
+                    strings = Arrays.copyOf(strings, Math.max(id + 1, strings.length * 2));
+                }
+                strings[id] = value;
+                stringIds.put(value, id);
+            }
+            return id;
+        }
+
+        private int numberId(long value) {
+            int id = numberIds.get(value);
+            if (id < 0) {
+                id = size++;
+                if (id >= numbers.length) {
+                    numbers = Arrays.copyOf(numbers, Math.max(id + 1, numbers.length * 2));
+                }
+                numbers[id] = value;
+                numberIds.put(value, id);
+            }
+            return id;
+        }
+
+        private void write(DataOutput out) throws IOException {
+            out.writeUTF(template == null ? "" : template.getType().name());
+            if (template instanceof DecimalVector decimals) {
+                out.writeInt(decimals.scale());
+            }
+            out.writeInt(size);
+            for (int id = 0; id < size; id++) {
+                if (template instanceof DecimalVector) {
+                    out.writeBoolean(isDecimalText(id));
+                }
+                if (template instanceof StringVector || isDecimalText(id)) {
+                    BatchSerializer.writeString(out, strings[id]);
+                } else {
+                    out.writeLong(numbers[id]);
+                }
+            }
+        }
+
+        private void read(DataInput in) throws IOException {
+            String type = in.readUTF();
+            if (!type.isEmpty()) {
+                Column.DataType dataType = Column.DataType.valueOf(type);
+                template = ColumnVector.create(dataType, dataType == Column.DataType.DECIMAL ? in.readInt() : Column.DEFAULT_SCALE, 0);
+            }
+            int values = in.readInt();
+            for (int id = 0; id < values; id++) {
+                boolean text = template instanceof StringVector || template instanceof DecimalVector && in.readBoolean();
+                if (text) {
+                    stringId(BatchSerializer.readString(in));
+                } else {
+                    numberId(in.readLong());
+                }
+            }
+        }
+
+        private static long numberBits(ColumnVector vector, int row) {
+            if (vector instanceof DoubleVector doubles) {
+                return Double.doubleToLongBits(doubles.get(row));
+            }
+            return ((LongVector) vector).get(row);
+        }
+
+        private void write(int id, ColumnVector target, int row) {
+            if (target instanceof StringVector stringTarget) {
+                stringTarget.set(row, strings[id]);
+            } else if (target instanceof DecimalVector decimalTarget) {
+                if (isDecimalText(id)) {
+                    decimalTarget.set(row, new BigDecimal(strings[id]));
+                } else {
+                    decimalTarget.setUnscaled(row, numbers[id]);
+                }
+            } else if (target instanceof DoubleVector doubleTarget) {
+                doubleTarget.set(row, Double.longBitsToDouble(numbers[id]));
+            } else {
+                ((LongVector) target).set(row, numbers[id]);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DoubleVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// MIN or MAX, groups without any value get a missing result
+public class MinMaxAccumulator extends Accumulator {
+    private final boolean max;
+    private double[] values = new double[16];
+    private boolean[] seen = new boolean[16];
+
+    public MinMaxAccumulator(boolean max) {
+        this.max = max;
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > values.length) {
+            int capacity = grow(values.length, groups);
+            values = Arrays.copyOf(values, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        double[] numbers = input.numbers();
+        boolean[] present = input.present();
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && present[row]) {
+                accept(groups[row], numbers[row]);
+            }
+        }
+    }
+
+    private void accept(int group, double value) {
+        if (!seen[group]) {
+            values[group] = value;
+            seen[group] = true;
+        } else if (max ? value > values[group] : value < values[group]) {
+            values[group] = value;
+        }
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        MinMaxAccumulator partial = (MinMaxAccumulator) other;
+        if (partial.seen[otherGroup]) {
+            accept(group, partial.values[otherGroup]);
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new DoubleVector(capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        if (seen[group]) {
+            ((DoubleVector) output).set(row, values[group]);
+        } else {
+            output.setNull(row);
+        }
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeBoolean(seen[group]);
+            out.writeDouble(values[group]);
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            seen[group] = in.readBoolean();
+            values[group] = in.readDouble();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DoubleVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// a quantile of the values of every group from a QuantileSketch, null for a group without values
+public class QuantileAccumulator extends Accumulator {
+    private final double quantile;
+    private final int compression;
+    private final int exactLimit;
+    private QuantileSketch[] sketches = new QuantileSketch[16];
+
+    public QuantileAccumulator(double quantile, int compression, int exactLimit) {
+        this.quantile = quantile;
+        this.compression = compression;
+        this.exactLimit = exactLimit;
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > sketches.length) {
+            sketches = Arrays.copyOf(sketches, grow(sketches.length, groups));
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        double[] numbers = input.numbers();
+        boolean[] present = input.present();
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && present[row]) {
+                sketch(groups[row]).add(numbers[row]);
+            }
+        }
+    }
+
+    private QuantileSketch sketch(int group) {
+        if (sketches[group] == null) {
+            sketches[group] = new QuantileSketch(compression, exactLimit);
+        }
+        return sketches[group];
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        QuantileSketch partial = ((QuantileAccumulator) other).sketches[otherGroup];
+        if (partial != null) {
+            sketch(group).merge(partial);
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new DoubleVector(capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        double value = sketches[group] == null ? Double.NaN : sketches[group].quantile(quantile);
+        if (Double.isNaN(value)) {
+            output.setNull(row);
+        } else {
+            ((DoubleVector) output).set(row, value);
+        }
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeBoolean(sketches[group] != null);
+            if (sketches[group] != null) {
+                sketches[group].save(out);
+            }
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            if (in.readBoolean()) {
+                sketch(group).load(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.playtech.report.aggregate;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// quantiles of the values of one group. Up to exactLimit values are kept as they are and the quantile is exact, past
+// that they are folded into a merging t-digest of weighted centroids: at most about compression centroids, small ones at
+// the tails and large ones around the median, so the error is smallest for quantiles like 0.01 and 0.99
+public class QuantileSketch {
+    private final int compression;
+    private final int exactLimit;
+
+    // the values while the sketch is exact, unsorted
+    private double[] values = new double[8];
+    private int count;
+
+    // centroids ordered by mean, then the unmerged ones, null while the sketch is exact
+    private double[] means;
+    private double[] weights;
+    private int centroids;
+    private int unmerged;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch(int compression, int exactLimit) {
+        this.compression = compression;
+        this.exactLimit = exactLimit;
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (means == null) {
+            if (count < exactLimit) {
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, Math.min(exactLimit, values.length * 2));
+                }
+                values[count++] = value;
+                return;
+            }
+            toDigest();
+        }
+        addCentroid(value, 1);
+    }
+
+    // the result doesn't depend on which sketch is merged into which: both sides are compressed on their own and
+    // their centroids compressed together once. Past exactLimit a quantile still depends on how the values were split
+    // into sketches, so it can differ in its last digits between runs with other threads or chunk sizes
+    public void merge(QuantileSketch other) {
+        if (other.means == null && other.count == 0) {
+            return;
+        }
+        if (other.means == null && means == null && count + other.count <= exactLimit) {
+            for (int i = 0; i < other.count; i++) {
+                add(other.values[i]);
+            }
+            return;
+        }
+        QuantileSketch digest = other.means != null ? other : other.digestOfValues();
+        digest.compress();
+        if (means == null && count == 0) {
+            means = Arrays.copyOf(digest.means, digest.means.length);
+            weights = Arrays.copyOf(digest.weights, digest.weights.length);
+            centroids = digest.centroids;
+            totalWeight = digest.totalWeight;
+            min = digest.min;
+            max = digest.max;
+            values = null;
+            return;
+        }
+        if (means == null) {
+            toDigest();
+        }
+        compress();
+        min = Math.min(min, digest.min);
+        max = Math.max(max, digest.max);
+        if (centroids + digest.centroids > means.length) {
+            means = Arrays.copyOf(means, centroids + digest.centroids);
+            weights = Arrays.copyOf(weights, centroids + digest.centroids);
+        }
+        for (int i = 0; i < digest.centroids; i++) {
+            addCentroid(digest.means[i], digest.weights[i]);
+        }
+        compress();
+    }
+
+    // the exact values of this sketch as a digest of their own, this sketch is left as it is
+    private QuantileSketch digestOfValues() {
+        QuantileSketch digest = new QuantileSketch(compression, exactLimit);
+        digest.values = Arrays.copyOf(values, Math.max(1, count));
+        digest.count = count;
+        digest.min = min;
+        digest.max = max;
+        digest.toDigest();
+        return digest;
+    }
+
+    // values interpolated between the two nearest ranks, so the median of 1 and 2 is 1.5. NaN for a sketch without values
+    public double quantile(double q) {
+        if (means == null) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            Arrays.sort(values, 0, count);
+            double rank = q * (count - 1);
+            int below = (int) Math.floor(rank);
+            int above = Math.min(below + 1, count - 1);
+            return values[below] + (rank - below) * (values[above] - values[below]);
+        }
+        compress();
+        if (centroids == 1) {
+            return means[0];
+        }
+
+        // a centroid stands for its weight spread around its mean, the ends of the first and the last
+        // centroid are the smallest and the largest value
+        double target = q * totalWeight;
+        if (target < weights[0] / 2) {
+            return interpolate(min, means[0], weights[0] / 2 == 0 ? 0 : target / (weights[0] / 2));
+        }
+        double passed = weights[0] / 2;
+        for (int i = 1; i < centroids; i++) {
+            double step = (weights[i - 1] + weights[i]) / 2;
+            if (target < passed + step) {
+                return interpolate(means[i - 1], means[i], (target - passed) / step);
+            }
+            passed += step;
+        }
+        double last = weights[centroids - 1] / 2;
+        return interpolate(means[centroids - 1], max, last == 0 ? 1 : Math.min(1, (target - passed) / last));
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + fraction * (to - from);
+    }
+
+    private void toDigest() {
+        // room for the merged centroids and a buffer of as many unmerged ones, a merge leaves at most about
+        // compression centroids. All values fit, so they are compressed together and not in the order they came
+        int capacity = Math.max(2 * compression + 8, count);
+        means = new double[capacity];
+        weights = new double[capacity];
+        centroids = 0;
+        unmerged = 0;
+        totalWeight = 0;
+        for (int i = 0; i < count; i++) {
+            addCentroid(values[i], 1);
+        }
+        values = null;
+        count = 0;
+    }
+
+    private void addCentroid(double mean, double weight) {
+        if (centroids + unmerged == means.length) {
+            compress();
+            if (centroids + unmerged == means.length) {
+                means = Arrays.copyOf(means, means.length * 2);
+                weights = Arrays.copyOf(weights, weights.length * 2);
+            }
+        }
+        means[centroids + unmerged] = mean;
+        weights[centroids + unmerged] = weight;
+        unmerged++;
+        totalWeight += weight;
+    }
+
+    // sorts all centroids by mean, equal means by weight, and merges neighbours while the merged one spans at most 1 on the log odds scale
+    // compression / z * log(q / (1 - q)), which is steep at both ends and keeps single values there. z grows with the
+    // log of the count so the number of centroids stays at about compression
+    private void compress() {
+        if (unmerged == 0) {
+            return;
+        }
+        int size = centroids + unmerged;
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> means[a] != means[b] ? Double.compare(means[a], means[b]) : Double.compare(weights[a], weights[b]));
+
+        double[] mergedMeans = new double[size];
+        double[] mergedWeights = new double[size];
+        int merged = 0;
+        double passed = 0;
+        double mean = means[order[0]];
+        double weight = weights[order[0]];
+        for (int i = 1; i < size; i++) {
+            double nextMean = means[order[i]];
+            double nextWeight = weights[order[i]];
+            double q0 = passed / totalWeight;
+            double q1 = (passed + weight + nextWeight) / totalWeight;
+            if (scale(q1) - scale(q0) <= 1) {
+                mean += (nextMean - mean) * nextWeight / (weight + nextWeight);
+                weight += nextWeight;
+            } else {
+                mergedMeans[merged] = mean;
+                mergedWeights[merged++] = weight;
+                passed += weight;
+                mean = nextMean;
+                weight = nextWeight;
+            }
+        }
+        mergedMeans[merged] = mean;
+        mergedWeights[merged++] = weight;
+
+        // a merge may have grown the arrays past the usual room
+        int capacity = Math.max(2 * compression + 8, 2 * merged);
+        means = Arrays.copyOf(mergedMeans, capacity);
+        weights = Arrays.copyOf(mergedWeights, capacity);
+        centroids = merged;
+        unmerged = 0;
+    }
+
+    private double scale(double q) {
+        double normalizer = 4 * Math.log(Math.max(1, totalWeight / compression)) + 24;
+        return compression / normalizer * Math.log(q / (1 - q));
+    }
+
+    public void save(DataOutput out) throws IOException {
+        out.writeBoolean(means != null);
+        if (means == null) {
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeDouble(values[i]);
+            }
+            return;
+        }
+        compress();
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(centroids);
+        for (int i = 0; i < centroids; i++) {
+            out.writeDouble(means[i]);
+            out.writeDouble(weights[i]);
+        }
+    }
+
+    // merges the saved values into this sketch
+    public void load(DataInput in) throws IOException {
+        QuantileSketch saved = new QuantileSketch(compression, exactLimit);
+        if (!in.readBoolean()) {
+            int size = in.readInt();
+            saved.values = new double[Math.max(1, size)];
+            for (int i = 0; i < size; i++) {
+                saved.values[i] = in.readDouble();
+            }
+            saved.count = size;
+        } else {
+            saved.min = in.readDouble();
+            saved.max = in.readDouble();
+            int size = in.readInt();
+            saved.means = new double[size];
+            saved.weights = new double[size];
+            for (int i = 0; i < size; i++) {
+                saved.means[i] = in.readDouble();
+                saved.weights[i] = in.readDouble();
+                saved.totalWeight += saved.weights[i];
+            }
+            saved.centroids = size;
+        }
+        merge(saved);
+    }
+}
@@ -0,0 +1,60 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DoubleVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class SumAccumulator extends Accumulator {
+    private double[] sums = new double[16];
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > sums.length) {
+            sums = Arrays.copyOf(sums, grow(sums.length, groups));
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        double[] numbers = input.numbers();
+        boolean[] present = input.present();
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && present[row]) {
+                sums[groups[row]] += numbers[row];
+            }
+        }
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        sums[group] += ((SumAccumulator) other).sums[otherGroup];
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new DoubleVector(capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        ((DoubleVector) output).set(row, sums[group]);
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeDouble(sums[group]);
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            sums[group] = in.readDouble();
+        }
+    }
+}
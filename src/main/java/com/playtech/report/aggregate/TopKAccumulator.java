@@ -0,0 +1,105 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.StringVector;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+// the k most frequent values of every group from a TopKSketch, as text like Alice=12;Bob=7. With a weight column a value
+// counts the sum of its weights instead of its rows
+public class TopKAccumulator extends Accumulator {
+    private final int k;
+    private final int counters;
+    private final AggregateInput weight;
+    private TopKSketch[] sketches = new TopKSketch[16];
+    private String[] texts = new String[0];
+
+    // weight is null when rows are counted
+    public TopKAccumulator(int k, int counters, AggregateInput weight) {
+        this.k = k;
+        this.counters = counters;
+        this.weight = weight;
+    }
+
+    @Override
+    public void ensureCapacity(int groups) {
+        if (groups > sketches.length) {
+            sketches = Arrays.copyOf(sketches, grow(sketches.length, groups));
+        }
+    }
+
+    @Override
+    public void add(int[] groups, int size, AggregateInput input) {
+        ColumnVector vector = input.vector();
+        if (vector == null) {
+            return;
+        }
+        double[] weights = weight != null ? weight.numbers() : null;
+        boolean[] present = weight != null ? weight.present() : null;
+        loadTexts(vector, size);
+        for (int row = 0; row < size; row++) {
+            if (groups[row] >= 0 && texts[row] != null && (present == null || present[row])) {
+                sketch(groups[row]).add(texts[row], weights != null ? weights[row] : 1);
+            }
+        }
+    }
+
+    // values are counted by their text, decimals without an exponent
+    private void loadTexts(ColumnVector vector, int size) {
+        if (texts.length < size) {
+            texts = new String[size];
+        }
+        for (int row = 0; row < size; row++) {
+            Object value = vector.getObject(row);
+            texts[row] = value == null ? null : value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+        }
+    }
+
+    private TopKSketch sketch(int group) {
+        if (sketches[group] == null) {
+            sketches[group] = new TopKSketch(counters);
+        }
+        return sketches[group];
+    }
+
+    @Override
+    public void merge(int group, Accumulator other, int otherGroup) {
+        TopKSketch partial = ((TopKAccumulator) other).sketches[otherGroup];
+        if (partial != null) {
+            sketch(group).merge(partial);
+        }
+    }
+
+    @Override
+    public ColumnVector newOutput(int capacity) {
+        return new StringVector(capacity);
+    }
+
+    @Override
+    public void write(int group, ColumnVector output, int row) {
+        ((StringVector) output).set(row, sketches[group] == null ? "" : sketches[group].top(k));
+    }
+
+    @Override
+    public void save(DataOutput out, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            out.writeBoolean(sketches[group] != null);
+            if (sketches[group] != null) {
+                sketches[group].save(out);
+            }
+        }
+    }
+
+    @Override
+    public void load(DataInput in, int groups) throws IOException {
+        for (int group = 0; group < groups; group++) {
+            if (in.readBoolean()) {
+                sketch(group).load(in);
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.BatchSerializer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// heavy hitters of one group with the Space-Saving summary: a fixed number of counters, a value without one takes over
+// the counter with the smallest count and starts from that count. While no counter was taken over every count is exact,
+// after that a count is an upper bound that is off by at most the total weight divided by the number of counters, and
+// any value that has more than that is in the summary. The bounds hold for weights that are not negative
+public class TopKSketch {
+    private final int capacity;
+    private final Map<String, Integer> counterOf = new HashMap<>();
+    // counters are added as values come, up to capacity
+    private String[] values;
+    private double[] counts;
+    private int size;
+    // min heap of the counters by count, position says where a counter is in it
+    private int[] heap;
+    private int[] position;
+    // a counter was taken over, so values without one may have been seen
+    private boolean evicted;
+
+    public TopKSketch(int capacity) {
+        this.capacity = capacity;
+        int initial = Math.min(capacity, 8);
+        this.values = new String[initial];
+        this.counts = new double[initial];
+        this.heap = new int[initial];
+        this.position = new int[initial];
+    }
+
+    public void add(String value, double weight) {
+        Integer counter = counterOf.get(value);
+        if (counter != null) {
+            increase(counter, weight);
+        } else if (size < capacity) {
+            if (size == values.length) {
+                int length = Math.min(capacity, size * 2);
+                values = Arrays.copyOf(values, length);
+                counts = Arrays.copyOf(counts, length);
+                heap = Arrays.copyOf(heap, length);
+                position = Arrays.copyOf(position, length);
+            }
+            values[size] = value;
+            counts[size] = weight;
+            heap[size] = size;
+            position[size] = size;
+            counterOf.put(value, size);
+            siftUp(size++);
+        } else {
+            int smallest = heap[0];
+            counterOf.remove(values[smallest]);
+            values[smallest] = value;
+            counterOf.put(value, smallest);
+            evicted = true;
+            increase(smallest, weight);
+        }
+    }
+
+    private void increase(int counter, double weight) {
+        counts[counter] += weight;
+        if (weight >= 0) {
+            siftDown(position[counter]);
+        } else {
+            siftUp(position[counter]);
+        }
+    }
+
+    // a value missing from a full summary had at most its smallest count. The union keeps the largest counts, values
+    // with the same count in text order, so the result doesn't depend on which summary is merged into which. Once a
+    // counter was taken over the counts still depend on how the rows were split, like with other threads or chunk sizes
+    public void merge(TopKSketch other) {
+        double missing = evicted ? counts[heap[0]] : 0;
+        double otherMissing = other.evicted ? other.counts[other.heap[0]] : 0;
+        Map<String, Double> union = new HashMap<>();
+        for (int counter = 0; counter < size; counter++) {
+            Integer otherCounter = other.counterOf.get(values[counter]);
+            union.put(values[counter], counts[counter] + (otherCounter != null ? other.counts[otherCounter] : otherMissing));
+        }
+        for (int counter = 0; counter < other.size; counter++) {
+            union.putIfAbsent(other.values[counter], other.counts[counter] + missing);
+        }
+
+        boolean wasEvicted = evicted || other.evicted || union.size() > capacity;
+        clear();
+        union.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(capacity)
+                .forEach(entry -> add(entry.getKey(), entry.getValue()));
+        evicted = wasEvicted;
+    }
+
+    private void clear() {
+        counterOf.clear();
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        evicted = false;
+    }
+
+    // the k values with the largest counts, largest first, as value=count separated by semicolons
+    public String top(int k) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> counts[a] != counts[b] ? Double.compare(counts[b], counts[a]) : values[a].compareTo(values[b]));
+        StringBuilder top = new StringBuilder();
+        for (int i = 0; i < Math.min(k, size); i++) {
+            if (i > 0) {
+                top.append(';');
+            }
+            top.append(values[order[i]]).append('=').append(format(counts[order[i]]));
+        }
+        return top.toString();
+    }
+
+    // whole counts without a fraction, sums of amounts as they are
+    private static String format(double count) {
+        if (count == Math.rint(count) && Math.abs(count) < 1e15) {
+            return Long.toString((long) count);
+        }
+        return Double.toString(count);
+    }
+
+    public void save(DataOutput out) throws IOException {
+        out.writeBoolean(evicted);
+        out.writeInt(size);
+        for (int counter = 0; counter < size; counter++) {
+            BatchSerializer.writeString(out, values[counter]);
+            out.writeDouble(counts[counter]);
+        }
+    }
+
+    // merges the saved counters into this summary, a summary saved with more counters keeps its largest ones
+    public void load(DataInput in) throws IOException {
+        boolean savedEvicted = in.readBoolean();
+        int savedSize = in.readInt();
+        TopKSketch saved = new TopKSketch(Math.max(capacity, savedSize));
+        for (int counter = 0; counter < savedSize; counter++) {
+            saved.add(BatchSerializer.readString(in), in.readDouble());
+        }
+        saved.evicted = savedEvicted;
+        merge(saved);
+    }
+
+    private void siftUp(int index) {
+        int counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (counts[heap[parent]] <= counts[counter]) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        int counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) {
+                child++;
+            }
+            if (counts[heap[child]] >= counts[counter]) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(int counter, int index) {
+        heap[index] = counter;
+        position[counter] = index;
+    }
+}
@@ -0,0 +1,311 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.transformer.impl.AggregatorTransformer;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// the rows of one partition that are in the frame of its latest row, with the aggregates over them kept up to date.
+// rows leave the frame in the order they came in: sums and counts subtract the row that leaves, MIN and MAX keep a
+// monotonic deque of the values that can still become the extreme once the rows before them are gone.
+// a frame that starts at the first row of the partition keeps no rows at all, only the running aggregates
+public class WindowFrame {
+    private final AggregatorTransformer.Method[] methods;
+    // values of exact functions are unscaled longs of a DECIMAL column, the others are doubles in raw long bits
+    private final boolean[] exact;
+    private final int[] scales;
+    private final boolean sliding;
+
+    // order key, then the value of every function, then 1 or 0 for whether the value of every function is there
+    private final Ring rows;
+    // per MIN or MAX function of a sliding frame: sequence number and value of the candidates, oldest first
+    private final Ring[] extremes;
+    private final long[] counts;
+    private final double[] sums;
+    // lost low order bits of the double sums, values are subtracted again as rows leave
+    private final double[] compensations;
+    private final long[] exactSums;
+    // sums of exact functions that no longer fit a long, at the scale of the column
+    private final BigDecimal[] bigSums;
+    private long added;
+    private double lastKey;
+
+    public WindowFrame(AggregatorTransformer.Method[] methods, boolean[] exact, int[] scales, boolean sliding) {
+        this.methods = methods;
+        this.exact = exact;
+        this.scales = scales;
+        this.sliding = sliding;
+        int functions = methods.length;
+        this.rows = sliding ? new Ring(1 + 2 * functions) : null;
+        this.extremes = new Ring[functions];
+        for (int f = 0; f < functions; f++) {
+            if (sliding && (methods[f] == AggregatorTransformer.Method.MIN || methods[f] == AggregatorTransformer.Method.MAX)) {
+                extremes[f] = new Ring(2);
+            }
+        }
+        this.counts = new long[functions];
+        this.sums = new double[functions];
+        this.compensations = new double[functions];
+        this.exactSums = new long[functions];
+        this.bigSums = new BigDecimal[functions];
+    }
+
+    // whether a row was added, lastKey() is only meaningful then
+    public boolean isStarted() {
+        return added > 0;
+    }
+
+    public double lastKey() {
+        return lastKey;
+    }
+
+    public void add(double key, long[] values, boolean[] present) {
+        lastKey = key;
+        long sequence = added++;
+        if (sliding) {
+            int row = rows.addLast();
+            rows.set(0, row, Double.doubleToRawLongBits(key));
+            for (int f = 0; f < methods.length; f++) {
+                rows.set(1 + f, row, values[f]);
+                rows.set(1 + methods.length + f, row, present[f] ? 1 : 0);
+            }
+        }
+        for (int f = 0; f < methods.length; f++) {
+            if (present[f]) {
+                enter(f, sequence, values[f]);
+            }
+        }
+    }
+
+    // rows leave until at most count are left
+    public void keepLast(long count) {
+        while (rows.size() > count) {
+            removeFirst();
+        }
+    }
+
+    // rows with an order key below the given one leave
+    public void removeBefore(double key) {
+        while (rows.size() > 0 && Double.longBitsToDouble(rows.get(0, 0)) < key) {
+            removeFirst();
+        }
+    }
+
+    private void removeFirst() {
+        long sequence = added - rows.size();
+        for (int f = 0; f < methods.length; f++) {
+            if (rows.get(1 + methods.length + f, 0) != 0) {
+                leave(f, sequence, rows.get(1 + f, 0));
+            }
+        }
+        rows.removeFirst();
+    }
+
+    private void enter(int f, long sequence, long value) {
+        counts[f]++;
+        switch (methods[f]) {
+            case SUM, AVG -> {
+                if (exact[f]) {
+                    addExact(f, value);
+                } else {
+                    addDouble(f, Double.longBitsToDouble(value));
+                }
+            }
+            case MIN, MAX -> {
+                boolean max = methods[f] == AggregatorTransformer.Method.MAX;
+                if (extremes[f] == null) {
+                    // a frame that never shrinks only needs the extreme so far
+                    if (counts[f] == 1 || max == compare(f, value, exactSums[f]) > 0) {
+                        exactSums[f] = value;
+                    }
+                    return;
+                }
+                Ring deque = extremes[f];
+                // values that are not more extreme than the new one can't become the extreme before it leaves
+                while (deque.size() > 0 && (max ? compare(f, deque.get(1, deque.size() - 1), value) <= 0
+                        : compare(f, deque.get(1, deque.size() - 1), value) >= 0)) {
+                    deque.removeLast();
+                }
+                int row = deque.addLast();
+                deque.set(0, row, sequence);
+                deque.set(1, row, value);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void leave(int f, long sequence, long value) {
+        counts[f]--;
+        switch (methods[f]) {
+            case SUM, AVG -> {
+                if (counts[f] == 0) {
+                    // an empty frame starts over without the rounding errors of the rows that left
+                    sums[f] = compensations[f] = 0;
+                    exactSums[f] = 0;
+                    bigSums[f] = null;
+                } else if (exact[f]) {
+                    subtractExact(f, value);
+                } else {
+                    addDouble(f, -Double.longBitsToDouble(value));
+                }
+            }
+            case MIN, MAX -> {
+                Ring deque = extremes[f];
+                if (deque.size() > 0 && deque.get(0, 0) == sequence) {
+                    deque.removeFirst();
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private int compare(int f, long a, long b) {
+        return exact[f] ? Long.compare(a, b) : Double.compare(Double.longBitsToDouble(a), Double.longBitsToDouble(b));
+    }
+
+    // a frame that only grows adds like the aggregator does, so its last row has the same sum
+    private void addDouble(int f, double value) {
+        double sum = sums[f];
+        double total = sum + value;
+        if (sliding) {
+            compensations[f] += Math.abs(sum) >= Math.abs(value) ? (sum - total) + value : (value - total) + sum;
+        }
+        sums[f] = total;
+    }
+
+    private void addExact(int f, long value) {
+        if (bigSums[f] != null) {
+            bigSums[f] = bigSums[f].add(BigDecimal.valueOf(value, scales[f]));
+            return;
+        }
+        long sum = exactSums[f];
+        long total = sum + value;
+        // overflow when both operands have another sign than the total
+        if (((sum ^ total) & (value ^ total)) < 0) {
+            bigSums[f] = BigDecimal.valueOf(sum, scales[f]).add(BigDecimal.valueOf(value, scales[f]));
+        } else {
+            exactSums[f] = total;
+        }
+    }
+
+    private void subtractExact(int f, long value) {
+        if (bigSums[f] != null) {
+            bigSums[f] = bigSums[f].subtract(BigDecimal.valueOf(value, scales[f]));
+            return;
+        }
+        long sum = exactSums[f];
+        long total = sum - value;
+        // overflow when the operands have different signs and the total has the sign of the subtrahend
+        if (((sum ^ value) & (sum ^ total)) < 0) {
+            bigSums[f] = BigDecimal.valueOf(sum, scales[f]).subtract(BigDecimal.valueOf(value, scales[f]));
+        } else {
+            exactSums[f] = total;
+        }
+    }
+
+    // the aggregate over the frame of the latest row, null when the frame has no values
+    public void write(int f, ColumnVector output, int row) {
+        if (methods[f] == AggregatorTransformer.Method.COUNT) {
+            ((LongVector) output).set(row, counts[f]);
+            return;
+        }
+        if (counts[f] == 0) {
+            output.setNull(row);
+            return;
+        }
+        switch (methods[f]) {
+            case SUM -> {
+                if (!exact[f]) {
+                    ((DoubleVector) output).set(row, sums[f] + compensations[f]);
+                } else if (bigSums[f] != null) {
+                    ((DecimalVector) output).set(row, bigSums[f]);
+                } else {
+                    ((DecimalVector) output).setUnscaled(row, exactSums[f]);
+                }
+            }
+            case AVG -> {
+                if (!exact[f]) {
+                    ((DoubleVector) output).set(row, (sums[f] + compensations[f]) / counts[f]);
+                } else if (bigSums[f] != null) {
+                    ((DecimalVector) output).set(row, bigSums[f].divide(BigDecimal.valueOf(counts[f]), scales[f], RoundingMode.HALF_EVEN));
+                } else {
+                    ((DecimalVector) output).setUnscaled(row, divideHalfEven(exactSums[f], counts[f]));
+                }
+            }
+            case MIN, MAX -> {
+                long value = extremes[f] != null ? extremes[f].get(1, 0) : exactSums[f];
+                if (exact[f]) {
+                    ((DecimalVector) output).setUnscaled(row, value);
+                } else {
+                    ((DoubleVector) output).set(row, Double.longBitsToDouble(value));
+                }
+            }
+            default -> throw new IllegalStateException("Unsupported window function " + methods[f]);
+        }
+    }
+
+    // same rounding as BigDecimal.divide with RoundingMode.HALF_EVEN
+    private static long divideHalfEven(long sum, long count) {
+        long quotient = sum / count;
+        long remainder = Math.abs(sum % count);
+        long twice = remainder * 2;
+        if (twice > count || twice == count && (quotient & 1) != 0) {
+            quotient += sum < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    // circular buffer of rows of long columns that grows when it is full
+    private static final class Ring {
+        private long[][] columns;
+        private int head;
+        private int size;
+
+        private Ring(int columnCount) {
+            columns = new long[columnCount][8];
+        }
+
+        int size() {
+            return size;
+        }
+
+        // index of the new last row
+        int addLast() {
+            if (size == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    long[] grown = new long[size * 2];
+                    int tail = size - head;
+                    System.arraycopy(columns[c], head, grown, 0, tail);
+                    System.arraycopy(columns[c], 0, grown, tail, head);
+                    columns[c] = grown;
+                }
+                head = 0;
+            }
+            return size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) % columns[0].length;
+            size--;
+        }
+
+        void removeLast() {
+            size--;
+        }
+
+        // row counts from the first row
+        long get(int column, int row) {
+            return columns[column][(head + row) % columns[column].length];
+        }
+
+        void set(int column, int row, long value) {
+            columns[column][(head + row) % columns[column].length] = value;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+// compact binary form of a row batch, column by column, used for spill files
+public final class BatchSerializer {
+    private static final byte LONG = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte STRING = 2;
+    private static final byte DECIMAL = 3;
+
+    private BatchSerializer() {
+    }
+
+    public static void write(DataOutput out, RowBatch batch) throws IOException {
+        int size = batch.size();
+        out.writeInt(size);
+        out.writeInt(batch.columnCount());
+
+        for (int slot = 0; slot < batch.columnCount(); slot++) {
+            ColumnVector vector = batch.vector(slot);
+            writeString(out, batch.name(slot));
+            out.writeByte(vector.getType().ordinal());
+
+            boolean hasNulls = false;
+            for (int row = 0; row < size && !hasNulls; row++) {
+                hasNulls = vector.isNull(row);
+            }
+            out.writeBoolean(hasNulls);
+            if (hasNulls) {
+                for (int row = 0; row < size; row++) {
+                    out.writeBoolean(vector.isNull(row));
+                }
+            }
+
+            if (vector instanceof LongVector longs) {
+                out.writeByte(LONG);
+                for (int row = 0; row < size; row++) {
+                    out.writeLong(longs.get(row));
+                }
+            } else if (vector instanceof DoubleVector doubles) {
+                out.writeByte(DOUBLE);
+                for (int row = 0; row < size; row++) {
+                    out.writeDouble(doubles.get(row));
+                }
+            } else if (vector instanceof DecimalVector decimals) {
+                // scaled longs, then the rows that don't fit as text
+                out.writeByte(DECIMAL);
+                out.writeInt(decimals.scale());
+                int wide = 0;
+                for (int row = 0; row < size; row++) {
+                    out.writeLong(decimals.getUnscaled(row));
+                    wide += decimals.fits(row) ? 0 : 1;
+                }
+                out.writeInt(wide);
+                for (int row = 0; row < size && wide > 0; row++) {
+                    if (!decimals.fits(row)) {
+                        out.writeInt(row);
+                        writeString(out, decimals.get(row).toString());
+                        wide--;
+                    }
+                }
+            } else if (vector instanceof StringVector strings) {
+                out.writeByte(STRING);
+                out.writeInt(strings.dictionarySize());
+                for (int code = 0; code < strings.dictionarySize(); code++) {
+                    writeString(out, strings.decode(code));
+                }
+                for (int row = 0; row < size; row++) {
+                    out.writeInt(strings.isNull(row) ? 0 : strings.getCode(row));
+                }
+            } else {
+                throw new IllegalArgumentException("Unsupported vector: " + vector.getClass().getSimpleName());
+            }
+        }
+    }
+
+    // null at the end of the input
+    public static RowBatch read(DataInput in) throws IOException {
+        int size;
+        try {
+            size = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        RowBatch batch = new RowBatch(Math.max(size, 1));
+        int columnCount = in.readInt();
+        for (int slot = 0; slot < columnCount; slot++) {
+            String name = readString(in);
+            Column.DataType type = Column.DataType.values()[in.readByte()];
+
+            boolean[] nulls = null;
+            if (in.readBoolean()) {
+                nulls = new boolean[size];
+                for (int row = 0; row < size; row++) {
+                    nulls[row] = in.readBoolean();
+                }
+            }
+
+            ColumnVector vector;
+            byte kind = in.readByte();
+            if (kind == LONG) {
+                LongVector longs = new LongVector(type, batch.capacity());
+                for (int row = 0; row < size; row++) {
+                    longs.set(row, in.readLong());
+                }
+                vector = longs;
+            } else if (kind == DOUBLE) {
+                DoubleVector doubles = new DoubleVector(batch.capacity());
+                for (int row = 0; row < size; row++) {
+                    doubles.set(row, in.readDouble());
+                }
+                vector = doubles;
+            } else if (kind == DECIMAL) {
+                DecimalVector decimals = new DecimalVector(in.readInt(), batch.capacity());
+                for (int row = 0; row < size; row++) {
+                    decimals.setUnscaled(row, in.readLong());
+                }
+                int wide = in.readInt();
+                for (int i = 0; i < wide; i++) {
+                    int row = in.readInt();
+                    decimals.set(row, new BigDecimal(readString(in)));
+                }
+                vector = decimals;
+            } else {
+                StringVector strings = new StringVector(batch.capacity());
+                int dictionarySize = in.readInt();
+                for (int code = 0; code < dictionarySize; code++) {
+                    strings.encode(readString(in));
+                }
+                for (int row = 0; row < size; row++) {
+                    strings.setCode(row, in.readInt());
+                }
+                vector = strings;
+            }
+
+            if (nulls != null) {
+                for (int row = 0; row < size; row++) {
+                    if (nulls[row]) {
+                        vector.setNull(row);
+                    }
+                }
+            }
+            batch.put(name, vector);
+        }
+        batch.setSize(size);
+        return batch;
+    }
+
+    // length prefixed utf-8, unlike writeUTF it has no 64 KB limit
+    public static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
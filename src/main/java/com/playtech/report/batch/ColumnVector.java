@@ -0,0 +1,91 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+// one column of a RowBatch, stored in a primitive array of the column's type
+public abstract class ColumnVector {
+    private final Column.DataType type;
+    private boolean[] nulls;
+
+    protected ColumnVector(Column.DataType type) {
+        this.type = type;
+    }
+
+    public static ColumnVector create(Column.DataType type, int capacity) {
+        return create(type, Column.DEFAULT_SCALE, capacity);
+    }
+
+    // vector for the values of a declared column
+    public static ColumnVector create(Column column, int capacity) {
+        return create(column.getType(), column.getScale(), capacity);
+    }
+
+    public static ColumnVector create(Column.DataType type, int scale, int capacity) {
+        return switch (type) {
+            case INTEGER, DATE, DATETIME -> new LongVector(type, capacity);
+            case DOUBLE -> new DoubleVector(capacity);
+            case DECIMAL -> new DecimalVector(scale, capacity);
+            case STRING -> new StringVector(capacity);
+        };
+    }
+
+    public Column.DataType getType() {
+        return type;
+    }
+
+    public abstract int capacity();
+
+    public boolean isNumeric() {
+        return false;
+    }
+
+    public double getDouble(int row) {
+        throw new IllegalStateException("Column of type " + type + " is not numeric");
+    }
+
+    // boxed value of the row, only meant for formatting and other slow paths
+    public abstract Object getObject(int row);
+
+    // slow path for values coming from maps or from group keys
+    public abstract void setObject(int row, Object value);
+
+    // rough heap footprint, used to decide when buffered rows have to be spilled to disk
+    public long estimatedBytes() {
+        return nulls == null ? 0 : nulls.length;
+    }
+
+    // empty vector of the same kind, used when rows are copied into a new batch
+    public abstract ColumnVector newVector(int capacity);
+
+    // copies one row into a vector created with newVector
+    public abstract void copyTo(int row, ColumnVector target, int targetRow);
+
+    // copy without the marked rows, the vector itself is not changed because other batches may share it
+    public ColumnVector without(boolean[] drop, int size) {
+        ColumnVector kept = newVector(capacity());
+        int target = 0;
+        for (int row = 0; row < size; row++) {
+            if (!drop[row]) {
+                copyTo(row, kept, target++);
+            }
+        }
+        return kept;
+    }
+
+    public boolean isNull(int row) {
+        return nulls != null && nulls[row];
+    }
+
+    public void setNull(int row) {
+        if (nulls == null) {
+            nulls = new boolean[capacity()];
+        }
+        nulls[row] = true;
+    }
+
+    protected void clearNull(int row) {
+        if (nulls != null) {
+            nulls[row] = false;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+import java.math.BigDecimal;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// DECIMAL values as longs scaled by 10^scale, so 12.30 at scale 2 is 1230. A value that doesn't fit, because it is
+// too large or has more digits after the point than the scale, is kept as a BigDecimal and stays exact
+public class DecimalVector extends ColumnVector {
+    public static final int MAX_SCALE = 18;
+    private static final long[] POWERS_OF_TEN = new long[MAX_SCALE + 1];
+    // longs below this convert to double without rounding
+    private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int scale;
+    private final long[] unscaled;
+    // null until a row doesn't fit, then the value of such rows
+    private BigDecimal[] wide;
+
+    public DecimalVector(int scale, int capacity) {
+        super(Column.DataType.DECIMAL);
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException(ERROR + "Decimal scale must be between 0 and " + MAX_SCALE + ": " + scale + RESET);
+        }
+        this.scale = scale;
+        this.unscaled = new long[capacity];
+    }
+
+    public static long powerOfTen(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    // the double nearest to unscaled / 10^scale, the same one Double.parseDouble gives for its text
+    public static double toDouble(long unscaled, int scale) {
+        if (Math.abs(unscaled) < MAX_EXACT_DOUBLE) {
+            return scale == 0 ? unscaled : unscaled / (double) POWERS_OF_TEN[scale];
+        }
+        return BigDecimal.valueOf(unscaled, scale).doubleValue();
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    // false for the rows that are kept as BigDecimal
+    public boolean fits(int row) {
+        return wide == null || wide[row] == null;
+    }
+
+    // only meaningful when the row fits
+    public long getUnscaled(int row) {
+        return unscaled[row];
+    }
+
+    public BigDecimal get(int row) {
+        return fits(row) ? BigDecimal.valueOf(unscaled[row], scale) : wide[row];
+    }
+
+    public void setUnscaled(int row, long value) {
+        unscaled[row] = value;
+        if (wide != null) {
+            wide[row] = null;
+        }
+        clearNull(row);
+    }
+
+    public void set(int row, BigDecimal value) {
+        BigDecimal scaled = value.scale() > scale ? value.stripTrailingZeros() : value;
+        if (scaled.scale() <= scale) {
+            scaled = scaled.setScale(scale);
+            if (scaled.unscaledValue().bitLength() < Long.SIZE) {
+                setUnscaled(row, scaled.unscaledValue().longValue());
+                return;
+            }
+        }
+        if (wide == null) {
+            wide = new BigDecimal[unscaled.length];
+        }
+        wide[row] = value;
+        clearNull(row);
+    }
+
+    // copy with another capacity, for arrays indexed by group that grow
+    public DecimalVector resized(int capacity) {
+        DecimalVector resized = new DecimalVector(scale, capacity);
+        for (int row = 0; row < Math.min(capacity, capacity()); row++) {
+            copyTo(row, resized, row);
+        }
+        return resized;
+    }
+
+    @Override
+    public int capacity() {
+        return unscaled.length;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    public double getDouble(int row) {
+        return fits(row) ? toDouble(unscaled[row], scale) : wide[row].doubleValue();
+    }
+
+    @Override
+    public Object getObject(int row) {
+        return isNull(row) ? null : get(row);
+    }
+
+    @Override
+    public void setObject(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+        } else if (value instanceof BigDecimal decimal) {
+            set(row, decimal);
+        } else if (value instanceof Long || value instanceof Integer) {
+            set(row, BigDecimal.valueOf(((Number) value).longValue()));
+        } else if (value instanceof Double || value instanceof Float) {
+            set(row, BigDecimal.valueOf(((Number) value).doubleValue()));
+        } else {
+            set(row, new BigDecimal(value.toString()));
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return super.estimatedBytes() + 8L * unscaled.length + (wide == null ? 0 : 8L * wide.length);
+    }
+
+    @Override
+    public ColumnVector newVector(int capacity) {
+        return new DecimalVector(scale, capacity);
+    }
+
+    @Override
+    public void copyTo(int row, ColumnVector target, int targetRow) {
+        DecimalVector decimals = (DecimalVector) target;
+        if (isNull(row)) {
+            target.setNull(targetRow);
+        } else if (fits(row) && decimals.scale == scale) {
+            decimals.setUnscaled(targetRow, unscaled[row]);
+        } else {
+            decimals.set(targetRow, get(row));
+        }
+    }
+}
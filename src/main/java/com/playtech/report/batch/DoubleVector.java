@@ -0,0 +1,69 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+public class DoubleVector extends ColumnVector {
+    private final double[] values;
+
+    public DoubleVector(int capacity) {
+        super(Column.DataType.DOUBLE);
+        this.values = new double[capacity];
+    }
+
+    public double get(int row) {
+        return values[row];
+    }
+
+    public void set(int row, double value) {
+        values[row] = value;
+        clearNull(row);
+    }
+
+    @Override
+    public int capacity() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return true;
+    }
+
+    @Override
+    public double getDouble(int row) {
+        return values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    @Override
+    public void setObject(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+        } else {
+            set(row, ((Number) value).doubleValue());
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return super.estimatedBytes() + 8L * values.length;
+    }
+
+    @Override
+    public ColumnVector newVector(int capacity) {
+        return new DoubleVector(capacity);
+    }
+
+    @Override
+    public void copyTo(int row, ColumnVector target, int targetRow) {
+        if (isNull(row)) {
+            target.setNull(targetRow);
+        } else {
+            ((DoubleVector) target).set(targetRow, values[row]);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+// INTEGER values, DATE as epoch day and DATETIME as epoch second
+public class LongVector extends ColumnVector {
+    private final long[] values;
+
+    public LongVector(Column.DataType type, int capacity) {
+        super(type);
+        this.values = new long[capacity];
+    }
+
+    public long get(int row) {
+        return values[row];
+    }
+
+    public void set(int row, long value) {
+        values[row] = value;
+        clearNull(row);
+    }
+
+    @Override
+    public int capacity() {
+        return values.length;
+    }
+
+    @Override
+    public boolean isNumeric() {
+        return getType() == Column.DataType.INTEGER;
+    }
+
+    @Override
+    public double getDouble(int row) {
+        if (!isNumeric()) {
+            return super.getDouble(row);
+        }
+        return values[row];
+    }
+
+    @Override
+    public Object getObject(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        return switch (getType()) {
+            case DATE -> LocalDate.ofEpochDay(values[row]);
+            case DATETIME -> Instant.ofEpochSecond(values[row]);
+            default -> values[row];
+        };
+    }
+
+    @Override
+    public void setObject(int row, Object value) {
+        if (value == null) {
+            setNull(row);
+        } else if (value instanceof LocalDate date) {
+            set(row, date.toEpochDay());
+        } else if (value instanceof Instant instant) {
+            set(row, instant.getEpochSecond());
+        } else {
+            set(row, ((Number) value).longValue());
+        }
+    }
+
+    @Override
+    public long estimatedBytes() {
+        return super.estimatedBytes() + 8L * values.length;
+    }
+
+    @Override
+    public ColumnVector newVector(int capacity) {
+        return new LongVector(getType(), capacity);
+    }
+
+    @Override
+    public void copyTo(int row, ColumnVector target, int targetRow) {
+        if (isNull(row)) {
+            target.setNull(targetRow);
+        } else {
+            ((LongVector) target).set(targetRow, values[row]);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+// a block of rows stored column by column, this is what flows between the pipeline stages
+public class RowBatch {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final int capacity;
+    private int size;
+    private final List<String> names = new ArrayList<>();
+    private final List<ColumnVector> vectors = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    public RowBatch(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    public int columnCount() {
+        return vectors.size();
+    }
+
+    public String name(int slot) {
+        return names.get(slot);
+    }
+
+    public ColumnVector vector(int slot) {
+        return vectors.get(slot);
+    }
+
+    // -1 when the batch has no such column
+    public int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    public ColumnVector vector(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? null : vectors.get(slot);
+    }
+
+    // adds the column, or replaces it when a transformer writes to an existing column
+    public void put(String name, ColumnVector vector) {
+        Integer slot = slots.get(name);
+        if (slot == null) {
+            slots.put(name, vectors.size());
+            names.add(name);
+            vectors.add(vector);
+        } else {
+            vectors.set(slot, vector);
+        }
+    }
+
+    // writes a column at a slot resolved in advance, the slot after the last one adds the column
+    public void set(int slot, String name, ColumnVector vector) {
+        if (slot == vectors.size()) {
+            slots.put(name, slot);
+            names.add(name);
+            vectors.add(vector);
+        } else {
+            vectors.set(slot, vector);
+        }
+    }
+
+    // batch with only the given columns, sharing their vectors
+    public RowBatch project(int[] keep) {
+        RowBatch projected = new RowBatch(capacity);
+        for (int slot : keep) {
+            projected.put(names.get(slot), vectors.get(slot));
+        }
+        projected.setSize(size);
+        return projected;
+    }
+
+    // leaves out the marked rows, for transformers that drop the rows they can't handle
+    public void removeRows(boolean[] drop) {
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            kept += drop[row] ? 0 : 1;
+        }
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            vectors.set(slot, vectors.get(slot).without(drop, size));
+        }
+        size = kept;
+    }
+
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (ColumnVector vector : vectors) {
+            bytes += vector.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    // empty batch with the same columns, used when rows are regrouped (sorting, filtering)
+    public RowBatch newBatch(int capacity) {
+        RowBatch batch = new RowBatch(capacity);
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            batch.put(names.get(slot), vectors.get(slot).newVector(capacity));
+        }
+        return batch;
+    }
+
+    // copies one row into a batch created with newBatch
+    public void copyRow(int row, RowBatch target, int targetRow) {
+        for (int slot = 0; slot < vectors.size(); slot++) {
+            vectors.get(slot).copyTo(row, target.vectors.get(slot), targetRow);
+        }
+    }
+
+    // conversions for callers that still work with one map per row
+    public static RowBatch fromRows(List<Map<String, Object>> rows) {
+        RowBatch batch = new RowBatch(Math.max(rows.size(), 1));
+        batch.setSize(rows.size());
+
+        Map<String, Column.DataType> types = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            for (Map.Entry<String, Object> entry : row.entrySet()) {
+                Column.DataType known = types.get(entry.getKey());
+                if (entry.getValue() == null) {
+                    types.put(entry.getKey(), known);
+                    continue;
+                }
+                Column.DataType type = typeOf(entry.getValue());
+                types.put(entry.getKey(), known == null || known == type ? type : widen(known, type));
+            }
+        }
+
+        for (Map.Entry<String, Column.DataType> entry : types.entrySet()) {
+            String name = entry.getKey();
+            Column.DataType type = entry.getValue() == null ? Column.DataType.STRING : entry.getValue();
+            ColumnVector vector = ColumnVector.create(type, batch.capacity());
+            for (int row = 0; row < rows.size(); row++) {
+                vector.setObject(row, rows.get(row).get(name));
+            }
+            batch.put(name, vector);
+        }
+        return batch;
+    }
+
+    public List<Map<String, Object>> toRows() {
+        List<Map<String, Object>> rows = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            Map<String, Object> map = new HashMap<>();
+            for (int slot = 0; slot < vectors.size(); slot++) {
+                Object value = vectors.get(slot).getObject(row);
+                if (value != null) {
+                    map.put(names.get(slot), value);
+                }
+            }
+            rows.add(map);
+        }
+        return rows;
+    }
+
+    private static Column.DataType typeOf(Object value) {
+        if (value instanceof Long || value instanceof Integer) {
+            return Column.DataType.INTEGER;
+        } else if (value instanceof BigDecimal) {
+            return Column.DataType.DECIMAL;
+        } else if (value instanceof Number) {
+            return Column.DataType.DOUBLE;
+        } else if (value instanceof LocalDate) {
+            return Column.DataType.DATE;
+        }
+        return Column.DataType.STRING;
+    }
+
+    // integers and decimals stay exact together, anything with a double becomes a double
+    private static Column.DataType widen(Column.DataType a, Column.DataType b) {
+        boolean numeric = (a == Column.DataType.INTEGER || a == Column.DataType.DOUBLE || a == Column.DataType.DECIMAL)
+                && (b == Column.DataType.INTEGER || b == Column.DataType.DOUBLE || b == Column.DataType.DECIMAL);
+        if (!numeric) {
+            return Column.DataType.STRING;
+        }
+        return a == Column.DataType.DOUBLE || b == Column.DataType.DOUBLE ? Column.DataType.DOUBLE : Column.DataType.DECIMAL;
+    }
+}
@@ -0,0 +1,196 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+import com.playtech.report.transformer.RowFilter;
+import com.playtech.util.csv.CsvReader;
+
+import java.math.BigDecimal;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// fills row batches from csv lines, converting every value once according to the input types of the plan.
+// with filters, the fields they read are parsed first and a line they reject goes no further
+public class RowBatchBuilder {
+    private final String[] headers;
+    // csv field of every batch column
+    private final int[] fields;
+    private final Column.DataType[] types;
+    private final int[] scales;
+    private final int capacity;
+    private final RowFilter[] filters;
+    // batch column of every filter input, -1 when the csv doesn't have it
+    private final int[][] filterColumns;
+    // batch columns in the order they are parsed, the ones the filters read first
+    private final int[] parseOrder;
+    private final int filterColumnCount;
+    // the columns of the current batch every filter reads
+    private ColumnVector[][] filterInputs;
+    private long filteredRows;
+    private RowBatch batch;
+    private int failedColumn = -1;
+
+    public RowBatchBuilder(String[] headers, int[] fields, Map<String, Column> inputColumns, int capacity) {
+        this(headers, fields, inputColumns, List.of(), capacity);
+    }
+
+    public RowBatchBuilder(String[] headers, int[] fields, Map<String, Column> inputColumns, List<RowFilter> filters, int capacity) {
+        this.headers = headers;
+        this.fields = fields;
+        this.capacity = capacity;
+        this.types = new Column.DataType[fields.length];
+        this.scales = new int[fields.length];
+
+        // columns that are not declared are kept as plain strings
+        for (int i = 0; i < fields.length; i++) {
+            Column column = inputColumns.get(headers[fields[i]]);
+            types[i] = column == null ? Column.DataType.STRING : column.getType();
+            scales[i] = column == null ? Column.DEFAULT_SCALE : column.getScale();
+        }
+
+        this.filters = filters.toArray(new RowFilter[0]);
+        this.filterColumns = new int[this.filters.length][];
+        List<Integer> order = new ArrayList<>();
+        for (int f = 0; f < this.filters.length; f++) {
+            List<Column> inputs = this.filters[f].inputColumns();
+            filterColumns[f] = new int[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                filterColumns[f][i] = columnOf(inputs.get(i).getName());
+                if (filterColumns[f][i] >= 0 && !order.contains(filterColumns[f][i])) {
+                    order.add(filterColumns[f][i]);
+                }
+            }
+        }
+        this.filterColumnCount = order.size();
+        for (int i = 0; i < fields.length; i++) {
+            if (!order.contains(i)) {
+                order.add(i);
+            }
+        }
+        this.parseOrder = order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private int columnOf(String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (headers[fields[i]].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // returns false when a value does not match its declared type, the row is then left out of the batch.
+    // a row the filters reject is left out too, but it is not an error and only the filters' fields were parsed
+    public boolean addRow(CsvReader record) {
+        if (batch == null) {
+            batch = newBatch();
+        }
+        int row = batch.size();
+        int i = 0;
+        try {
+            for (; i < filterColumnCount; i++) {
+                int column = parseOrder[i];
+                setValue(batch.vector(column), types[column], row, record, fields[column]);
+            }
+            if (filters.length > 0 && !accepts(row)) {
+                filteredRows++;
+                return true;
+            }
+            for (; i < parseOrder.length; i++) {
+                int column = parseOrder[i];
+                setValue(batch.vector(column), types[column], row, record, fields[column]);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            failedColumn = parseOrder[i];
+            return false;
+        }
+        batch.setSize(row + 1);
+        return true;
+    }
+
+    private boolean accepts(int row) {
+        for (int f = 0; f < filters.length; f++) {
+            if (!filters[f].test(filterInputs[f], row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // rows the filters left out so far
+    public long filteredRows() {
+        return filteredRows;
+    }
+
+    // header of the value that made the last addRow() fail
+    public String failedColumn() {
+        return failedColumn < 0 ? null : headers[fields[failedColumn]];
+    }
+
+    // csv field and expected type of that value
+    public int failedField() {
+        return failedColumn < 0 ? -1 : fields[failedColumn];
+    }
+
+    public Column.DataType failedType() {
+        return failedColumn < 0 ? null : types[failedColumn];
+    }
+
+    public boolean isFull() {
+        return batch != null && batch.isFull();
+    }
+
+    // hands over the rows collected so far, null when there are none
+    public RowBatch take() {
+        RowBatch full = batch;
+        batch = null;
+        return full == null || full.size() == 0 ? null : full;
+    }
+
+    private RowBatch newBatch() {
+        RowBatch newBatch = new RowBatch(capacity);
+        for (int i = 0; i < fields.length; i++) {
+            newBatch.put(headers[fields[i]], ColumnVector.create(types[i], scales[i], capacity));
+        }
+        filterInputs = new ColumnVector[filters.length][];
+        for (int f = 0; f < filters.length; f++) {
+            filterInputs[f] = new ColumnVector[filterColumns[f].length];
+            for (int i = 0; i < filterColumns[f].length; i++) {
+                filterInputs[f][i] = filterColumns[f][i] < 0 ? null : newBatch.vector(filterColumns[f][i]);
+            }
+        }
+        return newBatch;
+    }
+
+    // values are parsed straight from the csv bytes, only new distinct strings get decoded.
+    // throws NumberFormatException or DateTimeParseException when the value is not of the type
+    public static void setValue(ColumnVector vector, Column.DataType type, int row, CsvReader record, int field) {
+        if (type != Column.DataType.STRING && record.isEmpty(field)) {
+            vector.setNull(row);
+            return;
+        }
+        switch (type) {
+            case INTEGER -> ((LongVector) vector).set(row, record.getLong(field));
+            case DOUBLE -> ((DoubleVector) vector).set(row, record.getDouble(field));
+            case DATE -> ((LongVector) vector).set(row, record.getEpochDay(field));
+            case DATETIME -> ((LongVector) vector).set(row, record.getEpochSecond(field));
+            case DECIMAL -> {
+                DecimalVector decimals = (DecimalVector) vector;
+                long unscaled = record.getUnscaled(field, decimals.scale());
+                if (unscaled != CsvReader.INEXACT) {
+                    decimals.setUnscaled(row, unscaled);
+                } else {
+                    decimals.set(row, new BigDecimal(record.getString(field)));
+                }
+            }
+            case STRING -> {
+                if (record.isEscaped(field)) {
+                    ((StringVector) vector).set(row, record.getString(field));
+                } else {
+                    ((StringVector) vector).set(row, record.buffer(), record.fieldStart(field), record.fieldEnd(field));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// dictionary encoded strings: every distinct value of the batch is stored once, rows only keep its code
+public class StringVector extends ColumnVector {
+    private final int[] codes;
+    private String[] dictionary = new String[16];
+    private int dictionarySize;
+    private final Map<String, Integer> lookup = new HashMap<>();
+    // second index keyed by the utf-8 bytes, so values read straight from the csv buffer are decoded once per batch
+    private int[] byteTable;
+    private byte[][] dictionaryBytes;
+    private int[] dictionaryHashes;
+
+    public StringVector(int capacity) {
+        super(Column.DataType.STRING);
+        this.codes = new int[capacity];
+    }
+
+    public String get(int row) {
+        return isNull(row) ? null : dictionary[codes[row]];
+    }
+
+    public void set(int row, String value) {
+        if (value == null) {
+            setNull(row);
+            return;
+        }
+        codes[row] = encode(value);
+        clearNull(row);
+    }
+
+    // stores the utf-8 value between start and end without decoding it when it is already in the dictionary
+    public void set(int row, ByteBuffer buffer, int start, int end) {
+        codes[row] = encode(buffer, start, end);
+        clearNull(row);
+    }
+
+    public int getCode(int row) {
+        return codes[row];
+    }
+
+    public void setCode(int row, int code) {
+        codes[row] = code;
+        clearNull(row);
+    }
+
+    public String decode(int code) {
+        return dictionary[code];
+    }
+
+    public int encode(String value) {
+        Integer code = lookup.get(value);
+        if (code == null) {
+            code = add(value);
+            if (byteTable != null) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                indexBytes(code, bytes, hash(bytes));
+            }
+        }
+        return code;
+    }
+
+    public int encode(ByteBuffer buffer, int start, int end) {
+        if (byteTable == null) {
+            initByteTable();
+        }
+
+        int hash = hash(buffer, start, end);
+        int mask = byteTable.length - 1;
+        for (int slot = hash & mask; byteTable[slot] != 0; slot = (slot + 1) & mask) {
+            int code = byteTable[slot] - 1;
+            if (dictionaryHashes[code] == hash && matches(dictionaryBytes[code], buffer, start, end)) {
+                return code;
+            }
+        }
+
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        String value = new String(bytes, StandardCharsets.UTF_8);
+        Integer existing = lookup.get(value);
+        int code = existing != null ? existing : add(value);
+        indexBytes(code, bytes, hash);
+        return code;
+    }
+
+    private int add(String value) {
+        if (dictionarySize == dictionary.length) {
+            dictionary = Arrays.copyOf(dictionary, dictionarySize * 2);
+        }
+        int code = dictionarySize++;
+        dictionary[code] = value;
+        lookup.put(value, code);
+        return code;
+    }
+
+    private void initByteTable() {
+        byteTable = new int[64];
+        dictionaryBytes = new byte[dictionary.length][];
+        dictionaryHashes = new int[dictionary.length];
+        for (int code = 0; code < dictionarySize; code++) {
+            byte[] bytes = dictionary[code].getBytes(StandardCharsets.UTF_8);
+            indexBytes(code, bytes, hash(bytes));
+        }
+    }
+
+    private void indexBytes(int code, byte[] bytes, int hash) {
+        if (code >= dictionaryBytes.length) {
+            dictionaryBytes = Arrays.copyOf(dictionaryBytes, dictionary.length);
+            dictionaryHashes = Arrays.copyOf(dictionaryHashes, dictionary.length);
+        }
+        dictionaryBytes[code] = bytes;
+        dictionaryHashes[code] = hash;
+
+        // keep the table at most half full
+        if (dictionarySize * 2 > byteTable.length) {
+            byteTable = new int[byteTable.length * 2];
+            for (int i = 0; i < dictionarySize; i++) {
+                if (dictionaryBytes[i] != null && i != code) {
+                    insert(i, dictionaryHashes[i]);
+                }
+            }
+        }
+        insert(code, hash);
+    }
+
+    private void insert(int code, int hash) {
+        int mask = byteTable.length - 1;
+        int slot = hash & mask;
+        while (byteTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        byteTable[slot] = code + 1;
+    }
+
+    private static boolean matches(byte[] bytes, ByteBuffer buffer, int start, int end) {
+        if (bytes.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buffer.get(start + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buffer, int start, int end) {
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer.get(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 1;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    public int dictionarySize() {
+        return dictionarySize;
+    }
+
+    @Override
+    public int capacity() {
+        return codes.length;
+    }
+
+    @Override
+    public Object getObject(int row) {
+        return get(row);
+    }
+
+    @Override
+    public void setObject(int row, Object value) {
+        set(row, value == null ? null : value.toString());
+    }
+
+    @Override
+    public long estimatedBytes() {
+        long bytes = super.estimatedBytes() + 4L * codes.length + 8L * dictionary.length;
+        for (int code = 0; code < dictionarySize; code++) {
+            // string object, its array and the lookup map entry
+            bytes += 80 + dictionary[code].length();
+        }
+        return bytes;
+    }
+
+    @Override
+    public ColumnVector newVector(int capacity) {
+        return new StringVector(capacity);
+    }
+
+    @Override
+    public void copyTo(int row, ColumnVector target, int targetRow) {
+        ((StringVector) target).set(targetRow, get(row));
+    }
+}
@@ -8,9 +8,13 @@ import jakarta.xml.bind.annotation.XmlRootElement;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 public class Column {
+    // digits after the point of a DECIMAL column that has no <scale>
+    public static final int DEFAULT_SCALE = 2;
+
     @XmlID
     private String name;
     private DataType type;
+    private Integer scale;
 
     public enum DataType {
         STRING,
@@ -18,6 +22,8 @@ public class Column {
         DOUBLE,
         DATE,
         DATETIME,
+        // exact decimal, for money
+        DECIMAL,
     }
 
     public String getName() {
@@ -27,4 +33,8 @@ public class Column {
     public DataType getType() {
         return type;
     }
+
+    public int getScale() {
+        return scale != null ? scale : DEFAULT_SCALE;
+    }
 }
@@ -0,0 +1,32 @@
+package com.playtech.report.column;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class Columns {
+    private Columns() {
+    }
+
+    public static List<String> names(List<Column> columns) {
+        List<String> names = new ArrayList<>(columns.size());
+        for (Column column : columns) {
+            names.add(column.getName());
+        }
+        return names;
+    }
+
+    // the type with the scale of a DECIMAL, like DECIMAL(2)
+    public static String typeName(Column column) {
+        return column.getType() == Column.DataType.DECIMAL ? column.getType() + "(" + column.getScale() + ")" : String.valueOf(column.getType());
+    }
+
+    public static Map<String, Column> byName(List<Column> columns) {
+        Map<String, Column> byName = new LinkedHashMap<>();
+        for (Column column : columns) {
+            byName.put(column.getName(), column);
+        }
+        return byName;
+    }
+}
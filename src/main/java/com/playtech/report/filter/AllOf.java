@@ -0,0 +1,33 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+// <and>: every condition matches
+@XmlRootElement(name = "and")
+public class AllOf extends Junction {
+    @Override
+    String keyword() {
+        return "and";
+    }
+
+    @Override
+    public boolean test(ColumnVector[] inputs, int row) {
+        for (Condition condition : conditions()) {
+            if (!condition.test(inputs, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean mayMatch(ColumnVector[] bounds) {
+        for (Condition condition : conditions()) {
+            if (!condition.mayMatch(bounds)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
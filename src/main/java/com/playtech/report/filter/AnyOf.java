@@ -0,0 +1,33 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+// <or>: at least one condition matches
+@XmlRootElement(name = "or")
+public class AnyOf extends Junction {
+    @Override
+    String keyword() {
+        return "or";
+    }
+
+    @Override
+    public boolean test(ColumnVector[] inputs, int row) {
+        for (Condition condition : conditions()) {
+            if (condition.test(inputs, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean mayMatch(ColumnVector[] bounds) {
+        for (Condition condition : conditions()) {
+            if (condition.mayMatch(bounds)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,72 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.column.Column;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlIDREF;
+import jakarta.xml.bind.annotation.XmlTransient;
+
+import java.util.List;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// condition on the value of a single column
+@XmlAccessorType(XmlAccessType.FIELD)
+abstract class ColumnCondition extends Condition {
+    @XmlIDREF
+    private Column input;
+    @XmlTransient
+    private int slot = -1;
+
+    Column input() {
+        if (input == null) {
+            throw new IllegalArgumentException(ERROR + "Filter input column is not defined" + RESET);
+        }
+        return input;
+    }
+
+    // checks the values against the declared type of the column
+    abstract void check(Column column);
+
+    abstract boolean matches(ColumnVector vector, int row);
+
+    // whether a value between row 0 and row 1 of the bounds can match
+    abstract boolean mayMatchBetween(ColumnVector bounds);
+
+    @Override
+    public void collectColumns(List<Column> columns) {
+        for (Column column : columns) {
+            if (column.getName().equals(input().getName())) {
+                return;
+            }
+        }
+        columns.add(input());
+    }
+
+    @Override
+    public void bind(List<Column> columns) {
+        check(input());
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getName().equals(input().getName())) {
+                slot = i;
+            }
+        }
+    }
+
+    @Override
+    public boolean test(ColumnVector[] inputs, int row) {
+        ColumnVector vector = inputs[slot];
+        return vector != null && !vector.isNull(row) && matches(vector, row);
+    }
+
+    @Override
+    public boolean mayMatch(ColumnVector[] bounds) {
+        ColumnVector vector = bounds[slot];
+        if (vector == null) {
+            return true;
+        }
+        return !vector.isNull(0) && mayMatchBetween(vector);
+    }
+}
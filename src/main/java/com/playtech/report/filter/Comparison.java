@@ -0,0 +1,74 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.column.Column;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.XmlTransient;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// <compare>: the column compared with one value, strings compare lexicographically
+@XmlRootElement(name = "compare")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Comparison extends ColumnCondition {
+    private Operator operator;
+    private String value;
+    @XmlTransient
+    private Literal literal;
+
+    @Override
+    void check(Column column) {
+        if (operator == null) {
+            throw new IllegalArgumentException(ERROR + "Filter on " + column.getName() + " has no operator" + RESET);
+        }
+        literal = new Literal(value);
+        literal.check(column);
+    }
+
+    @Override
+    boolean matches(ColumnVector vector, int row) {
+        return switch (operator) {
+            case EQUALS -> literal.matches(vector, row);
+            case NOT_EQUALS -> !literal.matches(vector, row);
+            case LESS_THAN -> literal.compareTo(vector, row) < 0;
+            case LESS_OR_EQUAL -> literal.compareTo(vector, row) <= 0;
+            case GREATER_THAN -> literal.compareTo(vector, row) > 0;
+            case GREATER_OR_EQUAL -> literal.compareTo(vector, row) >= 0;
+        };
+    }
+
+    @Override
+    boolean mayMatchBetween(ColumnVector bounds) {
+        return switch (operator) {
+            case EQUALS -> literal.compareTo(bounds, 0) <= 0 && literal.compareTo(bounds, 1) >= 0;
+            case NOT_EQUALS -> !literal.matches(bounds, 0) || !literal.matches(bounds, 1);
+            case LESS_THAN -> literal.compareTo(bounds, 0) < 0;
+            case LESS_OR_EQUAL -> literal.compareTo(bounds, 0) <= 0;
+            case GREATER_THAN -> literal.compareTo(bounds, 1) > 0;
+            case GREATER_OR_EQUAL -> literal.compareTo(bounds, 1) >= 0;
+        };
+    }
+
+    @Override
+    public String describe() {
+        return input().getName() + ' ' + operator.symbol + " '" + value + "'";
+    }
+
+    public enum Operator {
+        EQUALS("="),
+        NOT_EQUALS("!="),
+        LESS_THAN("<"),
+        LESS_OR_EQUAL("<="),
+        GREATER_THAN(">"),
+        GREATER_OR_EQUAL(">=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+}
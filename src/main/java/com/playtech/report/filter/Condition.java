@@ -0,0 +1,25 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.column.Column;
+import jakarta.xml.bind.annotation.XmlSeeAlso;
+
+import java.util.List;
+
+// a node of a filter condition as written in the report xml, every kind of node has its own element name. A row with
+// a null value, or without the column, matches no comparison, so it is only kept when another branch of an <or> matches
+@XmlSeeAlso({Comparison.class, InList.class, Range.class, AllOf.class, AnyOf.class})
+public abstract class Condition {
+    // adds the columns the condition reads to the list, once each
+    public abstract void collectColumns(List<Column> columns);
+
+    // resolves the columns to their index in the list collectColumns built, before the first test
+    public abstract void bind(List<Column> columns);
+
+    public abstract boolean test(ColumnVector[] inputs, int row);
+
+    // false when no row between the bounds of its columns can match, see RowFilter.mayMatch
+    public abstract boolean mayMatch(ColumnVector[] bounds);
+
+    public abstract String describe();
+}
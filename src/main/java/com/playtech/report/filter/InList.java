@@ -0,0 +1,76 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlElementWrapper;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.XmlTransient;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// <in>: the column equals one of the values
+@XmlRootElement(name = "in")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class InList extends ColumnCondition {
+    @XmlElementWrapper(name = "values")
+    @XmlElement(name = "value")
+    private List<String> values;
+    @XmlTransient
+    private Literal[] literals;
+    // strings are looked up instead of compared one by one
+    @XmlTransient
+    private Set<String> strings;
+
+    @Override
+    void check(Column column) {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException(ERROR + "Filter on " + column.getName() + " has no values" + RESET);
+        }
+        List<Literal> parsed = new ArrayList<>();
+        for (String value : values) {
+            Literal literal = new Literal(value);
+            literal.check(column);
+            parsed.add(literal);
+        }
+        literals = parsed.toArray(new Literal[0]);
+        strings = new HashSet<>(values);
+    }
+
+    @Override
+    boolean matches(ColumnVector vector, int row) {
+        if (vector instanceof StringVector stringVector) {
+            return strings.contains(stringVector.get(row));
+        }
+        for (Literal literal : literals) {
+            if (literal.matches(vector, row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    boolean mayMatchBetween(ColumnVector bounds) {
+        for (Literal literal : literals) {
+            if (literal.compareTo(bounds, 0) <= 0 && literal.compareTo(bounds, 1) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String describe() {
+        return input().getName() + " in " + values;
+    }
+}
@@ -0,0 +1,51 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.column.Column;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlElementRef;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// <and> or <or> of any conditions, including other junctions. Evaluation stops at the first condition that decides
+@XmlAccessorType(XmlAccessType.FIELD)
+abstract class Junction extends Condition {
+    @XmlElementRef
+    private List<Condition> conditions;
+
+    List<Condition> conditions() {
+        if (conditions == null || conditions.isEmpty()) {
+            throw new IllegalArgumentException(ERROR + "Filter <" + keyword() + "> needs at least one condition" + RESET);
+        }
+        return conditions;
+    }
+
+    abstract String keyword();
+
+    @Override
+    public void collectColumns(List<Column> columns) {
+        for (Condition condition : conditions()) {
+            condition.collectColumns(columns);
+        }
+    }
+
+    @Override
+    public void bind(List<Column> columns) {
+        for (Condition condition : conditions()) {
+            condition.bind(columns);
+        }
+    }
+
+    @Override
+    public String describe() {
+        List<String> parts = new ArrayList<>();
+        for (Condition condition : conditions) {
+            parts.add(condition instanceof Junction ? "(" + condition.describe() + ")" : condition.describe());
+        }
+        return String.join(" " + keyword() + " ", parts);
+    }
+}
@@ -0,0 +1,116 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.util.time.IsoDates;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// a constant of a condition, parsed once into every type it can be compared with so that rows are compared
+// as primitives. The type of the column is only known from its vector, a computed column has no declaration
+final class Literal {
+    private final String text;
+    private final Long integer;
+    private final Double number;
+    private final BigDecimal decimal;
+    // the decimal as an exact long at every scale, null where it has more digits or doesn't fit
+    private final Long[] unscaled = new Long[DecimalVector.MAX_SCALE + 1];
+    private final Long epochDay;
+    // a date alone is the start of its day when compared with a DATETIME
+    private final Long epochSecond;
+
+    Literal(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException(ERROR + "Filter value is missing" + RESET);
+        }
+        this.text = text;
+        String value = text.strip();
+        this.integer = parse(() -> Long.parseLong(value));
+        this.decimal = parse(() -> new BigDecimal(value));
+        this.number = decimal == null ? null : decimal.doubleValue();
+        if (decimal != null) {
+            for (int scale = 0; scale < unscaled.length; scale++) {
+                int digits = scale;
+                unscaled[scale] = parse(() -> decimal.setScale(digits).unscaledValue().longValueExact());
+            }
+        }
+        this.epochDay = parse(() -> LocalDate.parse(value).toEpochDay());
+        Long instant = parse(() -> Instant.parse(value).getEpochSecond());
+        this.epochSecond = instant != null || epochDay == null ? instant : Long.valueOf(epochDay * IsoDates.SECONDS_PER_DAY);
+    }
+
+    // fails when the value can't be compared with a column of the declared type
+    void check(Column column) {
+        boolean valid = switch (column.getType()) {
+            case INTEGER, DOUBLE, DECIMAL -> number != null;
+            case DATE -> epochDay != null;
+            case DATETIME -> epochSecond != null;
+            case STRING -> true;
+        };
+        if (!valid) {
+            throw new IllegalArgumentException(ERROR + "Filter value '" + text + "' is not a " + column.getType() + " like column " + column.getName() + RESET);
+        }
+    }
+
+    // the value of the row compared with the literal, the row must not be null
+    int compareTo(ColumnVector vector, int row) {
+        if (vector instanceof StringVector strings) {
+            return strings.get(row).compareTo(text);
+        }
+        if (vector instanceof LongVector longs) {
+            long value = longs.get(row);
+            return switch (longs.getType()) {
+                case DATE -> Long.compare(value, require(epochDay, vector));
+                case DATETIME -> Long.compare(value, require(epochSecond, vector));
+                // a literal with a fraction or past the range of a long is compared exactly, not as its nearest double
+                default -> integer != null ? Long.compare(value, integer) : BigDecimal.valueOf(value).compareTo(require(decimal, vector));
+            };
+        }
+        if (vector instanceof DoubleVector doubles) {
+            return Double.compare(doubles.get(row), require(number, vector));
+        }
+        if (vector instanceof DecimalVector decimals) {
+            Long exact = unscaled[decimals.scale()];
+            if (exact != null && decimals.fits(row)) {
+                return Long.compare(decimals.getUnscaled(row), exact);
+            }
+            return decimals.get(row).compareTo(require(decimal, vector));
+        }
+        return vector.getObject(row).toString().compareTo(text);
+    }
+
+    // equality the way compareTo sees it, strings skip the ordering
+    boolean matches(ColumnVector vector, int row) {
+        if (vector instanceof StringVector strings) {
+            return strings.get(row).equals(text);
+        }
+        return compareTo(vector, row) == 0;
+    }
+
+    private <T> T require(T value, ColumnVector vector) {
+        if (value == null) {
+            throw new IllegalArgumentException(ERROR + "Filter value '" + text + "' can't be compared with a " + vector.getType() + " column" + RESET);
+        }
+        return value;
+    }
+
+    // null when the text is not of that type
+    private static <T> T parse(Supplier<T> parser) {
+        try {
+            return parser.get();
+        } catch (NumberFormatException | ArithmeticException | DateTimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.column.Column;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+import jakarta.xml.bind.annotation.XmlTransient;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// <between>: from <= column <= to, one of the two bounds may be left out
+@XmlRootElement(name = "between")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Range extends ColumnCondition {
+    private String from;
+    private String to;
+    @XmlTransient
+    private Literal lower;
+    @XmlTransient
+    private Literal upper;
+
+    @Override
+    void check(Column column) {
+        if (from == null && to == null) {
+            throw new IllegalArgumentException(ERROR + "Filter on " + column.getName() + " needs <from> or <to>" + RESET);
+        }
+        lower = from == null ? null : new Literal(from);
+        upper = to == null ? null : new Literal(to);
+        if (lower != null) {
+            lower.check(column);
+        }
+        if (upper != null) {
+            upper.check(column);
+        }
+    }
+
+    @Override
+    boolean matches(ColumnVector vector, int row) {
+        return (lower == null || lower.compareTo(vector, row) >= 0) && (upper == null || upper.compareTo(vector, row) <= 0);
+    }
+
+    @Override
+    boolean mayMatchBetween(ColumnVector bounds) {
+        return (lower == null || lower.compareTo(bounds, 1) >= 0) && (upper == null || upper.compareTo(bounds, 0) <= 0);
+    }
+
+    @Override
+    public String describe() {
+        if (from == null) {
+            return input().getName() + " <= '" + to + "'";
+        }
+        if (to == null) {
+            return input().getName() + " >= '" + from + "'";
+        }
+        return input().getName() + " between '" + from + "' and '" + to + "'";
+    }
+}
@@ -0,0 +1,146 @@
+package com.playtech.report.join;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.util.collection.LongIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// the rows of a dimension kept in memory for a hash join. The rows stay in the batches they were read in, with the key
+// in the first slot and the looked up columns after it, and the hash table maps a key to the batch and row it is in.
+// integer, date and time keys are longs in a LongIntHashMap, only text keys need a map of boxed keys
+public class LookupTable {
+    // batches have at most RowBatch.DEFAULT_CAPACITY rows, a row reference is the batch number and the row in it
+    private static final int ROW_BITS = Integer.numberOfTrailingZeros(RowBatch.DEFAULT_CAPACITY);
+    private static final int ROW_MASK = RowBatch.DEFAULT_CAPACITY - 1;
+    // hash table slots per key, the table is kept at most half full
+    private static final long ENTRY_BYTES = 36;
+
+    private final String source;
+    private final List<Column> columns;
+    private final boolean textKeys;
+    private final List<RowBatch> batches = new ArrayList<>();
+    private final LongIntHashMap longKeys;
+    private final Map<String, Integer> textKeyRows;
+    private long estimatedBytes;
+
+    // source names the dimension in error messages
+    public LookupTable(String source, List<Column> columns, boolean textKeys) {
+        this.source = source;
+        this.columns = columns;
+        this.textKeys = textKeys;
+        this.longKeys = textKeys ? null : new LongIntHashMap();
+        this.textKeyRows = textKeys ? new HashMap<>() : null;
+    }
+
+    public void add(RowBatch batch) {
+        if (batch.size() > RowBatch.DEFAULT_CAPACITY) {
+            throw new IllegalArgumentException("Batches of a lookup table have at most " + RowBatch.DEFAULT_CAPACITY + " rows");
+        }
+        int index = batches.size();
+        batches.add(batch);
+        ColumnVector keys = batch.vector(0);
+        for (int row = 0; row < batch.size(); row++) {
+            if (keys.isNull(row)) {
+                continue;
+            }
+            int reference = index << ROW_BITS | row;
+            if (textKeys) {
+                String key = ((StringVector) keys).get(row);
+                if (textKeyRows.putIfAbsent(key, reference) != null) {
+                    throw duplicate(key);
+                }
+            } else {
+                long key = ((LongVector) keys).get(row);
+                if (longKeys.get(key) >= 0) {
+                    throw duplicate(key);
+                }
+                longKeys.put(key, reference);
+            }
+        }
+        estimatedBytes += batch.estimatedBytes() + ENTRY_BYTES * batch.size();
+    }
+
+    private IllegalArgumentException duplicate(Object key) {
+        return new IllegalArgumentException(ERROR + "Lookup dimension " + source + " has the key " + key + " more than once" + RESET);
+    }
+
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    // the batches in the order they were added, for moving the rows to a partitioned join
+    public List<RowBatch> batches() {
+        return batches;
+    }
+
+    // appends the looked up columns to the batch, they are null for rows without a key or with a key that is not
+    // in the table
+    public void join(RowBatch batch, String keyColumn) {
+        int size = batch.size();
+        int[] references = new int[size];
+        probe(batch.vector(keyColumn), keyColumn, size, references);
+
+        for (int c = 0; c < columns.size(); c++) {
+            ColumnVector output = ColumnVector.create(columns.get(c), batch.capacity());
+            for (int row = 0; row < size; row++) {
+                int reference = references[row];
+                if (reference < 0) {
+                    output.setNull(row);
+                } else {
+                    batches.get(reference >>> ROW_BITS).vector(1 + c).copyTo(reference & ROW_MASK, output, row);
+                }
+            }
+            batch.put(columns.get(c).getName(), output);
+        }
+    }
+
+    private void probe(ColumnVector keys, String keyColumn, int size, int[] references) {
+        if (keys == null) {
+            Arrays.fill(references, 0, size, -1);
+            return;
+        }
+        checkKeys(keys, keyColumn, textKeys);
+        if (!textKeys) {
+            LongVector longs = (LongVector) keys;
+            for (int row = 0; row < size; row++) {
+                references[row] = longs.isNull(row) ? -1 : longKeys.get(longs.get(row));
+            }
+            return;
+        }
+
+        // a text key is looked up once per batch, the rows share the code of its dictionary
+        StringVector strings = (StringVector) keys;
+        int[] byCode = new int[strings.dictionarySize()];
+        Arrays.fill(byCode, -2);
+        for (int row = 0; row < size; row++) {
+            if (strings.isNull(row)) {
+                references[row] = -1;
+                continue;
+            }
+            int code = strings.getCode(row);
+            if (byCode[code] == -2) {
+                byCode[code] = textKeyRows.getOrDefault(strings.decode(code), -1);
+            }
+            references[row] = byCode[code];
+        }
+    }
+
+    // the key column of the facts has to hold the same kind of key as the dimension
+    static void checkKeys(ColumnVector keys, String keyColumn, boolean textKeys) {
+        if (textKeys ? !(keys instanceof StringVector) : !(keys instanceof LongVector)) {
+            throw new IllegalArgumentException(ERROR + "Lookup key " + keyColumn + " is a " + keys.getType() + " column, the dimension has "
+                    + (textKeys ? "text" : "integer") + " keys" + RESET);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.playtech.report.join;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.util.collection.LongIntHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// hash join for a dimension that does not fit in memory. Dimension and fact rows both go to temporary files by the
+// hash of their key, then every partition is joined on its own with a LookupTable of just its dimension rows.
+// the partition of every fact row is written to a route file, so the joined rows come out in the order they came in
+public class PartitionedJoin implements Closeable {
+    public static final int MAX_PARTITIONS = 256;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final String source;
+    private final List<Column> columns;
+    private final boolean textKeys;
+    private final String keyColumn;
+    private final int partitionCount;
+    private final Partition[] partitions;
+    private final List<Path> files = new ArrayList<>();
+    private final Path routeFile;
+    private final DataOutputStream route;
+
+    public PartitionedJoin(String source, List<Column> columns, boolean textKeys, String keyColumn, int partitionCount) {
+        if (partitionCount < 1 || partitionCount > MAX_PARTITIONS) {
+            throw new IllegalArgumentException("Partition count has to be between 1 and " + MAX_PARTITIONS + ": " + partitionCount);
+        }
+        this.source = source;
+        this.columns = columns;
+        this.textKeys = textKeys;
+        this.keyColumn = keyColumn;
+        this.partitionCount = partitionCount;
+        this.partitions = new Partition[partitionCount];
+        for (int p = 0; p < partitionCount; p++) {
+            partitions[p] = new Partition();
+        }
+        this.routeFile = createFile("route");
+        this.route = open(routeFile);
+    }
+
+    // dimension batches have the key in the first slot and the looked up columns after it
+    public void addDimension(RowBatch batch) {
+        ColumnVector keys = batch.vector(0);
+        for (int row = 0; row < batch.size(); row++) {
+            if (!keys.isNull(row)) {
+                partitions[partitionOf(keys, row)].dimension.add(batch, row);
+            }
+        }
+    }
+
+    public void addFacts(RowBatch batch) {
+        ColumnVector keys = batch.vector(keyColumn);
+        if (keys != null) {
+            LookupTable.checkKeys(keys, keyColumn, textKeys);
+        }
+        try {
+            for (int row = 0; row < batch.size(); row++) {
+                // rows without a key find no match in any partition
+                int partition = keys == null || keys.isNull(row) ? 0 : partitionOf(keys, row);
+                partitions[partition].facts.add(batch, row);
+                route.writeByte(partition);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // high bits of the hash, the hash table of a partition takes its slots from the low ones
+    private int partitionOf(ColumnVector keys, int row) {
+        long key = textKeys ? ((StringVector) keys).get(row).hashCode() : ((LongVector) keys).get(row);
+        return (int) ((LongIntHashMap.mix(key) >>> 40) % partitionCount);
+    }
+
+    // joins the partitions one by one, then reads the joined rows back in the order of the route file
+    public void finish(Consumer<RowBatch> downstream) {
+        try {
+            route.close();
+            for (Partition partition : partitions) {
+                partition.join();
+            }
+            merge(downstream);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void merge(Consumer<RowBatch> downstream) throws IOException {
+        List<FileBatches> joined = new ArrayList<>();
+        try (DataInputStream routes = new DataInputStream(new BufferedInputStream(Files.newInputStream(routeFile), IO_BUFFER_SIZE))) {
+            for (Partition partition : partitions) {
+                joined.add(new FileBatches(partition.joined));
+            }
+            RowBatch output = null;
+            for (int next = routes.read(); next >= 0; next = routes.read()) {
+                FileBatches rows = joined.get(next);
+                rows.advance();
+                if (output == null) {
+                    output = rows.batch.newBatch(RowBatch.DEFAULT_CAPACITY);
+                }
+                rows.batch.copyRow(rows.row, output, output.size());
+                output.setSize(output.size() + 1);
+                if (output.isFull()) {
+                    downstream.accept(output);
+                    output = null;
+                }
+            }
+            if (output != null) {
+                downstream.accept(output);
+            }
+        } finally {
+            for (FileBatches rows : joined) {
+                rows.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            route.close();
+        } catch (IOException e) {
+            // the file is deleted anyway
+        }
+        for (Partition partition : partitions) {
+            partition.dimension.close();
+            partition.facts.close();
+        }
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // the file is also removed on exit
+            }
+        }
+        files.clear();
+    }
+
+    private Path createFile(String kind) {
+        try {
+            Path file = Files.createTempFile("report-join-", "." + kind);
+            file.toFile().deleteOnExit();
+            files.add(file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DataOutputStream open(Path file) {
+        try {
+            return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), IO_BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private class Partition {
+        private final SpillWriter dimension = new SpillWriter(createFile("dimension"));
+        private final SpillWriter facts = new SpillWriter(createFile("facts"));
+        private Path joined;
+
+        // only the dimension rows of this partition are in memory while its facts are joined
+        private void join() throws IOException {
+            dimension.close();
+            facts.close();
+            LookupTable table = new LookupTable(source, columns, textKeys);
+            try (FileBatches rows = new FileBatches(dimension.file)) {
+                for (RowBatch batch = rows.nextBatch(); batch != null; batch = rows.nextBatch()) {
+                    table.add(batch);
+                }
+            }
+            Files.deleteIfExists(dimension.file);
+
+            joined = createFile("joined");
+            try (FileBatches rows = new FileBatches(facts.file); DataOutputStream out = open(joined)) {
+                for (RowBatch batch = rows.nextBatch(); batch != null; batch = rows.nextBatch()) {
+                    table.join(batch, keyColumn);
+                    BatchSerializer.write(out, batch);
+                }
+            }
+            Files.deleteIfExists(facts.file);
+        }
+    }
+
+    // rows copied into a batch of their own and written to the file whenever the batch is full
+    private static class SpillWriter {
+        private final Path file;
+        private DataOutputStream out;
+        private RowBatch buffer;
+        private boolean closed;
+
+        private SpillWriter(Path file) {
+            this.file = file;
+        }
+
+        private void add(RowBatch batch, int row) {
+            if (buffer == null) {
+                buffer = batch.newBatch(RowBatch.DEFAULT_CAPACITY);
+            }
+            batch.copyRow(row, buffer, buffer.size());
+            buffer.setSize(buffer.size() + 1);
+            if (buffer.isFull()) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            try {
+                if (out == null) {
+                    out = open(file);
+                }
+                BatchSerializer.write(out, buffer);
+                buffer = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (buffer != null) {
+                    flush();
+                }
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // reads the batches of a spill file back one at a time, a file that was never written to has none
+    private static class FileBatches implements Closeable {
+        private final DataInputStream in;
+        private RowBatch batch;
+        private int row;
+
+        private FileBatches(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), IO_BUFFER_SIZE));
+        }
+
+        private RowBatch nextBatch() throws IOException {
+            return BatchSerializer.read(in);
+        }
+
+        // moves to the next row, the route file says there is one
+        private void advance() throws IOException {
+            row++;
+            while (batch == null || row >= batch.size()) {
+                batch = nextBatch();
+                if (batch == null) {
+                    throw new IOException("Join partition ended before the route file");
+                }
+                row = 0;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
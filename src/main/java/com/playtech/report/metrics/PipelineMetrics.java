@@ -0,0 +1,193 @@
+package com.playtech.report.metrics;
+
+import com.playtech.report.output.JsonlWriter;
+import com.playtech.report.plan.BlockingStep;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.report.plan.FusedPass;
+import com.playtech.report.plan.PlanStep;
+import com.playtech.report.transformer.Transformer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// what one report run spent where: reading the csv, every transformer of the plan and writing the output.
+// stages are measured once per batch, so the overhead does not grow with the number of rows
+public class PipelineMetrics {
+    private static final Map<String, Published> PUBLISHED = new ConcurrentHashMap<>();
+
+    private final String reportName;
+    private final int threads;
+    private final StageMetrics ingest = new StageMetrics("Read CSV");
+    // per plan step: one entry per transformer of a fused pass, a single one for a blocking transformer
+    private final List<StageMetrics[]> steps = new ArrayList<>();
+    private final StageMetrics write = new StageMetrics("Write output");
+    private final long started = System.nanoTime();
+    private long wallNanos;
+
+    public PipelineMetrics(ExecutionPlan plan, int threads) {
+        this.reportName = plan.getReport().getReportName();
+        this.threads = threads;
+        for (PlanStep step : plan.getSteps()) {
+            steps.add(switch (step) {
+                case FusedPass pass -> {
+                    List<Transformer> transformers = pass.transformers();
+                    StageMetrics[] stages = new StageMetrics[transformers.size()];
+                    for (int t = 0; t < stages.length; t++) {
+                        stages[t] = new StageMetrics(transformers.get(t).describe());
+                    }
+                    yield stages;
+                }
+                case BlockingStep blockingStep -> new StageMetrics[]{new StageMetrics(blockingStep.transformer().describe())};
+            });
+        }
+    }
+
+    public StageMetrics ingest() {
+        return ingest;
+    }
+
+    public StageMetrics[] step(int index) {
+        return steps.get(index);
+    }
+
+    public StageMetrics write() {
+        return write;
+    }
+
+    // ends the run, called once after the output is closed
+    public void finish() {
+        wallNanos = System.nanoTime() - started;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\"report\":").append(JsonlWriter.escape(reportName))
+                .append(",\"threads\":").append(threads)
+                .append(",\"wallMillis\":").append(millis(wallNanos))
+                .append(",\"ingest\":");
+        appendStage(json, ingest);
+        json.append(",\"stages\":[");
+        boolean first = true;
+        for (StageMetrics[] step : steps) {
+            for (StageMetrics stage : step) {
+                json.append(first ? "" : ",");
+                appendStage(json, stage);
+                first = false;
+            }
+        }
+        json.append("],\"write\":");
+        appendStage(json, write);
+        return json.append('}').toString();
+    }
+
+    public void writeJson(Path path) throws IOException {
+        Files.writeString(path, toJson() + System.lineSeparator());
+    }
+
+    // hands the totals to flight recorder and to the report's mbean, both only cost anything when someone looks
+    public void publish() {
+        List<StageMetrics> stages = new ArrayList<>();
+        stages.add(ingest);
+        steps.forEach(step -> stages.addAll(List.of(step)));
+        stages.add(write);
+        for (StageMetrics stage : stages) {
+            StageEvent event = new StageEvent();
+            if (!event.isEnabled()) {
+                break;
+            }
+            event.report = reportName;
+            event.stage = stage.name();
+            event.rowsIn = stage.rowsIn();
+            event.rowsOut = stage.rowsOut();
+            event.bytes = stage.bytes();
+            event.wallTime = stage.wallNanos();
+            event.cpuTime = stage.cpuNanos();
+            event.allocated = stage.allocatedBytes();
+            event.commit();
+        }
+
+        PUBLISHED.computeIfAbsent(reportName, Published::register).update(wallNanos, toJson());
+    }
+
+    private static void appendStage(StringBuilder json, StageMetrics stage) {
+        json.append("{\"name\":").append(JsonlWriter.escape(stage.name()))
+                .append(",\"calls\":").append(stage.calls())
+                .append(",\"rowsIn\":").append(stage.rowsIn())
+                .append(",\"rowsOut\":").append(stage.rowsOut())
+                .append(",\"wallMillis\":").append(millis(stage.wallNanos()))
+                .append(",\"cpuMillis\":").append(millis(stage.cpuNanos()))
+                .append(",\"allocatedBytes\":").append(stage.allocatedBytes());
+        if (stage.bytes() > 0) {
+            json.append(",\"bytes\":").append(stage.bytes());
+            if (stage.wallNanos() > 0) {
+                json.append(",\"bytesPerSecond\":").append(stage.bytes() * 1_000_000_000L / stage.wallNanos());
+            }
+        }
+        json.append('}');
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static class Published implements ReportMetricsMXBean {
+        private final String reportName;
+        private final AtomicLong runs = new AtomicLong();
+        private volatile long lastRunMillis;
+        private volatile String lastRunSummary = "{}";
+
+        private Published(String reportName) {
+            this.reportName = reportName;
+        }
+
+        private static Published register(String reportName) {
+            Published published = new Published(reportName);
+            try {
+                ObjectName name = new ObjectName("com.playtech.report:type=Metrics,name=" + ObjectName.quote(reportName));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(published, name);
+            } catch (JMException e) {
+                // the summary is still written to the metrics file, jmx is only a convenience
+                System.err.println(ERROR + "Metrics of " + reportName + " not registered with JMX: " + e.getMessage() + RESET);
+            }
+            return published;
+        }
+
+        private void update(long wallNanos, String summary) {
+            runs.incrementAndGet();
+            lastRunMillis = wallNanos / 1_000_000;
+            lastRunSummary = summary;
+        }
+
+        @Override
+        public String getReportName() {
+            return reportName;
+        }
+
+        @Override
+        public long getRuns() {
+            return runs.get();
+        }
+
+        @Override
+        public long getLastRunMillis() {
+            return lastRunMillis;
+        }
+
+        @Override
+        public String getLastRunSummary() {
+            return lastRunSummary;
+        }
+    }
+}
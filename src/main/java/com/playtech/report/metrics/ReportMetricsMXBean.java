@@ -0,0 +1,13 @@
+package com.playtech.report.metrics;
+
+// the last run of a report, registered as com.playtech.report:type=Metrics,name=<report name>
+public interface ReportMetricsMXBean {
+    String getReportName();
+
+    long getRuns();
+
+    long getLastRunMillis();
+
+    // json summary of the last run, the same as the --metrics file
+    String getLastRunSummary();
+}
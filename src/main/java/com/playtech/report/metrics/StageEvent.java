@@ -0,0 +1,46 @@
+package com.playtech.report.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// totals of one stage at the end of a report run, only recorded while a flight recording with the event enabled runs
+@Name("com.playtech.ReportStage")
+@Label("Report Stage")
+@Category({"Playtech", "Reports"})
+@Description("Rows, time and allocations of one stage of a report run")
+@StackTrace(false)
+class StageEvent extends Event {
+    @Label("Report")
+    String report;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Rows In")
+    long rowsIn;
+
+    @Label("Rows Out")
+    long rowsOut;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Wall Time")
+    @Timespan
+    long wallTime;
+
+    @Label("CPU Time")
+    @Timespan
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
@@ -0,0 +1,102 @@
+package com.playtech.report.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+// counters of one pipeline stage, updated once per batch and safe to share between workers.
+// times are summed over all threads that ran the stage, so with parallel ingest they can exceed the run's wall time
+public final class StageMetrics {
+    private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+    private final String name;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder rowsIn = new LongAdder();
+    private final LongAdder rowsOut = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder wallNanos = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    public StageMetrics(String name) {
+        this.name = name;
+    }
+
+    // clocks of the current thread, read before the work and handed to record() or exclude() after it
+    public static long wallClock() {
+        return System.nanoTime();
+    }
+
+    public static long cpuClock() {
+        return THREADS != null ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    public static long allocationClock() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    public void record(long rowsIn, long rowsOut, long wallStart, long cpuStart, long allocationStart) {
+        calls.increment();
+        this.rowsIn.add(rowsIn);
+        this.rowsOut.add(rowsOut);
+        add(wallStart, cpuStart, allocationStart, 1);
+    }
+
+    // takes back time spent in another stage while this one was being measured, like handing rows downstream
+    public void exclude(long wallStart, long cpuStart, long allocationStart) {
+        add(wallStart, cpuStart, allocationStart, -1);
+    }
+
+    private void add(long wallStart, long cpuStart, long allocationStart, int sign) {
+        wallNanos.add(sign * (wallClock() - wallStart));
+        cpuNanos.add(sign * (cpuClock() - cpuStart));
+        allocatedBytes.add(sign * (allocationClock() - allocationStart));
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    // number of measurements, about one per batch and stage
+    public long calls() {
+        return calls.sum();
+    }
+
+    public long rowsIn() {
+        return rowsIn.sum();
+    }
+
+    public long rowsOut() {
+        return rowsOut.sum();
+    }
+
+    public long bytes() {
+        return bytes.sum();
+    }
+
+    public long wallNanos() {
+        return wallNanos.sum();
+    }
+
+    public long cpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    public long allocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    // cpu time and allocation counting are hotspot extensions, without them only wall time is measured
+    private static com.sun.management.ThreadMXBean threadBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isCurrentThreadCpuTimeSupported() && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadCpuTimeEnabled(true);
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package com.playtech.report.output;
+
+import com.playtech.report.column.Column;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// RFC 4180 csv with a header line, fields are quoted only when they contain a delimiter, quote or line break.
+// null values are empty fields
+public class CsvWriter extends ReportWriter {
+    public CsvWriter(OutputBuffer out, List<Column> outputs) throws IOException {
+        super(out, outputs, CsvWriter::encodeText);
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                out.write((byte) ',');
+            }
+            out.write(encodeText(columns[i].name()));
+        }
+        out.write((byte) '\n');
+    }
+
+    @Override
+    protected void writeRow(int row) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                out.write((byte) ',');
+            }
+            OutputColumn column = columns[i];
+            if (column.isNull(row)) {
+                continue;
+            }
+            switch (column.kind()) {
+                case STRING -> out.write(column.encoded(row));
+                case LONG, LONG_TEXT -> out.writeLong(column.getLong(row));
+                case DOUBLE, DOUBLE_TEXT -> out.writeDouble(column.getDouble(row));
+                case DECIMAL, DECIMAL_TEXT -> column.writeDecimal(out, row);
+                case DATE -> out.writeDate(column.getLong(row));
+                case DATETIME -> out.writeInstant(column.getLong(row));
+                case MISSING -> {
+                }
+            }
+        }
+        out.write((byte) '\n');
+    }
+
+    private static byte[] encodeText(String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            return value.getBytes(StandardCharsets.UTF_8);
+        }
+        return ('"' + value.replace("\"", "\"\"") + '"').getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,113 @@
+package com.playtech.report.output;
+
+import com.playtech.report.column.Column;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// one json object per line. Null values are written as null, so every line has every output
+public class JsonlWriter extends ReportWriter {
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // {"name": and ,"name": of every column
+    private final byte[][] keys;
+
+    public JsonlWriter(OutputBuffer out, List<Column> outputs) {
+        super(out, outputs, JsonlWriter::encodeText);
+        keys = new byte[columns.length][];
+        for (int i = 0; i < columns.length; i++) {
+            keys[i] = ((i == 0 ? "{" : ",") + escape(columns[i].name()) + ":").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Override
+    protected void writeRow(int row) throws IOException {
+        if (columns.length == 0) {
+            out.write((byte) '{');
+        }
+        for (int i = 0; i < columns.length; i++) {
+            out.write(keys[i]);
+            writeValue(columns[i], row);
+        }
+        out.write((byte) '}');
+        out.write((byte) '\n');
+    }
+
+    private void writeValue(OutputColumn column, int row) throws IOException {
+        if (column.isNull(row)) {
+            out.write(NULL);
+            return;
+        }
+        switch (column.kind()) {
+            case STRING -> out.write(column.encoded(row));
+            case LONG -> out.writeLong(column.getLong(row));
+            case DOUBLE -> {
+                double value = column.getDouble(row);
+                // json has no NaN or infinity
+                if (Double.isFinite(value)) {
+                    out.writeDouble(value);
+                } else {
+                    out.write(NULL);
+                }
+            }
+            case DECIMAL -> column.writeDecimal(out, row);
+            case DATE -> {
+                out.write((byte) '"');
+                out.writeDate(column.getLong(row));
+                out.write((byte) '"');
+            }
+            case DATETIME -> {
+                out.write((byte) '"');
+                out.writeInstant(column.getLong(row));
+                out.write((byte) '"');
+            }
+            case LONG_TEXT -> {
+                out.write((byte) '"');
+                out.writeLong(column.getLong(row));
+                out.write((byte) '"');
+            }
+            case DOUBLE_TEXT -> {
+                out.write((byte) '"');
+                out.writeDouble(column.getDouble(row));
+                out.write((byte) '"');
+            }
+            case DECIMAL_TEXT -> {
+                out.write((byte) '"');
+                column.writeDecimal(out, row);
+                out.write((byte) '"');
+            }
+            case MISSING -> out.write(NULL);
+        }
+    }
+
+    private static byte[] encodeText(String value) {
+        return escape(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // quoted json string
+    public static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> escaped.append("\\\"");
+                case '\\' -> escaped.append("\\\\");
+                case '\n' -> escaped.append("\\n");
+                case '\r' -> escaped.append("\\r");
+                case '\t' -> escaped.append("\\t");
+                case '\b' -> escaped.append("\\b");
+                case '\f' -> escaped.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        escaped.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+        }
+        return escaped.append('"').toString();
+    }
+}
@@ -0,0 +1,192 @@
+package com.playtech.report.output;
+
+import com.playtech.util.time.IsoDates;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+
+// reusable byte buffer that values are encoded into directly and that is written to the channel when full.
+// numbers and dates are written digit by digit, so writing them doesn't allocate
+public class OutputBuffer implements Closeable {
+    public static final int DEFAULT_SIZE = 1 << 20;
+
+    private final WritableByteChannel channel;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+    private int position;
+    // bytes already handed to the channel
+    private long written;
+    private final byte[] digits = new byte[20];
+
+    public OutputBuffer(WritableByteChannel channel, int size) {
+        this.channel = channel;
+        this.bytes = new byte[size];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    public void write(byte b) throws IOException {
+        if (position == bytes.length) {
+            flush();
+        }
+        bytes[position++] = b;
+    }
+
+    public void write(byte[] value) throws IOException {
+        if (value.length > bytes.length - position) {
+            flush();
+            if (value.length > bytes.length) {
+                drain(ByteBuffer.wrap(value));
+                return;
+            }
+        }
+        System.arraycopy(value, 0, bytes, position, value.length);
+        position += value.length;
+    }
+
+    // for values that are known to be ascii, like formatted numbers
+    public void writeAscii(String value) throws IOException {
+        if (value.length() > bytes.length - position) {
+            write(value.getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            bytes[position++] = (byte) value.charAt(i);
+        }
+    }
+
+    public void writeLong(long value) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write((byte) '-');
+            value = -value;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        ensure(count);
+        while (count > 0) {
+            bytes[position++] = digits[--count];
+        }
+    }
+
+    // same text as Double.toString
+    public void writeDouble(double value) throws IOException {
+        writeAscii(Double.toString(value));
+    }
+
+    // same text as BigDecimal.valueOf(unscaled, scale).toPlainString()
+    public void writeDecimal(long unscaled, int scale) throws IOException {
+        if (unscaled == Long.MIN_VALUE) {
+            writeAscii(BigDecimal.valueOf(unscaled, scale).toPlainString());
+            return;
+        }
+        if (unscaled < 0) {
+            write((byte) '-');
+            unscaled = -unscaled;
+        }
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' + unscaled % 10);
+            unscaled /= 10;
+        } while (unscaled > 0);
+        // at least one digit before the point
+        while (count <= scale) {
+            digits[count++] = '0';
+        }
+        ensure(count + 1);
+        while (count > 0) {
+            if (count == scale) {
+                bytes[position++] = '.';
+            }
+            bytes[position++] = digits[--count];
+        }
+    }
+
+    // same text as LocalDate.ofEpochDay(epochDay).toString()
+    public void writeDate(long epochDay) throws IOException {
+        long date = IsoDates.yearMonthDay(epochDay);
+        long year = date / 10000;
+        if (year < 0 || year > 9999) {
+            writeAscii(LocalDate.ofEpochDay(epochDay).toString());
+            return;
+        }
+        ensure(10);
+        writeDigits(year, 4);
+        bytes[position++] = '-';
+        writeDigits(date / 100 % 100, 2);
+        bytes[position++] = '-';
+        writeDigits(date % 100, 2);
+    }
+
+    // same text as Instant.ofEpochSecond(epochSecond).toString()
+    public void writeInstant(long epochSecond) throws IOException {
+        long epochDay = Math.floorDiv(epochSecond, IsoDates.SECONDS_PER_DAY);
+        long year = IsoDates.yearMonthDay(epochDay) / 10000;
+        if (year < 0 || year > 9999) {
+            writeAscii(Instant.ofEpochSecond(epochSecond).toString());
+            return;
+        }
+        long secondOfDay = Math.floorMod(epochSecond, IsoDates.SECONDS_PER_DAY);
+        writeDate(epochDay);
+        ensure(10);
+        bytes[position++] = 'T';
+        writeDigits(secondOfDay / 3600, 2);
+        bytes[position++] = ':';
+        writeDigits(secondOfDay / 60 % 60, 2);
+        bytes[position++] = ':';
+        writeDigits(secondOfDay % 60, 2);
+        bytes[position++] = 'Z';
+    }
+
+    private void writeDigits(long value, int width) {
+        for (int i = width - 1; i >= 0; i--) {
+            bytes[position + i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        position += width;
+    }
+
+    private void ensure(int count) throws IOException {
+        if (count > bytes.length - position) {
+            flush();
+        }
+    }
+
+    // bytes written so far, including the ones still in the buffer
+    public long size() {
+        return written + position;
+    }
+
+    public void flush() throws IOException {
+        buffer.clear().limit(position);
+        drain(buffer);
+        position = 0;
+    }
+
+    private void drain(ByteBuffer source) throws IOException {
+        written += source.remaining();
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.playtech.report.output;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+// a declared report output bound to its vector in the current batch. Numbers are only written as numbers
+// when the output is declared as INTEGER, DOUBLE or DECIMAL, everything else is text
+class OutputColumn {
+    enum Kind {
+        MISSING,
+        LONG,
+        DOUBLE,
+        DECIMAL,
+        DATE,
+        DATETIME,
+        // a number in an output declared as text
+        LONG_TEXT,
+        DOUBLE_TEXT,
+        DECIMAL_TEXT,
+        STRING
+    }
+
+    private final String name;
+    private final Column.DataType type;
+    private final Function<String, byte[]> textEncoder;
+    private ColumnVector vector;
+    private Kind kind = Kind.MISSING;
+    // encoded value of every dictionary code of the bound string vector, filled on first use
+    private byte[][] encodedByCode;
+
+    OutputColumn(Column column, Function<String, byte[]> textEncoder) {
+        this.name = column.getName();
+        this.type = column.getType();
+        this.textEncoder = textEncoder;
+    }
+
+    String name() {
+        return name;
+    }
+
+    void bind(RowBatch batch) {
+        ColumnVector next = batch.vector(name);
+        if (next == vector) {
+            return;
+        }
+        vector = next;
+        encodedByCode = null;
+        boolean number = type == null || type == Column.DataType.INTEGER || type == Column.DataType.DOUBLE || type == Column.DataType.DECIMAL;
+        if (vector == null) {
+            kind = Kind.MISSING;
+        } else if (vector instanceof StringVector strings) {
+            kind = Kind.STRING;
+            encodedByCode = new byte[strings.dictionarySize()][];
+        } else if (vector instanceof DoubleVector) {
+            kind = number ? Kind.DOUBLE : Kind.DOUBLE_TEXT;
+        } else if (vector instanceof DecimalVector) {
+            kind = number ? Kind.DECIMAL : Kind.DECIMAL_TEXT;
+        } else if (vector.getType() == Column.DataType.DATE) {
+            kind = Kind.DATE;
+        } else if (vector.getType() == Column.DataType.DATETIME) {
+            kind = Kind.DATETIME;
+        } else {
+            kind = number ? Kind.LONG : Kind.LONG_TEXT;
+        }
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    boolean isNull(int row) {
+        return kind == Kind.MISSING || vector.isNull(row);
+    }
+
+    long getLong(int row) {
+        return ((LongVector) vector).get(row);
+    }
+
+    double getDouble(int row) {
+        return ((DoubleVector) vector).get(row);
+    }
+
+    // plain digits of a DECIMAL value, without an exponent
+    void writeDecimal(OutputBuffer out, int row) throws IOException {
+        DecimalVector decimals = (DecimalVector) vector;
+        if (decimals.fits(row)) {
+            out.writeDecimal(decimals.getUnscaled(row), decimals.scale());
+        } else {
+            out.writeAscii(decimals.get(row).toPlainString());
+        }
+    }
+
+    // the text of a STRING column, already encoded and escaped by the writer
+    byte[] encoded(int row) {
+        StringVector strings = (StringVector) vector;
+        int code = strings.getCode(row);
+        if (code >= encodedByCode.length) {
+            // the dictionary grew after the batch was bound
+            return textEncoder.apply(strings.decode(code));
+        }
+        byte[] encoded = encodedByCode[code];
+        if (encoded == null) {
+            encoded = textEncoder.apply(strings.decode(code));
+            encodedByCode[code] = encoded;
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,128 @@
+package com.playtech.report.output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// gzip compresses what is written to it: every write is deflated on a pool of threads into a gzip member of its own
+// and the members are written in order. A file of several members is one gzip stream to gunzip and GZIPInputStream,
+// so a block never waits for the dictionary of the one before it
+public class ParallelGzipChannel implements WritableByteChannel {
+    private static final byte[] HEADER = {0x1F, (byte) 0x8B, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xFF};
+
+    private final WritableByteChannel channel;
+    private final int threads;
+    // null with a single thread, the blocks are then deflated by the writer
+    private final ExecutorService executor;
+    // a bounded number of blocks in flight, so the writer can't run ahead of the compression
+    private final Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private long members;
+    private boolean open = true;
+
+    public ParallelGzipChannel(WritableByteChannel channel, int threads) {
+        this.channel = channel;
+        this.threads = threads;
+        this.executor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gzip-output");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+        int length = source.remaining();
+        if (length == 0) {
+            return 0;
+        }
+        byte[] block = new byte[length];
+        source.get(block);
+        members++;
+        if (executor == null) {
+            drain(ByteBuffer.wrap(member(block)));
+            return length;
+        }
+        inFlight.add(executor.submit(() -> member(block)));
+        while (inFlight.size() > threads * 2) {
+            writeNext();
+        }
+        return length;
+    }
+
+    // 10 byte header, the raw deflate stream, then the crc and the length of the block, both little endian
+    private static byte[] member(byte[] block) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(block);
+            deflater.finish();
+            ByteBuffer out = ByteBuffer.allocate(HEADER.length + block.length + block.length / 1000 + 64).put(HEADER);
+            while (!deflater.finished()) {
+                if (out.remaining() < 8 + 1024) {
+                    out = ByteBuffer.allocate(out.capacity() * 2).put(out.flip());
+                }
+                out.position(out.position() + deflater.deflate(out.array(), out.position(), out.remaining() - 8));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(block);
+            out.putInt(Integer.reverseBytes((int) crc.getValue()));
+            out.putInt(Integer.reverseBytes(block.length));
+            return Arrays.copyOf(out.array(), out.position());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            drain(ByteBuffer.wrap(inFlight.poll().get()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing the output");
+        } catch (ExecutionException e) {
+            throw new IOException("Compressing the output failed", e.getCause());
+        }
+    }
+
+    private void drain(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    // writes the blocks still being compressed, an empty output still gets one empty member to be a valid gzip file
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        try {
+            while (!inFlight.isEmpty()) {
+                writeNext();
+            }
+            if (members == 0) {
+                drain(ByteBuffer.wrap(member(new byte[0])));
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            channel.close();
+        }
+    }
+}
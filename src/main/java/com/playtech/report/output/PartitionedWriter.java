@@ -0,0 +1,382 @@
+package com.playtech.report.output;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.util.collection.LongIntHashMap;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// writes every row to a part file of its value of the partition column, <directory>/<column>=<value>/part-<n>.<format>.
+// the calling thread only groups the rows of a batch by value, the rows are encoded and written by background writers
+// fed through bounded queues. A partition always goes to the same writer, so its rows keep their order, and every
+// writer keeps its share of the open files, closing the one written least recently when it needs another
+public class PartitionedWriter implements ReportOutput {
+    // directory value of the rows where the partition column is null
+    private static final String NULL_VALUE = "__NULL__";
+    private static final int QUEUE_SIZE = 16;
+    // parts are many small files, each gets a smaller buffer than a whole report
+    private static final int PART_BUFFER_SIZE = 1 << 16;
+    private static final Task END = new Task(null);
+
+    private final Path directory;
+    private final Report report;
+    private final String column;
+    private final Long maxFileSize;
+    private final String extension;
+    private final List<Column> outputs;
+    private final Writer[] writers;
+    private volatile IOException failure;
+    private boolean closed;
+
+    public PartitionedWriter(Path directory, Report report, int threads) throws IOException {
+        Report.Partitioning partitioning = report.getOutputPartitioning();
+        this.outputs = report.getOutputs() != null ? report.getOutputs() : List.of();
+        if (partitioning.getColumn() == null) {
+            throw new IllegalArgumentException(ERROR + "Output partitioning needs a column" + RESET);
+        }
+        if (!Columns.names(outputs).contains(partitioning.getColumn().getName())) {
+            throw new IllegalArgumentException(ERROR + "Output partition column " + partitioning.getColumn().getName() + " has to be one of the report outputs" + RESET);
+        }
+        if (partitioning.getMaxFileSize() != null && partitioning.getMaxFileSize() <= 0) {
+            throw new IllegalArgumentException(ERROR + "Output partitioning maxFileSize has to be positive: " + partitioning.getMaxFileSize() + RESET);
+        }
+        if (partitioning.getMaxOpenFiles() < 1) {
+            throw new IllegalArgumentException(ERROR + "Output partitioning maxOpenFiles has to be positive: " + partitioning.getMaxOpenFiles() + RESET);
+        }
+        this.directory = directory;
+        this.report = report;
+        this.column = partitioning.getColumn().getName();
+        this.maxFileSize = partitioning.getMaxFileSize();
+        this.extension = "." + report.getOutputFormat() + (report.getOutputCompression() == Report.Compression.GZIP ? ".gz" : "");
+
+        removeParts(directory);
+        Files.createDirectories(directory);
+
+        // no more writers than open files, every writer needs at least one
+        int count = Math.max(1, Math.min(threads, partitioning.getMaxOpenFiles()));
+        this.writers = new Writer[count];
+        for (int i = 0; i < count; i++) {
+            writers[i] = new Writer(i, partitioning.getMaxOpenFiles() / count);
+        }
+    }
+
+    // the parts of an earlier run, so partitions that have no rows any more don't stay behind
+    private static void removeParts(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> partitions = Files.newDirectoryStream(directory, path -> Files.isDirectory(path) && path.getFileName().toString().contains("="))) {
+            for (Path partition : partitions) {
+                try (DirectoryStream<Path> parts = Files.newDirectoryStream(partition, "part-*")) {
+                    for (Path part : parts) {
+                        Files.delete(part);
+                    }
+                }
+                try (DirectoryStream<Path> left = Files.newDirectoryStream(partition)) {
+                    if (!left.iterator().hasNext()) {
+                        Files.delete(partition);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void write(RowBatch batch) throws IOException {
+        checkFailure();
+        int size = batch.size();
+        if (size == 0) {
+            return;
+        }
+
+        int[] groupOf = new int[size];
+        List<String> names = group(batch.vector(column), size, groupOf);
+        int[] counts = new int[names.size()];
+        for (int row = 0; row < size; row++) {
+            counts[groupOf[row]]++;
+        }
+        int[][] rows = new int[names.size()][];
+        for (int group = 0; group < rows.length; group++) {
+            rows[group] = new int[counts[group]];
+        }
+        Arrays.fill(counts, 0);
+        for (int row = 0; row < size; row++) {
+            int group = groupOf[row];
+            rows[group][counts[group]++] = row;
+        }
+
+        // the writers only get the output columns, vectors are not changed once a batch is handed on
+        RowBatch outputBatch = new RowBatch(batch.capacity());
+        for (Column output : outputs) {
+            ColumnVector vector = batch.vector(output.getName());
+            if (vector != null) {
+                outputBatch.put(output.getName(), vector);
+            }
+        }
+        outputBatch.setSize(size);
+
+        Task[] tasks = new Task[writers.length];
+        for (int group = 0; group < rows.length; group++) {
+            int writer = Math.floorMod(names.get(group).hashCode(), writers.length);
+            if (tasks[writer] == null) {
+                tasks[writer] = new Task(outputBatch);
+            }
+            tasks[writer].add(names.get(group), rows[group]);
+        }
+        for (int writer = 0; writer < writers.length; writer++) {
+            if (tasks[writer] != null) {
+                writers[writer].submit(tasks[writer]);
+            }
+        }
+    }
+
+    // directory name of every group, groupOf gets the group of every row
+    private List<String> group(ColumnVector keys, int size, int[] groupOf) {
+        List<String> names = new ArrayList<>();
+        if (keys == null) {
+            names.add(directoryName(null));
+            return names;
+        }
+        int nullGroup = -1;
+        if (keys instanceof StringVector strings) {
+            // values of the batch dictionary are named once
+            int[] byCode = new int[strings.dictionarySize()];
+            Arrays.fill(byCode, -1);
+            for (int row = 0; row < size; row++) {
+                if (strings.isNull(row)) {
+                    nullGroup = nullGroup < 0 ? addName(names, null) : nullGroup;
+                    groupOf[row] = nullGroup;
+                    continue;
+                }
+                int code = strings.getCode(row);
+                if (byCode[code] < 0) {
+                    byCode[code] = addName(names, strings.decode(code));
+                }
+                groupOf[row] = byCode[code];
+            }
+        } else if (keys instanceof LongVector || keys instanceof DoubleVector) {
+            LongIntHashMap groups = new LongIntHashMap();
+            for (int row = 0; row < size; row++) {
+                if (keys.isNull(row)) {
+                    nullGroup = nullGroup < 0 ? addName(names, null) : nullGroup;
+                    groupOf[row] = nullGroup;
+                    continue;
+                }
+                long key = keys instanceof LongVector longs ? longs.get(row) : Double.doubleToLongBits(((DoubleVector) keys).get(row));
+                int group = groups.get(key);
+                if (group < 0) {
+                    group = addName(names, text(keys.getObject(row)));
+                    groups.put(key, group);
+                }
+                groupOf[row] = group;
+            }
+        } else {
+            Map<String, Integer> groups = new HashMap<>();
+            for (int row = 0; row < size; row++) {
+                String value = text(keys.getObject(row));
+                Integer group = groups.get(value);
+                if (group == null) {
+                    group = addName(names, value);
+                    groups.put(value, group);
+                }
+                groupOf[row] = group;
+            }
+        }
+        return names;
+    }
+
+    private int addName(List<String> names, String value) {
+        names.add(directoryName(value));
+        return names.size() - 1;
+    }
+
+    private static String text(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+    }
+
+    // characters that can't be part of a directory name are percent encoded, like in hive partitions
+    private String directoryName(String value) {
+        if (value == null) {
+            return column + "=" + NULL_VALUE;
+        }
+        if (value.equals(".") || value.equals("..")) {
+            return column + "=" + value.replace(".", "%2E");
+        }
+        StringBuilder name = new StringBuilder(column).append('=');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20 || c == 0x7F || "/\\:=%\"*?<>|".indexOf(c) >= 0) {
+                name.append('%').append(String.format("%02X", (int) c));
+            } else {
+                name.append(c);
+            }
+        }
+        return name.toString();
+    }
+
+    private void checkFailure() throws IOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new IOException("Writing a partition of the output failed: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void fail(Exception e) {
+        if (failure == null) {
+            failure = e instanceof IOException io ? io : new IOException(e);
+        }
+    }
+
+    // waits for the writers to write what they were given and close their files
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Writer writer : writers) {
+            writer.submit(END);
+        }
+        for (Writer writer : writers) {
+            writer.join();
+        }
+        checkFailure();
+    }
+
+    // the rows of one batch for one writer, by partition
+    private static final class Task {
+        private final RowBatch batch;
+        private final List<String> partitions = new ArrayList<>();
+        private final List<int[]> rows = new ArrayList<>();
+
+        private Task(RowBatch batch) {
+            this.batch = batch;
+        }
+
+        private void add(String partition, int[] partitionRows) {
+            partitions.add(partition);
+            rows.add(partitionRows);
+        }
+    }
+
+    private final class Writer implements Runnable {
+        private final BlockingQueue<Task> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        private final Thread thread;
+        private final int maxOpenFiles;
+        // open parts by partition, the one written least recently first
+        private final LinkedHashMap<String, ReportWriter> open = new LinkedHashMap<>(16, 0.75f, true);
+        // number of the next part of every partition, a partition whose part was closed continues in a new one
+        private final Map<String, Integer> nextPart = new HashMap<>();
+
+        private Writer(int index, int maxOpenFiles) {
+            this.maxOpenFiles = Math.max(1, maxOpenFiles);
+            this.thread = new Thread(this, "partition-writer-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void submit(Task task) throws IOException {
+            try {
+                queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while handing rows to a partition writer");
+            }
+        }
+
+        private void join() throws IOException {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a partition writer");
+            }
+        }
+
+        // after a failure the tasks are still taken, so the thread handing them on doesn't wait on a full queue
+        @Override
+        public void run() {
+            try {
+                for (Task task = queue.take(); task != END; task = queue.take()) {
+                    if (failure != null) {
+                        continue;
+                    }
+                    try {
+                        for (int i = 0; i < task.partitions.size(); i++) {
+                            write(task.partitions.get(i), task.batch, task.rows.get(i));
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                    }
+                }
+            } catch (InterruptedException e) {
+                fail(new InterruptedIOException("Partition writer interrupted"));
+            } finally {
+                closeAll();
+            }
+        }
+
+        private void write(String partition, RowBatch batch, int[] rows) throws IOException {
+            ReportWriter part = open.get(partition);
+            if (part == null) {
+                if (open.size() >= maxOpenFiles) {
+                    Iterator<ReportWriter> leastRecent = open.values().iterator();
+                    ReportWriter closing = leastRecent.next();
+                    leastRecent.remove();
+                    closing.close();
+                }
+                part = openPart(partition);
+                open.put(partition, part);
+            }
+            part.write(batch, rows, rows.length);
+            if (maxFileSize != null && part.size() >= maxFileSize) {
+                open.remove(partition);
+                part.close();
+            }
+        }
+
+        private ReportWriter openPart(String partition) throws IOException {
+            Path partitionDirectory = directory.resolve(partition);
+            Files.createDirectories(partitionDirectory);
+            int number = nextPart.merge(partition, 1, Integer::sum) - 1;
+            return ReportWriter.open(partitionDirectory.resolve("part-" + number + extension), report, 1, PART_BUFFER_SIZE);
+        }
+
+        private void closeAll() {
+            for (ReportWriter part : open.values()) {
+                try {
+                    part.close();
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                }
+            }
+            open.clear();
+        }
+    }
+}
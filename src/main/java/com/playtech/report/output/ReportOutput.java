@@ -0,0 +1,21 @@
+package com.playtech.report.output;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+// where the batches that come out of a report go: one file, or a directory of files per value of a column
+public interface ReportOutput extends Closeable {
+    void write(RowBatch batch) throws IOException;
+
+    // path is the file of the report, or its directory when the report has an output partitioning
+    static ReportOutput open(Path path, Report report, int threads) throws IOException {
+        if (report.getOutputPartitioning() != null) {
+            return new PartitionedWriter(path, report, threads);
+        }
+        return ReportWriter.open(path, report, threads);
+    }
+}
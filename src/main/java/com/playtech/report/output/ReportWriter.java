@@ -0,0 +1,86 @@
+package com.playtech.report.output;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Function;
+
+// writes the declared report outputs of every batch, in the declared order
+public abstract class ReportWriter implements ReportOutput {
+    protected final OutputBuffer out;
+    protected final OutputColumn[] columns;
+
+    // textEncoder turns a string value into the bytes that go into the file, with quotes and escapes
+    protected ReportWriter(OutputBuffer out, List<Column> outputs, Function<String, byte[]> textEncoder) {
+        this.out = out;
+        this.columns = new OutputColumn[outputs.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = new OutputColumn(outputs.get(i), textEncoder);
+        }
+    }
+
+    public static ReportWriter open(Path file, Report report) throws IOException {
+        return open(file, report, 1);
+    }
+
+    // a compressed output is deflated on the given number of threads, one buffer flush at a time
+    public static ReportWriter open(Path file, Report report, int threads) throws IOException {
+        return open(file, report, threads, OutputBuffer.DEFAULT_SIZE);
+    }
+
+    public static ReportWriter open(Path file, Report report, int threads, int bufferSize) throws IOException {
+        WritableByteChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        if (report.getOutputCompression() == Report.Compression.GZIP) {
+            channel = new ParallelGzipChannel(channel, threads);
+        }
+        OutputBuffer out = new OutputBuffer(channel, bufferSize);
+        List<Column> outputs = report.getOutputs() != null ? report.getOutputs() : List.of();
+        try {
+            return switch (report.getOutputFormat()) {
+                case JSONL -> new JsonlWriter(out, outputs);
+                case CSV -> new CsvWriter(out, outputs);
+            };
+        } catch (IOException | RuntimeException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    public void write(RowBatch batch) throws IOException {
+        for (OutputColumn column : columns) {
+            column.bind(batch);
+        }
+        for (int row = 0; row < batch.size(); row++) {
+            writeRow(row);
+        }
+    }
+
+    // only the given rows of the batch, in the given order
+    public void write(RowBatch batch, int[] rows, int count) throws IOException {
+        for (OutputColumn column : columns) {
+            column.bind(batch);
+        }
+        for (int i = 0; i < count; i++) {
+            writeRow(rows[i]);
+        }
+    }
+
+    // bytes written so far, before compression
+    public long size() {
+        return out.size();
+    }
+
+    protected abstract void writeRow(int row) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
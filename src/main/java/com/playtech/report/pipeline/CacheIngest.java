@@ -0,0 +1,280 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+import com.playtech.report.metrics.StageMetrics;
+import com.playtech.report.reject.RejectReason;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.RowFilter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// reads the row batches of a csv from its column cache instead: only the chunks of the fields the plan reads are
+// mapped, and blocks whose min/max the ingest filters can't match are skipped. The lines and values the csv parser
+// would reject are rejected the same way and in the same order, so the output and the rejections don't change.
+// ranges are in blocks of the cache
+public class CacheIngest implements ParallelIngest.RangeReader {
+    // rejected lines are handed to the side file this many at a time
+    private static final int REJECT_FLUSH_LINES = 256;
+
+    private final ColumnCache cache;
+    private final int[] fields;
+    private final Rejections rejections;
+    private final StageMetrics metrics;
+    private final RowFilter[] filters;
+    // batch column of every filter input, -1 when the csv doesn't have it
+    private final int[][] filterColumns;
+    // place of every batch column in the order the csv parser would parse it, the ones the filters read first
+    private final int[] parseRank;
+    private final int filterColumnCount;
+
+    public CacheIngest(ColumnCache cache, int[] fields, Rejections rejections, StageMetrics metrics, List<RowFilter> filters) {
+        this.cache = cache;
+        this.fields = fields;
+        this.rejections = rejections;
+        this.metrics = metrics;
+        this.filters = filters.toArray(new RowFilter[0]);
+
+        this.filterColumns = new int[this.filters.length][];
+        this.parseRank = new int[fields.length];
+        Arrays.fill(parseRank, -1);
+        int rank = 0;
+        for (int f = 0; f < this.filters.length; f++) {
+            List<Column> inputs = this.filters[f].inputColumns();
+            filterColumns[f] = new int[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                filterColumns[f][i] = columnOf(inputs.get(i).getName());
+                if (filterColumns[f][i] >= 0 && parseRank[filterColumns[f][i]] < 0) {
+                    parseRank[filterColumns[f][i]] = rank++;
+                }
+            }
+        }
+        this.filterColumnCount = rank;
+        for (int column = 0; column < fields.length; column++) {
+            if (parseRank[column] < 0) {
+                parseRank[column] = rank++;
+            }
+        }
+    }
+
+    private int columnOf(String name) {
+        for (int column = 0; column < fields.length; column++) {
+            if (cache.headers()[fields[column]].equals(name)) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    public int blockCount() {
+        return cache.blockCount();
+    }
+
+    // reads every block, returns the number of skipped lines
+    public int read(Consumer<RowBatch> target) throws IOException {
+        return read(0, cache.blockCount(), target);
+    }
+
+    @Override
+    public int read(long start, long end, Consumer<RowBatch> target) throws IOException {
+        Scan scan = new Scan();
+        if (metrics == null) {
+            scan.run((int) start, (int) end, target);
+            return scan.skippedLines;
+        }
+
+        long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+        long[] rows = new long[1];
+        scan.run((int) start, (int) end, batch -> {
+            long downstreamWall = StageMetrics.wallClock(), downstreamCpu = StageMetrics.cpuClock(), downstreamAllocation = StageMetrics.allocationClock();
+            rows[0] += batch.size();
+            target.accept(batch);
+            metrics.exclude(downstreamWall, downstreamCpu, downstreamAllocation);
+        });
+        metrics.addBytes(scan.bytes);
+        metrics.record(rows[0] + scan.skippedLines + scan.filteredRows, rows[0], wall, cpu, allocation);
+        return scan.skippedLines;
+    }
+
+    // one read of a range of blocks
+    private final class Scan {
+        private final List<String> rejectedLines = new ArrayList<>();
+        private int skippedLines;
+        private long filteredRows;
+        private long bytes;
+
+        void run(int start, int end, Consumer<RowBatch> target) throws IOException {
+            for (int block = start; block < end; block++) {
+                readBlock(block, target);
+            }
+            rejections.flush(rejectedLines);
+        }
+
+        private void readBlock(int block, Consumer<RowBatch> target) throws IOException {
+            int rows = cache.blockRows(block);
+            List<ColumnCache.RejectedLine> lines = cache.rejectedLines(block);
+            if (!mayMatch(block)) {
+                filteredRows += rows;
+                List<Rejected> rejected = new ArrayList<>();
+                for (ColumnCache.RejectedLine line : lines) {
+                    rejected.add(columnCount(line));
+                }
+                reject(rejected);
+                return;
+            }
+
+            ColumnCache.Chunk[] chunks = new ColumnCache.Chunk[fields.length];
+            for (int column = 0; column < fields.length; column++) {
+                chunks[column] = cache.chunk(block, fields[column]);
+                bytes += cache.chunkLength(block, fields[column]);
+            }
+
+            int nextLine = 0;
+            // a block without rows still has its rejected lines
+            for (int first = 0; first < rows || first == 0; first += RowBatch.DEFAULT_CAPACITY) {
+                int size = Math.min(RowBatch.DEFAULT_CAPACITY, rows - first);
+                boolean lastBatch = first + size >= rows;
+                List<Rejected> rejected = new ArrayList<>();
+                long firstRow = cache.blockFirstRow(block) + first;
+                while (nextLine < lines.size() && (lastBatch || lines.get(nextLine).rowsBefore() < firstRow + size)) {
+                    rejected.add(columnCount(lines.get(nextLine++)));
+                }
+                RowBatch batch = readBatch(block, chunks, first, size, rejected);
+                reject(rejected);
+                if (batch.size() > 0) {
+                    rejections.rowsRead(batch.size());
+                    target.accept(batch);
+                }
+            }
+        }
+
+        // a block is only skipped when none of the values the report reads was invalid, the csv parser would
+        // reject those lines before the filters see them
+        private boolean mayMatch(int block) {
+            if (filters.length == 0) {
+                return true;
+            }
+            long firstRow = cache.blockFirstRow(block), endRow = firstRow + cache.blockRows(block);
+            for (int field : fields) {
+                if (!cache.invalidValues(field, firstRow, endRow).isEmpty()) {
+                    return true;
+                }
+            }
+            for (int f = 0; f < filters.length; f++) {
+                ColumnVector[] bounds = new ColumnVector[filterColumns[f].length];
+                for (int i = 0; i < bounds.length; i++) {
+                    bounds[i] = filterColumns[f][i] < 0 ? null : cache.bounds(block, fields[filterColumns[f][i]]);
+                }
+                if (!filters[f].mayMatch(bounds)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private RowBatch readBatch(int block, ColumnCache.Chunk[] chunks, int first, int size, List<Rejected> rejected) {
+            RowBatch batch = new RowBatch(RowBatch.DEFAULT_CAPACITY);
+            for (int column = 0; column < fields.length; column++) {
+                ColumnVector vector = ColumnVector.create(cache.type(fields[column]), cache.scale(fields[column]), RowBatch.DEFAULT_CAPACITY);
+                chunks[column].decode(first, size, vector);
+                batch.put(cache.headers()[fields[column]], vector);
+            }
+            batch.setSize(size);
+
+            // the invalid value the csv parser would have failed on first, for every row that has one
+            long firstRow = cache.blockFirstRow(block) + first;
+            ColumnCache.InvalidValue[] invalid = null;
+            int[] invalidColumn = null;
+            for (int column = 0; column < fields.length; column++) {
+                for (ColumnCache.InvalidValue value : cache.invalidValues(fields[column], firstRow, firstRow + size)) {
+                    int row = (int) (value.row() - firstRow);
+                    if (invalid == null) {
+                        invalid = new ColumnCache.InvalidValue[size];
+                        invalidColumn = new int[size];
+                    }
+                    if (invalid[row] == null || parseRank[column] < parseRank[invalidColumn[row]]) {
+                        invalid[row] = value;
+                        invalidColumn[row] = column;
+                    }
+                }
+            }
+            if (invalid == null && filters.length == 0) {
+                return batch;
+            }
+
+            boolean[] drop = new boolean[size];
+            boolean dropped = false;
+            ColumnVector[][] filterInputs = filterInputs(batch);
+            for (int row = 0; row < size; row++) {
+                if (invalid != null && invalid[row] != null && parseRank[invalidColumn[row]] < filterColumnCount) {
+                    rejected.add(typeMismatch(invalid[row], invalidColumn[row]));
+                    drop[row] = dropped = true;
+                } else if (!accepts(filterInputs, row)) {
+                    filteredRows++;
+                    drop[row] = dropped = true;
+                } else if (invalid != null && invalid[row] != null) {
+                    rejected.add(typeMismatch(invalid[row], invalidColumn[row]));
+                    drop[row] = dropped = true;
+                }
+            }
+            if (dropped) {
+                batch.removeRows(drop);
+            }
+            return batch;
+        }
+
+        private ColumnVector[][] filterInputs(RowBatch batch) {
+            ColumnVector[][] inputs = new ColumnVector[filters.length][];
+            for (int f = 0; f < filters.length; f++) {
+                inputs[f] = new ColumnVector[filterColumns[f].length];
+                for (int i = 0; i < filterColumns[f].length; i++) {
+                    inputs[f][i] = filterColumns[f][i] < 0 ? null : batch.vector(filterColumns[f][i]);
+                }
+            }
+            return inputs;
+        }
+
+        private boolean accepts(ColumnVector[][] filterInputs, int row) {
+            for (int f = 0; f < filters.length; f++) {
+                if (!filters[f].test(filterInputs[f], row)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Rejected columnCount(ColumnCache.RejectedLine line) {
+            return new Rejected(line.line(), RejectReason.COLUMN_COUNT, null,
+                    " (" + line.fieldCount() + " fields instead of " + cache.headers().length + ")", line.text());
+        }
+
+        private Rejected typeMismatch(ColumnCache.InvalidValue value, int column) {
+            return new Rejected(value.line(), RejectReason.TYPE_MISMATCH, cache.headers()[fields[column]],
+                    " (" + cache.type(fields[column]) + " expected, got '" + value.value() + "')", value.text());
+        }
+
+        // in line order, like the csv parser finds them
+        private void reject(List<Rejected> rejected) {
+            rejected.sort(Comparator.comparingLong(Rejected::line));
+            for (Rejected line : rejected) {
+                rejections.rejectLine(line.reason(), line.column(), "line " + line.line() + line.detail(), line.text());
+                if (rejections.writesLines()) {
+                    rejectedLines.add(line.text());
+                    if (rejectedLines.size() >= REJECT_FLUSH_LINES) {
+                        rejections.flush(rejectedLines);
+                    }
+                }
+            }
+            skippedLines += rejected.size();
+        }
+    }
+
+    private record Rejected(long line, RejectReason reason, String column, String detail, String text) {
+    }
+}
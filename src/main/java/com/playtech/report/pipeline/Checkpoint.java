@@ -0,0 +1,179 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.report.transformer.PersistentState;
+import com.playtech.report.transformer.Transformer;
+import com.playtech.util.csv.RecordScanner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+// what an incremental run leaves next to its output: how far the csv was read, a CRC32C of the bytes up to there
+// and the saved state of the report's first blocking transformer. The next run checks the checksum, loads the state
+// and only reads the lines appended after the offset, a csv that was changed anywhere before the offset is read again
+public final class Checkpoint {
+    private static final int MAGIC = 0x52505453;
+    private static final int VERSION = 2;
+
+    private final long offset;
+    private final long checksum;
+    private final byte[] state;
+
+    private Checkpoint(long offset, long checksum, byte[] state) {
+        this.offset = offset;
+        this.checksum = checksum;
+        this.state = state;
+    }
+
+    // the state after reading the csv up to the end of the prefix
+    public static Checkpoint capture(Prefix prefix, PersistentState state) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            state.save(out);
+        }
+        return new Checkpoint(prefix.length(), prefix.checksum(), bytes.toByteArray());
+    }
+
+    // a state is only used again by the same report over a csv with the same header and with the same files
+    // the transformers read, like the dimension of a Lookup
+    public static String fingerprint(String[] headers, ExecutionPlan plan) throws IOException {
+        StringBuilder fingerprint = new StringBuilder(String.join(",", headers)).append('\n').append(plan.explain());
+        List<Transformer> transformers = plan.getReport().getTransformers() != null ? plan.getReport().getTransformers() : List.of();
+        for (Transformer transformer : transformers) {
+            for (Path file : transformer.files()) {
+                fingerprint.append('\n').append(file.toAbsolutePath().normalize());
+                if (Files.exists(file)) {
+                    fingerprint.append(' ').append(Files.size(file)).append(' ').append(Files.getLastModifiedTime(file).toMillis());
+                }
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    // null when there is no state file or it was written for another report or csv header
+    public static Checkpoint read(Path file, String fingerprint) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || !BatchSerializer.readString(in).equals(fingerprint)) {
+                return null;
+            }
+            long offset = in.readLong();
+            long checksum = in.readLong();
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            return new Checkpoint(offset, checksum, state);
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    // the state file is replaced in one step, an interrupted run leaves the previous one in place
+    public void write(Path file, String fingerprint) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            BatchSerializer.writeString(out, fingerprint);
+            out.writeLong(offset);
+            out.writeLong(checksum);
+            out.writeInt(state.length);
+            out.write(state);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    // whether the csv still starts with what was read before, so only new lines are after the offset. The prefix has
+    // to be empty, it is extended to the offset
+    public boolean matches(Prefix prefix, long csvSize) throws IOException {
+        if (csvSize < offset) {
+            return false;
+        }
+        prefix.extend(offset);
+        return prefix.checksum() == checksum;
+    }
+
+    public void restore(PersistentState target) throws IOException {
+        target.load(new DataInputStream(new ByteArrayInputStream(state)));
+    }
+
+    // end of the last complete record at or after start, a record that is still being appended is left for the next run.
+    // start has to be a record start, the records are followed from there so a line break inside quotes ends none
+    public static long completeLinesEnd(Path csv, long start, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+            RecordScanner scanner = new RecordScanner();
+            long end = start;
+            for (long position = start; position < size; position += block.limit()) {
+                block.clear().limit((int) Math.min(block.capacity(), size - position));
+                readFully(channel, block, position);
+                for (int recordEnd = scanner.recordEnd(block, 0, block.limit()); recordEnd >= 0;
+                     recordEnd = scanner.recordEnd(block, recordEnd, block.limit())) {
+                    end = position + recordEnd;
+                }
+            }
+            return end;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("CSV file ended at byte " + (position + buffer.position()));
+            }
+        }
+    }
+
+    // CRC32C of the first bytes of a csv, extended as the run reads further
+    public static final class Prefix {
+        private static final int WINDOW_SIZE = 1 << 26;
+
+        private final Path csv;
+        private final CRC32C crc = new CRC32C();
+        private long length;
+
+        public Prefix(Path csv) {
+            this.csv = csv;
+        }
+
+        // takes the bytes up to end into the checksum
+        public void extend(long end) throws IOException {
+            if (end <= length) {
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+                while (length < end) {
+                    int window = (int) Math.min(WINDOW_SIZE, end - length);
+                    crc.update(channel.map(FileChannel.MapMode.READ_ONLY, length, window));
+                    length += window;
+                }
+            }
+        }
+
+        public long length() {
+            return length;
+        }
+
+        public long checksum() {
+            return crc.getValue();
+        }
+    }
+}
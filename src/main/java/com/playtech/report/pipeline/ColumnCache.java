@@ -0,0 +1,474 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// a csv converted into typed columns and kept next to it as <csv>.colcache, so later reports over the same csv
+// don't parse the text again. Rows are stored in blocks of BLOCK_ROWS, every column of a block in a chunk of its own
+// that is only mapped when a report reads the column, and the smallest and largest value of every chunk are kept
+// so blocks a filter can't match are not read at all.
+//
+// layout: MAGIC and VERSION, the chunks, then the footer, its offset and MAGIC again. The footer identifies the csv
+// it was made from by size, modification time and a hash of its first and last bytes, which is what every run checks,
+// and by a checksum of the whole csv that only Mode.VERIFY checks. It has the header and the type of every column, where every chunk is with its min/max, and the values and lines the csv parser would reject,
+// so a report reading the cache rejects the same ones
+public final class ColumnCache implements Closeable {
+    public static final String SUFFIX = ".colcache";
+    static final int BLOCK_ROWS = 16 * RowBatch.DEFAULT_CAPACITY;
+    static final int MAGIC = 0x52504343;
+    static final int VERSION = 2;
+    // the hash covers this many bytes at the start and at the end of the csv
+    private static final int HASHED_BYTES = 64 * 1024;
+    private static final int CHECKSUM_WINDOW = 1 << 26;
+
+    // how a run uses the cache. ON takes a cache whose csv has the same size, modification time and first and last
+    // bytes, so a change in the middle of the csv that keeps its size and time goes unnoticed. VERIFY also compares
+    // the checksum of the whole csv, which reads all of it once
+    public enum Mode {
+        OFF,
+        ON,
+        VERIFY
+    }
+
+    private final FileChannel channel;
+    private final String[] headers;
+    private final Column.DataType[] types;
+    private final int[] scales;
+    private final int[] blockRows;
+    // [block][column]
+    private final long[][] chunkOffsets;
+    private final int[][] chunkLengths;
+    private final ColumnVector[][] bounds;
+    // per column, ordered by row
+    private final InvalidValue[][] invalidValues;
+    // per block, ordered by line
+    private final List<List<RejectedLine>> rejectedLines;
+
+    // a value that didn't match the type of its column, stored as null
+    record InvalidValue(long row, long line, String value, String text) {
+    }
+
+    // a line with the wrong number of fields, rowsBefore is the number of stored rows that come before it
+    record RejectedLine(long rowsBefore, long line, int fieldCount, String text) {
+    }
+
+    // CRC32C of the whole csv
+    static long checksum(Path csv) throws IOException {
+        try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+            long size = channel.size();
+            CRC32C crc = new CRC32C();
+            for (long offset = 0; offset < size; offset += CHECKSUM_WINDOW) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHECKSUM_WINDOW, size - offset)));
+            }
+            return crc.getValue();
+        }
+    }
+
+    // what the cache was made from
+    record Source(long size, long modified, long hash) {
+        static Source of(Path csv) throws IOException {
+            try (FileChannel channel = FileChannel.open(csv, StandardOpenOption.READ)) {
+                long size = channel.size();
+                CRC32C crc = new CRC32C();
+                crc.update(readAt(channel, 0, (int) Math.min(HASHED_BYTES, size)));
+                crc.update(readAt(channel, Math.max(0, size - HASHED_BYTES), (int) Math.min(HASHED_BYTES, size)));
+                return new Source(size, Files.getLastModifiedTime(csv).toMillis(), crc.getValue());
+            }
+        }
+    }
+
+    private ColumnCache(FileChannel channel, DataInputStream footer) throws IOException {
+        this.channel = channel;
+        int columns = footer.readInt();
+        headers = new String[columns];
+        types = new Column.DataType[columns];
+        scales = new int[columns];
+        for (int column = 0; column < columns; column++) {
+            headers[column] = BatchSerializer.readString(footer);
+            types[column] = Column.DataType.valueOf(BatchSerializer.readString(footer));
+            scales[column] = footer.readInt();
+        }
+
+        int blocks = footer.readInt();
+        blockRows = new int[blocks];
+        chunkOffsets = new long[blocks][columns];
+        chunkLengths = new int[blocks][columns];
+        bounds = new ColumnVector[blocks][columns];
+        for (int block = 0; block < blocks; block++) {
+            blockRows[block] = footer.readInt();
+            for (int column = 0; column < columns; column++) {
+                chunkOffsets[block][column] = footer.readLong();
+                chunkLengths[block][column] = footer.readInt();
+                bounds[block][column] = readBounds(footer, types[column], scales[column]);
+            }
+        }
+
+        invalidValues = new InvalidValue[columns][];
+        for (int column = 0; column < columns; column++) {
+            invalidValues[column] = new InvalidValue[footer.readInt()];
+            for (int i = 0; i < invalidValues[column].length; i++) {
+                invalidValues[column][i] = new InvalidValue(footer.readLong(), footer.readLong(),
+                        BatchSerializer.readString(footer), BatchSerializer.readString(footer));
+            }
+        }
+
+        rejectedLines = new ArrayList<>();
+        for (int block = 0; block < blocks; block++) {
+            rejectedLines.add(new ArrayList<>());
+        }
+        int count = footer.readInt();
+        for (int i = 0; i < count; i++) {
+            RejectedLine line = new RejectedLine(footer.readLong(), footer.readLong(), footer.readInt(), BatchSerializer.readString(footer));
+            rejectedLines.get((int) Math.min(line.rowsBefore() / BLOCK_ROWS, blocks - 1)).add(line);
+        }
+    }
+
+    public static Path pathFor(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + SUFFIX);
+    }
+
+    // the cache of the csv with the given fields stored as the types of the columns of the same name, undeclared
+    // ones as strings. It is built when there is none, when the csv changed since, or when a field was stored as
+    // another type, other columns then keep their types so reports reading different columns don't rebuild it in turn
+    public static ColumnCache load(Path csv, String[] headers, int[] fields, Map<String, Column> inputColumns) throws IOException {
+        return load(csv, headers, fields, inputColumns, Mode.ON);
+    }
+
+    public static ColumnCache load(Path csv, String[] headers, int[] fields, Map<String, Column> inputColumns, Mode mode) throws IOException {
+        Path file = pathFor(csv);
+        ColumnCache cache = open(file, csv, mode == Mode.VERIFY);
+        if (cache != null && cache.stores(headers, fields, inputColumns)) {
+            return cache;
+        }
+
+        Column.DataType[] types = new Column.DataType[headers.length];
+        int[] scales = new int[headers.length];
+        boolean reuse = cache != null && Arrays.equals(cache.headers, headers);
+        for (int field = 0; field < headers.length; field++) {
+            Column column = inputColumns.get(headers[field]);
+            types[field] = column != null ? column.getType() : reuse ? cache.types[field] : Column.DataType.STRING;
+            scales[field] = column != null ? column.getScale() : reuse ? cache.scales[field] : Column.DEFAULT_SCALE;
+        }
+        if (cache != null) {
+            cache.close();
+        }
+
+        ColumnCacheWriter.write(csv, file, headers, types, scales);
+        cache = open(file, csv, false);
+        if (cache == null) {
+            throw new IOException(ERROR + "The column cache " + file + " was changed while it was written" + RESET);
+        }
+        return cache;
+    }
+
+    // null when there is no cache or it was made from another version of the csv
+    static ColumnCache open(Path file, Path csv, boolean verify) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        try {
+            long size = channel.size();
+            ByteBuffer head = readAt(channel, 0, 8);
+            ByteBuffer tail = readAt(channel, size - 12, 12);
+            if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION || tail.getInt(8) != MAGIC) {
+                channel.close();
+                return null;
+            }
+            long footerOffset = tail.getLong(0);
+            ByteBuffer footerBytes = readAt(channel, footerOffset, (int) (size - 12 - footerOffset));
+            DataInputStream footer = new DataInputStream(new ByteArrayInputStream(footerBytes.array()));
+            Source source = new Source(footer.readLong(), footer.readLong(), footer.readLong());
+            long checksum = footer.readLong();
+            if (!source.equals(Source.of(csv)) || verify && checksum != checksum(csv)) {
+                channel.close();
+                return null;
+            }
+            return new ColumnCache(channel, footer);
+        } catch (EOFException | IllegalArgumentException e) {
+            // a cache that was cut short
+            channel.close();
+            return null;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private boolean stores(String[] csvHeaders, int[] fields, Map<String, Column> inputColumns) {
+        if (!Arrays.equals(headers, csvHeaders)) {
+            return false;
+        }
+        for (int field : fields) {
+            Column column = inputColumns.get(headers[field]);
+            Column.DataType type = column == null ? Column.DataType.STRING : column.getType();
+            if (types[field] != type || type == Column.DataType.DECIMAL && scales[field] != column.getScale()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String[] headers() {
+        return headers;
+    }
+
+    Column.DataType type(int column) {
+        return types[column];
+    }
+
+    int scale(int column) {
+        return scales[column];
+    }
+
+    int blockCount() {
+        return blockRows.length;
+    }
+
+    int blockRows(int block) {
+        return blockRows[block];
+    }
+
+    long blockFirstRow(int block) {
+        return (long) block * BLOCK_ROWS;
+    }
+
+    // smallest value of the column in row 0 and largest in row 1, see RowFilter.mayMatch
+    ColumnVector bounds(int block, int column) {
+        return bounds[block][column];
+    }
+
+    int chunkLength(int block, int column) {
+        return chunkLengths[block][column];
+    }
+
+    Chunk chunk(int block, int column) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkOffsets[block][column], chunkLengths[block][column]);
+        return new Chunk(buffer, types[column], blockRows[block]);
+    }
+
+    // the invalid values of the column in rows [start, end)
+    List<InvalidValue> invalidValues(int column, long start, long end) {
+        InvalidValue[] values = invalidValues[column];
+        int low = 0, high = values.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle].row() < start) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        int last = low;
+        while (last < values.length && values[last].row() < end) {
+            last++;
+        }
+        return Arrays.asList(values).subList(low, last);
+    }
+
+    List<RejectedLine> rejectedLines(int block) {
+        return rejectedLines.get(block);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static ColumnVector readBounds(DataInputStream in, Column.DataType type, int scale) throws IOException {
+        ColumnVector bounds = ColumnVector.create(type, scale, 2);
+        if (!in.readBoolean()) {
+            bounds.setNull(0);
+            bounds.setNull(1);
+            return bounds;
+        }
+        for (int row = 0; row < 2; row++) {
+            switch (type) {
+                case INTEGER, DATE, DATETIME -> ((LongVector) bounds).set(row, in.readLong());
+                case DOUBLE -> ((DoubleVector) bounds).set(row, in.readDouble());
+                case DECIMAL -> ((DecimalVector) bounds).set(row, new BigDecimal(BatchSerializer.readString(in)));
+                case STRING -> ((StringVector) bounds).set(row, BatchSerializer.readString(in));
+            }
+        }
+        return bounds;
+    }
+
+    static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new EOFException();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        return buffer;
+    }
+
+    // words of a bit packed array of count values of the given width
+    static int words(int count, int width) {
+        return (int) (((long) count * width + 63) >>> 6);
+    }
+
+    // one column of one block, decoded a batch at a time. Values are frame of reference bit packed longs, for a
+    // DECIMAL the unscaled ones, plain doubles, or codes into a dictionary of the block's distinct strings
+    static final class Chunk {
+        private final ByteBuffer buffer;
+        private final Column.DataType type;
+        // position of the null bitmap, -1 when the chunk has no nulls
+        private final int nulls;
+        // position of the packed values, or of the doubles
+        private final int values;
+        private long reference;
+        private int width;
+        private String[] dictionary;
+        // code of every dictionary string in the batch being decoded, -1 until it is used
+        private int[] batchCodes;
+        // DECIMAL values that don't fit a long, by row
+        private Map<Integer, BigDecimal> wide = Map.of();
+
+        Chunk(ByteBuffer buffer, Column.DataType type, int rows) {
+            this.buffer = buffer;
+            this.type = type;
+            int position = 0;
+            boolean hasNulls = buffer.get(position++) != 0;
+            this.nulls = hasNulls ? position : -1;
+            position += hasNulls ? words(rows, 1) * 8 : 0;
+
+            if (type == Column.DataType.STRING) {
+                dictionary = new String[buffer.getInt(position)];
+                position += 4;
+                for (int code = 0; code < dictionary.length; code++) {
+                    byte[] bytes = new byte[buffer.getInt(position)];
+                    buffer.get(position + 4, bytes);
+                    dictionary[code] = new String(bytes, StandardCharsets.UTF_8);
+                    position += 4 + bytes.length;
+                }
+                batchCodes = new int[dictionary.length];
+                width = buffer.get(position++);
+            } else if (type != Column.DataType.DOUBLE) {
+                reference = buffer.getLong(position);
+                width = buffer.get(position + 8);
+                position += 9;
+            }
+            this.values = position;
+
+            if (type == Column.DataType.DECIMAL) {
+                position += words(rows, width) * 8;
+                int count = buffer.getInt(position);
+                position += 4;
+                wide = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    int row = buffer.getInt(position);
+                    byte[] bytes = new byte[buffer.getInt(position + 4)];
+                    buffer.get(position + 8, bytes);
+                    wide.put(row, new BigDecimal(new String(bytes, StandardCharsets.US_ASCII)));
+                    position += 8 + bytes.length;
+                }
+            }
+        }
+
+        // rows [first, first + count) of the chunk into rows from 0 of the target
+        void decode(int first, int count, ColumnVector target) {
+            switch (type) {
+                case INTEGER, DATE, DATETIME -> {
+                    LongVector longs = (LongVector) target;
+                    for (int row = 0; row < count; row++) {
+                        if (isNull(first + row)) {
+                            longs.setNull(row);
+                        } else {
+                            longs.set(row, reference + unpack(first + row));
+                        }
+                    }
+                }
+                case DOUBLE -> {
+                    DoubleVector doubles = (DoubleVector) target;
+                    for (int row = 0; row < count; row++) {
+                        if (isNull(first + row)) {
+                            doubles.setNull(row);
+                        } else {
+                            doubles.set(row, buffer.getDouble(values + (first + row) * 8));
+                        }
+                    }
+                }
+                case DECIMAL -> {
+                    DecimalVector decimals = (DecimalVector) target;
+                    for (int row = 0; row < count; row++) {
+                        if (isNull(first + row)) {
+                            decimals.setNull(row);
+                        } else if (!wide.isEmpty() && wide.containsKey(first + row)) {
+                            decimals.set(row, wide.get(first + row));
+                        } else {
+                            decimals.setUnscaled(row, reference + unpack(first + row));
+                        }
+                    }
+                }
+                case STRING -> {
+                    StringVector strings = (StringVector) target;
+                    Arrays.fill(batchCodes, -1);
+                    for (int row = 0; row < count; row++) {
+                        if (isNull(first + row)) {
+                            strings.setNull(row);
+                            continue;
+                        }
+                        int code = (int) unpack(first + row);
+                        if (batchCodes[code] < 0) {
+                            batchCodes[code] = strings.encode(dictionary[code]);
+                        }
+                        strings.setCode(row, batchCodes[code]);
+                    }
+                }
+            }
+        }
+
+        private boolean isNull(int row) {
+            return nulls >= 0 && (buffer.getLong(nulls + (row >>> 6) * 8) >>> (row & 63) & 1) != 0;
+        }
+
+        private long unpack(int row) {
+            if (width == 0) {
+                return 0;
+            }
+            long bit = (long) row * width;
+            int word = (int) (bit >>> 6), shift = (int) (bit & 63);
+            long value = buffer.getLong(values + word * 8) >>> shift;
+            if (shift + width > 64) {
+                value |= buffer.getLong(values + (word + 1) * 8) << (64 - shift);
+            }
+            return width == 64 ? value : value & ((1L << width) - 1);
+        }
+    }
+}
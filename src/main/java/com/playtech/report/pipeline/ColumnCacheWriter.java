@@ -0,0 +1,352 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatchBuilder;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.util.csv.CsvReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.playtech.report.pipeline.ColumnCache.BLOCK_ROWS;
+import static com.playtech.report.pipeline.ColumnCache.words;
+
+// converts a csv into the layout ColumnCache reads, in one pass over the csv with every column parsed
+final class ColumnCacheWriter {
+    private final FileChannel out;
+    private final String[] headers;
+    private final Column.DataType[] types;
+    private final int[] scales;
+    private long position;
+    private long rows;
+    private int blocks;
+    private ColumnVector[] block;
+    private int blockSize;
+    // rows of every block, position, length and min/max of its chunks
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final List<List<ColumnCache.InvalidValue>> invalidValues = new ArrayList<>();
+    private final List<ColumnCache.RejectedLine> rejectedLines = new ArrayList<>();
+
+    private ColumnCacheWriter(FileChannel out, String[] headers, Column.DataType[] types, int[] scales) {
+        this.out = out;
+        this.headers = headers;
+        this.types = types;
+        this.scales = scales;
+        for (int i = 0; i < headers.length; i++) {
+            invalidValues.add(new ArrayList<>());
+        }
+    }
+
+    // written next to the cache and moved over it when complete, so a concurrent report never maps half a file
+    static void write(Path csv, Path file, String[] headers, Column.DataType[] types, int[] scales) throws IOException {
+        ColumnCache.Source source = ColumnCache.Source.of(csv);
+        long checksum = ColumnCache.checksum(csv);
+        Path temporary = file.resolveSibling(file.getFileName() + "." + ProcessHandle.current().pid() + ".tmp");
+        try (CsvReader reader = CsvReader.open(csv);
+             FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CsvIngest.readHeaders(reader);
+            new ColumnCacheWriter(out, headers, types, scales).write(reader, source, checksum);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void write(CsvReader reader, ColumnCache.Source source, long checksum) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream head = new DataOutputStream(bytes);
+        head.writeInt(ColumnCache.MAGIC);
+        head.writeInt(ColumnCache.VERSION);
+        append(bytes.toByteArray());
+
+        block = newBlock();
+        while (reader.next()) {
+            long line = reader.recordNumber() - 1;
+            if (reader.fieldCount() != headers.length) {
+                rejectedLines.add(new ColumnCache.RejectedLine(rows, line, reader.fieldCount(), reader.recordText()));
+                continue;
+            }
+
+            // a value of the wrong type is stored as null and remembered, only reports reading its column reject the line
+            for (int field = 0; field < headers.length; field++) {
+                try {
+                    RowBatchBuilder.setValue(block[field], types[field], blockSize, reader, field);
+                } catch (NumberFormatException | DateTimeParseException e) {
+                    block[field].setNull(blockSize);
+                    invalidValues.get(field).add(new ColumnCache.InvalidValue(rows, line, reader.getString(field), reader.recordText()));
+                }
+            }
+            blockSize++;
+            rows++;
+            if (blockSize == BLOCK_ROWS) {
+                writeBlock();
+            }
+        }
+        // at least one block, so the rejected lines of a csv without valid lines have a block to belong to
+        if (blockSize > 0 || blocks == 0) {
+            writeBlock();
+        }
+        writeFooter(source, checksum);
+    }
+
+    private ColumnVector[] newBlock() {
+        ColumnVector[] vectors = new ColumnVector[headers.length];
+        for (int field = 0; field < headers.length; field++) {
+            vectors[field] = ColumnVector.create(types[field], scales[field], BLOCK_ROWS);
+        }
+        return vectors;
+    }
+
+    private void writeBlock() throws IOException {
+        DataOutputStream indexOut = new DataOutputStream(index);
+        indexOut.writeInt(blockSize);
+        for (int field = 0; field < headers.length; field++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(), statsBytes = new ByteArrayOutputStream();
+            DataOutputStream chunk = new DataOutputStream(bytes), stats = new DataOutputStream(statsBytes);
+            writeNulls(chunk, block[field]);
+            switch (types[field]) {
+                case INTEGER, DATE, DATETIME -> writeLongs(chunk, stats, (LongVector) block[field]);
+                case DOUBLE -> writeDoubles(chunk, stats, (DoubleVector) block[field]);
+                case DECIMAL -> writeDecimals(chunk, stats, (DecimalVector) block[field]);
+                case STRING -> writeStrings(chunk, stats, (StringVector) block[field]);
+            }
+            indexOut.writeLong(position);
+            indexOut.writeInt(bytes.size());
+            statsBytes.writeTo(indexOut);
+            append(bytes.toByteArray());
+        }
+        blocks++;
+        blockSize = 0;
+        block = newBlock();
+    }
+
+    private void writeNulls(DataOutputStream chunk, ColumnVector vector) throws IOException {
+        long[] nulls = new long[words(blockSize, 1)];
+        boolean any = false;
+        for (int row = 0; row < blockSize; row++) {
+            if (vector.isNull(row)) {
+                nulls[row >>> 6] |= 1L << (row & 63);
+                any = true;
+            }
+        }
+        chunk.writeBoolean(any);
+        if (any) {
+            for (long word : nulls) {
+                chunk.writeLong(word);
+            }
+        }
+    }
+
+    private void writeLongs(DataOutputStream chunk, DataOutputStream stats, LongVector vector) throws IOException {
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        boolean any = false;
+        for (int row = 0; row < blockSize; row++) {
+            if (!vector.isNull(row)) {
+                min = Math.min(min, vector.get(row));
+                max = Math.max(max, vector.get(row));
+                any = true;
+            }
+        }
+        long[] offsets = new long[blockSize];
+        for (int row = 0; row < blockSize; row++) {
+            offsets[row] = vector.isNull(row) ? 0 : vector.get(row) - min;
+        }
+        writePacked(chunk, any ? min : 0, any ? max - min : 0, offsets);
+
+        stats.writeBoolean(any);
+        if (any) {
+            stats.writeLong(min);
+            stats.writeLong(max);
+        }
+    }
+
+    private void writeDoubles(DataOutputStream chunk, DataOutputStream stats, DoubleVector vector) throws IOException {
+        double min = 0, max = 0;
+        boolean any = false;
+        for (int row = 0; row < blockSize; row++) {
+            double value = vector.isNull(row) ? 0 : vector.get(row);
+            chunk.writeDouble(value);
+            if (!vector.isNull(row)) {
+                // the same order the filters compare in, NaN above everything
+                min = !any || Double.compare(value, min) < 0 ? value : min;
+                max = !any || Double.compare(value, max) > 0 ? value : max;
+                any = true;
+            }
+        }
+
+        stats.writeBoolean(any);
+        if (any) {
+            stats.writeDouble(min);
+            stats.writeDouble(max);
+        }
+    }
+
+    // unscaled longs like the vector keeps them, the values that don't fit are written after them as text
+    private void writeDecimals(DataOutputStream chunk, DataOutputStream stats, DecimalVector vector) throws IOException {
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        boolean anyFits = false;
+        BigDecimal low = null, high = null;
+        for (int row = 0; row < blockSize; row++) {
+            if (vector.isNull(row)) {
+                continue;
+            }
+            if (vector.fits(row)) {
+                min = Math.min(min, vector.getUnscaled(row));
+                max = Math.max(max, vector.getUnscaled(row));
+                anyFits = true;
+            } else {
+                low = low == null || vector.get(row).compareTo(low) < 0 ? vector.get(row) : low;
+                high = high == null || vector.get(row).compareTo(high) > 0 ? vector.get(row) : high;
+            }
+        }
+        long[] offsets = new long[blockSize];
+        for (int row = 0; row < blockSize; row++) {
+            offsets[row] = vector.isNull(row) || !vector.fits(row) ? 0 : vector.getUnscaled(row) - min;
+        }
+        writePacked(chunk, anyFits ? min : 0, anyFits ? max - min : 0, offsets);
+
+        List<Integer> wideRows = new ArrayList<>();
+        for (int row = 0; row < blockSize; row++) {
+            if (!vector.isNull(row) && !vector.fits(row)) {
+                wideRows.add(row);
+            }
+        }
+        chunk.writeInt(wideRows.size());
+        for (int row : wideRows) {
+            byte[] text = vector.get(row).toString().getBytes(StandardCharsets.US_ASCII);
+            chunk.writeInt(row);
+            chunk.writeInt(text.length);
+            chunk.write(text);
+        }
+
+        if (anyFits) {
+            BigDecimal smallest = BigDecimal.valueOf(min, vector.scale()), largest = BigDecimal.valueOf(max, vector.scale());
+            low = low == null || smallest.compareTo(low) < 0 ? smallest : low;
+            high = high == null || largest.compareTo(high) > 0 ? largest : high;
+        }
+        stats.writeBoolean(low != null);
+        if (low != null) {
+            BatchSerializer.writeString(stats, low.toString());
+            BatchSerializer.writeString(stats, high.toString());
+        }
+    }
+
+    // the dictionary of the block's vector is the dictionary of the chunk
+    private void writeStrings(DataOutputStream chunk, DataOutputStream stats, StringVector vector) throws IOException {
+        int size = vector.dictionarySize();
+        chunk.writeInt(size);
+        String min = null, max = null;
+        for (int code = 0; code < size; code++) {
+            String value = vector.decode(code);
+            BatchSerializer.writeString(chunk, value);
+            min = min == null || value.compareTo(min) < 0 ? value : min;
+            max = max == null || value.compareTo(max) > 0 ? value : max;
+        }
+        long[] codes = new long[blockSize];
+        for (int row = 0; row < blockSize; row++) {
+            codes[row] = vector.isNull(row) ? 0 : vector.getCode(row);
+        }
+        int width = size > 1 ? 64 - Long.numberOfLeadingZeros(size - 1) : 0;
+        chunk.writeByte(width);
+        for (long word : pack(codes, width)) {
+            chunk.writeLong(word);
+        }
+
+        stats.writeBoolean(min != null);
+        if (min != null) {
+            BatchSerializer.writeString(stats, min);
+            BatchSerializer.writeString(stats, max);
+        }
+    }
+
+    // offsets from the reference in as many bits as the largest one needs, range is taken as unsigned
+    private static void writePacked(DataOutputStream chunk, long reference, long range, long[] offsets) throws IOException {
+        int width = 64 - Long.numberOfLeadingZeros(range);
+        chunk.writeLong(reference);
+        chunk.writeByte(width);
+        for (long word : pack(offsets, width)) {
+            chunk.writeLong(word);
+        }
+    }
+
+    private static long[] pack(long[] values, int width) {
+        long[] words = new long[words(values.length, width)];
+        if (width == 0) {
+            return words;
+        }
+        for (int i = 0; i < values.length; i++) {
+            long bit = (long) i * width;
+            int word = (int) (bit >>> 6), shift = (int) (bit & 63);
+            words[word] |= values[i] << shift;
+            if (shift + width > 64) {
+                words[word + 1] |= values[i] >>> (64 - shift);
+            }
+        }
+        return words;
+    }
+
+    private void writeFooter(ColumnCache.Source source, long checksum) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream footer = new DataOutputStream(bytes);
+        footer.writeLong(source.size());
+        footer.writeLong(source.modified());
+        footer.writeLong(source.hash());
+        footer.writeLong(checksum);
+        footer.writeInt(headers.length);
+        for (int field = 0; field < headers.length; field++) {
+            BatchSerializer.writeString(footer, headers[field]);
+            BatchSerializer.writeString(footer, types[field].name());
+            footer.writeInt(scales[field]);
+        }
+
+        footer.writeInt(blocks);
+        index.writeTo(footer);
+
+        for (List<ColumnCache.InvalidValue> values : invalidValues) {
+            footer.writeInt(values.size());
+            for (ColumnCache.InvalidValue value : values) {
+                footer.writeLong(value.row());
+                footer.writeLong(value.line());
+                BatchSerializer.writeString(footer, value.value());
+                BatchSerializer.writeString(footer, value.text());
+            }
+        }
+        footer.writeInt(rejectedLines.size());
+        for (ColumnCache.RejectedLine line : rejectedLines) {
+            footer.writeLong(line.rowsBefore());
+            footer.writeLong(line.line());
+            footer.writeInt(line.fieldCount());
+            BatchSerializer.writeString(footer, line.text());
+        }
+
+        long footerOffset = position;
+        footer.writeLong(footerOffset);
+        footer.writeInt(ColumnCache.MAGIC);
+        append(bytes.toByteArray());
+    }
+
+    private void append(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += out.write(buffer);
+        }
+    }
+}
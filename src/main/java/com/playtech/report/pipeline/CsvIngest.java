@@ -0,0 +1,152 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.RowBatchBuilder;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.metrics.StageMetrics;
+import com.playtech.report.reject.RejectReason;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.RowFilter;
+import com.playtech.util.csv.CsvReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// turns the records of a csv reader into typed row batches, the lines that can't be used go to the rejections
+public class CsvIngest {
+    // rejected lines are handed to the side file this many at a time
+    private static final int REJECT_FLUSH_LINES = 256;
+
+    private final String[] headers;
+    private final int[] fields;
+    private final Map<String, Column> inputColumns;
+    private final Rejections rejections;
+    private final StageMetrics metrics;
+    private final List<RowFilter> filters;
+
+    // only the given fields are parsed into the batches, the others are just checked to be there
+    public CsvIngest(String[] headers, int[] fields, List<Column> inputs) {
+        this(headers, fields, Columns.byName(inputs), new Rejections());
+    }
+
+    // fields are parsed into the types of the columns of the same name, the others are kept as strings
+    public CsvIngest(String[] headers, int[] fields, Map<String, Column> inputColumns, Rejections rejections) {
+        this(headers, fields, inputColumns, rejections, null);
+    }
+
+    // metrics get the parse time without the time the target spends on the batches
+    public CsvIngest(String[] headers, int[] fields, Map<String, Column> inputColumns, Rejections rejections, StageMetrics metrics) {
+        this(headers, fields, inputColumns, rejections, metrics, List.of());
+    }
+
+    // lines the filters reject are dropped while they are read, a type error in a field the filters don't read
+    // is then not reported for such a line
+    public CsvIngest(String[] headers, int[] fields, Map<String, Column> inputColumns, Rejections rejections, StageMetrics metrics,
+                     List<RowFilter> filters) {
+        this.headers = headers;
+        this.fields = fields;
+        this.inputColumns = inputColumns;
+        this.rejections = rejections;
+        this.metrics = metrics;
+        this.filters = filters;
+    }
+
+    public Rejections rejections() {
+        return rejections;
+    }
+
+    public static String[] readHeaders(CsvReader reader) throws IOException {
+        if (!reader.next()) {
+            throw new IOException(ERROR + "Empty CSV file" + RESET);
+        }
+
+        String[] headers = new String[reader.fieldCount()];
+        for (int i = 0; i < headers.length; i++) {
+            headers[i] = reader.getString(i);
+        }
+        return headers;
+    }
+
+    // reads every remaining record of the reader, returns the number of skipped lines
+    public int read(CsvReader reader, Consumer<RowBatch> target) throws IOException {
+        RowBatchBuilder batchBuilder = new RowBatchBuilder(headers, fields, inputColumns, filters, RowBatch.DEFAULT_CAPACITY);
+        if (metrics == null) {
+            return readRecords(reader, batchBuilder, target);
+        }
+
+        long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+        long start = reader.offset();
+        long[] rows = new long[1];
+        int skippedLines = readRecords(reader, batchBuilder, batch -> {
+            long downstreamWall = StageMetrics.wallClock(), downstreamCpu = StageMetrics.cpuClock(), downstreamAllocation = StageMetrics.allocationClock();
+            rows[0] += batch.size();
+            target.accept(batch);
+            metrics.exclude(downstreamWall, downstreamCpu, downstreamAllocation);
+        });
+        metrics.addBytes(reader.offset() - start);
+        metrics.record(rows[0] + skippedLines + batchBuilder.filteredRows(), rows[0], wall, cpu, allocation);
+        return skippedLines;
+    }
+
+    private int readRecords(CsvReader reader, RowBatchBuilder batchBuilder, Consumer<RowBatch> target) throws IOException {
+        List<String> rejectedLines = new ArrayList<>();
+        int skippedLines = 0;
+
+        while (reader.next()) {
+            if (reader.fieldCount() != headers.length) {
+                reject(reader, RejectReason.COLUMN_COUNT, null, " (" + reader.fieldCount() + " fields instead of " + headers.length + ")", rejectedLines);
+                skippedLines++;
+                continue;
+            }
+
+            if (!batchBuilder.addRow(reader)) {
+                reject(reader, RejectReason.TYPE_MISMATCH, batchBuilder.failedColumn(),
+                        " (" + batchBuilder.failedType() + " expected, got '" + reader.getString(batchBuilder.failedField()) + "')", rejectedLines);
+                skippedLines++;
+                continue;
+            }
+
+            if (batchBuilder.isFull()) {
+                handOver(batchBuilder.take(), target);
+            }
+        }
+
+        RowBatch lastBatch = batchBuilder.take();
+        if (lastBatch != null) {
+            handOver(lastBatch, target);
+        }
+        rejections.flush(rejectedLines);
+        return skippedLines;
+    }
+
+    private void handOver(RowBatch batch, Consumer<RowBatch> target) {
+        rejections.rowsRead(batch.size());
+        target.accept(batch);
+    }
+
+    private void reject(CsvReader reader, RejectReason reason, String column, String detail, List<String> rejectedLines) {
+        String line = reader.recordText();
+        rejections.rejectLine(reason, column, describeLine(reader) + detail, line);
+        if (rejections.writesLines()) {
+            rejectedLines.add(line);
+            if (rejectedLines.size() >= REJECT_FLUSH_LINES) {
+                rejections.flush(rejectedLines);
+            }
+        }
+    }
+
+    // line numbers are only known when the file is read from the start, chunks report the byte offset instead
+    private static String describeLine(CsvReader reader) {
+        if (reader.isFromStart()) {
+            return "line " + (reader.recordNumber() - 1);
+        }
+        return "line at byte " + reader.recordOffset();
+    }
+}
@@ -0,0 +1,213 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.metrics.PipelineMetrics;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.report.plan.ScanPlan;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.csv.CsvReader;
+import com.playtech.util.csv.RangeScanner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// splits the input into ranges that are read and transformed by a pool of workers: byte ranges of a csv that start
+// and end on records, blocks of a column cache, or chunks of lines inflated from a compressed csv. Every worker runs
+// the leading fused pass and a partial state of the first blocking transformer, the partials are merged into the
+// pipeline in input order so the output is the same as a serial run
+public class ParallelIngest {
+    public static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+    // chunks of a compressed csv are copied to the heap, so they are kept smaller
+    static final int STREAM_CHUNK_SIZE = 8 << 20;
+
+    private final Supplier<Pipeline.Partial> partials;
+    private final int threads;
+    private final long chunkSize;
+
+    // reads the part [start, end) of an input into the target, returns the number of skipped lines
+    public interface RangeReader {
+        int read(long start, long end, Consumer<RowBatch> target) throws IOException;
+    }
+
+    // a part of the input ready to be read by a worker, returns the number of skipped lines
+    private interface Part {
+        int read(Consumer<RowBatch> target) throws IOException;
+    }
+
+    // the next part of the input, null at its end. Called on the thread that merges the partials
+    private interface PartSource {
+        Part next() throws IOException;
+    }
+
+    public ParallelIngest(ExecutionPlan plan, Rejections rejections, int threads, long chunkSize) {
+        this(plan, null, rejections, threads, chunkSize);
+    }
+
+    // the workers add to the same metrics as the pipeline the partials are merged into
+    public ParallelIngest(ExecutionPlan plan, PipelineMetrics metrics, Rejections rejections, int threads, long chunkSize) {
+        this(() -> Pipeline.createPartial(plan, metrics, rejections), threads, chunkSize);
+    }
+
+    public ParallelIngest(ScanPlan scan, Rejections rejections, int threads, long chunkSize) {
+        this(() -> Pipeline.createPartial(scan, rejections), threads, chunkSize);
+    }
+
+    private ParallelIngest(Supplier<Pipeline.Partial> partials, int threads, long chunkSize) {
+        this.partials = partials;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    // reads [dataStart, fileSize) of the csv file into the pipeline, returns the number of skipped lines.
+    // dataStart has to be the start of a record. The workers first scan ranges of chunkSize bytes for every quoting
+    // state at their start, chaining the scans in file order gives the state at every range start and the first
+    // record that starts in it, so a quoted value with a line break is never cut in two. The ranges are scanned a
+    // few ahead of the chunks being parsed, all workers read through the same channel
+    public int run(Path path, CsvIngest ingest, long dataStart, long fileSize, Pipeline pipeline) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                Deque<Future<RangeScanner>> scans = new ArrayDeque<>();
+                // start of the next range to scan, of the next range to chain and of the next chunk
+                long[] next = {dataStart, dataStart, dataStart};
+                // quoting state at the start of the next range to chain
+                int[] state = {RangeScanner.recordStartState()};
+                return run(executor, () -> {
+                    long start = next[2];
+                    if (start >= fileSize) {
+                        return null;
+                    }
+                    long end = fileSize;
+                    while (true) {
+                        while (scans.size() < threads * 4 && next[0] < fileSize) {
+                            long from = next[0];
+                            long to = Math.min(fileSize, from + chunkSize);
+                            scans.add(executor.submit(() -> CsvReader.scan(channel, from, to)));
+                            next[0] = to;
+                        }
+                        if (scans.isEmpty()) {
+                            break;
+                        }
+                        RangeScanner scan = await(scans.poll());
+                        long rangeStart = next[1];
+                        next[1] = Math.min(fileSize, rangeStart + chunkSize);
+                        long recordEnd = scan.firstRecordEnd(state[0]);
+                        state[0] = scan.endState(state[0]);
+                        // the first record of the first range is part of the first chunk
+                        if (rangeStart > dataStart && recordEnd > start) {
+                            end = recordEnd;
+                            break;
+                        }
+                    }
+                    next[2] = end;
+                    long chunkStart = start;
+                    long chunkEnd = end;
+                    return target -> {
+                        try (CsvReader reader = CsvReader.open(channel, chunkStart, chunkEnd)) {
+                            return ingest.read(reader, target);
+                        }
+                    };
+                }, pipeline);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    // reads the rest of a compressed csv into the pipeline: this thread inflates the next chunks of lines
+    // while the workers parse the ones before, returns the number of skipped lines
+    public int run(CsvReader stream, CsvIngest ingest, Pipeline pipeline) throws IOException {
+        int size = (int) Math.min(chunkSize, STREAM_CHUNK_SIZE);
+        return run(() -> {
+            long offset = stream.offset();
+            ByteBuffer chunk = stream.nextChunk(size);
+            if (chunk == null) {
+                return null;
+            }
+            return target -> ingest.read(new CsvReader(chunk, offset), target);
+        }, pipeline);
+    }
+
+    // the chunk size is in the unit of the input
+    public int run(RangeReader input, long begin, long limit, Pipeline pipeline) throws IOException {
+        long[] next = {begin};
+        return run(() -> {
+            if (next[0] >= limit) {
+                return null;
+            }
+            long start = next[0];
+            long end = Math.min(limit, start + chunkSize);
+            next[0] = end;
+            return target -> input.read(start, end, target);
+        }, pipeline);
+    }
+
+    private int run(PartSource input, Pipeline pipeline) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return run(executor, input, pipeline);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int run(ExecutorService executor, PartSource input, Pipeline pipeline) throws IOException {
+        // a bounded number of chunks in flight, so finished but not yet merged chunks can't pile up
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        int skippedLines = 0;
+        Part next = input.next();
+        while (next != null || !inFlight.isEmpty()) {
+            while (next != null && inFlight.size() < threads * 2) {
+                Part part = next;
+                inFlight.add(executor.submit(() -> readChunk(part)));
+                next = input.next();
+            }
+
+            Chunk chunk = await(inFlight.poll());
+            pipeline.merge(chunk.partial);
+            skippedLines += chunk.skippedLines;
+        }
+        return skippedLines;
+    }
+
+    private Chunk readChunk(Part part) throws IOException {
+        Pipeline.Partial partial = partials.get();
+        int skippedLines = part.read(partial::push);
+        return new Chunk(partial, skippedLines);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading the CSV file");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private record Chunk(Pipeline.Partial partial, int skippedLines) {
+    }
+}
@@ -0,0 +1,344 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.metrics.PipelineMetrics;
+import com.playtech.report.metrics.StageMetrics;
+import com.playtech.report.plan.BlockingStep;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.report.plan.FusedPass;
+import com.playtech.report.plan.PlanStep;
+import com.playtech.report.plan.ScanPlan;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.StreamingState;
+import com.playtech.report.transformer.TransformerState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// streams row batches through the steps of an execution plan: fused passes of row-local transformers run on each
+// batch as it arrives, blocking transformers (aggregation, ordering) keep their own state and emit when the input is finished.
+// a window emits its rows as they come, but only sees them in input order
+public class Pipeline {
+    private final Stage head;
+    // per report, the first stage after the leading row-local transformers, where results of parallel workers are merged in
+    private final Stage[] boundaries;
+
+    private Pipeline(Stage head, Stage[] boundaries) {
+        this.head = head;
+        this.boundaries = boundaries;
+    }
+
+    public static Pipeline create(ExecutionPlan plan, Consumer<RowBatch> sink) {
+        return create(plan, sink, null, new Rejections());
+    }
+
+    // metrics, when given, are filled in by every stage and must have been created for the same plan.
+    // the transformers report the values they can't use to rejections
+    public static Pipeline create(ExecutionPlan plan, Consumer<RowBatch> sink, PipelineMetrics metrics, Rejections rejections) {
+        Stage[] boundary = new Stage[1];
+        Stage head = createChain(plan, sink, boundary, 0, metrics, rejections);
+        return new Pipeline(head, boundary);
+    }
+
+    public static Pipeline create(ScanPlan scan, List<Consumer<RowBatch>> sinks) {
+        return create(scan, sinks, new Rejections());
+    }
+
+    // one chain per report of the scan behind the shared steps, every report has its own sink
+    public static Pipeline create(ScanPlan scan, List<Consumer<RowBatch>> sinks, Rejections rejections) {
+        List<ExecutionPlan> plans = scan.getPlans();
+        Stage[] heads = new Stage[plans.size()];
+        Stage[] boundaries = new Stage[plans.size()];
+        for (int r = 0; r < plans.size(); r++) {
+            heads[r] = createChain(plans.get(r), sinks.get(r), boundaries, r, null, rejections);
+        }
+        return new Pipeline(new ScanStage(scan, heads, rejections), boundaries);
+    }
+
+    private static Stage createChain(ExecutionPlan plan, Consumer<RowBatch> sink, Stage[] boundaries, int index,
+                                     PipelineMetrics metrics, Rejections rejections) {
+        List<PlanStep> steps = plan.getSteps();
+        int leading = leadingPass(steps);
+
+        // build the chain back to front so every stage knows its downstream
+        Stage stage = new SinkStage(sink, metrics == null ? null : metrics.write());
+        boundaries[index] = stage;
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            stage = createStage(plan.getReport(), steps.get(i), stage, metrics == null ? null : metrics.step(i), rejections);
+            if (i == leading) {
+                boundaries[index] = stage;
+            }
+        }
+        return stage;
+    }
+
+    // the part of the pipeline a worker runs on its own chunk of the input: the leading fused pass
+    // followed by a fresh state of the first blocking transformer, or a plain buffer when there is none
+    public static Partial createPartial(ExecutionPlan plan) {
+        return createPartial(plan, null, new Rejections());
+    }
+
+    public static Partial createPartial(ExecutionPlan plan, PipelineMetrics metrics, Rejections rejections) {
+        PartialChain chain = createPartialChain(plan, metrics, rejections);
+        return new Partial(chain.head, new PartialChain[]{chain});
+    }
+
+    public static Partial createPartial(ScanPlan scan) {
+        return createPartial(scan, new Rejections());
+    }
+
+    public static Partial createPartial(ScanPlan scan, Rejections rejections) {
+        List<ExecutionPlan> plans = scan.getPlans();
+        PartialChain[] chains = new PartialChain[plans.size()];
+        Stage[] heads = new Stage[plans.size()];
+        for (int r = 0; r < plans.size(); r++) {
+            chains[r] = createPartialChain(plans.get(r), null, rejections);
+            heads[r] = chains[r].head;
+        }
+        return new Partial(new ScanStage(scan, heads, rejections), chains);
+    }
+
+    private static PartialChain createPartialChain(ExecutionPlan plan, PipelineMetrics metrics, Rejections rejections) {
+        List<PlanStep> steps = plan.getSteps();
+        int leading = leadingPass(steps);
+
+        FusedPass pass = leading == 1 ? (FusedPass) steps.get(0) : null;
+        TransformerState state = null;
+        if (leading < steps.size()) {
+            state = ((BlockingStep) steps.get(leading)).transformer().createState(plan.getReport(), rejections);
+            // a streaming state needs all rows in order, the worker only buffers its rows for it
+            if (state instanceof StreamingState) {
+                state = null;
+            }
+        }
+        if (metrics == null) {
+            return new PartialChain(pass, null, state, null, rejections);
+        }
+        return new PartialChain(pass, pass == null ? null : metrics.step(0),
+                state, state == null ? null : metrics.step(leading)[0], rejections);
+    }
+
+    private static int leadingPass(List<PlanStep> steps) {
+        return !steps.isEmpty() && steps.get(0) instanceof FusedPass ? 1 : 0;
+    }
+
+    private static Stage createStage(Report report, PlanStep step, Stage downstream, StageMetrics[] metrics, Rejections rejections) {
+        return switch (step) {
+            case FusedPass pass -> new RowStage(pass, metrics, rejections, downstream);
+            case BlockingStep blockingStep -> new BlockingStage(blockingStep.transformer().createState(report, rejections),
+                    metrics == null ? null : metrics[0], downstream);
+        };
+    }
+
+    public void push(RowBatch batch) {
+        head.push(batch);
+    }
+
+    // takes over the result of a worker, partials have to be merged in input order to keep the output deterministic
+    public void merge(Partial partial) {
+        for (int i = 0; i < boundaries.length; i++) {
+            PartialChain chain = partial.chains[i];
+            if (chain.state != null) {
+                ((BlockingStage) boundaries[i]).merge(chain.state);
+            } else {
+                chain.output.forEach(boundaries[i]::push);
+            }
+        }
+    }
+
+    // state of the first blocking transformer of a report, null when the report has none
+    public TransformerState state(int report) {
+        return boundaries[report] instanceof BlockingStage blockingStage ? blockingStage.state : null;
+    }
+
+    // flush all blocking stages in order, must be called once after the last row
+    public void finish() {
+        head.finish();
+    }
+
+    public static class Partial {
+        private final Stage head;
+        private final PartialChain[] chains;
+
+        private Partial(Stage head, PartialChain[] chains) {
+            this.head = head;
+            this.chains = chains;
+        }
+
+        public void push(RowBatch batch) {
+            head.push(batch);
+        }
+    }
+
+    private static class PartialChain {
+        private final Stage head;
+        private final TransformerState state;
+        private final List<RowBatch> output = new ArrayList<>();
+
+        private PartialChain(FusedPass pass, StageMetrics[] passMetrics, TransformerState state, StageMetrics stateMetrics,
+                             Rejections rejections) {
+            this.state = state;
+            Stage collect = state != null ? new BlockingStage(state, stateMetrics, null) : new SinkStage(output::add, null);
+            this.head = pass == null ? collect : new RowStage(pass, passMetrics, rejections, collect);
+        }
+    }
+
+    private interface Stage {
+        void push(RowBatch batch);
+
+        void finish();
+    }
+
+    private static class RowStage implements Stage {
+        private final FusedPass pass;
+        private final StageMetrics[] metrics;
+        private final Rejections rejections;
+        private final Stage downstream;
+
+        private RowStage(FusedPass pass, StageMetrics[] metrics, Rejections rejections, Stage downstream) {
+            this.pass = pass;
+            this.metrics = metrics;
+            this.rejections = rejections;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void push(RowBatch batch) {
+            RowBatch transformed = pass.apply(batch, metrics, rejections);
+            // every row may have been skipped
+            if (transformed.size() > 0) {
+                downstream.push(transformed);
+            }
+        }
+
+        @Override
+        public void finish() {
+            downstream.finish();
+        }
+    }
+
+    // the time of finish only counts the transformer's own work, not the later stages it hands its rows to
+    private static class BlockingStage implements Stage {
+        private final TransformerState state;
+        private final StageMetrics metrics;
+        private final Stage downstream;
+
+        private BlockingStage(TransformerState state, StageMetrics metrics, Stage downstream) {
+            this.state = state;
+            this.metrics = metrics;
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void push(RowBatch batch) {
+            if (state instanceof StreamingState streamingState) {
+                push(streamingState, batch);
+                return;
+            }
+            if (metrics == null) {
+                state.accept(batch);
+                return;
+            }
+            long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+            state.accept(batch);
+            metrics.record(batch.size(), 0, wall, cpu, allocation);
+        }
+
+        private void push(StreamingState streamingState, RowBatch batch) {
+            if (metrics == null) {
+                streamingState.accept(batch, downstream::push);
+                return;
+            }
+            long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+            long rowsIn = batch.size();
+            long[] rowsOut = new long[1];
+            streamingState.accept(batch, output -> {
+                long downstreamWall = StageMetrics.wallClock(), downstreamCpu = StageMetrics.cpuClock(), downstreamAllocation = StageMetrics.allocationClock();
+                rowsOut[0] += output.size();
+                downstream.push(output);
+                metrics.exclude(downstreamWall, downstreamCpu, downstreamAllocation);
+            });
+            metrics.record(rowsIn, rowsOut[0], wall, cpu, allocation);
+        }
+
+        private void merge(TransformerState partial) {
+            if (metrics == null) {
+                state.merge(partial);
+                return;
+            }
+            long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+            state.merge(partial);
+            metrics.record(0, 0, wall, cpu, allocation);
+        }
+
+        @Override
+        public void finish() {
+            if (metrics == null) {
+                state.finish(downstream::push);
+                downstream.finish();
+                return;
+            }
+            long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+            long[] rowsOut = new long[1];
+            state.finish(batch -> {
+                long downstreamWall = StageMetrics.wallClock(), downstreamCpu = StageMetrics.cpuClock(), downstreamAllocation = StageMetrics.allocationClock();
+                rowsOut[0] += batch.size();
+                downstream.push(batch);
+                metrics.exclude(downstreamWall, downstreamCpu, downstreamAllocation);
+            });
+            metrics.record(0, rowsOut[0], wall, cpu, allocation);
+            downstream.finish();
+        }
+    }
+
+    private static class ScanStage implements Stage {
+        private final ScanPlan scan;
+        private final Stage[] reports;
+        private final Rejections rejections;
+
+        private ScanStage(ScanPlan scan, Stage[] reports, Rejections rejections) {
+            this.scan = scan;
+            this.reports = reports;
+            this.rejections = rejections;
+        }
+
+        @Override
+        public void push(RowBatch batch) {
+            scan.fanOut(batch, rejections, (reportBatch, report) -> reports[report].push(reportBatch));
+        }
+
+        @Override
+        public void finish() {
+            for (Stage report : reports) {
+                report.finish();
+            }
+        }
+    }
+
+    private static class SinkStage implements Stage {
+        private final Consumer<RowBatch> sink;
+        private final StageMetrics metrics;
+
+        private SinkStage(Consumer<RowBatch> sink, StageMetrics metrics) {
+            this.sink = sink;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void push(RowBatch batch) {
+            if (metrics == null) {
+                sink.accept(batch);
+                return;
+            }
+            long wall = StageMetrics.wallClock(), cpu = StageMetrics.cpuClock(), allocation = StageMetrics.allocationClock();
+            sink.accept(batch);
+            metrics.record(batch.size(), batch.size(), wall, cpu, allocation);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+}
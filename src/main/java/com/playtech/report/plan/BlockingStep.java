@@ -0,0 +1,12 @@
+package com.playtech.report.plan;
+
+import com.playtech.report.transformer.BlockingTransformer;
+
+import java.util.List;
+
+public record BlockingStep(BlockingTransformer transformer, List<String> outputSchema) implements PlanStep {
+    @Override
+    public List<String> describe() {
+        return List.of(transformer.describe());
+    }
+}
@@ -0,0 +1,266 @@
+package com.playtech.report.plan;
+
+import com.playtech.report.Report;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.RowFilter;
+import com.playtech.report.transformer.RowTransformer;
+import com.playtech.report.transformer.Transformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// the report compiled against the csv header: only the columns that are used somewhere are read,
+// consecutive row-local transformers become one pass bound to column slots, and columns are dropped
+// as soon as no later transformer and no report output needs them. A transformer whose output is not used is left
+// out unless it removes rows or can stop the run. Filters in front of every other transformer
+// run inside the csv reader, so the lines they reject are not parsed any further
+public class ExecutionPlan {
+    private final Report report;
+    private final String[] headers;
+    private final int[] ingestFields;
+    private final Map<String, Column> inputColumns;
+    private final List<RowFilter> ingestFilters;
+    // transformers that already ran before the first step, and the columns of the batches the first step gets
+    private final int skipped;
+    private final int[] inputSlots;
+    private final List<String> inputSchema;
+    private final List<PlanStep> steps;
+    private final List<String> dropped;
+
+    private ExecutionPlan(Report report, String[] headers, int[] ingestFields, Map<String, Column> inputColumns, List<RowFilter> ingestFilters, int skipped,
+                          int[] inputSlots, List<String> inputSchema, List<PlanStep> steps, List<String> dropped) {
+        this.report = report;
+        this.headers = headers;
+        this.ingestFields = ingestFields;
+        this.inputColumns = inputColumns;
+        this.ingestFilters = ingestFilters;
+        this.skipped = skipped;
+        this.inputSlots = inputSlots;
+        this.inputSchema = inputSchema;
+        this.steps = steps;
+        this.dropped = dropped;
+    }
+
+    public static ExecutionPlan compile(Report report, String[] headers) {
+        return compile(report, headers, Arrays.asList(headers), 0, true);
+    }
+
+    // plan for the rest of the report when its first `skip` transformers (all row-local) have already been applied
+    // to batches with the `available` columns, which is how reports of one scan share their common transformers.
+    // the csv reader of a scan is shared, so its filters stay in the plan
+    public static ExecutionPlan compile(Report report, String[] headers, List<String> available, int skip) {
+        return compile(report, headers, available, skip, false);
+    }
+
+    private static ExecutionPlan compile(Report report, String[] headers, List<String> available, int skip, boolean pushFilters) {
+        List<Transformer> transformers = report.getTransformers() != null ? report.getTransformers() : List.of();
+        int count = transformers.size();
+
+        // columns that are needed before every transformer, worked out back to front
+        List<Set<String>> live = new ArrayList<>();
+        for (int i = 0; i <= count; i++) {
+            live.add(null);
+        }
+        boolean[] unused = new boolean[count];
+        Set<String> needed = new LinkedHashSet<>(report.getOutputs() != null ? Columns.names(report.getOutputs()) : List.of());
+        live.set(count, new LinkedHashSet<>(needed));
+        for (int i = count - 1; i >= 0; i--) {
+            Transformer transformer = transformers.get(i);
+            if (transformer instanceof RowTransformer rowTransformer) {
+                String output = rowTransformer.outputColumn().getName();
+                if (needed.contains(output)) {
+                    needed.remove(output);
+                    needed.addAll(Columns.names(rowTransformer.inputColumns()));
+                } else if (rowTransformer.hasSideEffects()) {
+                    // it still has to run for the rows it removes or the run it stops, its output is dropped after the pass
+                    needed.addAll(Columns.names(rowTransformer.inputColumns()));
+                } else {
+                    unused[i] = true;
+                }
+            } else if (transformer instanceof BlockingTransformer blockingTransformer) {
+                needed = new LinkedHashSet<>(blockingTransformer.requiredColumns(needed));
+            } else if (transformer instanceof RowFilter filter) {
+                needed.addAll(Columns.names(filter.inputColumns()));
+            } else {
+                throw new IllegalArgumentException("Unsupported transformer: " + transformer.getClass().getSimpleName());
+            }
+            live.set(i, new LinkedHashSet<>(needed));
+        }
+
+        List<Integer> fields = new ArrayList<>();
+        List<String> read = new ArrayList<>();
+        for (int field = 0; field < headers.length; field++) {
+            if (needed.contains(headers[field]) && !read.contains(headers[field])) {
+                fields.add(field);
+                read.add(headers[field]);
+            }
+        }
+
+        List<Integer> slots = new ArrayList<>();
+        List<String> schema = new ArrayList<>();
+        for (int slot = 0; slot < available.size(); slot++) {
+            String column = available.get(slot);
+            if (live.get(skip).contains(column) && !schema.contains(column)) {
+                slots.add(slot);
+                schema.add(column);
+            }
+        }
+        List<String> inputSchema = List.copyOf(schema);
+
+        // the ingested batches still have the columns only the pushed filters read, the first pass drops them
+        List<RowFilter> ingestFilters = new ArrayList<>();
+        int first = skip;
+        while (pushFilters && first < count && transformers.get(first) instanceof RowFilter filter) {
+            ingestFilters.add(filter);
+            first++;
+        }
+
+        List<PlanStep> steps = new ArrayList<>();
+        List<String> dropped = new ArrayList<>();
+        List<Transformer> pending = new ArrayList<>();
+        for (int i = first; i < count; i++) {
+            Transformer transformer = transformers.get(i);
+            if (transformer instanceof RowFilter filter) {
+                pending.add(filter);
+                continue;
+            }
+            if (transformer instanceof RowTransformer rowTransformer) {
+                if (unused[i]) {
+                    dropped.add(rowTransformer.describe());
+                } else {
+                    pending.add(rowTransformer);
+                }
+                continue;
+            }
+            BlockingTransformer blockingTransformer = (BlockingTransformer) transformer;
+            schema = flush(steps, pending, schema, live.get(i));
+            schema = blockingTransformer.outputColumns(schema);
+            steps.add(new BlockingStep(blockingTransformer, schema));
+        }
+        flush(steps, pending, schema, live.get(count));
+
+        return new ExecutionPlan(report, headers, toArray(fields), inputColumns(report), List.copyOf(ingestFilters), skip, toArray(slots), inputSchema,
+                steps, dropped);
+    }
+
+    // declared csv columns by name, checked against the transformers that read them as numbers so that a
+    // report doing arithmetic on a date column fails before the file is read rather than on the first row
+    public static Map<String, Column> inputColumns(Report report) {
+        Map<String, Column> columns = Columns.byName(report.getInputs() != null ? report.getInputs() : List.of());
+        Set<String> computed = new HashSet<>();
+        for (Transformer transformer : report.getTransformers() != null ? report.getTransformers() : List.<Transformer>of()) {
+            for (String column : transformer.numericColumns()) {
+                Column.DataType type = computed.contains(column) || !columns.containsKey(column) ? null : columns.get(column).getType();
+                if (type == Column.DataType.DATE || type == Column.DataType.DATETIME) {
+                    throw new IllegalArgumentException(ERROR + transformer.describe() + " needs a number, but column " + column + " is a " + type + RESET);
+                }
+            }
+            if (transformer instanceof RowTransformer rowTransformer) {
+                computed.add(rowTransformer.outputColumn().getName());
+            } else if (transformer instanceof BlockingTransformer blockingTransformer) {
+                computed.addAll(blockingTransformer.outputColumns(List.of()));
+            }
+        }
+        return columns;
+    }
+
+    static int[] toArray(List<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<String> flush(List<PlanStep> steps, List<Transformer> pending, List<String> schema, Set<String> live) {
+        FusedPass pass = FusedPass.bind(pending, schema, live);
+        pending.clear();
+        if (pass.isEmpty()) {
+            return schema;
+        }
+        steps.add(pass);
+        return pass.outputSchema();
+    }
+
+    public Report getReport() {
+        return report;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    // csv fields that are read, in the slot order of the ingested batches
+    public int[] getIngestFields() {
+        return ingestFields;
+    }
+
+    // declarations of the csv columns, columns that are not in the map are read as strings
+    public Map<String, Column> getInputColumns() {
+        return inputColumns;
+    }
+
+    // filters the csv reader applies before a line is parsed any further
+    public List<RowFilter> getIngestFilters() {
+        return ingestFilters;
+    }
+
+    // slots of the available columns that make up the batches of the first step
+    public int[] getInputSlots() {
+        return inputSlots;
+    }
+
+    public List<String> getInputSchema() {
+        return inputSchema;
+    }
+
+    public List<PlanStep> getSteps() {
+        return steps;
+    }
+
+    public String explain() {
+        StringBuilder plan = new StringBuilder("Plan for " + report.getReportName() + "\n");
+        List<String> read = new ArrayList<>();
+        for (int field : ingestFields) {
+            Column column = inputColumns.get(headers[field]);
+            read.add(column == null || column.getType() == Column.DataType.STRING ? headers[field] : headers[field] + " " + Columns.typeName(column));
+        }
+        plan.append("Read ").append(ingestFields.length).append(" of ").append(headers.length).append(" csv columns ").append(read).append('\n');
+        for (RowFilter filter : ingestFilters) {
+            plan.append("In the csv reader: ").append(filter.describe()).append('\n');
+        }
+        if (skipped > 0) {
+            plan.append("Start after ").append(skipped).append(" shared transformer(s) with ").append(inputSchema).append('\n');
+        }
+        for (PlanStep step : steps) {
+            for (String line : step.describe()) {
+                plan.append(line).append('\n');
+            }
+        }
+        for (String transformer : dropped) {
+            plan.append("Dropped, output not used: ").append(transformer).append('\n');
+        }
+        List<String> output = steps.isEmpty() ? inputSchema : steps.get(steps.size() - 1).outputSchema();
+        plan.append("Write ").append(report.getOutputFormat());
+        if (report.getOutputCompression() != Report.Compression.NONE) {
+            plan.append(' ').append(report.getOutputCompression());
+        }
+        if (report.getOutputPartitioning() != null) {
+            Column column = report.getOutputPartitioning().getColumn();
+            plan.append(" partitioned by ").append(column != null ? column.getName() : null);
+        }
+        plan.append(' ').append(output);
+        return plan.toString();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+}
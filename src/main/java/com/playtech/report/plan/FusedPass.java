@@ -0,0 +1,155 @@
+package com.playtech.report.plan;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.report.metrics.StageMetrics;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.RowFilter;
+import com.playtech.report.transformer.RowTransformer;
+import com.playtech.report.transformer.Transformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+// consecutive row-local transformers run as one pass over each batch. Every column is resolved to its slot when
+// the plan is compiled, and columns that nothing reads any more are dropped at the end of the pass. Filters take
+// part in the pass too, they write no column and the transformers after them only see the rows they kept.
+// the pass keeps no state, so parallel workers share it
+public final class FusedPass implements PlanStep {
+    // RowTransformers and RowFilters
+    private final Transformer[] transformers;
+    private final int[][] inputSlots;
+    // -1 for a filter
+    private final int[] outputSlots;
+    private final String[] outputNames;
+    // slots that are kept after the pass, null when every column is still needed
+    private final int[] keep;
+    private final List<String> outputSchema;
+
+    private FusedPass(Transformer[] transformers, int[][] inputSlots, int[] outputSlots, int[] keep, List<String> outputSchema) {
+        this.transformers = transformers;
+        this.inputSlots = inputSlots;
+        this.outputSlots = outputSlots;
+        this.outputNames = new String[transformers.length];
+        for (int i = 0; i < transformers.length; i++) {
+            outputNames[i] = transformers[i] instanceof RowTransformer rowTransformer ? rowTransformer.outputColumn().getName() : null;
+        }
+        this.keep = keep;
+        this.outputSchema = outputSchema;
+    }
+
+    // binds the transformers to the slots of batches with the given columns, keeping only the live columns at the end
+    static FusedPass bind(List<? extends Transformer> transformers, List<String> inputSchema, Set<String> live) {
+        List<String> schema = new ArrayList<>(inputSchema);
+        int[][] inputSlots = new int[transformers.size()][];
+        int[] outputSlots = new int[transformers.size()];
+
+        for (int t = 0; t < transformers.size(); t++) {
+            Transformer transformer = transformers.get(t);
+            List<Column> inputs = transformer instanceof RowFilter filter ? filter.inputColumns() : ((RowTransformer) transformer).inputColumns();
+            inputSlots[t] = new int[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                inputSlots[t][i] = schema.indexOf(inputs.get(i).getName());
+            }
+            if (transformer instanceof RowFilter) {
+                outputSlots[t] = -1;
+                continue;
+            }
+            // same rule as RowBatch.put: an existing column is replaced, a new one goes after the last slot
+            String output = ((RowTransformer) transformer).outputColumn().getName();
+            int slot = schema.indexOf(output);
+            if (slot < 0) {
+                slot = schema.size();
+                schema.add(output);
+            }
+            outputSlots[t] = slot;
+        }
+
+        List<Integer> kept = new ArrayList<>();
+        List<String> outputSchema = new ArrayList<>();
+        for (int slot = 0; slot < schema.size(); slot++) {
+            if (live.contains(schema.get(slot))) {
+                kept.add(slot);
+                outputSchema.add(schema.get(slot));
+            }
+        }
+        int[] keep = kept.size() == schema.size() ? null : kept.stream().mapToInt(Integer::intValue).toArray();
+
+        return new FusedPass(transformers.toArray(new Transformer[0]), inputSlots, outputSlots, keep, outputSchema);
+    }
+
+    public boolean isEmpty() {
+        return transformers.length == 0 && keep == null;
+    }
+
+    public List<Transformer> transformers() {
+        return List.of(transformers);
+    }
+
+    public RowBatch apply(RowBatch batch) {
+        return apply(batch, null, new Rejections());
+    }
+
+    // with metrics, every transformer is timed on its own, one entry per transformer
+    public RowBatch apply(RowBatch batch, StageMetrics[] metrics, Rejections rejections) {
+        for (int t = 0; t < transformers.length; t++) {
+            int rowsIn = batch.size();
+            long wall = 0, cpu = 0, allocation = 0;
+            if (metrics != null) {
+                wall = StageMetrics.wallClock();
+                cpu = StageMetrics.cpuClock();
+                allocation = StageMetrics.allocationClock();
+            }
+            int[] slots = inputSlots[t];
+            ColumnVector[] inputs = new ColumnVector[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                inputs[i] = slots[i] < 0 ? null : batch.vector(slots[i]);
+            }
+            if (outputSlots[t] < 0) {
+                ((RowFilter) transformers[t]).filter(batch, inputs);
+            } else {
+                ColumnVector output = ((RowTransformer) transformers[t]).compute(batch, inputs, rejections);
+                if (output == null) {
+                    // the column still has to take its slot, later transformers were bound to the ones after it
+                    output = nullColumn(batch);
+                }
+                batch.set(outputSlots[t], outputNames[t], output);
+            }
+            if (metrics != null) {
+                metrics[t].record(rowsIn, batch.size(), wall, cpu, allocation);
+            }
+        }
+        return keep == null ? batch : batch.project(keep);
+    }
+
+    private static ColumnVector nullColumn(RowBatch batch) {
+        StringVector nulls = new StringVector(batch.capacity());
+        for (int row = 0; row < batch.size(); row++) {
+            nulls.setNull(row);
+        }
+        return nulls;
+    }
+
+    @Override
+    public List<String> outputSchema() {
+        return outputSchema;
+    }
+
+    @Override
+    public List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Fused pass of " + transformers.length + " transformer(s)");
+        for (int t = 0; t < transformers.length; t++) {
+            String output = outputSlots[t] < 0 ? "" : " -> " + outputSlots[t];
+            lines.add("  " + transformers[t].describe() + "  slots " + Arrays.toString(inputSlots[t]) + output);
+        }
+        if (keep != null) {
+            lines.add("  keep " + outputSchema);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,11 @@
+package com.playtech.report.plan;
+
+import java.util.List;
+
+// one step of an execution plan, either a fused pass of row-local transformers or a blocking transformer
+public sealed interface PlanStep permits FusedPass, BlockingStep {
+    // columns of the batches the step emits, in slot order
+    List<String> outputSchema();
+
+    List<String> describe();
+}
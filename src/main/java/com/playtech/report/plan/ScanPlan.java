@@ -0,0 +1,250 @@
+package com.playtech.report.plan;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.RowTransformer;
+import com.playtech.report.transformer.Transformer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.ObjIntConsumer;
+
+// several reports compiled against one csv header, so a single scan of the file feeds all of them. The union of the
+// columns they use is read once, and the leading row-local transformers that reports have in common form a prefix
+// tree whose shared nodes run once per batch. Every report continues from the deepest shared node on its path
+public class ScanPlan {
+    private final List<Report> reports;
+    private final String[] headers;
+    private final int[] ingestFields;
+    private final Map<String, Column> inputColumns;
+    private final List<SharedStep> sharedSteps;
+    private final List<ExecutionPlan> plans;
+    // shared step every report starts from, -1 for the ingested batch
+    private final int[] starts;
+
+    private ScanPlan(List<Report> reports, String[] headers, int[] ingestFields, Map<String, Column> inputColumns, List<SharedStep> sharedSteps,
+                     List<ExecutionPlan> plans, int[] starts) {
+        this.reports = reports;
+        this.headers = headers;
+        this.ingestFields = ingestFields;
+        this.inputColumns = inputColumns;
+        this.sharedSteps = sharedSteps;
+        this.plans = plans;
+        this.starts = starts;
+    }
+
+    // reports can only share a scan when they parse every csv column they have in common into the same type
+    public static List<List<Report>> partition(List<Report> reports) {
+        List<List<Report>> groups = new ArrayList<>();
+        List<Map<String, Column>> groupColumns = new ArrayList<>();
+        for (Report report : reports) {
+            int group = 0;
+            while (group < groups.size() && !compatible(groupColumns.get(group), report)) {
+                group++;
+            }
+            if (group == groups.size()) {
+                groups.add(new ArrayList<>());
+                groupColumns.add(new HashMap<>());
+            }
+            groups.get(group).add(report);
+            ExecutionPlan.inputColumns(report).forEach(groupColumns.get(group)::putIfAbsent);
+        }
+        return groups;
+    }
+
+    public static ScanPlan compile(List<Report> reports, String[] headers) {
+        Map<String, Column> inputColumns = new LinkedHashMap<>();
+        for (Report report : reports) {
+            if (!compatible(inputColumns, report)) {
+                throw new IllegalArgumentException("Report " + report.getReportName() + " reads an input with another type than the other reports of the scan");
+            }
+            ExecutionPlan.inputColumns(report).forEach(inputColumns::putIfAbsent);
+        }
+
+        // prefix tree of the leading row-local transformers, a node counts the reports whose path goes through it
+        List<Node> nodes = new ArrayList<>();
+        Map<String, Integer> children = new HashMap<>();
+        List<List<Integer>> paths = new ArrayList<>();
+        for (Report report : reports) {
+            List<Integer> path = new ArrayList<>();
+            int parent = -1;
+            for (Transformer transformer : transformersOf(report)) {
+                if (!(transformer instanceof RowTransformer rowTransformer)) {
+                    break;
+                }
+                String key = parent + "/" + key(rowTransformer);
+                Integer node = children.get(key);
+                if (node == null) {
+                    node = nodes.size();
+                    nodes.add(new Node(parent, rowTransformer));
+                    children.put(key, node);
+                }
+                nodes.get(node).reports++;
+                path.add(node);
+                parent = node;
+            }
+            paths.add(path);
+        }
+
+        // the scan reads every csv column one of the reports reads
+        Set<Integer> fields = new TreeSet<>();
+        for (Report report : reports) {
+            for (int field : ExecutionPlan.compile(report, headers).getIngestFields()) {
+                fields.add(field);
+            }
+        }
+        List<String> ingestSchema = new ArrayList<>();
+        for (int field : fields) {
+            ingestSchema.add(headers[field]);
+        }
+
+        // nodes on the path of more than one report become shared steps, parents always come before their children
+        List<SharedStep> sharedSteps = new ArrayList<>();
+        int[] stepOfNode = new int[nodes.size()];
+        for (int node = 0; node < nodes.size(); node++) {
+            Node treeNode = nodes.get(node);
+            if (treeNode.reports < 2) {
+                stepOfNode[node] = -1;
+                continue;
+            }
+            int parent = treeNode.parent < 0 ? -1 : stepOfNode[treeNode.parent];
+            List<String> parentSchema = parent < 0 ? ingestSchema : sharedSteps.get(parent).pass.outputSchema();
+            Set<String> columns = new LinkedHashSet<>(parentSchema);
+            columns.add(treeNode.transformer.outputColumn().getName());
+            stepOfNode[node] = sharedSteps.size();
+            sharedSteps.add(new SharedStep(parent, parentSchema.size(), FusedPass.bind(List.of(treeNode.transformer), parentSchema, columns), treeNode.reports));
+        }
+
+        List<ExecutionPlan> plans = new ArrayList<>();
+        int[] starts = new int[reports.size()];
+        for (int r = 0; r < reports.size(); r++) {
+            List<Integer> path = paths.get(r);
+            int depth = 0;
+            while (depth < path.size() && stepOfNode[path.get(depth)] >= 0) {
+                depth++;
+            }
+            starts[r] = depth == 0 ? -1 : stepOfNode[path.get(depth - 1)];
+            List<String> available = starts[r] < 0 ? ingestSchema : sharedSteps.get(starts[r]).pass.outputSchema();
+            plans.add(ExecutionPlan.compile(reports.get(r), headers, available, depth));
+        }
+
+        return new ScanPlan(List.copyOf(reports), headers, ExecutionPlan.toArray(new ArrayList<>(fields)), inputColumns,
+                sharedSteps, plans, starts);
+    }
+
+    // two transformers of different reports compute the same column when they describe the same
+    // and write a column of the same type
+    private static String key(RowTransformer transformer) {
+        return transformer.getClass().getName() + ':' + transformer.describe() + ':' + transformer.outputColumn().getType();
+    }
+
+    private static boolean compatible(Map<String, Column> columns, Report report) {
+        for (Column input : ExecutionPlan.inputColumns(report).values()) {
+            Column column = columns.get(input.getName());
+            if (column != null && !Columns.typeName(column).equals(Columns.typeName(input))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<Transformer> transformersOf(Report report) {
+        return report.getTransformers() != null ? report.getTransformers() : List.of();
+    }
+
+    // runs the shared steps on an ingested batch and hands every report its own batch, together with the report index.
+    // the batches share their column vectors, only the column lists are copied
+    public void fanOut(RowBatch batch, Rejections rejections, ObjIntConsumer<RowBatch> target) {
+        RowBatch[] shared = new RowBatch[sharedSteps.size()];
+        for (int i = 0; i < shared.length; i++) {
+            SharedStep step = sharedSteps.get(i);
+            RowBatch parent = step.parent < 0 ? batch : shared[step.parent];
+            shared[i] = step.pass.apply(parent.project(step.parentSlots), null, rejections);
+        }
+        for (int r = 0; r < plans.size(); r++) {
+            RowBatch start = starts[r] < 0 ? batch : shared[starts[r]];
+            target.accept(start.project(plans.get(r).getInputSlots()), r);
+        }
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    // csv fields that are read, in the slot order of the ingested batches
+    public int[] getIngestFields() {
+        return ingestFields;
+    }
+
+    // csv column declarations of all reports, for parsing the ingested columns
+    public Map<String, Column> getInputColumns() {
+        return inputColumns;
+    }
+
+    public List<ExecutionPlan> getPlans() {
+        return plans;
+    }
+
+    public String explain() {
+        StringBuilder plan = new StringBuilder("Scan for " + reports.size() + " reports\n");
+        List<String> read = new ArrayList<>();
+        for (int field : ingestFields) {
+            read.add(headers[field]);
+        }
+        plan.append("Read ").append(ingestFields.length).append(" of ").append(headers.length).append(" csv columns ").append(read).append('\n');
+        for (SharedStep step : sharedSteps) {
+            plan.append("Shared by ").append(step.reports).append(" reports: ").append(step.pass.describe().get(1).strip()).append('\n');
+        }
+        for (ExecutionPlan reportPlan : plans) {
+            plan.append('\n').append(reportPlan.explain()).append('\n');
+        }
+        return plan.toString().stripTrailing();
+    }
+
+    @Override
+    public String toString() {
+        return explain();
+    }
+
+    private static class Node {
+        private final int parent;
+        private final RowTransformer transformer;
+        private int reports;
+
+        private Node(int parent, RowTransformer transformer) {
+            this.parent = parent;
+            this.transformer = transformer;
+        }
+    }
+
+    // one transformer applied to a copy of its parent's batch, so the other children of the parent still see the original
+    private static class SharedStep {
+        private final int parent;
+        private final int[] parentSlots;
+        private final FusedPass pass;
+        private final int reports;
+
+        private SharedStep(int parent, int parentColumns, FusedPass pass, int reports) {
+            this.parent = parent;
+            this.parentSlots = new int[parentColumns];
+            for (int slot = 0; slot < parentColumns; slot++) {
+                parentSlots[slot] = slot;
+            }
+            this.pass = pass;
+            this.reports = reports;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.playtech.report.reject;
+
+// what a transformer does with a value it can't use
+public enum ErrorPolicy {
+    // the row is left out of the report
+    SKIP,
+    // the output of the row is empty
+    NULL,
+    // the run stops
+    FAIL
+}
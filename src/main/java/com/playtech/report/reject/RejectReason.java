@@ -0,0 +1,19 @@
+package com.playtech.report.reject;
+
+public enum RejectReason {
+    COLUMN_COUNT("Incorrect column count"),
+    TYPE_MISMATCH("Value does not match the column type"),
+    NOT_A_NUMBER("Not a number"),
+    INVALID_DATE("Invalid date"),
+    OUT_OF_RANGE("Value does not fit the column scale");
+
+    private final String description;
+
+    RejectReason(String description) {
+        this.description = description;
+    }
+
+    public String description() {
+        return description;
+    }
+}
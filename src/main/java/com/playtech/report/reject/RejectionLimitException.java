@@ -0,0 +1,10 @@
+package com.playtech.report.reject;
+
+// thrown from wherever the error rate went over the limit, it ends the whole run
+public class RejectionLimitException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public RejectionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,155 @@
+package com.playtech.report.reject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// everything a run could not use: lines of the csv and values the transformers had to drop, counted by reason and
+// column. One instance is shared by all workers of a run, nothing is printed until report() is called at the end.
+// only the first lines go to the sample, all rejected csv lines can go to a side file
+public class Rejections {
+    public static final int DEFAULT_SAMPLE_SIZE = 10;
+    // the error rate is not looked at before this many rows were read, so one bad line at the start can't end the run
+    public static final long MIN_ROWS_FOR_RATE = 1000;
+
+    private final int sampleSize;
+    private final double maxErrorRate;
+    private final Path rejectFile;
+    private final Map<Key, LongAdder> counts = new ConcurrentHashMap<>();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final List<String> sample = new ArrayList<>();
+    private BufferedWriter rejectWriter;
+
+    // counts and a sample, the run never stops because of bad data
+    public Rejections() {
+        this(DEFAULT_SAMPLE_SIZE, 1, null);
+    }
+
+    // maxErrorRate is the share of rows that may be rejected, 1 for no limit. rejectFile may be null
+    public Rejections(int sampleSize, double maxErrorRate, Path rejectFile) {
+        if (maxErrorRate < 0 || maxErrorRate > 1) {
+            throw new IllegalArgumentException(ERROR + "Error rate has to be between 0 and 1: " + maxErrorRate + RESET);
+        }
+        this.sampleSize = sampleSize;
+        this.maxErrorRate = maxErrorRate;
+        this.rejectFile = rejectFile;
+    }
+
+    // rows handed to the pipeline, rejectLine() counts the rejected ones
+    public void rowsRead(long count) {
+        rows.add(count);
+        checkRate();
+    }
+
+    // a csv line that was left out, column is null when the line as a whole is wrong.
+    // the caller keeps the line for the next flush() when writesLines() is true
+    public void rejectLine(RejectReason reason, String column, String location, String line) {
+        rows.increment();
+        count(reason, column);
+        addSample(location + ": " + reason.description() + (column == null ? "" : " in " + column) + ": " + line);
+        checkRate();
+    }
+
+    // a value a transformer could not use, there is no csv line any more at that point
+    public void rejectValue(RejectReason reason, String column, Object value) {
+        count(reason, column);
+        addSample(reason.description() + " in " + column + ": " + value);
+        checkRate();
+    }
+
+    // writes the rejected lines collected by one reader, callers collect a few hundred at a time
+    public void flush(List<String> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            try {
+                if (rejectWriter == null) {
+                    rejectWriter = Files.newBufferedWriter(rejectFile, StandardCharsets.UTF_8);
+                }
+                for (String line : pending) {
+                    rejectWriter.write(line);
+                    rejectWriter.newLine();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        pending.clear();
+    }
+
+    public long errorCount() {
+        return errors.sum();
+    }
+
+    public boolean writesLines() {
+        return rejectFile != null;
+    }
+
+    // prints the counts and the sample, and closes the side file
+    public synchronized void report(PrintStream out) throws IOException {
+        if (rejectWriter != null) {
+            rejectWriter.close();
+            rejectWriter = null;
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        out.println(ERROR + "Rejected " + errors.sum() + " of " + rows.sum() + " rows:" + RESET);
+        Map<String, Long> sorted = new TreeMap<>();
+        counts.forEach((key, count) -> sorted.put(key.toString(), count.sum()));
+        sorted.forEach((key, count) -> out.println("  " + count + " x " + key));
+        out.println("First " + sample.size() + ":");
+        for (String line : sample) {
+            out.println("  " + line);
+        }
+        if (rejectFile != null) {
+            out.println("Rejected lines written to " + rejectFile);
+        }
+    }
+
+    private void count(RejectReason reason, String column) {
+        counts.computeIfAbsent(new Key(reason, column), key -> new LongAdder()).increment();
+        errors.increment();
+    }
+
+    private synchronized void addSample(String line) {
+        if (sample.size() < sampleSize) {
+            sample.add(line);
+        }
+    }
+
+    private void checkRate() {
+        if (maxErrorRate >= 1) {
+            return;
+        }
+        long read = rows.sum();
+        long rejected = errors.sum();
+        if (read >= MIN_ROWS_FOR_RATE && rejected > maxErrorRate * read) {
+            throw new RejectionLimitException(ERROR + "Stopped after " + rejected + " errors in " + read
+                    + " rows, more than the allowed rate of " + maxErrorRate + RESET);
+        }
+    }
+
+    private record Key(RejectReason reason, String column) {
+        @Override
+        public String toString() {
+            return reason.description() + (column == null ? "" : " in " + column);
+        }
+    }
+}
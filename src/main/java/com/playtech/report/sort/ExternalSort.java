@@ -0,0 +1,277 @@
+package com.playtech.report.sort;
+
+import com.playtech.report.batch.BatchSerializer;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.transformer.TransformerState;
+import com.playtech.report.transformer.impl.OrderingTransformer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+// stable sort of all rows. Batches are buffered until the memory limit is reached, then sorted and written to a
+// temporary file as one sorted run; finish() merges the runs and whatever is still buffered.
+public class ExternalSort implements TransformerState {
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private final List<OrderingTransformer.OrderBy> orderBys;
+    private final long memoryLimit;
+    private final List<RowBatch> batches = new ArrayList<>();
+    private final List<SortKeys> keys = new ArrayList<>();
+    private long bufferedBytes;
+    // sorted runs on disk, in input order so equal keys keep their order across runs
+    private final List<Path> runs = new ArrayList<>();
+
+    public ExternalSort(List<OrderingTransformer.OrderBy> orderBys, long memoryLimit) {
+        this.orderBys = orderBys;
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public void accept(RowBatch batch) {
+        if (batch.size() == 0) {
+            return;
+        }
+        SortKeys batchKeys = SortKeys.of(orderBys, batch);
+        batches.add(batch);
+        keys.add(batchKeys);
+        bufferedBytes += batch.estimatedBytes() + batchKeys.estimatedBytes();
+        if (bufferedBytes > memoryLimit) {
+            spill();
+        }
+    }
+
+    @Override
+    public void merge(TransformerState other) {
+        ExternalSort partial = (ExternalSort) other;
+        if (!partial.runs.isEmpty()) {
+            // the buffered rows come before the runs of the partial
+            if (!batches.isEmpty()) {
+                spill();
+            }
+            runs.addAll(partial.runs);
+            partial.runs.clear();
+        }
+        batches.addAll(partial.batches);
+        keys.addAll(partial.keys);
+        bufferedBytes += partial.bufferedBytes;
+        if (bufferedBytes > memoryLimit) {
+            spill();
+        }
+    }
+
+    @Override
+    public void finish(Consumer<RowBatch> downstream) {
+        if (runs.isEmpty()) {
+            sortBuffer(downstream);
+            return;
+        }
+
+        try {
+            List<Run> sources = new ArrayList<>();
+            for (Path run : runs) {
+                sources.add(new Run(sources.size(), new FileBatches(run)));
+            }
+            List<RowBatch> sorted = new ArrayList<>();
+            sortBuffer(sorted::add);
+            sources.add(new Run(sources.size(), sorted.iterator()));
+            mergeRuns(sources, downstream);
+        } finally {
+            deleteRuns();
+        }
+    }
+
+    private void mergeRuns(List<Run> sources, Consumer<RowBatch> downstream) {
+        PriorityQueue<Run> queue = new PriorityQueue<>((a, b) -> {
+            int result = a.keys.compare(a.row, b.keys, b.row);
+            return result != 0 ? result : Integer.compare(a.order, b.order);
+        });
+        for (Run run : sources) {
+            if (run.advance()) {
+                queue.add(run);
+            }
+        }
+
+        RowBatch output = null;
+        while (!queue.isEmpty()) {
+            Run run = queue.poll();
+            if (output == null) {
+                output = run.batch.newBatch(RowBatch.DEFAULT_CAPACITY);
+            }
+            run.batch.copyRow(run.row, output, output.size());
+            output.setSize(output.size() + 1);
+            if (output.isFull()) {
+                downstream.accept(output);
+                output = null;
+            }
+            if (run.advance()) {
+                queue.add(run);
+            } else {
+                run.close();
+            }
+        }
+        if (output != null) {
+            downstream.accept(output);
+        }
+    }
+
+    // sorts the buffered rows in memory and hands them on in new batches
+    private void sortBuffer(Consumer<RowBatch> downstream) {
+        int rowCount = 0;
+        for (RowBatch batch : batches) {
+            rowCount += batch.size();
+        }
+        if (rowCount == 0) {
+            return;
+        }
+
+        int[] batchOf = new int[rowCount];
+        int[] rowOf = new int[rowCount];
+        int[] order = new int[rowCount];
+        int index = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            for (int row = 0; row < batches.get(i).size(); row++) {
+                batchOf[index] = i;
+                rowOf[index] = row;
+                order[index] = index;
+                index++;
+            }
+        }
+
+        SortKeys[] batchKeys = keys.toArray(new SortKeys[0]);
+        IndexSort.sort(order, rowCount, (a, b) -> batchKeys[batchOf[a]].compare(rowOf[a], batchKeys[batchOf[b]], rowOf[b]));
+
+        RowBatch sorted = null;
+        for (int i = 0; i < rowCount; i++) {
+            if (sorted == null) {
+                sorted = batches.get(0).newBatch(RowBatch.DEFAULT_CAPACITY);
+            }
+            int ref = order[i];
+            batches.get(batchOf[ref]).copyRow(rowOf[ref], sorted, sorted.size());
+            sorted.setSize(sorted.size() + 1);
+            if (sorted.isFull()) {
+                downstream.accept(sorted);
+                sorted = null;
+            }
+        }
+        if (sorted != null) {
+            downstream.accept(sorted);
+        }
+
+        batches.clear();
+        keys.clear();
+        bufferedBytes = 0;
+    }
+
+    private void spill() {
+        try {
+            Path run = Files.createTempFile("report-sort-", ".run");
+            run.toFile().deleteOnExit();
+            runs.add(run);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_SIZE))) {
+                sortBuffer(batch -> {
+                    try {
+                        BatchSerializer.write(out, batch);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteRuns() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException e) {
+                // the file is also removed on exit
+            }
+        }
+        runs.clear();
+    }
+
+    // cursor over the rows of one sorted run
+    private class Run {
+        private final int order;
+        private final Iterator<RowBatch> source;
+        private RowBatch batch;
+        private SortKeys keys;
+        private int row = -1;
+
+        private Run(int order, Iterator<RowBatch> source) {
+            this.order = order;
+            this.source = source;
+        }
+
+        private boolean advance() {
+            row++;
+            while (batch == null || row >= batch.size()) {
+                if (!source.hasNext()) {
+                    return false;
+                }
+                batch = source.next();
+                keys = SortKeys.of(orderBys, batch);
+                row = 0;
+            }
+            return true;
+        }
+
+        private void close() {
+            if (source instanceof FileBatches file) {
+                file.close();
+            }
+        }
+    }
+
+    // reads the batches of a run file back one at a time
+    private static class FileBatches implements Iterator<RowBatch> {
+        private final DataInputStream in;
+        private RowBatch next;
+
+        private FileBatches(Path run) {
+            try {
+                in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), IO_BUFFER_SIZE));
+                next = BatchSerializer.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public RowBatch next() {
+            RowBatch batch = next;
+            try {
+                next = BatchSerializer.read(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return batch;
+        }
+
+        private void close() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
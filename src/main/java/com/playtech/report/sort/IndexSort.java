@@ -0,0 +1,69 @@
+package com.playtech.report.sort;
+
+// stable merge sort of row indexes with a primitive comparator, so sorting never boxes a row reference
+public final class IndexSort {
+    private static final int INSERTION_RUN = 32;
+
+    private IndexSort() {
+    }
+
+    public interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    public static void sort(int[] indexes, int size, IndexComparator comparator) {
+        for (int low = 0; low < size; low += INSERTION_RUN) {
+            insertionSort(indexes, low, Math.min(low + INSERTION_RUN, size), comparator);
+        }
+        if (size <= INSERTION_RUN) {
+            return;
+        }
+
+        // bottom-up merges, moving between the two arrays on every pass
+        int[] source = indexes;
+        int[] target = new int[size];
+        for (int width = INSERTION_RUN; width < size; width *= 2) {
+            for (int low = 0; low < size; low += 2 * width) {
+                int middle = Math.min(low + width, size);
+                int high = Math.min(low + 2 * width, size);
+                merge(source, target, low, middle, high, comparator);
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != indexes) {
+            System.arraycopy(source, 0, indexes, 0, size);
+        }
+    }
+
+    private static void insertionSort(int[] indexes, int low, int high, IndexComparator comparator) {
+        for (int i = low + 1; i < high; i++) {
+            int value = indexes[i];
+            int j = i - 1;
+            while (j >= low && comparator.compare(indexes[j], value) > 0) {
+                indexes[j + 1] = indexes[j];
+                j--;
+            }
+            indexes[j + 1] = value;
+        }
+    }
+
+    private static void merge(int[] source, int[] target, int low, int middle, int high, IndexComparator comparator) {
+        // already in order, common for presorted input
+        if (middle >= high || comparator.compare(source[middle - 1], source[middle]) <= 0) {
+            System.arraycopy(source, low, target, low, high - low);
+            return;
+        }
+        int left = low;
+        int right = middle;
+        for (int i = low; i < high; i++) {
+            // ties take the left side to keep the sort stable
+            if (right >= high || (left < middle && comparator.compare(source[left], source[right]) <= 0)) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.playtech.report.sort;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import com.playtech.report.transformer.impl.OrderingTransformer;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+// the sort keys of a batch, extracted once per row so comparisons only look at primitives.
+// numbers, dates and datetimes become longs (doubles in an order preserving bit form), decimals are kept exact as their
+// unscaled long and scale, or as a BigDecimal when they don't fit a long. text in a column declared as a number or date
+// is parsed once per distinct value and only compared as text when it does not parse.
+// nulls sort first, then parsed values, then text, reversed for descending keys.
+public class SortKeys {
+    private static final byte NULL = 0;
+    private static final byte NUMBER = 1;
+    private static final byte DECIMAL = 2;
+    private static final byte TEXT = 3;
+
+    private final String[] names;
+    private final Column.DataType[] types;
+    private final boolean[] descending;
+    private final byte[][] kinds;
+    private final long[][] numbers;
+    // scale of the unscaled long in numbers for decimal rows, rows of one key may come from batches with other scales
+    private final byte[][] scales;
+    // decimal rows that don't fit a long, a key gets its array with its first such row
+    private final BigDecimal[][] wide;
+    private final String[][] texts;
+
+    public SortKeys(List<OrderingTransformer.OrderBy> orderBys, int capacity) {
+        int keyCount = orderBys.size();
+        names = new String[keyCount];
+        types = new Column.DataType[keyCount];
+        descending = new boolean[keyCount];
+        kinds = new byte[keyCount][capacity];
+        numbers = new long[keyCount][capacity];
+        scales = new byte[keyCount][capacity];
+        wide = new BigDecimal[keyCount][];
+        texts = new String[keyCount][capacity];
+        for (int key = 0; key < keyCount; key++) {
+            OrderingTransformer.OrderBy orderBy = orderBys.get(key);
+            names[key] = orderBy.getInput().getName();
+            types[key] = orderBy.getInput().getType();
+            descending[key] = orderBy.getOrder() == OrderingTransformer.Order.DESC;
+        }
+    }
+
+    public static SortKeys of(List<OrderingTransformer.OrderBy> orderBys, RowBatch batch) {
+        SortKeys keys = new SortKeys(orderBys, batch.size());
+        keys.extract(batch);
+        return keys;
+    }
+
+    public void extract(RowBatch batch) {
+        for (int key = 0; key < names.length; key++) {
+            ColumnVector vector = batch.vector(names[key]);
+            byte[] keyKinds = kinds[key];
+            long[] keyNumbers = numbers[key];
+            int size = batch.size();
+
+            if (vector instanceof LongVector longs) {
+                for (int row = 0; row < size; row++) {
+                    keyKinds[row] = longs.isNull(row) ? NULL : NUMBER;
+                    keyNumbers[row] = longs.get(row);
+                }
+            } else if (vector instanceof DoubleVector doubles) {
+                for (int row = 0; row < size; row++) {
+                    keyKinds[row] = doubles.isNull(row) ? NULL : NUMBER;
+                    keyNumbers[row] = sortableBits(doubles.get(row));
+                }
+            } else if (vector instanceof DecimalVector decimals) {
+                for (int row = 0; row < size; row++) {
+                    if (decimals.isNull(row)) {
+                        keyKinds[row] = NULL;
+                    } else if (decimals.fits(row)) {
+                        setDecimal(key, row, decimals.getUnscaled(row), decimals.scale());
+                    } else {
+                        setDecimal(key, row, decimals.get(row));
+                    }
+                }
+            } else if (vector instanceof StringVector strings) {
+                extractStrings(key, strings, size);
+            } else {
+                // the column is not there (yet), all rows compare equal
+                for (int row = 0; row < size; row++) {
+                    keyKinds[row] = NULL;
+                }
+            }
+        }
+    }
+
+    private void extractStrings(int key, StringVector strings, int size) {
+        // parse every distinct value of the batch once
+        byte[] codeKinds = new byte[strings.dictionarySize()];
+        long[] codeNumbers = new long[strings.dictionarySize()];
+        BigDecimal[] codeDecimals = types[key] == Column.DataType.DECIMAL ? new BigDecimal[codeKinds.length] : null;
+        for (int code = 0; code < codeKinds.length; code++) {
+            String value = strings.decode(code);
+            try {
+                if (codeDecimals != null) {
+                    codeDecimals[code] = new BigDecimal(value);
+                    codeKinds[code] = DECIMAL;
+                } else {
+                    codeNumbers[code] = parse(types[key], value);
+                    codeKinds[code] = NUMBER;
+                }
+            } catch (DateTimeParseException | NumberFormatException e) {
+                codeKinds[code] = TEXT;
+            }
+        }
+
+        for (int row = 0; row < size; row++) {
+            if (strings.isNull(row)) {
+                kinds[key][row] = NULL;
+                continue;
+            }
+            int code = strings.getCode(row);
+            if (codeKinds[code] == DECIMAL) {
+                setDecimal(key, row, codeDecimals[code]);
+                continue;
+            }
+            kinds[key][row] = codeKinds[code];
+            numbers[key][row] = codeNumbers[code];
+            texts[key][row] = codeKinds[code] == TEXT ? strings.decode(code) : null;
+        }
+    }
+
+    private void setDecimal(int key, int row, long unscaled, int scale) {
+        kinds[key][row] = DECIMAL;
+        numbers[key][row] = unscaled;
+        scales[key][row] = (byte) scale;
+        if (wide[key] != null) {
+            wide[key][row] = null;
+        }
+    }
+
+    private void setDecimal(int key, int row, BigDecimal value) {
+        if (value.scale() >= 0 && value.scale() <= DecimalVector.MAX_SCALE && value.unscaledValue().bitLength() < 64) {
+            setDecimal(key, row, value.unscaledValue().longValue(), value.scale());
+            return;
+        }
+        kinds[key][row] = DECIMAL;
+        if (wide[key] == null) {
+            wide[key] = new BigDecimal[kinds[key].length];
+        }
+        wide[key][row] = value;
+    }
+
+    private BigDecimal decimal(int key, int row) {
+        BigDecimal value = wide[key] == null ? null : wide[key][row];
+        return value != null ? value : BigDecimal.valueOf(numbers[key][row], scales[key][row]);
+    }
+
+    private boolean isWide(int key, int row) {
+        return wide[key] != null && wide[key][row] != null;
+    }
+
+    private static long parse(Column.DataType type, String value) {
+        if (type == null) {
+            throw new NumberFormatException();
+        }
+        return switch (type) {
+            case INTEGER -> Long.parseLong(value);
+            case DOUBLE -> sortableBits(Double.parseDouble(value));
+            case DATE -> LocalDate.parse(value).toEpochDay();
+            case DATETIME -> Instant.parse(value).getEpochSecond();
+            case DECIMAL, STRING -> throw new NumberFormatException();
+        };
+    }
+
+    // flips the bits of negative doubles so the long order matches the double order
+    private static long sortableBits(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    public int compare(int row, SortKeys other, int otherRow) {
+        for (int key = 0; key < names.length; key++) {
+            byte kind = kinds[key][row];
+            byte otherKind = other.kinds[key][otherRow];
+            int result;
+            if (kind != otherKind) {
+                result = Byte.compare(kind, otherKind);
+            } else if (kind == NUMBER) {
+                result = Long.compare(numbers[key][row], other.numbers[key][otherRow]);
+            } else if (kind == DECIMAL) {
+                result = compareDecimals(key, row, other, otherRow);
+            } else if (kind == TEXT) {
+                result = texts[key][row].compareTo(other.texts[key][otherRow]);
+            } else {
+                result = 0;
+            }
+            if (result != 0) {
+                return descending[key] ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+    // unscaled longs at the same scale compare as they are, anything else as BigDecimal
+    private int compareDecimals(int key, int row, SortKeys other, int otherRow) {
+        if (!isWide(key, row) && !other.isWide(key, otherRow) && scales[key][row] == other.scales[key][otherRow]) {
+            return Long.compare(numbers[key][row], other.numbers[key][otherRow]);
+        }
+        return decimal(key, row).compareTo(other.decimal(key, otherRow));
+    }
+
+    public void copy(int row, SortKeys target, int targetRow) {
+        for (int key = 0; key < names.length; key++) {
+            target.kinds[key][targetRow] = kinds[key][row];
+            target.numbers[key][targetRow] = numbers[key][row];
+            target.scales[key][targetRow] = scales[key][row];
+            target.texts[key][targetRow] = texts[key][row];
+            if (isWide(key, row)) {
+                target.setDecimal(key, targetRow, wide[key][row]);
+            } else if (target.wide[key] != null) {
+                target.wide[key][targetRow] = null;
+            }
+        }
+    }
+
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (int key = 0; key < kinds.length; key++) {
+            // kind, number, scale and text reference per row, and a reference for decimals too wide for a long
+            bytes += 18L * kinds[key].length;
+            if (wide[key] != null) {
+                bytes += 8L * wide[key].length;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,148 @@
+package com.playtech.report.sort;
+
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.transformer.TransformerState;
+import com.playtech.report.transformer.impl.OrderingTransformer;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// keeps only the first limit rows of the sort order in a bounded heap, the worst kept row at the root.
+// rows are copied into a batch of limit slots, so memory depends on the limit and not on the input.
+public class TopNSort implements TransformerState {
+    private final List<OrderingTransformer.OrderBy> orderBys;
+    private final int limit;
+    private RowBatch slots;
+    private SortKeys slotKeys;
+    // arrival order of every slot, breaks ties so the result matches a stable sort
+    private long[] sequences;
+    private int[] heap;
+    private int size;
+    private long nextSequence;
+
+    public TopNSort(List<OrderingTransformer.OrderBy> orderBys, int limit) {
+        this.orderBys = orderBys;
+        this.limit = limit;
+    }
+
+    @Override
+    public void accept(RowBatch batch) {
+        if (batch.size() == 0 || limit == 0) {
+            return;
+        }
+        SortKeys keys = SortKeys.of(orderBys, batch);
+        for (int row = 0; row < batch.size(); row++) {
+            offer(batch, keys, row);
+        }
+    }
+
+    @Override
+    public void merge(TransformerState other) {
+        TopNSort partial = (TopNSort) other;
+        // rows of the partial arrived after ours, offer them in their own arrival order
+        int[] order = partial.arrivalOrder();
+        for (int i = 0; i < partial.size; i++) {
+            offer(partial.slots, partial.slotKeys, order[i]);
+        }
+    }
+
+    @Override
+    public void finish(Consumer<RowBatch> downstream) {
+        if (size == 0) {
+            return;
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        IndexSort.sort(order, size, this::compareSlots);
+
+        RowBatch sorted = null;
+        for (int i = 0; i < size; i++) {
+            if (sorted == null) {
+                sorted = slots.newBatch(Math.min(RowBatch.DEFAULT_CAPACITY, size - i));
+            }
+            slots.copyRow(order[i], sorted, sorted.size());
+            sorted.setSize(sorted.size() + 1);
+            if (sorted.isFull()) {
+                downstream.accept(sorted);
+                sorted = null;
+            }
+        }
+        if (sorted != null) {
+            downstream.accept(sorted);
+        }
+    }
+
+    private void offer(RowBatch batch, SortKeys keys, int row) {
+        if (slots == null) {
+            slots = batch.newBatch(limit);
+            slotKeys = new SortKeys(orderBys, limit);
+            sequences = new long[limit];
+            heap = new int[limit];
+        }
+
+        if (size < limit) {
+            int slot = size++;
+            store(batch, keys, row, slot);
+            heap[slot] = slot;
+            siftUp(slot);
+        } else if (keys.compare(row, slotKeys, heap[0]) < 0) {
+            // better than the worst kept row, equal keys lose because they arrived later
+            store(batch, keys, row, heap[0]);
+            siftDown(0);
+        }
+    }
+
+    private void store(RowBatch batch, SortKeys keys, int row, int slot) {
+        batch.copyRow(row, slots, slot);
+        keys.copy(row, slotKeys, slot);
+        sequences[slot] = nextSequence++;
+    }
+
+    private int compareSlots(int a, int b) {
+        int result = slotKeys.compare(a, slotKeys, b);
+        return result != 0 ? result : Long.compare(sequences[a], sequences[b]);
+    }
+
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compareSlots(heap[parent], slot) >= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
+        }
+        heap[index] = slot;
+    }
+
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compareSlots(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compareSlots(heap[child], slot) <= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = slot;
+    }
+
+    private int[] arrivalOrder() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        IndexSort.sort(order, size, (a, b) -> Long.compare(sequences[a], sequences[b]));
+        return order;
+    }
+}
@@ -0,0 +1,33 @@
+package com.playtech.report.transformer;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.reject.Rejections;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// transformer that has to see every row before it can emit anything (grouping, sorting)
+public interface BlockingTransformer extends Transformer {
+    TransformerState createState(Report report);
+
+    // the state reports the values it can't use to rejections
+    default TransformerState createState(Report report, Rejections rejections) {
+        return createState(report);
+    }
+
+    // columns the transformer needs to see, given the columns that are read after it
+    Set<String> requiredColumns(Set<String> downstreamColumns);
+
+    // columns of the batches it emits, given the columns of the batches it gets
+    List<String> outputColumns(List<String> inputColumns);
+
+    @Override
+    default void transform(Report report, List<Map<String, Object>> rows) {
+        TransformerState state = createState(report);
+        state.accept(RowBatch.fromRows(rows));
+        rows.clear();
+        state.finish(batch -> rows.addAll(batch.toRows()));
+    }
+}
@@ -0,0 +1,13 @@
+package com.playtech.report.transformer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// state that an incremental run saves after its input, the next run loads it before reading the rows appended since
+public interface PersistentState extends TransformerState {
+    void save(DataOutput out) throws IOException;
+
+    // called on a new state before any row arrives
+    void load(DataInput in) throws IOException;
+}
@@ -0,0 +1,57 @@
+package com.playtech.report.transformer;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+
+import java.util.List;
+import java.util.Map;
+
+// transformer that only keeps the rows matching a condition and adds no column. It looks at one row at a time
+// like a RowTransformer, so it runs while the csv is read, or inside the csv reader when nothing comes before it
+public interface RowFilter extends Transformer {
+    // columns the condition reads, in the order test() gets them
+    List<Column> inputColumns();
+
+    // whether the row is kept, inputs the batch does not have are null
+    boolean test(ColumnVector[] inputs, int row);
+
+    // false when no row with values between the bounds can match, so a whole block of stored rows can be skipped.
+    // bounds of an input hold its smallest value in row 0 and its largest in row 1, both null when the block only
+    // has nulls, and the bounds themselves are null when nothing is known about the input
+    default boolean mayMatch(ColumnVector[] bounds) {
+        return true;
+    }
+
+    // leaves out the rows that don't match, returns false when the batch is unchanged
+    default boolean filter(RowBatch batch, ColumnVector[] inputs) {
+        boolean[] drop = null;
+        for (int row = 0; row < batch.size(); row++) {
+            if (!test(inputs, row)) {
+                drop = drop == null ? new boolean[batch.size()] : drop;
+                drop[row] = true;
+            }
+        }
+        if (drop == null) {
+            return false;
+        }
+        batch.removeRows(drop);
+        return true;
+    }
+
+    @Override
+    default void transform(Report report, List<Map<String, Object>> rows) {
+        RowBatch batch = RowBatch.fromRows(rows);
+        List<Column> inputColumns = inputColumns();
+        ColumnVector[] inputs = new ColumnVector[inputColumns.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = batch.vector(inputColumns.get(i).getName());
+        }
+        if (filter(batch, inputs)) {
+            List<Map<String, Object>> kept = batch.toRows();
+            rows.clear();
+            rows.addAll(kept);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.playtech.report.transformer;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+import com.playtech.report.reject.Rejections;
+
+import java.util.List;
+import java.util.Map;
+
+// transformer that only looks at one row at a time, so it can run while the csv is still being read
+public interface RowTransformer extends Transformer {
+    // columns the transformer reads, in the order compute() gets them
+    List<Column> inputColumns();
+
+    Column outputColumn();
+
+    // computes the output column for the batch, inputs the batch does not have are null.
+    // returning null leaves the batch unchanged
+    ColumnVector compute(RowBatch batch, ColumnVector[] inputs);
+
+    // the pipeline calls this one, transformers that drop values or rows report them to rejections.
+    // a transformer may remove rows from the batch, the column it returns then has the rows that are left
+    default ColumnVector compute(RowBatch batch, ColumnVector[] inputs, Rejections rejections) {
+        return compute(batch, inputs);
+    }
+
+    // true when running the transformer changes more than its output column: it removes rows or stops the run on a
+    // value it can't use. The plan then keeps it even when nothing reads its output
+    default boolean hasSideEffects() {
+        return false;
+    }
+
+    // rewrites the batch in place, looking the columns up by name
+    default void transform(Report report, RowBatch batch) {
+        List<Column> inputColumns = inputColumns();
+        ColumnVector[] inputs = new ColumnVector[inputColumns.size()];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = batch.vector(inputColumns.get(i).getName());
+        }
+        ColumnVector output = compute(batch, inputs);
+        if (output != null) {
+            batch.put(outputColumn().getName(), output);
+        }
+    }
+
+    @Override
+    default void transform(Report report, List<Map<String, Object>> rows) {
+        RowBatch batch = RowBatch.fromRows(rows);
+        transform(report, batch);
+        List<Map<String, Object>> transformed = batch.toRows();
+        rows.clear();
+        rows.addAll(transformed);
+    }
+}
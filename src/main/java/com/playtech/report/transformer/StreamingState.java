@@ -0,0 +1,11 @@
+package com.playtech.report.transformer;
+
+import com.playtech.report.batch.RowBatch;
+
+import java.util.function.Consumer;
+
+// state of a blocking transformer that hands its rows on while it still gets input, like a window over ordered rows.
+// it depends on the order of the whole input, so parallel workers stop in front of it and it is never merged
+public interface StreamingState extends TransformerState {
+    void accept(RowBatch batch, Consumer<RowBatch> downstream);
+}
@@ -2,9 +2,26 @@ package com.playtech.report.transformer;
 
 import com.playtech.report.Report;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface Transformer {
     void transform(Report report, List<Map<String, Object>> rows);
+
+    // columns the transformer reads as numbers, undeclared csv columns among them are parsed as numbers when read
+    default Set<String> numericColumns() {
+        return Set.of();
+    }
+
+    // files the transformer reads besides the csv, a saved state of an incremental run depends on them too
+    default List<Path> files() {
+        return List.of();
+    }
+
+    // one line summary for the --explain output
+    default String describe() {
+        return getClass().getSimpleName();
+    }
 }
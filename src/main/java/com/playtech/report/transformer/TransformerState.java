@@ -0,0 +1,15 @@
+package com.playtech.report.transformer;
+
+import com.playtech.report.batch.RowBatch;
+
+import java.util.function.Consumer;
+
+// the buffered state of a blocking transformer for one run of the pipeline
+public interface TransformerState {
+    void accept(RowBatch batch);
+
+    // takes over the rows of a state created by the same transformer, as if they arrived after this state's rows
+    void merge(TransformerState other);
+
+    void finish(Consumer<RowBatch> downstream);
+}
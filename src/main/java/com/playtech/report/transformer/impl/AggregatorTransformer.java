@@ -1,102 +1,308 @@
 package com.playtech.report.transformer.impl;
 
 import com.playtech.report.Report;
+import com.playtech.report.aggregate.Accumulator;
+import com.playtech.report.aggregate.AggregateInput;
+import com.playtech.report.aggregate.GroupTable;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
 import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.PersistentState;
+import com.playtech.report.transformer.RowTransformer;
 import com.playtech.report.transformer.Transformer;
+import com.playtech.report.transformer.TransformerState;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlIDREF;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static com.playtech.ReportGenerator.ERROR;
 import static com.playtech.ReportGenerator.RESET;
 
-public class AggregatorTransformer implements Transformer {
+public class AggregatorTransformer implements BlockingTransformer {
     public static final String NAME = "Aggregator";
-    private final Column groupByColumn;
+    private final List<Column> groupByColumns;
     private final List<AggregateBy> aggregateColumns;
 
-    public AggregatorTransformer(Column groupByColumn, List<AggregateBy> aggregateColumns) {
-        this.groupByColumn = groupByColumn;
+    public AggregatorTransformer(List<Column> groupByColumns, List<AggregateBy> aggregateColumns) {
+        for (Column column : groupByColumns) {
+            if (column == null) {
+                throw new IllegalArgumentException(ERROR + "Aggregator group by column is not defined" + RESET);
+            }
+        }
+        for (AggregateBy aggregate : aggregateColumns) {
+            aggregate.check();
+        }
+        this.groupByColumns = groupByColumns;
         this.aggregateColumns = aggregateColumns;
     }
 
     @Override
-    public void transform(Report report, List<Map<String, Object>> rows) {
-
-        // group rows by the groupByColumn value
-        Map<Object, List<Map<String, Object>>> groupedRows = rows.stream()
-                .filter(row -> row.get(groupByColumn.getName()) != null)
-                .collect(Collectors.groupingBy(row -> row.get(groupByColumn.getName())));
-
-        List<Map<String, Object>> aggregatedRows = new ArrayList<>();
-
-        // process each group
-        for (Map.Entry<Object, List<Map<String, Object>>> entry : groupedRows.entrySet()) {
-            Object groupKey = entry.getKey();
-            List<Map<String, Object>> groupRows = entry.getValue();
-
-            Map<String, Object> aggregatedRow = new HashMap<>();
-            aggregatedRow.put(groupByColumn.getName(), groupKey);
-
-            // compute aggregates for each specified column
-            for (AggregateBy aggregate : aggregateColumns) {
-                Column input = aggregate.getInput();
-                Column output = aggregate.getOutput();
-                Method method = aggregate.getMethod();
-
-                List<Number> values = groupRows.stream()
-                        .map(row -> row.get(input.getName()))
-                        .filter(Objects::nonNull)
-                        .map(val -> {
-                            if (val instanceof Number) {
-                                return (Number) val;
-                            } else if (val instanceof String strVal) {
-                                try {
-                                    return Double.parseDouble(strVal);
-                                } catch (NumberFormatException e) {
-                                    System.err.println(ERROR + "Invalid number format for column " + input.getName() + ": " + strVal + RESET);
-                                    return null;
-                                }
-                            } else {
-                                System.err.println(ERROR + "Unexpected type for column " + input.getName() + ": " + val.getClass().getName() + RESET);
-                                return null;
-                            }
-                        })
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toList());
-
-//                System.out.println("Extracted numerical values: " + values);
-
-                double aggregatedValue = 0;
-
-                if (method == Method.SUM) {
-                    aggregatedValue = values.stream().mapToDouble(Number::doubleValue).sum();
-                } else if (method == Method.AVG) {
-                    aggregatedValue = values.isEmpty() ? 0 : values.stream().mapToDouble(Number::doubleValue).average().orElse(0);
+    public TransformerState createState(Report report) {
+        return createState(report, new Rejections());
+    }
+
+    @Override
+    public TransformerState createState(Report report, Rejections rejections) {
+        Set<String> available = columnsBefore(report);
+        for (Column column : groupByColumns) {
+            if (!available.contains(column.getName())) {
+                throw new IllegalArgumentException(ERROR + NAME + " groups by " + column.getName()
+                        + ", which is neither a report input nor computed before it" + RESET);
+            }
+        }
+        return new AggregationState(rejections);
+    }
+
+    // the report inputs and the columns the transformers before this one add or leave
+    private Set<String> columnsBefore(Report report) {
+        Set<String> columns = new LinkedHashSet<>(Columns.names(report.getInputs() != null ? report.getInputs() : List.of()));
+        for (Transformer transformer : report.getTransformers() != null ? report.getTransformers() : List.<Transformer>of()) {
+            if (transformer == this) {
+                break;
+            }
+            if (transformer instanceof RowTransformer rowTransformer) {
+                columns.add(rowTransformer.outputColumn().getName());
+            } else if (transformer instanceof BlockingTransformer blockingTransformer) {
+                columns = new LinkedHashSet<>(blockingTransformer.outputColumns(new ArrayList<>(columns)));
+            }
+        }
+        return columns;
+    }
+
+    @Override
+    public Set<String> requiredColumns(Set<String> downstreamColumns) {
+        Set<String> required = new LinkedHashSet<>(Columns.names(groupByColumns));
+        for (AggregateBy aggregate : aggregateColumns) {
+            required.add(aggregate.getInput().getName());
+            if (aggregate.getWeight() != null) {
+                required.add(aggregate.getWeight().getName());
+            }
+        }
+        return required;
+    }
+
+    @Override
+    public Set<String> numericColumns() {
+        Set<String> numeric = new LinkedHashSet<>();
+        for (AggregateBy aggregate : aggregateColumns) {
+            switch (aggregate.getMethod()) {
+                case SUM, AVG, MIN, MAX, QUANTILE -> numeric.add(aggregate.getInput().getName());
+                default -> {
+                }
+            }
+            if (aggregate.getWeight() != null) {
+                numeric.add(aggregate.getWeight().getName());
+            }
+        }
+        return numeric;
+    }
+
+    @Override
+    public List<String> outputColumns(List<String> inputColumns) {
+        Set<String> outputs = new LinkedHashSet<>(Columns.names(groupByColumns));
+        for (AggregateBy aggregate : aggregateColumns) {
+            outputs.add(aggregate.getOutput().getName());
+        }
+        return new ArrayList<>(outputs);
+    }
+
+    @Override
+    public String describe() {
+        StringBuilder description = new StringBuilder(NAME + " group by " + Columns.names(groupByColumns));
+        for (AggregateBy aggregate : aggregateColumns) {
+            description.append(", ").append(aggregate.getMethod());
+            switch (aggregate.getMethod()) {
+                case QUANTILE -> description.append(' ').append(aggregate.getQuantile());
+                case TOP_K -> description.append(' ').append(aggregate.getK());
+                default -> {
                 }
+            }
+            description.append('(').append(aggregate.getInput().getName());
+            if (aggregate.getWeight() != null) {
+                description.append(" by ").append(aggregate.getWeight().getName());
+            }
+            description.append(") -> ").append(aggregate.getOutput().getName());
+        }
+        return description.toString();
+    }
 
-                aggregatedRow.put(output.getName(), aggregatedValue);
+    // hash aggregation: every row is folded into the primitive accumulators of its group as it arrives,
+    // so memory depends on the number of groups and never on the number of rows
+    private class AggregationState implements PersistentState {
+        private final GroupTable groups = new GroupTable(groupByColumns.size());
+        private final Accumulator[] accumulators = new Accumulator[aggregateColumns.size()];
+        private final AggregateInput[] inputs = new AggregateInput[aggregateColumns.size()];
+        // the weight column of a TOP_K, null for the other aggregates
+        private final AggregateInput[] weights = new AggregateInput[aggregateColumns.size()];
+        // aggregates of the same column share its input, so a text column is turned into numbers once per batch
+        private final AggregateInput[] distinctInputs;
+        private int[] groupIds = new int[RowBatch.DEFAULT_CAPACITY];
+
+        private AggregationState(Rejections rejections) {
+            Map<String, AggregateInput> byColumn = new LinkedHashMap<>();
+            for (int i = 0; i < accumulators.length; i++) {
+                AggregateBy aggregate = aggregateColumns.get(i);
+                inputs[i] = byColumn.computeIfAbsent(aggregate.getInput().getName(), column -> new AggregateInput(column, rejections));
+                weights[i] = aggregate.getWeight() == null ? null
+                        : byColumn.computeIfAbsent(aggregate.getWeight().getName(), column -> new AggregateInput(column, rejections));
+                accumulators[i] = Accumulator.create(aggregate, weights[i]);
             }
+            distinctInputs = byColumn.values().toArray(new AggregateInput[0]);
+        }
 
-            aggregatedRows.add(aggregatedRow);
+        @Override
+        public void accept(RowBatch batch) {
+            ColumnVector[] keys = new ColumnVector[groupByColumns.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = batch.vector(groupByColumns.get(i).getName());
+            }
+
+            if (groupIds.length < batch.size()) {
+                groupIds = new int[batch.size()];
+            }
+            groups.resolve(keys, batch.size(), groupIds);
+
+            for (AggregateInput input : distinctInputs) {
+                input.load(batch.vector(input.columnName()), batch.size());
+            }
+            // aggregate one column at a time over the whole batch
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i].ensureCapacity(groups.size());
+                accumulators[i].add(groupIds, batch.size(), inputs[i]);
+            }
         }
 
-        // clear original rows and replace with aggregated rows
-        rows.clear();
-        rows.addAll(aggregatedRows);
+        @Override
+        public void merge(TransformerState other) {
+            AggregationState partial = (AggregationState) other;
+            merge(partial.groups, partial.accumulators);
+        }
+
+        private void merge(GroupTable otherGroups, Accumulator[] otherAccumulators) {
+            for (int otherGroup = 0; otherGroup < otherGroups.size(); otherGroup++) {
+                int group = groups.groupOf(otherGroups, otherGroup);
+                for (int i = 0; i < accumulators.length; i++) {
+                    accumulators[i].ensureCapacity(groups.size());
+                    accumulators[i].merge(group, otherAccumulators[i], otherGroup);
+                }
+            }
+        }
+
+        @Override
+        public void save(DataOutput out) throws IOException {
+            groups.write(out);
+            for (Accumulator accumulator : accumulators) {
+                accumulator.save(out, groups.size());
+            }
+        }
+
+        @Override
+        public void load(DataInput in) throws IOException {
+            GroupTable savedGroups = GroupTable.read(in);
+            Accumulator[] saved = new Accumulator[accumulators.length];
+            for (int i = 0; i < saved.length; i++) {
+                saved[i] = Accumulator.create(aggregateColumns.get(i), weights[i]);
+                saved[i].ensureCapacity(savedGroups.size());
+                saved[i].load(in, savedGroups.size());
+            }
+            merge(savedGroups, saved);
+        }
+
+        @Override
+        public void finish(Consumer<RowBatch> downstream) {
+            // one output row per group, in the order the groups first appeared
+            for (int first = 0; first < groups.size(); first += RowBatch.DEFAULT_CAPACITY) {
+                int size = Math.min(RowBatch.DEFAULT_CAPACITY, groups.size() - first);
+                RowBatch batch = new RowBatch(size);
+
+                for (int column = 0; column < groupByColumns.size(); column++) {
+                    ColumnVector keys = groups.newKeyVector(column, size);
+                    for (int row = 0; row < size; row++) {
+                        groups.writeKey(first + row, column, keys, row);
+                    }
+                    batch.put(groupByColumns.get(column).getName(), keys);
+                }
+
+                for (int i = 0; i < accumulators.length; i++) {
+                    ColumnVector output = accumulators[i].newOutput(size);
+                    for (int row = 0; row < size; row++) {
+                        accumulators[i].write(first + row, output, row);
+                    }
+                    batch.put(aggregateColumns.get(i).getOutput().getName(), output);
+                }
+
+                batch.setSize(size);
+                downstream.accept(batch);
+            }
+        }
     }
 
 
+    // QUANTILE and TOP_K keep a sketch of fixed size per group, the other settings are only read by them
     @XmlAccessorType(XmlAccessType.FIELD)
     public static class AggregateBy {
+        public static final int DEFAULT_COMPRESSION = 100;
+        public static final int DEFAULT_EXACT_LIMIT = 1000;
+        public static final int DEFAULT_K = 10;
+        // counters of a top k summary per value it reports
+        public static final int DEFAULT_COUNTERS_PER_VALUE = 10;
+
         @XmlIDREF
         private Column input;
         private Method method;
         @XmlIDREF
         private Column output;
+        // QUANTILE: the quantile between 0 and 1, the size of the digest and how many values a group keeps
+        // as they are for an exact result
+        private Double quantile;
+        private Integer compression;
+        private Integer exactLimit;
+        // TOP_K: how many values are reported, the counters of the summary and the column that weighs a row
+        private Integer k;
+        private Integer counters;
+        @XmlIDREF
+        private Column weight;
+
+        private void check() {
+            if (method == Method.QUANTILE) {
+                if (quantile == null || !(quantile >= 0 && quantile <= 1)) {
+                    throw new IllegalArgumentException(ERROR + "QUANTILE of " + name(input) + " needs a quantile between 0 and 1, got " + quantile + RESET);
+                }
+                if (getCompression() < 10) {
+                    throw new IllegalArgumentException(ERROR + "QUANTILE compression has to be at least 10: " + compression + RESET);
+                }
+                if (getExactLimit() < 0) {
+                    throw new IllegalArgumentException(ERROR + "QUANTILE exact limit can't be negative: " + exactLimit + RESET);
+                }
+            } else if (method == Method.TOP_K) {
+                if (getK() < 1) {
+                    throw new IllegalArgumentException(ERROR + "TOP_K of " + name(input) + " needs a k of at least 1, got " + k + RESET);
+                }
+                if (getCounters() < getK()) {
+                    throw new IllegalArgumentException(ERROR + "TOP_K needs at least k = " + getK() + " counters, got " + counters + RESET);
+                }
+            } else if (weight != null) {
+                throw new IllegalArgumentException(ERROR + method + " of " + name(input) + " has no weight, only TOP_K does" + RESET);
+            }
+        }
+
+        private static String name(Column column) {
+            return column != null ? column.getName() : null;
+        }
 
         public Column getInput() {
             return input;
@@ -109,11 +315,42 @@ public class AggregatorTransformer implements Transformer {
         public Method getMethod() {
             return method;
         }
+
+        public Double getQuantile() {
+            return quantile;
+        }
+
+        public int getCompression() {
+            return compression != null ? compression : DEFAULT_COMPRESSION;
+        }
+
+        public int getExactLimit() {
+            return exactLimit != null ? exactLimit : DEFAULT_EXACT_LIMIT;
+        }
+
+        public int getK() {
+            return k != null ? k : DEFAULT_K;
+        }
+
+        public int getCounters() {
+            return counters != null ? counters : getK() * DEFAULT_COUNTERS_PER_VALUE;
+        }
+
+        public Column getWeight() {
+            return weight;
+        }
     }
 
     public enum Method {
         SUM,
-        AVG
+        AVG,
+        MIN,
+        MAX,
+        COUNT,
+        COUNT_DISTINCT,
+        APPROX_COUNT_DISTINCT,
+        QUANTILE,
+        TOP_K
     }
 
 }
@@ -1,63 +1,198 @@
 package com.playtech.report.transformer.impl;
 
-import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
 import com.playtech.report.column.Column;
-import com.playtech.report.transformer.Transformer;
+import com.playtech.report.reject.RejectReason;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.RowTransformer;
+import com.playtech.util.collection.LongCache;
+import com.playtech.util.time.IsoDates;
 
+import java.time.DateTimeException;
 import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
+import java.util.function.LongFunction;
 
 import static com.playtech.ReportGenerator.ERROR;
 import static com.playtech.ReportGenerator.RESET;
 
-public class DateTimeFormatterTransformer implements Transformer {
+public class DateTimeFormatterTransformer implements RowTransformer {
     public static final String NAME = "DateTimeFormatter";
+    private static final ZoneId UTC = ZoneId.of("UTC");
+    // pattern letters that only depend on the date, see DateTimeFormatter.ofPattern
+    private static final String DATE_LETTERS = "GuyDMLdQqYwWEecFg";
+    private static final int CACHE_CAPACITY = 4096;
     private final Column input;
     private final String format;
     private final Column output;
     private final DateTimeFormatter dateTimeFormatter;
+    // zone the timestamps are shown in, and the zone of date-times that have no offset of their own
+    private final ZoneId zone;
+    private final ZoneRules zoneRules;
+    private final boolean dateOnly;
+    // formatted values shared by all workers: by epoch day, and by epoch second when the pattern has time fields
+    private final LongCache<String> byEpochDay = new LongCache<>(CACHE_CAPACITY);
+    private final LongCache<String> byEpochSecond = new LongCache<>(CACHE_CAPACITY);
+    private final LongFunction<String> formatEpochDay;
+    private final LongFunction<String> formatEpochSecond;
 
     public DateTimeFormatterTransformer(Column input, String format, Column output) {
+        this(input, format, output, null);
+    }
+
+    public DateTimeFormatterTransformer(Column input, String format, Column output, String zone) {
         this.input = input;
         this.format = format;
         this.output = output;
         this.dateTimeFormatter = DateTimeFormatter.ofPattern(format);
+        try {
+            this.zone = zone == null ? UTC : ZoneId.of(zone);
+        } catch (DateTimeException e) {
+            throw new IllegalArgumentException(ERROR + "Unknown time zone: " + zone + RESET, e);
+        }
+        this.zoneRules = this.zone.getRules();
+        this.dateOnly = isDateOnly(format);
+        this.formatEpochDay = epochDay -> LocalDate.ofEpochDay(epochDay).format(dateTimeFormatter);
+        this.formatEpochSecond = epochSecond -> Instant.ofEpochSecond(epochSecond).atZone(this.zone).format(dateTimeFormatter);
+    }
+
+    @Override
+    public List<Column> inputColumns() {
+        return List.of(input);
+    }
+
+    @Override
+    public Column outputColumn() {
+        return output;
+    }
+
+    @Override
+    public ColumnVector compute(RowBatch batch, ColumnVector[] inputs) {
+        return compute(batch, inputs, new Rejections());
     }
 
     @Override
-    public void transform(Report report, List<Map<String, Object>> rows) {
-        for (Map<String, Object> row : rows) {
-            Object value = row.get(input.getName());
+    public ColumnVector compute(RowBatch batch, ColumnVector[] inputs, Rejections rejections) {
+        ColumnVector source = inputs[0];
+        if (source == null) {
+            return null;
+        }
 
-            if (value instanceof String) {
-                String dateString = (String) value;
-                String formattedDate = formatDate(dateString);
-                row.put(output.getName(), formattedDate);
+        StringVector formatted = new StringVector(batch.capacity());
 
+        if (source instanceof LongVector dates && (dates.getType() == Column.DataType.DATE || dates.getType() == Column.DataType.DATETIME)) {
+            boolean instants = dates.getType() == Column.DataType.DATETIME;
+            // rows usually come in runs of the same value, so only a change of value goes to the cache
+            long lastValue = 0;
+            int lastCode = -1;
+            for (int row = 0; row < batch.size(); row++) {
+                if (dates.isNull(row)) {
+                    formatted.setNull(row);
+                    continue;
+                }
+                long value = dates.get(row);
+                if (lastCode < 0 || value != lastValue) {
+                    lastCode = formatted.encode(instants ? formatInstant(value) : formatDate(value));
+                    lastValue = value;
+                }
+                formatted.setCode(row, lastCode);
+            }
+        } else if (source instanceof StringVector strings) {
+            // format every distinct string of the batch only once
+            int[] formattedByCode = new int[strings.dictionarySize()];
+            Arrays.fill(formattedByCode, -1);
+            for (int row = 0; row < batch.size(); row++) {
+                if (strings.isNull(row)) {
+                    formatted.setNull(row);
+                    continue;
+                }
+                int code = strings.getCode(row);
+                if (formattedByCode[code] < 0) {
+                    formattedByCode[code] = formatted.encode(formatText(strings.decode(code), rejections));
+                }
+                formatted.setCode(row, formattedByCode[code]);
+            }
+        } else {
+            for (int row = 0; row < batch.size(); row++) {
+                formatted.setNull(row);
             }
         }
+
+        return formatted;
+    }
+
+    @Override
+    public String describe() {
+        return NAME + " " + input.getName() + " '" + format + "' " + zone + " -> " + output.getName();
+    }
+
+    private String formatDate(long epochDay) {
+        return byEpochDay.get(epochDay, formatEpochDay);
+    }
+
+    private String formatInstant(long epochSecond) {
+        if (dateOnly) {
+            // every second of a local day gives the same text
+            long offset = zoneRules.isFixedOffset()
+                    ? zoneRules.getOffset(Instant.EPOCH).getTotalSeconds()
+                    : zoneRules.getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds();
+            return formatDate(Math.floorDiv(epochSecond + offset, IsoDates.SECONDS_PER_DAY));
+        }
+        return byEpochSecond.get(epochSecond, formatEpochSecond);
     }
 
-    private String formatDate(String dateString) {
+    private String formatText(String dateString, Rejections rejections) {
+        // the two shapes the csv files use are parsed by hand
+        long epochSecond = IsoDates.parseEpochSecond(dateString);
+        if (epochSecond != IsoDates.INVALID) {
+            return formatInstant(epochSecond);
+        }
+        long epochDay = IsoDates.parseEpochDay(dateString);
+        if (epochDay != IsoDates.INVALID) {
+            return formatDate(epochDay);
+        }
+
         try {
-            if (dateString.contains("T") && dateString.contains("Z")) {
-                // Date-Time string (e.g., "2024-09-28T18:05:15Z")
-                Instant instant = Instant.parse(dateString); // Parse the date-time string
-                return instant.atZone(ZoneId.of("UTC")).format(dateTimeFormatter); // Format using UTC time zone
+            if (dateString.contains("T")) {
+                // Date-Time string with an offset (e.g., "2024-09-28T18:05:15.250+02:00") or a local one in the source zone
+                TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(dateString, ZonedDateTime::from, LocalDateTime::from);
+                ZonedDateTime dateTime = parsed instanceof ZonedDateTime zoned
+                        ? zoned.withZoneSameInstant(zone)
+                        : ((LocalDateTime) parsed).atZone(zone);
+                return dateTime.format(dateTimeFormatter);
             } else {
                 // Date-only string (e.g., "2024-09-28")
-                DateTimeFormatter dateFormatter = DateTimeFormatter.ISO_LOCAL_DATE; // Date formatter
-                LocalDate localDate = LocalDate.parse(dateString, dateFormatter); // Parse as LocalDate
-                return localDate.format(dateTimeFormatter); // Format the LocalDate
+                return LocalDate.parse(dateString, DateTimeFormatter.ISO_LOCAL_DATE).format(dateTimeFormatter);
             }
         } catch (DateTimeParseException e) {
-            System.err.println(ERROR + "Error formatting date: " + dateString + RESET);
+            rejections.rejectValue(RejectReason.INVALID_DATE, input.getName(), dateString);
             return dateString; // Return the original string if formatting fails
         }
     }
+
+    // true when the pattern has no time of day or zone fields, so its output only depends on the local date
+    private static boolean isDateOnly(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z') && DATE_LETTERS.indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
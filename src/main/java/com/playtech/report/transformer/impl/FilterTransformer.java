@@ -0,0 +1,49 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.column.Column;
+import com.playtech.report.filter.Condition;
+import com.playtech.report.transformer.RowFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+public class FilterTransformer implements RowFilter {
+    public static final String NAME = "Filter";
+    private final Condition condition;
+    private final List<Column> inputs;
+
+    public FilterTransformer(Condition condition) {
+        if (condition == null) {
+            throw new IllegalArgumentException(ERROR + "Filter needs a condition: <compare>, <in>, <between>, <and> or <or>" + RESET);
+        }
+        this.condition = condition;
+        List<Column> columns = new ArrayList<>();
+        condition.collectColumns(columns);
+        condition.bind(columns);
+        this.inputs = List.copyOf(columns);
+    }
+
+    @Override
+    public List<Column> inputColumns() {
+        return inputs;
+    }
+
+    @Override
+    public boolean test(ColumnVector[] inputs, int row) {
+        return condition.test(inputs, row);
+    }
+
+    @Override
+    public boolean mayMatch(ColumnVector[] bounds) {
+        return condition.mayMatch(bounds);
+    }
+
+    @Override
+    public String describe() {
+        return NAME + " " + condition.describe();
+    }
+}
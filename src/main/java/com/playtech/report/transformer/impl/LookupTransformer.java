@@ -0,0 +1,254 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.RowBatchBuilder;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.join.LookupTable;
+import com.playtech.report.join.PartitionedJoin;
+import com.playtech.report.pipeline.CsvIngest;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.StreamingState;
+import com.playtech.report.transformer.TransformerState;
+import com.playtech.util.csv.CsvReader;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// left join against a dimension csv: every row gets the selected columns of the dimension row whose key column equals
+// its input column, or nulls when there is none. The dimension is read once per run into a LookupTable and the rows
+// are joined as they come. A dimension that outgrows the memory limit while it is read is joined partition by
+// partition from temporary files instead, the rows are then handed on when the input is finished
+public class LookupTransformer implements BlockingTransformer {
+    public static final String NAME = "Lookup";
+    // partitions of a spilled join when the size of the dimension is not known, a compressed file
+    private static final int DEFAULT_PARTITIONS = 64;
+
+    private final Path file;
+    private final Column input;
+    private final String key;
+    private final List<Column> select;
+    private final Long memoryLimit;
+
+    // key is the name of the key column in the dimension, the input column name when not given
+    public LookupTransformer(String file, Column input, String key, List<Column> select, Long memoryLimit) {
+        if (file == null || file.isBlank()) {
+            throw new IllegalArgumentException(ERROR + "Lookup needs the file of the dimension" + RESET);
+        }
+        if (input == null) {
+            throw new IllegalArgumentException(ERROR + "Lookup input column is not defined" + RESET);
+        }
+        if (input.getType() == Column.DataType.DOUBLE || input.getType() == Column.DataType.DECIMAL) {
+            throw new IllegalArgumentException(ERROR + "Lookup joins on an integer, date, time or text key, " + input.getName() + " is a " + input.getType() + RESET);
+        }
+        if (select == null || select.isEmpty()) {
+            throw new IllegalArgumentException(ERROR + "Lookup needs at least one select column" + RESET);
+        }
+        if (memoryLimit != null && memoryLimit <= 0) {
+            throw new IllegalArgumentException(ERROR + "Lookup memory limit has to be positive: " + memoryLimit + RESET);
+        }
+        this.file = Path.of(file);
+        this.input = input;
+        this.key = key != null && !key.isBlank() ? key : input.getName();
+        if (Columns.names(select).contains(this.key)) {
+            throw new IllegalArgumentException(ERROR + "Lookup can't select its key column " + this.key + RESET);
+        }
+        this.select = List.copyOf(select);
+        this.memoryLimit = memoryLimit;
+    }
+
+    @Override
+    public TransformerState createState(Report report) {
+        return createState(report, new Rejections());
+    }
+
+    @Override
+    public TransformerState createState(Report report, Rejections rejections) {
+        if (memoryLimit != null) {
+            return new LookupState(memoryLimit);
+        }
+        return new LookupState(report.getMemoryLimit() != null ? report.getMemoryLimit() : OrderingTransformer.DEFAULT_MEMORY_LIMIT);
+    }
+
+    @Override
+    public Set<String> requiredColumns(Set<String> downstreamColumns) {
+        Set<String> required = new LinkedHashSet<>(downstreamColumns);
+        required.removeAll(Columns.names(select));
+        required.add(input.getName());
+        return required;
+    }
+
+    @Override
+    public List<String> outputColumns(List<String> inputColumns) {
+        Set<String> outputs = new LinkedHashSet<>(inputColumns);
+        outputs.addAll(Columns.names(select));
+        return new ArrayList<>(outputs);
+    }
+
+    @Override
+    public List<Path> files() {
+        return List.of(file);
+    }
+
+    @Override
+    public String describe() {
+        return NAME + " " + file.getFileName() + " on " + input.getName() + " = " + key + ", select " + Columns.names(select);
+    }
+
+    private boolean textKeys() {
+        return input.getType() == Column.DataType.STRING;
+    }
+
+    // the dimension is read on the first batch, so a run with no rows does not read it at all
+    private class LookupState implements StreamingState {
+        private final long memoryLimit;
+        private LookupTable table;
+        private PartitionedJoin spilled;
+        // batches accepted without a downstream, handed on by finish
+        private final List<RowBatch> pending = new ArrayList<>();
+
+        private LookupState(long memoryLimit) {
+            this.memoryLimit = memoryLimit;
+        }
+
+        @Override
+        public void accept(RowBatch batch) {
+            accept(batch, pending::add);
+        }
+
+        @Override
+        public void accept(RowBatch batch, Consumer<RowBatch> downstream) {
+            if (table == null && spilled == null) {
+                load();
+            }
+            if (spilled != null) {
+                spilled.addFacts(batch);
+            } else {
+                table.join(batch, input.getName());
+                downstream.accept(batch);
+            }
+        }
+
+        @Override
+        public void merge(TransformerState other) {
+            throw new UnsupportedOperationException(NAME + " hands its rows on in the order they came and can't be merged");
+        }
+
+        @Override
+        public void finish(Consumer<RowBatch> downstream) {
+            pending.forEach(downstream);
+            pending.clear();
+            if (spilled != null) {
+                try {
+                    spilled.finish(downstream);
+                } finally {
+                    spilled.close();
+                }
+            }
+        }
+
+        private void load() {
+            table = new LookupTable(file.toString(), select, textKeys());
+            try (CsvReader reader = CsvReader.open(file)) {
+                String[] headers = CsvIngest.readHeaders(reader);
+                int[] fields = new int[1 + select.size()];
+                fields[0] = field(headers, key);
+                for (int c = 0; c < select.size(); c++) {
+                    fields[1 + c] = field(headers, select.get(c).getName());
+                }
+                int fieldCount = Arrays.stream(fields).max().getAsInt() + 1;
+
+                RowBatch batch = newDimensionBatch();
+                while (reader.next()) {
+                    if (reader.fieldCount() < fieldCount) {
+                        throw new IllegalArgumentException(ERROR + "Lookup dimension " + file + " line " + (reader.recordNumber() - 1)
+                                + " has " + reader.fieldCount() + " fields instead of " + headers.length + RESET);
+                    }
+                    // rows without a key can't be looked up
+                    if (reader.isEmpty(fields[0])) {
+                        continue;
+                    }
+                    int row = batch.size();
+                    try {
+                        RowBatchBuilder.setValue(batch.vector(0), input.getType(), row, reader, fields[0]);
+                        for (int c = 0; c < select.size(); c++) {
+                            RowBatchBuilder.setValue(batch.vector(1 + c), select.get(c).getType(), row, reader, fields[1 + c]);
+                        }
+                    } catch (NumberFormatException | DateTimeParseException e) {
+                        throw new IllegalArgumentException(ERROR + "Lookup dimension " + file + " line " + (reader.recordNumber() - 1)
+                                + " has a value of the wrong type: " + reader.recordText() + RESET);
+                    }
+                    batch.setSize(row + 1);
+                    if (batch.isFull()) {
+                        add(batch, reader);
+                        batch = newDimensionBatch();
+                    }
+                }
+                if (batch.size() > 0) {
+                    add(batch, reader);
+                }
+            } catch (NoSuchFileException e) {
+                throw new IllegalArgumentException(ERROR + "Lookup dimension " + file + " does not exist" + RESET, e);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(ERROR + "Lookup can't read the dimension " + file + ": " + e.getMessage() + RESET, e);
+            }
+        }
+
+        private int field(String[] headers, String name) {
+            int field = Arrays.asList(headers).indexOf(name);
+            if (field < 0) {
+                throw new IllegalArgumentException(ERROR + "Lookup dimension " + file + " has no column " + name + RESET);
+            }
+            return field;
+        }
+
+        private RowBatch newDimensionBatch() {
+            RowBatch batch = new RowBatch(RowBatch.DEFAULT_CAPACITY);
+            batch.put(key, ColumnVector.create(input, RowBatch.DEFAULT_CAPACITY));
+            for (Column column : select) {
+                batch.put(column.getName(), ColumnVector.create(column, RowBatch.DEFAULT_CAPACITY));
+            }
+            return batch;
+        }
+
+        // the rows read so far move to the partitions of a spilled join once the table outgrows the memory limit
+        private void add(RowBatch batch, CsvReader reader) {
+            if (spilled != null) {
+                spilled.addDimension(batch);
+                return;
+            }
+            table.add(batch);
+            if (table.estimatedBytes() <= memoryLimit) {
+                return;
+            }
+            spilled = new PartitionedJoin(file.toString(), select, textKeys(), input.getName(), partitions(reader));
+            table.batches().forEach(spilled::addDimension);
+            table = null;
+        }
+
+        // enough partitions for the table of one partition to take half the memory limit, judging by how much of the
+        // file the rows read so far took
+        private int partitions(CsvReader reader) {
+            if (reader.size() <= 0 || reader.offset() <= 0) {
+                return DEFAULT_PARTITIONS;
+            }
+            double estimatedBytes = (double) table.estimatedBytes() * reader.size() / reader.offset();
+            long partitions = (long) Math.ceil(estimatedBytes * 2 / memoryLimit);
+            return (int) Math.max(2, Math.min(partitions, PartitionedJoin.MAX_PARTITIONS));
+        }
+    }
+}
@@ -1,57 +1,189 @@
 package com.playtech.report.transformer.impl;
 
-import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
 import com.playtech.report.column.Column;
-import com.playtech.report.transformer.Transformer;
+import com.playtech.report.column.Columns;
+import com.playtech.report.reject.ErrorPolicy;
+import com.playtech.report.reject.RejectReason;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.RowTransformer;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 import static com.playtech.ReportGenerator.ERROR;
 import static com.playtech.ReportGenerator.RESET;
 import static java.lang.Math.round;
 
-public class MathOperationTransformer implements Transformer {
+public class MathOperationTransformer implements RowTransformer {
     public final static String NAME = "MathOperation";
     private final List<Column> inputs;
     private final MathOperation operation;
     private final Column output;
+    // what happens to a row with an input that is not a number
+    private final ErrorPolicy onError;
 
     public MathOperationTransformer(List<Column> inputs, MathOperation operation, Column output) {
+        this(inputs, operation, output, null);
+    }
+
+    public MathOperationTransformer(List<Column> inputs, MathOperation operation, Column output, ErrorPolicy onError) {
         this.inputs = inputs;
         this.operation = operation;
         this.output = output;
+        this.onError = onError == null ? ErrorPolicy.FAIL : onError;
+    }
+
+    @Override
+    public List<Column> inputColumns() {
+        return inputs;
+    }
+
+    @Override
+    public Column outputColumn() {
+        return output;
+    }
+
+    @Override
+    public Set<String> numericColumns() {
+        return new LinkedHashSet<>(Columns.names(inputs));
     }
 
+    // SKIP removes the rows and FAIL stops the run, NULL only empties the output
     @Override
-    public void transform(Report report, List<Map<String, Object>> rows) {
+    public boolean hasSideEffects() {
+        return onError != ErrorPolicy.NULL;
+    }
 
-        for (Map<String, Object> row : rows) {
+    @Override
+    public ColumnVector compute(RowBatch batch, ColumnVector[] vectors) {
+        return compute(batch, vectors, new Rejections());
+    }
+
+    @Override
+    public ColumnVector compute(RowBatch batch, ColumnVector[] vectors, Rejections rejections) {
+        for (int i = 0; i < inputs.size(); i++) {
+            if (onError == ErrorPolicy.FAIL && vectors[i] == null) {
+                throw new IllegalArgumentException(ERROR + "Column " + inputs.get(i).getName() + " is not a number." + RESET);
+            }
+        }
 
-            double result = 0; // (operation == MathOperation.SUBTRACT) ? 0 : 0;
-            boolean firstIteration = true;
+        // decimal inputs or a DECIMAL output make the result an exact decimal, at the largest scale involved
+        int scale = output.getType() == Column.DataType.DECIMAL ? output.getScale() : -1;
+        for (ColumnVector vector : vectors) {
+            if (vector instanceof DecimalVector decimals) {
+                scale = Math.max(scale, decimals.scale());
+            }
+        }
+        ColumnVector result = scale < 0 ? new DoubleVector(batch.capacity()) : new DecimalVector(scale, batch.capacity());
 
-            for (Column input : inputs) {
-                Object inputValue = row.get(input.getName());
+        // apply the operation one input column at a time, a row with a missing input has no result
+        boolean[] drop = null;
+        for (int i = 0; i < vectors.length; i++) {
+            ColumnVector vector = vectors[i];
+            for (int row = 0; row < batch.size(); row++) {
+                if (vector != null && vector.isNull(row)) {
+                    result.setNull(row);
+                    continue;
+                }
+                if (result.isNull(row)) {
+                    continue;
+                }
 
-                if (!(inputValue instanceof Number)) {
-                    throw new IllegalArgumentException(ERROR + "Column " + input.getName() + " is not a number." + RESET);
+                try {
+                    if (result instanceof DecimalVector decimals) {
+                        apply(decimals, i, vector, row);
+                    } else {
+                        apply((DoubleVector) result, i, vector, row);
+                    }
+                } catch (NumberFormatException e) {
+                    Object text = vector == null ? null : vector.getObject(row);
+                    if (onError == ErrorPolicy.FAIL) {
+                        throw new IllegalArgumentException(ERROR + "Column " + inputs.get(i).getName() + " is not a number: " + text + RESET);
+                    }
+                    rejections.rejectValue(RejectReason.NOT_A_NUMBER, inputs.get(i).getName(), text);
+                    result.setNull(row);
+                    if (onError == ErrorPolicy.SKIP) {
+                        drop = drop == null ? new boolean[batch.size()] : drop;
+                        drop[row] = true;
+                    }
                 }
+            }
+        }
+
+        if (drop != null) {
+            ColumnVector kept = result.without(drop, batch.size());
+            batch.removeRows(drop);
+            return kept;
+        }
+        return result;
+    }
 
-                double value = ((Number) inputValue).doubleValue();
+    private void apply(DoubleVector result, int i, ColumnVector vector, int row) {
+        double value;
+        if (vector != null && vector.isNumeric()) {
+            value = vector.getDouble(row);
+        } else {
+            // text that is a number is still used
+            value = Double.parseDouble(String.valueOf(vector == null ? null : vector.getObject(row)));
+        }
+        if (i == 0) {
+            result.set(row, value);
+        } else if (operation == MathOperation.ADD) {
+            result.set(row, result.get(row) + value);
+        } else if (operation == MathOperation.SUBTRACT) {
+            result.set(row, result.get(row) - value);
+        }
+    }
 
-                if (operation == MathOperation.ADD) {
-                    result += value;
-                } else if (operation == MathOperation.SUBTRACT) {
-                    result = firstIteration ? value : result - value;
-                    firstIteration = false;
+    // scaled longs while the values fit, BigDecimal for the rows that don't
+    private void apply(DecimalVector result, int i, ColumnVector vector, int row) {
+        boolean scaled = (i == 0 || result.fits(row))
+                && (vector instanceof DecimalVector decimals && decimals.fits(row) || vector instanceof LongVector longs && longs.isNumeric());
+        if (scaled) {
+            try {
+                long value = vector instanceof DecimalVector decimals
+                        ? Math.multiplyExact(decimals.getUnscaled(row), DecimalVector.powerOfTen(result.scale() - decimals.scale()))
+                        : Math.multiplyExact(((LongVector) vector).get(row), DecimalVector.powerOfTen(result.scale()));
+                if (i > 0) {
+                    value = operation == MathOperation.ADD ? Math.addExact(result.getUnscaled(row), value) : Math.subtractExact(result.getUnscaled(row), value);
                 }
+                result.setUnscaled(row, value);
+                return;
+            } catch (ArithmeticException e) {
+                // out of the range of the scaled long, the BigDecimal below has no limit
             }
+        }
+        BigDecimal value = decimalOf(vector, row);
+        if (i > 0) {
+            value = operation == MathOperation.ADD ? result.get(row).add(value) : result.get(row).subtract(value);
+        }
+        result.set(row, value);
+    }
 
-            row.put(output.getName(), result);
+    private static BigDecimal decimalOf(ColumnVector vector, int row) {
+        if (vector instanceof DecimalVector decimals) {
+            return decimals.get(row);
+        } else if (vector instanceof LongVector longs && longs.isNumeric()) {
+            return BigDecimal.valueOf(longs.get(row));
+        } else if (vector instanceof DoubleVector doubles && Double.isFinite(doubles.get(row))) {
+            return BigDecimal.valueOf(doubles.get(row));
         }
+        // text that is a number is still used, anything else throws NumberFormatException
+        return new BigDecimal(String.valueOf(vector == null ? null : vector.getObject(row)));
+    }
+
+    @Override
+    public String describe() {
+        return NAME + " " + operation + " " + Columns.names(inputs) + " -> " + output.getName()
+                + (onError == ErrorPolicy.FAIL ? "" : " on error " + onError);
     }
 
     public enum MathOperation {
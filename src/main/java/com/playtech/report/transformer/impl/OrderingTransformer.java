@@ -2,71 +2,115 @@ package com.playtech.report.transformer.impl;
 
 import com.playtech.report.Report;
 import com.playtech.report.column.Column;
-import com.playtech.report.transformer.Transformer;
+import com.playtech.report.sort.ExternalSort;
+import com.playtech.report.sort.TopNSort;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.TransformerState;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlIDREF;
 
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.*;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import static com.playtech.ReportGenerator.ERROR;
 import static com.playtech.ReportGenerator.RESET;
 
-public class OrderingTransformer implements Transformer {
+public class OrderingTransformer implements BlockingTransformer {
     public final static String NAME = "Ordering";
+    // rows a sort may buffer before sorted runs are spilled to temporary files, per sort, when neither
+    // the transformer nor the run of the report sets a limit
+    public static final long DEFAULT_MEMORY_LIMIT = Runtime.getRuntime().maxMemory() / 4;
 
-    private final Column input;
-    private final Order order;
-    private final DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ISO_DATE_TIME;
-    private final DateTimeFormatter dateFormatter = DateTimeFormatter.ISO_DATE;
+    private final List<OrderBy> orderBys;
+    private final Integer limit;
+    private final Long memoryLimit;
 
     public OrderingTransformer(Column input, Order order) {
-        this.input = input;
-        this.order = order;
+        this(List.of(new OrderBy(input, order)), null, null);
     }
 
-    @Override
-    public void transform(Report report, List<Map<String, Object>> rows) {
+    // sorts by every key in turn, keeping only the first limit rows when a limit is given
+    public OrderingTransformer(List<OrderBy> orderBys, Integer limit, Long memoryLimit) {
+        if (orderBys == null || orderBys.isEmpty()) {
+            throw new IllegalArgumentException(ERROR + "Ordering needs at least one input column" + RESET);
+        }
+        for (OrderBy orderBy : orderBys) {
+            if (orderBy.getInput() == null) {
+                throw new IllegalArgumentException(ERROR + "Ordering input column is not defined" + RESET);
+            }
+        }
+        if (limit != null && limit < 0) {
+            throw new IllegalArgumentException(ERROR + "Ordering limit can't be negative: " + limit + RESET);
+        }
+        if (memoryLimit != null && memoryLimit <= 0) {
+            throw new IllegalArgumentException(ERROR + "Ordering memory limit has to be positive: " + memoryLimit + RESET);
+        }
+        this.orderBys = List.copyOf(orderBys);
+        this.limit = limit;
+        this.memoryLimit = memoryLimit;
+    }
 
-        Comparator<Map<String, Object>> comparator = getComparator();
+    @Override
+    public TransformerState createState(Report report) {
+        if (limit != null) {
+            return new TopNSort(orderBys, limit);
+        }
+        if (memoryLimit != null) {
+            return new ExternalSort(orderBys, memoryLimit);
+        }
+        return new ExternalSort(orderBys, report.getMemoryLimit() != null ? report.getMemoryLimit() : DEFAULT_MEMORY_LIMIT);
+    }
 
-        if (order == Order.ASC) {
-            Collections.sort(rows, comparator);
-        } else {
-            Collections.sort(rows, comparator.reversed());
+    @Override
+    public Set<String> requiredColumns(Set<String> downstreamColumns) {
+        Set<String> required = new LinkedHashSet<>(downstreamColumns);
+        for (OrderBy orderBy : orderBys) {
+            required.add(orderBy.getInput().getName());
         }
+        return required;
+    }
+
+    @Override
+    public List<String> outputColumns(List<String> inputColumns) {
+        return inputColumns;
+    }
 
+    @Override
+    public String describe() {
+        StringBuilder description = new StringBuilder(NAME);
+        for (int i = 0; i < orderBys.size(); i++) {
+            description.append(i == 0 ? " " : ", ").append(orderBys.get(i).getInput().getName()).append(' ').append(orderBys.get(i).getOrder());
+        }
+        if (limit != null) {
+            description.append(" limit ").append(limit);
+        }
+        return description.toString();
     }
 
-    private Comparator<Map<String, Object>> getComparator() {
-        return (row1, row2) -> {
-            Object value1 = row1.get(input.getName());
-            Object value2 = row2.get(input.getName());
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class OrderBy {
+        @XmlIDREF
+        private Column input;
+        private Order order = Order.ASC;
 
-            if (value1 == null || value2 == null) {
-                System.out.println("Value 0");
-                return 0;
-            }
+        private OrderBy() {
+        }
 
-            if (value1 instanceof String) {
-                try {
-                    LocalDate date1 = LocalDate.parse((String) value1, dateFormatter);
-                    LocalDate date2 = LocalDate.parse((String) value2, dateFormatter);
-                    return date1.compareTo(date2);
-                } catch (DateTimeParseException e) {
-                    return (((String) value1).compareTo((String) value2));
-                }
-            } else if (value1 instanceof LocalDate) {
-                return ((LocalDate) value1).compareTo((LocalDate) value2);
-            } else if (value1 instanceof LocalDateTime) {
-                return ((LocalDateTime) value1).compareTo((LocalDateTime) value2);
-            } else {
-                throw new IllegalArgumentException(ERROR + "Unsupported column type for ordering" + RESET);
-            }
-        };
-    }
+        public OrderBy(Column input, Order order) {
+            this.input = input;
+            this.order = order != null ? order : Order.ASC;
+        }
 
+        public Column getInput() {
+            return input;
+        }
+
+        public Order getOrder() {
+            return order;
+        }
+    }
 
     public enum Order {
         ASC,
@@ -1,44 +1,64 @@
 package com.playtech.report.transformer.impl;
 
-import com.playtech.report.Report;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
 import com.playtech.report.column.Column;
-import com.playtech.report.transformer.Transformer;
+import com.playtech.report.column.Columns;
+import com.playtech.report.transformer.RowTransformer;
+import com.playtech.util.format.CompiledFormat;
 
+import java.util.IllegalFormatException;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 import static com.playtech.ReportGenerator.ERROR;
 import static com.playtech.ReportGenerator.RESET;
 
-public class StringFormatterTransformer implements Transformer {
+public class StringFormatterTransformer implements RowTransformer {
     public final static String NAME = "StringFormatter";
 
     private final List<Column> inputs;
     private final String format;
     private final Column output;
+    private final CompiledFormat compiledFormat;
 
-    // TODO: Implement transformer logic
     public StringFormatterTransformer(List<Column> inputs, String format, Column output) {
         this.inputs = inputs;
         this.format = format;
         this.output = output;
+        this.compiledFormat = CompiledFormat.compile(format);
     }
 
     @Override
-    public void transform(Report report, List<Map<String, Object>> rows) {
-        for (Map<String, Object> row : rows) {
-            // collect values from input columns
-            List<Object> values = inputs.stream()
-                    .map(input -> row.get(input.getName()))
-                    .collect(Collectors.toList());
+    public List<Column> inputColumns() {
+        return inputs;
+    }
+
+    @Override
+    public Column outputColumn() {
+        return output;
+    }
+
+    @Override
+    public ColumnVector compute(RowBatch batch, ColumnVector[] vectors) {
+        StringVector formatted = new StringVector(batch.capacity());
+        StringBuilder line = new StringBuilder();
 
+        for (int row = 0; row < batch.size(); row++) {
+            line.setLength(0);
             try {
-                String formattedValue = String.format(format, values.toArray());
-                row.put(output.getName(), formattedValue);
-            } catch (Exception e) {
-                throw new IllegalArgumentException(ERROR + "Invalid format or input types" + RESET);
+                compiledFormat.format(line, vectors, row);
+            } catch (IllegalFormatException | ClassCastException e) {
+                throw new IllegalArgumentException(ERROR + "Invalid format or input types" + RESET, e);
             }
+            formatted.set(row, line.toString());
         }
+
+        return formatted;
+    }
+
+    @Override
+    public String describe() {
+        return NAME + " " + Columns.names(inputs) + " '" + format + "' -> " + output.getName();
     }
 }
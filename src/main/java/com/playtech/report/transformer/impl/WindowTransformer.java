@@ -0,0 +1,425 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.report.Report;
+import com.playtech.report.aggregate.AggregateInput;
+import com.playtech.report.aggregate.GroupTable;
+import com.playtech.report.aggregate.WindowFrame;
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.reject.RejectReason;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.StreamingState;
+import com.playtech.report.transformer.TransformerState;
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// running and rolling aggregates: every row gets the aggregates over the rows of its partition that are in its frame,
+// which ends at the row itself. The input has to arrive ordered by the order column within every partition, sorted or
+// just clustered by partition, so the rows are handed on as they come and only the open frames are kept
+public class WindowTransformer implements BlockingTransformer {
+    public static final String NAME = "Window";
+    private final List<Column> partitionBy;
+    private final Column orderBy;
+    private final OrderingTransformer.Order order;
+    private final Frame frame;
+    private final List<AggregatorTransformer.AggregateBy> functions;
+    // RANGE frames over a number column, and over a DATE or DATETIME column when the frame is given as a duration
+    private final Double rangeNumber;
+    private final Duration rangeDuration;
+    // rows in the frame before the row itself, for ROWS frames
+    private final long precedingRows;
+
+    public WindowTransformer(List<Column> partitionBy, Column orderBy, OrderingTransformer.Order order, Frame frame,
+                             List<AggregatorTransformer.AggregateBy> functions) {
+        this.partitionBy = partitionBy != null ? List.copyOf(partitionBy) : List.of();
+        this.orderBy = orderBy;
+        this.order = order != null ? order : OrderingTransformer.Order.ASC;
+        this.frame = frame != null ? frame : new Frame();
+        if (functions == null || functions.isEmpty()) {
+            throw new IllegalArgumentException(ERROR + "Window needs at least one aggregateBy" + RESET);
+        }
+        for (AggregatorTransformer.AggregateBy function : functions) {
+            if (function.getInput() == null || function.getOutput() == null || function.getMethod() == null) {
+                throw new IllegalArgumentException(ERROR + "Window aggregateBy needs an input, a method and an output" + RESET);
+            }
+            switch (function.getMethod()) {
+                case SUM, AVG, MIN, MAX, COUNT -> {
+                }
+                default -> throw new IllegalArgumentException(ERROR + "Window supports SUM, AVG, MIN, MAX and COUNT, not " + function.getMethod() + RESET);
+            }
+        }
+        this.functions = List.copyOf(functions);
+        if (orderBy != null && orderBy.getType() == Column.DataType.STRING) {
+            throw new IllegalArgumentException(ERROR + "Window orders by a number, date or time column, " + orderBy.getName() + " is a STRING" + RESET);
+        }
+
+        String preceding = this.frame.getPreceding();
+        precedingRows = preceding != null && this.frame.getUnit() == FrameUnit.ROWS ? parseRows(preceding) : -1;
+        if (preceding == null) {
+            rangeNumber = null;
+            rangeDuration = null;
+        } else if (this.frame.getUnit() == FrameUnit.ROWS) {
+            rangeNumber = null;
+            rangeDuration = null;
+            if (precedingRows < 0) {
+                throw new IllegalArgumentException(ERROR + "Window ROWS frame needs a number of preceding rows, got " + preceding + RESET);
+            }
+        } else {
+            if (orderBy == null) {
+                throw new IllegalArgumentException(ERROR + "Window RANGE frame needs an orderBy column" + RESET);
+            }
+            rangeNumber = parseNumber(preceding);
+            rangeDuration = rangeNumber == null ? parseDuration(preceding) : null;
+            if ((rangeNumber == null || !(rangeNumber >= 0)) && (rangeDuration == null || rangeDuration.isNegative())) {
+                throw new IllegalArgumentException(ERROR + "Window RANGE frame needs a number or a duration like P7D as preceding, got " + preceding + RESET);
+            }
+        }
+    }
+
+    // -1 when the text is not a row count
+    private static long parseRows(String text) {
+        try {
+            return Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Double parseNumber(String text) {
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Duration parseDuration(String text) {
+        try {
+            return Duration.parse(text);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public TransformerState createState(Report report) {
+        return createState(report, new Rejections());
+    }
+
+    @Override
+    public TransformerState createState(Report report, Rejections rejections) {
+        return new WindowState(rejections);
+    }
+
+    @Override
+    public Set<String> requiredColumns(Set<String> downstreamColumns) {
+        Set<String> required = new LinkedHashSet<>(downstreamColumns);
+        for (AggregatorTransformer.AggregateBy function : functions) {
+            required.remove(function.getOutput().getName());
+        }
+        required.addAll(Columns.names(partitionBy));
+        if (orderBy != null) {
+            required.add(orderBy.getName());
+        }
+        for (AggregatorTransformer.AggregateBy function : functions) {
+            required.add(function.getInput().getName());
+        }
+        return required;
+    }
+
+    @Override
+    public Set<String> numericColumns() {
+        Set<String> numeric = new LinkedHashSet<>();
+        for (AggregatorTransformer.AggregateBy function : functions) {
+            if (function.getMethod() != AggregatorTransformer.Method.COUNT) {
+                numeric.add(function.getInput().getName());
+            }
+        }
+        return numeric;
+    }
+
+    @Override
+    public List<String> outputColumns(List<String> inputColumns) {
+        Set<String> outputs = new LinkedHashSet<>(inputColumns);
+        for (AggregatorTransformer.AggregateBy function : functions) {
+            outputs.add(function.getOutput().getName());
+        }
+        return new ArrayList<>(outputs);
+    }
+
+    @Override
+    public String describe() {
+        StringBuilder description = new StringBuilder(NAME);
+        if (!partitionBy.isEmpty()) {
+            description.append(" partition by ").append(Columns.names(partitionBy));
+        }
+        if (orderBy != null) {
+            description.append(" order by ").append(orderBy.getName()).append(' ').append(order);
+        }
+        description.append(' ').append(frame.getUnit()).append(' ')
+                .append(frame.getPreceding() != null ? frame.getPreceding() : "UNBOUNDED").append(" PRECEDING");
+        for (AggregatorTransformer.AggregateBy function : functions) {
+            description.append(", ").append(function.getMethod()).append('(').append(function.getInput().getName())
+                    .append(") -> ").append(function.getOutput().getName());
+        }
+        return description.toString();
+    }
+
+    // one frame per partition, in the order the partitions first appear
+    private class WindowState implements StreamingState {
+        private final Rejections rejections;
+        private final GroupTable partitions = new GroupTable(partitionBy.size());
+        private final List<WindowFrame> frames = new ArrayList<>();
+        private final AggregatorTransformer.Method[] methods = new AggregatorTransformer.Method[functions.size()];
+        private final boolean[] exact = new boolean[functions.size()];
+        private final int[] scales = new int[functions.size()];
+        private final AggregateInput[] inputs = new AggregateInput[functions.size()];
+        // functions of the same column share its input, so a text column is turned into numbers once per batch
+        private final AggregateInput[] distinctInputs;
+        private final boolean sliding = frame.getPreceding() != null;
+        // batches accepted without a downstream, handed on by finish
+        private final List<RowBatch> pending = new ArrayList<>();
+        private int[] partitionIds = new int[RowBatch.DEFAULT_CAPACITY];
+        private long[][] values = new long[functions.size()][RowBatch.DEFAULT_CAPACITY];
+        private boolean[][] present = new boolean[functions.size()][RowBatch.DEFAULT_CAPACITY];
+
+        private WindowState(Rejections rejections) {
+            this.rejections = rejections;
+            Map<String, AggregateInput> byColumn = new LinkedHashMap<>();
+            for (int f = 0; f < methods.length; f++) {
+                AggregatorTransformer.AggregateBy function = functions.get(f);
+                methods[f] = function.getMethod();
+                exact[f] = function.getInput().getType() == Column.DataType.DECIMAL && methods[f] != AggregatorTransformer.Method.COUNT;
+                scales[f] = function.getInput().getScale();
+                inputs[f] = byColumn.computeIfAbsent(function.getInput().getName(), column -> new AggregateInput(column, rejections));
+            }
+            distinctInputs = byColumn.values().toArray(new AggregateInput[0]);
+        }
+
+        @Override
+        public void accept(RowBatch batch) {
+            pending.add(compute(batch));
+        }
+
+        @Override
+        public void accept(RowBatch batch, Consumer<RowBatch> downstream) {
+            downstream.accept(compute(batch));
+        }
+
+        @Override
+        public void merge(TransformerState other) {
+            throw new UnsupportedOperationException(NAME + " depends on the order of its whole input and can't be merged");
+        }
+
+        @Override
+        public void finish(Consumer<RowBatch> downstream) {
+            pending.forEach(downstream);
+            pending.clear();
+        }
+
+        private RowBatch compute(RowBatch batch) {
+            int size = batch.size();
+            if (partitionIds.length < size) {
+                partitionIds = new int[size];
+                values = new long[methods.length][size];
+                present = new boolean[methods.length][size];
+            }
+            resolvePartitions(batch, size);
+            for (AggregateInput input : distinctInputs) {
+                input.load(batch.vector(input.columnName()), size);
+            }
+            for (int f = 0; f < methods.length; f++) {
+                loadValues(f, size);
+            }
+
+            ColumnVector keys = orderBy != null ? batch.vector(orderBy.getName()) : null;
+            double range = orderBy != null && frame.getUnit() == FrameUnit.RANGE && sliding ? range(keys) : 0;
+            ColumnVector[] outputs = new ColumnVector[methods.length];
+            for (int f = 0; f < methods.length; f++) {
+                outputs[f] = newOutput(f, batch.capacity());
+            }
+
+            long[] rowValues = new long[methods.length];
+            boolean[] rowPresent = new boolean[methods.length];
+            for (int row = 0; row < size; row++) {
+                int partition = partitionIds[row];
+                // rows without a partition or an order value are in no frame
+                if (partition < 0 || orderBy != null && (keys == null || keys.isNull(row))) {
+                    for (ColumnVector output : outputs) {
+                        output.setNull(row);
+                    }
+                    continue;
+                }
+                WindowFrame partitionFrame = frameOf(partition);
+                double key = orderBy != null ? orderKey(keys, row) : 0;
+                if (partitionFrame.isStarted() && key < partitionFrame.lastKey()) {
+                    throw new IllegalArgumentException(ERROR + NAME + " needs its input ordered by " + orderBy.getName() + " " + order
+                            + " within every partition, put an Ordering transformer in front of it" + RESET);
+                }
+
+                for (int f = 0; f < methods.length; f++) {
+                    rowValues[f] = values[f][row];
+                    rowPresent[f] = present[f][row];
+                }
+                partitionFrame.add(key, rowValues, rowPresent);
+                if (sliding && frame.getUnit() == FrameUnit.ROWS) {
+                    partitionFrame.keepLast(precedingRows + 1);
+                } else if (sliding) {
+                    partitionFrame.removeBefore(key - range);
+                }
+                for (int f = 0; f < methods.length; f++) {
+                    partitionFrame.write(f, outputs[f], row);
+                }
+            }
+
+            for (int f = 0; f < methods.length; f++) {
+                batch.put(functions.get(f).getOutput().getName(), outputs[f]);
+            }
+            return batch;
+        }
+
+        private void resolvePartitions(RowBatch batch, int size) {
+            ColumnVector[] keys = new ColumnVector[partitionBy.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = batch.vector(partitionBy.get(i).getName());
+                if (keys[i] == null) {
+                    Arrays.fill(partitionIds, 0, size, -1);
+                    return;
+                }
+            }
+            partitions.resolve(keys, size, partitionIds);
+        }
+
+        // the value of every row in the representation of the frame, present only for values the function counts
+        private void loadValues(int f, int size) {
+            AggregateInput input = inputs[f];
+            if (methods[f] == AggregatorTransformer.Method.COUNT) {
+                for (int row = 0; row < size; row++) {
+                    present[f][row] = !input.isNull(row);
+                }
+                return;
+            }
+            boolean[] numeric = input.present();
+            if (!exact[f]) {
+                double[] numbers = input.numbers();
+                for (int row = 0; row < size; row++) {
+                    present[f][row] = numeric[row];
+                    values[f][row] = Double.doubleToRawLongBits(numbers[row]);
+                }
+                return;
+            }
+            long[] unscaled = input.unscaled(scales[f]);
+            boolean[] scaled = input.scaled();
+            for (int row = 0; row < size; row++) {
+                present[f][row] = numeric[row];
+                if (!numeric[row] || scaled[row]) {
+                    values[f][row] = unscaled[row];
+                    continue;
+                }
+                // text, doubles and decimals with more digits after the point are rounded to the scale of the column
+                BigDecimal value = input.decimal(row);
+                try {
+                    if (value != null) {
+                        values[f][row] = value.setScale(scales[f], RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+                        continue;
+                    }
+                } catch (ArithmeticException e) {
+                    // more digits than a long holds at the scale
+                }
+                present[f][row] = false;
+                rejections.rejectValue(RejectReason.OUT_OF_RANGE, input.columnName(), value != null ? value : input.numbers()[row]);
+            }
+        }
+
+        private ColumnVector newOutput(int f, int capacity) {
+            if (methods[f] == AggregatorTransformer.Method.COUNT) {
+                return new LongVector(Column.DataType.INTEGER, capacity);
+            }
+            return exact[f] ? new DecimalVector(scales[f], capacity) : new DoubleVector(capacity);
+        }
+
+        private WindowFrame frameOf(int partition) {
+            while (frames.size() <= partition) {
+                frames.add(null);
+            }
+            WindowFrame partitionFrame = frames.get(partition);
+            if (partitionFrame == null) {
+                partitionFrame = new WindowFrame(methods, exact, scales, sliding);
+                frames.set(partition, partitionFrame);
+            }
+            return partitionFrame;
+        }
+
+        // dates count in days and times in seconds, so a duration is taken in the unit of the column
+        private double range(ColumnVector keys) {
+            if (keys != null && keys.getType() == Column.DataType.DATE && rangeDuration != null) {
+                return rangeDuration.toDays();
+            } else if (keys != null && keys.getType() == Column.DataType.DATETIME && rangeDuration != null) {
+                return rangeDuration.toSeconds();
+            } else if (rangeNumber == null) {
+                throw new IllegalArgumentException(ERROR + NAME + " RANGE frame " + frame.getPreceding() + " is a duration, but "
+                        + orderBy.getName() + " is not a DATE or DATETIME column" + RESET);
+            }
+            return rangeNumber;
+        }
+
+        // descending order is ascending order of the negated values
+        private double orderKey(ColumnVector keys, int row) {
+            double value;
+            if (keys instanceof LongVector longs) {
+                value = longs.get(row);
+            } else if (keys.isNumeric()) {
+                value = keys.getDouble(row);
+            } else {
+                throw new IllegalArgumentException(ERROR + NAME + " orders by a number, date or time column, " + orderBy.getName()
+                        + " is a " + keys.getType() + RESET);
+            }
+            return order == OrderingTransformer.Order.DESC ? -value : value;
+        }
+    }
+
+    public enum FrameUnit {
+        // the frame is the number of rows given by preceding before the row
+        ROWS,
+        // the frame is the rows whose order value is at most preceding before the value of the row
+        RANGE
+    }
+
+    // rows of the partition in the frame of a row, the frame always ends at the row. Without preceding it
+    // starts at the first row of the partition, which makes the aggregates running totals
+    @XmlAccessorType(XmlAccessType.FIELD)
+    public static class Frame {
+        private FrameUnit unit = FrameUnit.ROWS;
+        private String preceding;
+
+        public FrameUnit getUnit() {
+            return unit;
+        }
+
+        public String getPreceding() {
+            return preceding;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.playtech.server;
+
+import com.playtech.report.Report;
+import com.playtech.util.xml.XmlParser;
+import jakarta.xml.bind.JAXBException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// parsed report definitions by file, a file is parsed again once its modification time changes.
+// reports are shared by concurrent jobs, which only read them
+public class ReportCache {
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+    public Report get(Path file) throws IOException, JAXBException {
+        Path key = file.toAbsolutePath().normalize();
+        FileTime modified = Files.getLastModifiedTime(key);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.modified.equals(modified)) {
+            return entry.report;
+        }
+
+        // two jobs may parse a changed file at the same time, both results are the same
+        Report report = XmlParser.parseReport(key.toString());
+        entries.put(key, new Entry(modified, report));
+        return report;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Entry(FileTime modified, Report report) {
+    }
+}
@@ -0,0 +1,310 @@
+package com.playtech.server;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.xml.bind.JAXBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static com.playtech.ReportGenerator.ERROR;
+import static com.playtech.ReportGenerator.RESET;
+
+// daemon mode: keeps the jvm warm and the report definitions parsed, and runs report jobs sent over local http.
+//   POST /reports?csv=<file>&report=<xml>[&output=<directory>]
+//        runs the report, the result is written to the output directory or, without one, sent back as the response.
+//        the paths are relative to the csv, report and output roots of the server, paths that lead out of them are
+//        rejected with 403
+//   GET  /metrics
+//        queue depth, active jobs and job latencies as json
+// at most `jobs` reports run at a time and `queue` more wait, further jobs are rejected with 503
+public class ReportServer {
+    public static final long NO_JOB_MEMORY = 0;
+
+    private final HttpServer server;
+    private final ExecutorService handlers = Executors.newCachedThreadPool();
+    private final ThreadPoolExecutor jobs;
+    private final ReportCache reports;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final int threadsPerJob;
+    private final long chunkSize;
+    // every job writes a metrics file next to its output and updates the report's mbean
+    private final boolean stageMetrics;
+    // memory of the sort and lookup buffers of one job, see Report.withMemoryLimit
+    private final long jobMemory;
+
+    private final Roots roots;
+
+    // a jobMemory of NO_JOB_MEMORY leaves the limits of the reports
+    public ReportServer(int port, int jobs, int queue, int threadsPerJob, long chunkSize, long jobMemory, boolean stageMetrics, Roots roots)
+            throws IOException {
+        this.roots = roots.resolve();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.jobs = new ThreadPoolExecutor(jobs, jobs, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue));
+        this.reports = new ReportCache();
+        this.threadsPerJob = threadsPerJob;
+        this.chunkSize = chunkSize;
+        this.jobMemory = jobMemory;
+        this.stageMetrics = stageMetrics;
+
+        server.setExecutor(handlers);
+        server.createContext("/reports", this::handleReport);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // stops taking jobs and waits for the running ones
+    public void stop() throws InterruptedException {
+        server.stop(0);
+        jobs.shutdown();
+        jobs.awaitTermination(1, TimeUnit.MINUTES);
+        handlers.shutdown();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                sendJson(exchange, 405, "{\"error\":\"Use GET\"}");
+                return;
+            }
+            sendJson(exchange, 200, metrics.toJson(jobs.getQueue().size(), reports.size()));
+        }
+    }
+
+    private void handleReport(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendJson(exchange, 405, error("Use POST"));
+                return;
+            }
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            String csv = query.get("csv"), reportFile = query.get("report"), output = query.get("output");
+            if (csv == null || reportFile == null) {
+                sendJson(exchange, 400, error("The csv and report parameters are required"));
+                return;
+            }
+
+            Path csvFile = confine(roots.csv(), csv), reportPath = confine(roots.reports(), reportFile);
+            Path outputDirectory = output != null ? confine(roots.outputs(), output) : null;
+            if (csvFile == null || reportPath == null || output != null && outputDirectory == null) {
+                String parameter = csvFile == null ? "csv" : reportPath == null ? "report" : "output";
+                sendJson(exchange, 403, error("The " + parameter + " path has to be inside of the " + parameter + " root of the server"));
+                return;
+            }
+
+            Report report;
+            try {
+                report = reports.get(reportPath);
+            } catch (IOException | JAXBException | IllegalArgumentException e) {
+                sendJson(exchange, 400, error("Can't read report " + reportFile + ": " + e));
+                return;
+            }
+            // the files of a partitioned report stay in the output directory, they can't be sent as one response
+            if (output == null && report.getOutputPartitioning() != null) {
+                sendJson(exchange, 400, error("Report " + report.getReportName() + " is partitioned and needs an output directory"));
+                return;
+            }
+
+            long accepted = System.nanoTime();
+            Path directory = output != null ? outputDirectory : Files.createTempDirectory("report-");
+            Future<Integer> job;
+            try {
+                job = jobs.submit(() -> run(csvFile.toString(), directory, report, accepted));
+            } catch (RejectedExecutionException e) {
+                metrics.rejected();
+                if (output == null) {
+                    Files.delete(directory);
+                }
+                sendJson(exchange, 503, error("Too many jobs, " + jobs.getQueue().size() + " waiting"));
+                return;
+            }
+
+            try {
+                int skippedLines = await(job);
+                long millis = millisSince(accepted);
+                Path result = ReportGenerator.outputPath(directory + File.separator, report);
+                if (output != null) {
+                    sendJson(exchange, 200, "{\"report\":" + quote(report.getReportName()) + ",\"output\":" + quote(result.toString())
+                            + ",\"skippedLines\":" + skippedLines + ",\"millis\":" + millis + "}");
+                } else {
+                    sendFile(exchange, result, report, skippedLines, millis);
+                }
+            } catch (ExecutionException e) {
+                System.err.println(ERROR + "Report job " + report.getReportName() + " failed: " + e.getCause() + RESET);
+                sendJson(exchange, 500, error("Report " + report.getReportName() + " failed: " + e.getCause()));
+            } finally {
+                if (output == null) {
+                    // the response was already sent, a temp directory that is left behind must not replace it
+                    try {
+                        deleteTree(directory);
+                    } catch (IOException e) {
+                        System.err.println(ERROR + "Can't delete the job directory " + directory + ": " + e + RESET);
+                    }
+                }
+            }
+        }
+    }
+
+    private int run(String csv, Path directory, Report report, long accepted) throws IOException {
+        metrics.started();
+        boolean success = false;
+        try {
+            // bad lines are only counted, the console of the server is not the place for them
+            Report job = jobMemory != NO_JOB_MEMORY ? report.withMemoryLimit(jobMemory) : report;
+            int skippedLines = ReportGenerator.transformCsv(csv, directory + File.separator, job, threadsPerJob, chunkSize, stageMetrics, new Rejections());
+            success = true;
+            return skippedLines;
+        } finally {
+            metrics.finished(millisSince(accepted), success);
+        }
+    }
+
+    // the path resolved against the root, null when it leads out of it by .. or, for the part that exists, by a link
+    static Path confine(Path root, String path) throws IOException {
+        Path resolved;
+        try {
+            resolved = root.resolve(path).normalize();
+        } catch (InvalidPathException e) {
+            return null;
+        }
+        if (!resolved.startsWith(root)) {
+            return null;
+        }
+        Path existing = resolved;
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        return existing != null && existing.toRealPath().startsWith(root.toRealPath()) ? resolved : null;
+    }
+
+    // the directories the paths of a job are resolved against, relative ones against the working directory
+    public record Roots(Path csv, Path reports, Path outputs) {
+        private Roots resolve() {
+            for (Path root : List.of(csv, reports, outputs)) {
+                if (!Files.isDirectory(root)) {
+                    throw new IllegalArgumentException(ERROR + "Root " + root + " of the report server is not a directory" + RESET);
+                }
+            }
+            return new Roots(csv.toAbsolutePath().normalize(), reports.toAbsolutePath().normalize(), outputs.toAbsolutePath().normalize());
+        }
+    }
+
+    private static long millisSince(long nanoTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime);
+    }
+
+    private static int await(Future<Integer> job) throws ExecutionException, IOException {
+        try {
+            return job.get();
+        } catch (InterruptedException e) {
+            job.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the report job", e);
+        }
+    }
+
+    private static void sendFile(HttpExchange exchange, Path file, Report report, int skippedLines, long millis) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", report.getOutputFormat() == Report.FileFormat.CSV ? "text/csv" : "application/x-ndjson");
+        if (report.getOutputCompression() == Report.Compression.GZIP) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("X-Skipped-Lines", String.valueOf(skippedLines));
+        exchange.getResponseHeaders().set("X-Job-Millis", String.valueOf(millis));
+        exchange.sendResponseHeaders(200, Files.size(file));
+        try (OutputStream body = exchange.getResponseBody()) {
+            Files.copy(file, body);
+        }
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = (json + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    // the output of a partitioned report and spilled runs are in directories of their own, children go before parents
+    static void deleteTree(Path directory) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> files = Files.walk(directory)) {
+            paths = files.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.playtech.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// job counters and latencies of the report server, the latency percentiles are taken over the most recent jobs
+public class ServerMetrics {
+    private static final int RECENT_JOBS = 1024;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final long[] recentMillis = new long[RECENT_JOBS];
+    private long jobs;
+    private long totalMillis;
+    private long maxMillis;
+
+    public void started() {
+        active.incrementAndGet();
+    }
+
+    // millis is the time from accepting the job to its end, including the time in the queue
+    public synchronized void finished(long millis, boolean success) {
+        active.decrementAndGet();
+        (success ? completed : failed).incrementAndGet();
+        recentMillis[(int) (jobs % RECENT_JOBS)] = millis;
+        jobs++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+    }
+
+    public void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    public synchronized String toJson(int queued, int cachedReports) {
+        long[] recent = Arrays.copyOf(recentMillis, (int) Math.min(jobs, RECENT_JOBS));
+        Arrays.sort(recent);
+        return "{\"queued\":" + queued
+                + ",\"active\":" + active.get()
+                + ",\"completed\":" + completed.get()
+                + ",\"failed\":" + failed.get()
+                + ",\"rejected\":" + rejected.get()
+                + ",\"cachedReports\":" + cachedReports
+                + ",\"latencyMillis\":{\"count\":" + jobs
+                + ",\"mean\":" + (jobs == 0 ? 0 : totalMillis / jobs)
+                + ",\"p50\":" + percentile(recent, 50)
+                + ",\"p95\":" + percentile(recent, 95)
+                + ",\"p99\":" + percentile(recent, 99)
+                + ",\"max\":" + maxMillis + "}}";
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * percent / 100.0) - 1)];
+    }
+}
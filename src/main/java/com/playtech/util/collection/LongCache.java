@@ -0,0 +1,31 @@
+package com.playtech.util.collection;
+
+import java.util.function.LongFunction;
+
+// bounded long -> value cache shared by threads without locking. Every key has one slot, a colliding key simply
+// replaces the entry. Entries are immutable, so a racing reader sees either a whole entry or none
+public class LongCache<V> {
+    private final Entry<V>[] table;
+    private final int mask;
+
+    public LongCache(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        @SuppressWarnings("unchecked") Entry<V>[] entries = (Entry<V>[]) new Entry<?>[size];
+        table = entries;
+        mask = size - 1;
+    }
+
+    public V get(long key, LongFunction<V> compute) {
+        int index = (int) LongIntHashMap.mix(key) & mask;
+        Entry<V> entry = table[index];
+        if (entry != null && entry.key == key) {
+            return entry.value;
+        }
+        V value = compute.apply(key);
+        table[index] = new Entry<>(key, value);
+        return value;
+    }
+
+    private record Entry<V>(long key, V value) {
+    }
+}
@@ -0,0 +1,651 @@
+package com.playtech.util.csv;
+
+import com.playtech.util.time.IsoDates;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+// RFC 4180 csv reader working directly on a (memory-mapped) byte buffer.
+// next() only records where every field starts and ends, values are parsed from the bytes on request.
+// a gzip compressed file is inflated as it is read into a buffer on the heap instead, offsets are then
+// offsets in the inflated csv
+public class CsvReader implements Closeable {
+    // see getUnscaled
+    public static final long INEXACT = Long.MIN_VALUE;
+
+    private static final long WINDOW_SIZE = 1L << 28;
+    // starting size of the buffer of a compressed file, it grows when a record doesn't fit
+    private static final int STREAM_WINDOW_SIZE = 1 << 20;
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    // 10^0 .. 10^22 are exact doubles, which keeps the fast decimal path correctly rounded
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final FileChannel channel;
+    // false for a channel shared with other readers
+    private final boolean ownsChannel;
+    // inflated content of a compressed file, null when the file is mapped
+    private final InputStream stream;
+    // for a compressed file only known once the stream is exhausted
+    private long fileSize;
+    // records starting at or after this offset belong to the next range
+    private final long end;
+    private final boolean fromStart;
+    private ByteBuffer buffer;
+    // file offset of buffer index 0
+    private long windowStart;
+    private int position;
+    private int limit;
+
+    private int fieldCount;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    // quoted fields that contain "" escapes and need to be unescaped when read
+    private boolean[] escaped = new boolean[32];
+    private long recordNumber;
+    private long recordOffset;
+    private byte[] scratch = new byte[64];
+    // quoting state of the bytes handed out by nextChunk
+    private RecordScanner chunkScanner;
+
+    private CsvReader(FileChannel channel, boolean ownsChannel, long fileSize, long start, long end) throws IOException {
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.stream = null;
+        this.fileSize = fileSize;
+        this.end = end;
+        this.fromStart = start == 0;
+        if (start == 0) {
+            map(0);
+            skipByteOrderMark();
+        } else {
+            // a range starting mid-file begins with the first line that starts inside it
+            map(start - 1);
+            skipToLineStart();
+        }
+    }
+
+    public CsvReader(ByteBuffer buffer) {
+        this(buffer, 0);
+    }
+
+    // reader for a part of a larger input that starts at the given offset of it, see nextChunk
+    public CsvReader(ByteBuffer buffer, long offset) {
+        this.channel = null;
+        this.ownsChannel = false;
+        this.stream = null;
+        this.windowStart = offset;
+        this.fileSize = offset + buffer.limit();
+        this.end = fileSize;
+        this.fromStart = offset == 0;
+        this.buffer = buffer;
+        this.limit = buffer.limit();
+        if (fromStart) {
+            skipByteOrderMark();
+        }
+    }
+
+    private CsvReader(InputStream stream) throws IOException {
+        this.channel = null;
+        this.ownsChannel = false;
+        this.stream = stream;
+        this.fileSize = Long.MAX_VALUE;
+        this.end = Long.MAX_VALUE;
+        this.fromStart = true;
+        this.buffer = ByteBuffer.allocate(STREAM_WINDOW_SIZE);
+        fill(0);
+        skipByteOrderMark();
+    }
+
+    // a file ending in .gz or starting with the gzip magic bytes is read through an inflater
+    public static CsvReader open(Path path) throws IOException {
+        if (isCompressed(path)) {
+            InputStream stream = new GZIPInputStream(Files.newInputStream(path), 1 << 16);
+            try {
+                return new CsvReader(stream);
+            } catch (IOException e) {
+                stream.close();
+                throw e;
+            }
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new CsvReader(channel, true, channel.size(), 0, channel.size());
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static boolean isCompressed(Path path) throws IOException {
+        if (path.getFileName().toString().endsWith(".gz")) {
+            return true;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = in.readNBytes(2);
+            return magic.length == 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B;
+        }
+    }
+
+    // reader for the records that start in [start, end). A range starting mid-file begins after the first line break
+    // before it, so start should be a record start found with scan when values may hold line breaks.
+    // compressed files can't be read in ranges, see nextChunk
+    public static CsvReader open(Path path, long start, long end) throws IOException {
+        if (isCompressed(path)) {
+            throw new IOException("A compressed CSV file can only be read from the start: " + path);
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            return new CsvReader(channel, true, size, Math.min(start, size), Math.min(end, size));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // reader for the records that start in [start, end) of a file that is already open, closing the reader leaves the
+    // channel open so parallel workers can share it
+    public static CsvReader open(FileChannel channel, long start, long end) throws IOException {
+        long size = channel.size();
+        return new CsvReader(channel, false, size, Math.min(start, size), Math.min(end, size));
+    }
+
+    // follows the bytes [start, end) of the file for every quoting state at start, see RangeScanner
+    public static RangeScanner scan(FileChannel channel, long start, long end) throws IOException {
+        RangeScanner scanner = new RangeScanner(start);
+        for (long offset = start; offset < end; ) {
+            int length = (int) Math.min(WINDOW_SIZE, end - offset);
+            scanner.scan(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), 0, length);
+            offset += length;
+        }
+        return scanner;
+    }
+
+    // -1 for a compressed file that hasn't been read to the end
+    public long size() {
+        return fileSize == Long.MAX_VALUE ? -1 : fileSize;
+    }
+
+    public boolean isCompressed() {
+        return stream != null;
+    }
+
+    // file offset of the next record
+    public long offset() {
+        return windowStart + position;
+    }
+
+    // moves to the next record, false when the input is exhausted
+    public boolean next() throws IOException {
+        while (windowStart + position < Math.min(end, fileSize)) {
+            boolean atEnd = windowStart + limit >= fileSize;
+            long offset = windowStart + position;
+            if (parseRecord(atEnd)) {
+                recordOffset = offset;
+                recordNumber++;
+                return true;
+            }
+            // the record continues past the mapped window, map again starting at the record
+            if (position == 0 && (stream == null || limit >= WINDOW_SIZE)) {
+                throw new IOException("CSV record at byte " + windowStart + " is longer than " + WINDOW_SIZE + " bytes");
+            }
+            map(windowStart + position);
+        }
+        return false;
+    }
+
+    private boolean parseRecord(boolean atEnd) {
+        ByteBuffer buf = buffer;
+        int p = position;
+        fieldCount = 0;
+
+        while (true) {
+            if (fieldCount == starts.length) {
+                growFields();
+            }
+
+            if (p < limit && buf.get(p) == QUOTE) {
+                int start = ++p;
+                boolean hasEscapes = false;
+                while (true) {
+                    if (p >= limit) {
+                        if (!atEnd) {
+                            return false;
+                        }
+                        // unterminated quote, take the rest of the input
+                        break;
+                    }
+                    if (buf.get(p) == QUOTE) {
+                        if (p + 1 >= limit && !atEnd) {
+                            return false;
+                        }
+                        if (p + 1 < limit && buf.get(p + 1) == QUOTE) {
+                            hasEscapes = true;
+                            p += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    p++;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = Math.min(p, limit);
+                escaped[fieldCount] = hasEscapes;
+                p++;
+                // anything between the closing quote and the delimiter is ignored
+                while (p < limit && !isDelimiter(buf.get(p))) {
+                    p++;
+                }
+            } else {
+                int start = p;
+                while (p < limit && !isDelimiter(buf.get(p))) {
+                    p++;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = p;
+                escaped[fieldCount] = false;
+            }
+            fieldCount++;
+
+            if (p >= limit) {
+                if (!atEnd) {
+                    return false;
+                }
+                position = limit;
+                return true;
+            }
+
+            byte b = buf.get(p++);
+            if (b == COMMA) {
+                continue;
+            }
+            if (b == CR) {
+                if (p < limit && buf.get(p) == LF) {
+                    p++;
+                } else if (p >= limit && !atEnd) {
+                    return false;
+                }
+            }
+            position = p;
+            return true;
+        }
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == COMMA || b == LF || b == CR;
+    }
+
+    private void growFields() {
+        int size = starts.length * 2;
+        starts = Arrays.copyOf(starts, size);
+        ends = Arrays.copyOf(ends, size);
+        escaped = Arrays.copyOf(escaped, size);
+    }
+
+    private void map(long offset) throws IOException {
+        if (stream != null) {
+            fill(offset);
+            return;
+        }
+        windowStart = offset;
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(WINDOW_SIZE, fileSize - offset));
+        position = 0;
+        limit = buffer.limit();
+    }
+
+    // keeps what was read from offset on at the start of the buffer and reads the stream after it, into a buffer
+    // twice the size when nothing could be dropped
+    private void fill(long offset) throws IOException {
+        int from = (int) (offset - windowStart);
+        int kept = limit - from;
+        byte[] bytes = buffer.array();
+        if (from == 0 && limit == bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        } else {
+            System.arraycopy(bytes, from, bytes, 0, kept);
+        }
+        int filled = kept;
+        while (filled < bytes.length) {
+            int count = stream.read(bytes, filled, bytes.length - filled);
+            if (count < 0) {
+                fileSize = offset + filled;
+                break;
+            }
+            filled += count;
+        }
+        buffer = ByteBuffer.wrap(bytes);
+        windowStart = offset;
+        position = 0;
+        limit = filled;
+    }
+
+    // takes the records from here up to the end of the record that crosses size bytes out of the reader, null at the
+    // end of the input. The bytes are copied, so a compressed file can be inflated on one thread while its chunks
+    // are parsed on others with new CsvReader(chunk, offset) where offset is the offset() before the call.
+    // the first call has to be at the start of a record, after that the reader is only read through nextChunk so that
+    // a line break inside a quoted value never ends a chunk
+    public ByteBuffer nextChunk(int size) throws IOException {
+        if (chunkScanner == null) {
+            chunkScanner = new RecordScanner();
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(size + 1024);
+        boolean recordEnded = false;
+        while (!recordEnded && windowStart + position < Math.min(end, fileSize)) {
+            if (position == limit) {
+                map(windowStart + position);
+                continue;
+            }
+            int take = limit - position;
+            if (chunk.position() + take >= size) {
+                int from = Math.max(position, position + size - chunk.position() - 1);
+                chunkScanner.skip(buffer, position, from);
+                int recordEnd = chunkScanner.recordEnd(buffer, from, limit);
+                if (recordEnd >= 0) {
+                    take = recordEnd - position;
+                    recordEnded = true;
+                }
+            } else {
+                chunkScanner.skip(buffer, position, limit);
+            }
+            if (chunk.remaining() < take) {
+                chunk = ByteBuffer.allocate(Math.max(chunk.capacity() * 2, chunk.position() + take)).put(chunk.flip());
+            }
+            chunk.put(chunk.position(), buffer, position, take);
+            chunk.position(chunk.position() + take);
+            position += take;
+        }
+        return chunk.position() == 0 ? null : chunk.flip();
+    }
+
+    // a line ends at \n, \r\n or a lone \r, like a record in parseRecord
+    private void skipToLineStart() throws IOException {
+        boolean afterCr = false;
+        while (true) {
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (b == LF) {
+                    position++;
+                    return;
+                }
+                if (afterCr) {
+                    return;
+                }
+                afterCr = b == CR;
+                position++;
+            }
+            if (windowStart + limit >= fileSize) {
+                return;
+            }
+            map(windowStart + limit);
+        }
+    }
+
+    private void skipByteOrderMark() {
+        if (limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+            position = 3;
+        }
+    }
+
+    // whether the reader started at the beginning of the file, only then record numbers are line numbers
+    public boolean isFromStart() {
+        return fromStart;
+    }
+
+    // 1-based number of the current record, the header being record 1
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    // file offset where the current record starts
+    public long recordOffset() {
+        return recordOffset;
+    }
+
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    // the current record as it is in the file, without the line break. Only meant for error reports
+    public String recordText() {
+        int start = (int) (recordOffset - windowStart);
+        int end = position;
+        while (end > start && (buffer.get(end - 1) == LF || buffer.get(end - 1) == CR)) {
+            end--;
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // raw access to the field bytes, valid until the next call to next()
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    public int fieldStart(int field) {
+        return starts[field];
+    }
+
+    public int fieldEnd(int field) {
+        return ends[field];
+    }
+
+    public boolean isEscaped(int field) {
+        return escaped[field];
+    }
+
+    public boolean isEmpty(int field) {
+        return starts[field] == ends[field];
+    }
+
+    public String getString(int field) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        return escaped[field] ? value.replace("\"\"", "\"") : value;
+    }
+
+    public long getLong(int field) {
+        int p = starts[field];
+        int end = ends[field];
+        if (p == end) {
+            throw new NumberFormatException("Empty value");
+        }
+
+        boolean negative = false;
+        byte first = buffer.get(p);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++p == end) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+        }
+
+        // accumulate negatively so Long.MIN_VALUE fits
+        long result = 0;
+        while (p < end) {
+            int digit = buffer.get(p++) - '0';
+            if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative) {
+            if (result == Long.MIN_VALUE) {
+                throw new NumberFormatException("For input string: \"" + getString(field) + "\"");
+            }
+            return -result;
+        }
+        return result;
+    }
+
+    public double getDouble(int field) {
+        int p = starts[field];
+        int end = ends[field];
+
+        // fast path for plain decimals like 51.1 or -0.25, anything else goes through Double.parseDouble
+        boolean negative = false;
+        if (p < end && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+            negative = buffer.get(p) == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; p < end; p++) {
+            byte b = buffer.get(p);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (mantissa > (1L << 53)) {
+                    return Double.parseDouble(getString(field));
+                }
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return Double.parseDouble(getString(field));
+            }
+        }
+        if (digits == 0 || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(getString(field));
+        }
+
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
+    }
+
+    // the value times 10^scale as an exact long, like 12.3 -> 1230 at scale 2. INEXACT when the value has more
+    // digits after the point than the scale, doesn't fit a long or is not a plain decimal, so it needs a BigDecimal
+    public long getUnscaled(int field, int scale) {
+        int p = starts[field];
+        int end = ends[field];
+
+        boolean negative = false;
+        if (p < end && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+            negative = buffer.get(p) == '-';
+            p++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        for (; p < end; p++) {
+            byte b = buffer.get(p);
+            if (b >= '0' && b <= '9') {
+                if (mantissa > (Long.MAX_VALUE - 9) / 10) {
+                    return INEXACT;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (b == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                return INEXACT;
+            }
+        }
+        if (digits == 0) {
+            return INEXACT;
+        }
+
+        // trailing zeros beyond the scale are dropped, missing digits are added
+        for (int extra = Math.max(fractionDigits, 0); extra > scale; extra--) {
+            if (mantissa % 10 != 0) {
+                return INEXACT;
+            }
+            mantissa /= 10;
+        }
+        for (int missing = scale - Math.max(fractionDigits, 0); missing > 0; missing--) {
+            if (mantissa > Long.MAX_VALUE / 10) {
+                return INEXACT;
+            }
+            mantissa *= 10;
+        }
+        return negative ? -mantissa : mantissa;
+    }
+
+    // yyyy-MM-dd as epoch day
+    public long getEpochDay(int field) {
+        int p = starts[field];
+        if (ends[field] - p == 10 && buffer.get(p + 4) == '-' && buffer.get(p + 7) == '-') {
+            int year = digits(p, 4);
+            int month = digits(p + 5, 2);
+            int day = digits(p + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0 && IsoDates.isValid(year, month, day)) {
+                return IsoDates.epochDay(year, month, day);
+            }
+        }
+        return LocalDate.parse(getString(field)).toEpochDay();
+    }
+
+    // yyyy-MM-ddTHH:mm:ssZ as epoch second, other ISO-8601 instants are handled by Instant.parse
+    public long getEpochSecond(int field) {
+        int p = starts[field];
+        if (ends[field] - p == 20 && buffer.get(p + 4) == '-' && buffer.get(p + 7) == '-' && buffer.get(p + 10) == 'T'
+                && buffer.get(p + 13) == ':' && buffer.get(p + 16) == ':' && buffer.get(p + 19) == 'Z') {
+            int year = digits(p, 4);
+            int month = digits(p + 5, 2);
+            int day = digits(p + 8, 2);
+            int hour = digits(p + 11, 2);
+            int minute = digits(p + 14, 2);
+            int second = digits(p + 17, 2);
+            if (year >= 0 && month >= 0 && day >= 0 && hour >= 0 && minute >= 0 && second >= 0
+                    && IsoDates.isValid(year, month, day) && IsoDates.isValidTime(hour, minute, second)) {
+                return IsoDates.epochSecond(year, month, day, hour, minute, second);
+            }
+        }
+        return Instant.parse(getString(field)).getEpochSecond();
+    }
+
+    // -1 when the bytes are not all digits
+    private int digits(int p, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = buffer.get(p + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stream != null) {
+            stream.close();
+        }
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.playtech.util.csv;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// follows the bytes of one part of a file for every state a RecordScanner can be in at its start, so the parts of a
+// file can be scanned in parallel before the quoting at their start is known. Chained in file order from a record
+// start with endState, the parts give the record ends a single scanner over the whole file finds. Start states that
+// reach the same state are followed as one from there on, which for all but a quoted value is the next comma or
+// line break, so a part costs about two scans of its bytes
+public class RangeScanner {
+    // file offset of the next byte
+    private long offset;
+    // the states that are followed, count of them
+    private final int[] states = new int[RecordScanner.STATES];
+    private int count;
+    // start state -> index of the state that follows it
+    private final int[] followedBy = new int[RecordScanner.STATES];
+    // start state -> file offset after the first line break that ends a record, -1 while there was none. For a lone
+    // carriage return that ends the part it is only known in the next part, where it is the start of that part
+    private final long[] firstRecordEnds = new long[RecordScanner.STATES];
+
+    public RangeScanner(long offset) {
+        this.offset = offset;
+        for (int state = 0; state < RecordScanner.STATES; state++) {
+            states[state] = state;
+            followedBy[state] = state;
+        }
+        count = RecordScanner.STATES;
+        Arrays.fill(firstRecordEnds, -1);
+    }
+
+    // the state at the start of a record
+    public static int recordStartState() {
+        return RecordScanner.FIELD_START;
+    }
+
+    // takes the bytes in [from, to) of the buffer as the next bytes of the part
+    public void scan(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            boolean moved = false;
+            for (int s = 0; s < count; s++) {
+                int next = RecordScanner.next(states[s], b);
+                if ((next & RecordScanner.RECORD_END) != 0) {
+                    next ^= RecordScanner.RECORD_END;
+                    recordEnd(s, offset + i - from + 1);
+                } else if ((next & RecordScanner.RECORD_END_BEFORE) != 0) {
+                    next ^= RecordScanner.RECORD_END_BEFORE;
+                    recordEnd(s, offset + i - from);
+                }
+                moved |= next != states[s];
+                states[s] = next;
+            }
+            if (moved && count > 1) {
+                join();
+            }
+        }
+        offset += to - from;
+    }
+
+    private void recordEnd(int followed, long end) {
+        for (int state = 0; state < RecordScanner.STATES; state++) {
+            if (followedBy[state] == followed && firstRecordEnds[state] < 0) {
+                firstRecordEnds[state] = end;
+            }
+        }
+    }
+
+    // states that became the same won't part again, the start states of the later one move to the earlier one
+    private void join() {
+        for (int s = count - 1; s > 0; s--) {
+            for (int t = 0; t < s; t++) {
+                if (states[t] == states[s]) {
+                    remove(s, t);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void remove(int followed, int into) {
+        int last = count - 1;
+        for (int state = 0; state < RecordScanner.STATES; state++) {
+            if (followedBy[state] == followed) {
+                followedBy[state] = into;
+            } else if (followedBy[state] == last) {
+                followedBy[state] = followed;
+            }
+        }
+        states[followed] = states[last];
+        count--;
+    }
+
+    // the state after the part for a part that starts in the given state
+    public int endState(int startState) {
+        return states[followedBy[startState]];
+    }
+
+    // the file offset after the first line break in the part that ends a record, for a part that starts in the given
+    // state. -1 when the part has none
+    public long firstRecordEnd(int startState) {
+        return firstRecordEnds[startState];
+    }
+}
@@ -0,0 +1,100 @@
+package com.playtech.util.csv;
+
+import java.nio.ByteBuffer;
+
+// finds where records end without parsing them, for splitting a csv into parts that are parsed on their own.
+// it follows the rules of CsvReader.parseRecord: a quote only opens a value at the start of a field, "" inside it is
+// a quote, and a line break inside it belongs to the value. Outside of quotes a record ends at \n, \r\n or a lone \r,
+// which is only known to be lone at the byte after it. The scanner has to start at the start of a record and
+// is then fed the following bytes in order, it keeps the quoting state between calls
+public class RecordScanner {
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    // the states a scanner can be in, the state at the start of a record is 0
+    static final int STATES = 6;
+    static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    // a quote inside a quoted value, either the closing one or the first half of ""
+    private static final int QUOTE_IN_QUOTED = 3;
+    // the bytes after the closing quote up to the delimiter, which the parser ignores
+    private static final int AFTER_QUOTED = 4;
+    // a carriage return that ended a field, the record ends after the line feed that follows it or else before the next byte
+    private static final int AFTER_CR = 5;
+
+    // set in what next returns when the byte ends a record
+    static final int RECORD_END = 8;
+    // set in what next returns when the record ended before the byte, after a lone carriage return
+    static final int RECORD_END_BEFORE = 16;
+    private static final int STATE = RECORD_END - 1;
+
+    private int state = FIELD_START;
+
+    // index after the first line break in [from, to) that ends a record, -1 when there is none. The bytes up to it,
+    // or all of them, are taken as read. It is from when the last byte before from was a lone carriage return
+    public int recordEnd(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int next = next(state, buffer.get(i));
+            if ((next & RECORD_END_BEFORE) != 0) {
+                // the byte starts the next record and is read again from there
+                state = FIELD_START;
+                return i;
+            }
+            state = next & STATE;
+            if ((next & RECORD_END) != 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    // takes the bytes in [from, to) as read without looking for record ends
+    public void skip(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            state = next(state, buffer.get(i)) & STATE;
+        }
+    }
+
+    // the state after b, with RECORD_END set when b is a line break that ends a record and RECORD_END_BEFORE set when
+    // the record ended at the carriage return before b
+    static int next(int state, byte b) {
+        switch (state) {
+            case AFTER_CR -> {
+                if (b == LF) {
+                    return FIELD_START | RECORD_END;
+                }
+                return next(FIELD_START, b) | RECORD_END_BEFORE;
+            }
+            case QUOTED -> {
+                return b == QUOTE ? QUOTE_IN_QUOTED : QUOTED;
+            }
+            case QUOTE_IN_QUOTED -> {
+                if (b == QUOTE) {
+                    return QUOTED;
+                }
+                state = AFTER_QUOTED;
+            }
+            case FIELD_START -> {
+                if (b == QUOTE) {
+                    return QUOTED;
+                }
+                state = UNQUOTED;
+            }
+            default -> {
+            }
+        }
+        if (b == LF) {
+            return FIELD_START | RECORD_END;
+        }
+        if (b == CR) {
+            return AFTER_CR;
+        }
+        if (b == COMMA) {
+            return FIELD_START;
+        }
+        return state;
+    }
+}
@@ -0,0 +1,247 @@
+package com.playtech.util.format;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.IllegalFormatConversionException;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// a String.format pattern split once into literals and conversions, formatting column values without boxing them.
+// only plain %s, %d, %f and %.Nf (plus %% and %n) are compiled, any flag, width or argument index makes the whole
+// pattern go through String.format. The output is the same as String.format in the locale of the time of compiling
+public final class CompiledFormat {
+    // same syntax as java.util.Formatter
+    private static final Pattern SPECIFIER = Pattern.compile("%(\\d+\\$)?([-#+ 0,(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+    private static final int MAX_PRECISION = 9;
+    private static final long[] POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+    // the fast %f path is exact below this, see appendFixed
+    private static final double MAX_SCALED = 1e9;
+    private static final double HALF_MARGIN = 1e-6;
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final String pattern;
+    private final Locale locale;
+    // null when the pattern has to go through String.format
+    private final Segment[] segments;
+    private final int argumentCount;
+    private final char decimalSeparator;
+
+    private CompiledFormat(String pattern, Locale locale, Segment[] segments, int argumentCount, char decimalSeparator) {
+        this.pattern = pattern;
+        this.locale = locale;
+        this.segments = segments;
+        this.argumentCount = argumentCount;
+        this.decimalSeparator = decimalSeparator;
+    }
+
+    public static CompiledFormat compile(String pattern) {
+        return compile(pattern, Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    public static CompiledFormat compile(String pattern, Locale locale) {
+        char decimalSeparator = DecimalFormatSymbols.getInstance(locale).getDecimalSeparator();
+        // locales with their own digits or minus sign are left to the Formatter
+        String probe = String.format(locale, "%.2f|%d", -1234.5, -1234L);
+        if (!probe.equals("-1234" + decimalSeparator + "50|-1234")) {
+            return new CompiledFormat(pattern, locale, null, 0, decimalSeparator);
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        int argumentCount = 0;
+        Matcher matcher = SPECIFIER.matcher(pattern);
+        int literalStart = 0;
+        while (literalStart < pattern.length()) {
+            int percent = pattern.indexOf('%', literalStart);
+            if (percent < 0) {
+                segments.add(Segment.literal(pattern.substring(literalStart)));
+                break;
+            }
+            if (percent > literalStart) {
+                segments.add(Segment.literal(pattern.substring(literalStart, percent)));
+            }
+            if (!matcher.find(percent) || matcher.start() != percent) {
+                // invalid pattern, String.format reports it
+                return new CompiledFormat(pattern, locale, null, 0, decimalSeparator);
+            }
+
+            boolean plain = matcher.group(1) == null && (matcher.group(2) == null || matcher.group(2).isEmpty()) && matcher.group(3) == null && matcher.group(5) == null;
+            String precision = matcher.group(4);
+            char conversion = matcher.group(6).charAt(0);
+            Segment segment = null;
+            if (plain && precision == null && conversion == '%') {
+                segment = Segment.literal("%");
+            } else if (plain && precision == null && conversion == 'n') {
+                segment = Segment.literal(System.lineSeparator());
+            } else if (plain && precision == null && conversion == 's') {
+                segment = new Segment(Kind.STRING, null, argumentCount++, 0, null);
+            } else if (plain && precision == null && conversion == 'd') {
+                segment = new Segment(Kind.DECIMAL, null, argumentCount++, 0, null);
+            } else if (plain && conversion == 'f') {
+                int digits = precision == null ? 6 : Integer.parseInt(precision.substring(1));
+                if (digits <= MAX_PRECISION) {
+                    segment = new Segment(Kind.FIXED, null, argumentCount++, digits, "%." + digits + "f");
+                }
+            }
+            if (segment == null) {
+                return new CompiledFormat(pattern, locale, null, 0, decimalSeparator);
+            }
+            segments.add(segment);
+            literalStart = matcher.end();
+        }
+        return new CompiledFormat(pattern, locale, segments.toArray(new Segment[0]), argumentCount, decimalSeparator);
+    }
+
+    public boolean isCompiled() {
+        return segments != null;
+    }
+
+    // appends the formatted row, throws the same exceptions as String.format
+    public void format(StringBuilder out, ColumnVector[] inputs, int row) {
+        if (segments == null) {
+            Object[] values = new Object[inputs.length];
+            for (int i = 0; i < inputs.length; i++) {
+                values[i] = inputs[i] == null ? null : inputs[i].getObject(row);
+            }
+            out.append(String.format(locale, pattern, values));
+            return;
+        }
+        if (inputs.length < argumentCount) {
+            throw new MissingFormatArgumentException("Format specifier for argument " + (inputs.length + 1));
+        }
+
+        for (Segment segment : segments) {
+            if (segment.kind == Kind.LITERAL) {
+                out.append(segment.text);
+                continue;
+            }
+            ColumnVector vector = inputs[segment.argument];
+            if (vector == null || vector.isNull(row)) {
+                out.append("null");
+                continue;
+            }
+            switch (segment.kind) {
+                case STRING -> appendString(out, vector, row);
+                case DECIMAL -> {
+                    if (!(vector instanceof LongVector longs) || longs.getType() == Column.DataType.DATE || longs.getType() == Column.DataType.DATETIME) {
+                        throw new IllegalFormatConversionException('d', vector.getObject(row).getClass());
+                    }
+                    out.append(longs.get(row));
+                }
+                case FIXED -> {
+                    if (vector instanceof DoubleVector doubles) {
+                        appendFixed(out, doubles.get(row), segment);
+                    } else if (vector instanceof DecimalVector decimals) {
+                        appendFixed(out, decimals, row, segment);
+                    } else {
+                        throw new IllegalFormatConversionException('f', vector.getObject(row).getClass());
+                    }
+                }
+                default -> throw new IllegalStateException();
+            }
+        }
+    }
+
+    private static void appendString(StringBuilder out, ColumnVector vector, int row) {
+        if (vector instanceof StringVector strings) {
+            out.append(strings.get(row));
+        } else if (vector instanceof DoubleVector doubles) {
+            out.append(doubles.get(row));
+        } else if (vector instanceof LongVector longs && longs.getType() == Column.DataType.DATE) {
+            out.append(LocalDate.ofEpochDay(longs.get(row)));
+        } else if (vector instanceof LongVector longs && longs.getType() == Column.DataType.DATETIME) {
+            out.append(Instant.ofEpochSecond(longs.get(row)));
+        } else if (vector instanceof LongVector longs) {
+            out.append(longs.get(row));
+        } else {
+            out.append(vector.getObject(row));
+        }
+    }
+
+    // the Formatter rounds the decimal digits of the double half up. Below MAX_SCALED the scaled value is within a
+    // few 1e-7 of those digits, so unless it is that close to a half it rounds the same way as the digits do
+    private void appendFixed(StringBuilder out, double value, Segment segment) {
+        int precision = segment.precision;
+        double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+        if (scaled < MAX_SCALED) {
+            double floor = Math.floor(scaled);
+            double fraction = scaled - floor;
+            if (Math.abs(fraction - 0.5) > HALF_MARGIN) {
+                appendUnits(out, Double.compare(value, 0.0) < 0, (long) floor + (fraction > 0.5 ? 1 : 0), precision);
+                return;
+            }
+        }
+        // NaN, infinity, large values and near ties
+        out.append(String.format(locale, segment.fallback, value));
+    }
+
+    // the Formatter rounds a BigDecimal half up from its exact digits, and the scaled long has exactly those digits
+    private void appendFixed(StringBuilder out, DecimalVector decimals, int row, Segment segment) {
+        int precision = segment.precision;
+        int scale = decimals.scale();
+        long value = decimals.getUnscaled(row);
+        if (decimals.fits(row) && value != Long.MIN_VALUE) {
+            long magnitude = Math.abs(value);
+            long units = -1;
+            if (precision >= scale) {
+                long factor = POWERS_OF_TEN[precision - scale];
+                units = magnitude <= Long.MAX_VALUE / factor ? magnitude * factor : -1;
+            } else {
+                long divisor = DecimalVector.powerOfTen(scale - precision);
+                units = magnitude / divisor + (magnitude % divisor * 2 >= divisor ? 1 : 0);
+            }
+            if (units >= 0) {
+                appendUnits(out, value < 0, units, precision);
+                return;
+            }
+        }
+        // values that are kept as BigDecimal or don't fit a long with the requested digits
+        out.append(String.format(locale, segment.fallback, decimals.get(row)));
+    }
+
+    // units of 10^-precision as a fixed point number
+    private void appendUnits(StringBuilder out, boolean negative, long units, int precision) {
+        if (negative) {
+            out.append('-');
+        }
+        out.append(units / POWERS_OF_TEN[precision]);
+        if (precision > 0) {
+            out.append(decimalSeparator);
+            long decimals = units % POWERS_OF_TEN[precision];
+            for (long power = POWERS_OF_TEN[precision - 1]; power > decimals && power > 1; power /= 10) {
+                out.append('0');
+            }
+            out.append(decimals);
+        }
+    }
+
+    private enum Kind {
+        LITERAL,
+        STRING,
+        DECIMAL,
+        FIXED
+    }
+
+    private record Segment(Kind kind, String text, int argument, int precision, String fallback) {
+        private static Segment literal(String text) {
+            return new Segment(Kind.LITERAL, text, -1, 0, null);
+        }
+    }
+}
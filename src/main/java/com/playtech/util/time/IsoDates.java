@@ -0,0 +1,118 @@
+package com.playtech.util.time;
+
+// date arithmetic for hand-parsed ISO-8601 values, so hot loops don't need to build LocalDate/Instant objects
+public final class IsoDates {
+    public static final int SECONDS_PER_DAY = 86400;
+    // result of the parse methods for text of another shape
+    public static final long INVALID = Long.MIN_VALUE;
+    private static final long DAYS_0000_TO_1970 = (146097 * 5L) - (30L * 365L + 7L);
+
+    private IsoDates() {
+    }
+
+    public static boolean isValid(int year, int month, int day) {
+        return month >= 1 && month <= 12 && day >= 1 && day <= lengthOfMonth(year, month);
+    }
+
+    public static boolean isValidTime(int hour, int minute, int second) {
+        return hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60;
+    }
+
+    // same result as LocalDate.of(year, month, day).toEpochDay()
+    public static long epochDay(int year, int month, int day) {
+        long y = year;
+        long total = 365 * y;
+        if (y >= 0) {
+            total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+        } else {
+            total -= y / -4 - y / -100 + y / -400;
+        }
+        total += (367L * month - 362) / 12;
+        total += day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeapYear(year)) {
+                total--;
+            }
+        }
+        return total - DAYS_0000_TO_1970;
+    }
+
+    public static long epochSecond(int year, int month, int day, int hour, int minute, int second) {
+        return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    // epoch day of yyyy-MM-dd, INVALID for anything else
+    public static long parseEpochDay(CharSequence text) {
+        return text.length() == 10 ? epochDayAt(text) : INVALID;
+    }
+
+    // epoch second of yyyy-MM-ddTHH:mm:ssZ, INVALID for anything else
+    public static long parseEpochSecond(CharSequence text) {
+        if (text.length() != 20 || text.charAt(10) != 'T' || text.charAt(13) != ':' || text.charAt(16) != ':' || text.charAt(19) != 'Z') {
+            return INVALID;
+        }
+        long epochDay = epochDayAt(text);
+        int hour = digits(text, 11, 2);
+        int minute = digits(text, 14, 2);
+        int second = digits(text, 17, 2);
+        if (epochDay == INVALID || hour < 0 || minute < 0 || second < 0 || !isValidTime(hour, minute, second)) {
+            return INVALID;
+        }
+        return epochDay * SECONDS_PER_DAY + hour * 3600L + minute * 60L + second;
+    }
+
+    // the yyyy-MM-dd at the start of the text
+    private static long epochDayAt(CharSequence text) {
+        if (text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return INVALID;
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 2);
+        int day = digits(text, 8, 2);
+        if (year < 0 || month < 0 || day < 0 || !isValid(year, month, day)) {
+            return INVALID;
+        }
+        return epochDay(year, month, day);
+    }
+
+    // -1 when the characters are not all digits
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // year * 10000 + month * 100 + day of an epoch day, same date as LocalDate.ofEpochDay(epochDay)
+    public static long yearMonthDay(long epochDay) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        // months counted from march, so the leap day is the last day of the year
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    private static boolean isLeapYear(long year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeapYear(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+}
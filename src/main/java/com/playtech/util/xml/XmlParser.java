@@ -8,9 +8,40 @@ import jakarta.xml.bind.Unmarshaller;
 import java.io.File;
 
 public class XmlParser {
+    // building the context is the expensive part and it is thread-safe, so it is created once.
+    // unmarshallers are not thread-safe, every parse gets its own
+    private static JAXBContext context;
+
     public static Report parseReport(String filePath) throws JAXBException {
-        JAXBContext context = JAXBContext.newInstance(Report.class);
-        Unmarshaller unmarshaller = context.createUnmarshaller();
-        return (Report) unmarshaller.unmarshal(new File(filePath));
+        Unmarshaller unmarshaller = context().createUnmarshaller();
+        // a transformer that rejects its parameters would otherwise just be left out of the report,
+        // which for a filter means reporting on every row
+        IllegalArgumentException[] invalid = new IllegalArgumentException[1];
+        unmarshaller.setEventHandler(event -> {
+            Throwable cause = event.getLinkedException();
+            while (cause != null && !(cause instanceof IllegalArgumentException)) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                return true;
+            }
+            invalid[0] = (IllegalArgumentException) cause;
+            return false;
+        });
+        try {
+            return (Report) unmarshaller.unmarshal(new File(filePath));
+        } catch (JAXBException e) {
+            if (invalid[0] != null) {
+                throw invalid[0];
+            }
+            throw e;
+        }
+    }
+
+    private static synchronized JAXBContext context() throws JAXBException {
+        if (context == null) {
+            context = JAXBContext.newInstance(Report.class);
+        }
+        return context;
     }
 }
@@ -3,12 +3,18 @@ package com.playtech.util.xml.adapters;
 import com.playtech.report.transformer.Transformer;
 import com.playtech.report.transformer.impl.AggregatorTransformer;
 import com.playtech.report.transformer.impl.DateTimeFormatterTransformer;
+import com.playtech.report.transformer.impl.FilterTransformer;
+import com.playtech.report.transformer.impl.LookupTransformer;
 import com.playtech.report.transformer.impl.MathOperationTransformer;
 import com.playtech.report.transformer.impl.OrderingTransformer;
 import com.playtech.report.transformer.impl.StringFormatterTransformer;
+import com.playtech.report.transformer.impl.WindowTransformer;
+import com.playtech.util.xml.helpers.Parameters;
 import com.playtech.util.xml.helpers.TransformerWrapper;
 import jakarta.xml.bind.annotation.adapters.XmlAdapter;
 
+import java.util.List;
+
 public class TransformerAdapter extends XmlAdapter<TransformerWrapper, Transformer> {
     @Override
     public Transformer unmarshal(TransformerWrapper wrapper) {
@@ -16,17 +22,33 @@ public class TransformerAdapter extends XmlAdapter<TransformerWrapper, Transform
             case StringFormatterTransformer.NAME ->
                     new StringFormatterTransformer(wrapper.getParameters().getInputs(), wrapper.getParameters().getFormat(), wrapper.getParameters().getOutput());
             case OrderingTransformer.NAME ->
-                    new OrderingTransformer(wrapper.getParameters().getInput(), wrapper.getParameters().getOrder());
+                    new OrderingTransformer(orderBys(wrapper.getParameters()), wrapper.getParameters().getLimit(), wrapper.getParameters().getMemoryLimit());
             case MathOperationTransformer.NAME ->
-                    new MathOperationTransformer(wrapper.getParameters().getInputs(), wrapper.getParameters().getOperation(), wrapper.getParameters().getOutput());
+                    new MathOperationTransformer(wrapper.getParameters().getInputs(), wrapper.getParameters().getOperation(), wrapper.getParameters().getOutput(), wrapper.getParameters().getOnError());
             case DateTimeFormatterTransformer.NAME ->
-                    new DateTimeFormatterTransformer(wrapper.getParameters().getInput(), wrapper.getParameters().getFormat(), wrapper.getParameters().getOutput());
+                    new DateTimeFormatterTransformer(wrapper.getParameters().getInput(), wrapper.getParameters().getFormat(), wrapper.getParameters().getOutput(), wrapper.getParameters().getZone());
             case AggregatorTransformer.NAME ->
                     new AggregatorTransformer(wrapper.getParameters().getGroupBy(), wrapper.getParameters().getAggregateBys());
+            case FilterTransformer.NAME ->
+                    new FilterTransformer(wrapper.getParameters().getCondition());
+            case WindowTransformer.NAME ->
+                    new WindowTransformer(wrapper.getParameters().getPartitionBy(), wrapper.getParameters().getOrderBy(), wrapper.getParameters().getOrder(),
+                            wrapper.getParameters().getFrame(), wrapper.getParameters().getAggregateBys());
+            case LookupTransformer.NAME ->
+                    new LookupTransformer(wrapper.getParameters().getFile(), wrapper.getParameters().getInput(), wrapper.getParameters().getKey(),
+                            wrapper.getParameters().getSelect(), wrapper.getParameters().getMemoryLimit());
             default -> throw new IllegalArgumentException("Unknown transformer type: " + wrapper.getName());
         };
     }
 
+    // <orderBys> for several sort keys, or the single <input> and <order> pair
+    private static List<OrderingTransformer.OrderBy> orderBys(Parameters parameters) {
+        if (parameters.getOrderBys() != null) {
+            return parameters.getOrderBys();
+        }
+        return List.of(new OrderingTransformer.OrderBy(parameters.getInput(), parameters.getOrder()));
+    }
+
     @Override
     public TransformerWrapper marshal(Transformer transformer) {
         // ignoring marshalling
@@ -1,13 +1,17 @@
 package com.playtech.util.xml.helpers;
 
 import com.playtech.report.column.Column;
+import com.playtech.report.filter.Condition;
+import com.playtech.report.reject.ErrorPolicy;
 import com.playtech.report.transformer.impl.AggregatorTransformer;
 import com.playtech.report.transformer.impl.MathOperationTransformer;
 import com.playtech.report.transformer.impl.OrderingTransformer;
+import com.playtech.report.transformer.impl.WindowTransformer;
 import com.playtech.util.xml.adapters.ColumnAdapter;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlElement;
+import jakarta.xml.bind.annotation.XmlElementRef;
 import jakarta.xml.bind.annotation.XmlElementWrapper;
 import jakarta.xml.bind.annotation.XmlIDREF;
 import jakarta.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
@@ -26,13 +30,36 @@ public class Parameters {
     @XmlIDREF
     private Column output;
     private String format;
+    private String zone;
     private OrderingTransformer.Order order;
+    @XmlElementWrapper(name = "orderBys")
+    @XmlElement(name = "orderBy")
+    private List<OrderingTransformer.OrderBy> orderBys;
+    private Integer limit;
+    private Long memoryLimit;
     private MathOperationTransformer.MathOperation operation;
-    @XmlIDREF
-    private Column groupBy;
+    private ErrorPolicy onError;
+    @XmlElement(name = "groupBy")
+    @XmlJavaTypeAdapter(ColumnAdapter.class)
+    private List<Column> groupBy;
     @XmlElementWrapper(name = "aggregateBys")
     @XmlElement(name = "aggregateBy")
     private List<AggregatorTransformer.AggregateBy> aggregateBys;
+    @XmlElement(name = "partitionBy")
+    @XmlJavaTypeAdapter(ColumnAdapter.class)
+    private List<Column> partitionBy;
+    @XmlIDREF
+    private Column orderBy;
+    private WindowTransformer.Frame frame;
+    // dimension csv of a Lookup, the name of its key column and the columns taken from it
+    private String file;
+    private String key;
+    @XmlElement(name = "select")
+    @XmlJavaTypeAdapter(ColumnAdapter.class)
+    private List<Column> select;
+    // the filter condition, one of <compare>, <in>, <between>, <and> or <or>
+    @XmlElementRef(required = false)
+    private Condition condition;
 
     public List<Column> getInputs() {
         return inputs;
@@ -50,19 +77,67 @@ public class Parameters {
         return format;
     }
 
+    public String getZone() {
+        return zone;
+    }
+
     public OrderingTransformer.Order getOrder() {
         return order;
     }
 
+    public List<OrderingTransformer.OrderBy> getOrderBys() {
+        return orderBys;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public Long getMemoryLimit() {
+        return memoryLimit;
+    }
+
     public MathOperationTransformer.MathOperation getOperation() {
         return operation;
     }
 
-    public Column getGroupBy() {
+    public ErrorPolicy getOnError() {
+        return onError;
+    }
+
+    public List<Column> getGroupBy() {
         return groupBy;
     }
 
     public List<AggregatorTransformer.AggregateBy> getAggregateBys() {
         return aggregateBys;
     }
+
+    public List<Column> getPartitionBy() {
+        return partitionBy;
+    }
+
+    public Column getOrderBy() {
+        return orderBy;
+    }
+
+    public WindowTransformer.Frame getFrame() {
+        return frame;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public List<Column> getSelect() {
+        return select;
+    }
+
+    public Condition getCondition() {
+        return condition;
+    }
 }
@@ -0,0 +1,80 @@
+package com.playtech;
+
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+// the sample report over the sample csv, checked against the example output that came with the assignment
+class ReportGeneratorTest {
+    private static final Path CSV = Path.of("input/casino_gaming_results.csv");
+    private static final Path REPORT = Path.of("input/DailyBetWinLossReport.xml");
+    private static final Path EXAMPLE = Path.of("output/DailyBetWinLossReportExample.jsonl");
+
+    @TempDir
+    Path output;
+    private Locale locale;
+
+    // the example was written with a comma as the decimal separator
+    @BeforeEach
+    void useExampleLocale() {
+        locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("et-EE"));
+    }
+
+    @AfterEach
+    void restoreLocale() {
+        Locale.setDefault(locale);
+    }
+
+    @Test
+    void serialRunWritesTheExampleOutput() throws Exception {
+        assertArrayEquals(Files.readAllBytes(EXAMPLE), run(1, 1 << 20));
+    }
+
+    @Test
+    void parallelRunWritesTheSameBytesAsASerialRun() throws Exception {
+        byte[] serial = run(1, 1 << 20);
+        // a small chunk size splits the sample csv into many chunks
+        assertArrayEquals(serial, run(4, 64 * 1024));
+        assertArrayEquals(serial, run(3, 10_000));
+    }
+
+    @Test
+    void batchRunWritesWhatSeparateRunsWrite() throws Exception {
+        // the same transformers with another name and format share the scan with the sample report
+        Path copyXml = output.resolve("copy.xml");
+        Files.writeString(copyXml, Files.readString(REPORT)
+                .replace("<reportName>DailyBetWinLossReport</reportName>", "<reportName>DailyCopy</reportName>")
+                .replace("<outputFormat>JSONL</outputFormat>", "<outputFormat>CSV</outputFormat>"));
+        Report copy = XmlParser.parseReport(copyXml.toString());
+        Path separate = Files.createDirectory(output.resolve("separate"));
+        ReportGenerator.transformCsv(CSV.toString(), separate + "/", copy, 1, 1 << 20, false, new Rejections());
+        byte[] copyBytes = Files.readAllBytes(ReportGenerator.outputPath(separate + "/", copy));
+
+        for (int threads : new int[]{1, 4}) {
+            Path batch = Files.createDirectory(output.resolve("batch" + threads));
+            Report report = XmlParser.parseReport(REPORT.toString());
+            ReportGenerator.readAndTransformCsv(CSV.toString(), batch + "/", List.of(report, copy), threads, 64 * 1024, new Rejections());
+
+            assertArrayEquals(Files.readAllBytes(EXAMPLE), Files.readAllBytes(ReportGenerator.outputPath(batch + "/", report)));
+            assertArrayEquals(copyBytes, Files.readAllBytes(ReportGenerator.outputPath(batch + "/", copy)));
+        }
+    }
+
+    private byte[] run(int threads, long chunkSize) throws Exception {
+        Report report = XmlParser.parseReport(REPORT.toString());
+        ReportGenerator.transformCsv(CSV.toString(), output + "/", report, threads, chunkSize, false, new Rejections());
+        return Files.readAllBytes(ReportGenerator.outputPath(output + "/", report));
+    }
+}
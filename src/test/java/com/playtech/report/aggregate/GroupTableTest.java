@@ -0,0 +1,99 @@
+package com.playtech.report.aggregate;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GroupTableTest {
+
+    // players and days, the last row has no player
+    private static ColumnVector[] keys(String[] players, long[] days) {
+        StringVector playerVector = new StringVector(players.length);
+        LongVector dayVector = new LongVector(Column.DataType.DATE, days.length);
+        for (int row = 0; row < players.length; row++) {
+            if (players[row] == null) {
+                playerVector.setNull(row);
+            } else {
+                playerVector.set(row, players[row]);
+            }
+            dayVector.set(row, days[row]);
+        }
+        return new ColumnVector[]{playerVector, dayVector};
+    }
+
+    private static int[] resolve(GroupTable table, String[] players, long[] days) {
+        int[] groups = new int[players.length];
+        table.resolve(keys(players, days), players.length, groups);
+        return groups;
+    }
+
+    private static String key(GroupTable table, int group) {
+        ColumnVector player = table.newKeyVector(0, 1);
+        ColumnVector day = table.newKeyVector(1, 1);
+        table.writeKey(group, 0, player, 0);
+        table.writeKey(group, 1, day, 0);
+        return player.getObject(0) + "/" + ((LongVector) day).get(0);
+    }
+
+    @Test
+    void groupsAreNumberedInTheOrderTheyAppear() {
+        GroupTable table = new GroupTable(2);
+
+        int[] groups = resolve(table, new String[]{"bob", "ann", "bob", "bob", null}, new long[]{1, 1, 1, 2, 1});
+        assertArrayEquals(new int[]{0, 1, 0, 2, -1}, groups);
+        assertArrayEquals(new int[]{1, 3, 2}, resolve(table, new String[]{"ann", "ann", "bob"}, new long[]{1, 2, 2}));
+
+        assertEquals(4, table.size());
+        assertEquals("bob/1", key(table, 0));
+        assertEquals("ann/2", key(table, 3));
+    }
+
+    @Test
+    void groupsOfAnotherTableAreAddedAfterTheKnownOnes() {
+        GroupTable table = new GroupTable(2);
+        resolve(table, new String[]{"bob", "ann"}, new long[]{1, 1});
+        GroupTable other = new GroupTable(2);
+        resolve(other, new String[]{"cid", "ann"}, new long[]{1, 1});
+
+        assertEquals(2, table.groupOf(other, 0));
+        assertEquals(1, table.groupOf(other, 1));
+        assertEquals(3, table.size());
+        assertEquals("cid/1", key(table, 2));
+    }
+
+    @Test
+    void readTableKeepsTheGroupIds() throws Exception {
+        GroupTable table = new GroupTable(2);
+        resolve(table, new String[]{"bob", "ann", "bob", "cid"}, new long[]{3, 1, 1, 3});
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(bytes));
+
+        GroupTable read = GroupTable.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(4, read.size());
+        for (int group = 0; group < 4; group++) {
+            assertEquals(key(table, group), key(read, group));
+        }
+        assertArrayEquals(new int[]{2, 4}, resolve(read, new String[]{"bob", "ann"}, new long[]{1, 3}));
+    }
+
+    @Test
+    void withoutKeyColumnsEveryRowIsOneGroup() {
+        GroupTable table = new GroupTable(0);
+        int[] groups = new int[3];
+        table.resolve(new ColumnVector[0], 3, groups);
+
+        assertArrayEquals(new int[]{0, 0, 0}, groups);
+        assertEquals(1, table.size());
+    }
+}
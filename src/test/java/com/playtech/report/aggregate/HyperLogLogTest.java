@@ -0,0 +1,59 @@
+package com.playtech.report.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    private static HyperLogLog sketch(int from, int to) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = from; i < to; i++) {
+            sketch.add(HyperLogLog.hash("player-" + i));
+        }
+        return sketch;
+    }
+
+    @Test
+    void smallCountsAreCloseToExact() {
+        HyperLogLog sketch = sketch(0, 100);
+        sketch.add(HyperLogLog.hash("player-5"));
+
+        assertEquals(100, sketch.estimate(), 2);
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void largeCountsStayWithinTheStandardError() {
+        long estimate = sketch(0, 200_000).estimate();
+
+        // three standard errors of 1.6%
+        assertTrue(Math.abs(estimate - 200_000) < 200_000 * 0.05, "estimate " + estimate);
+    }
+
+    @Test
+    void mergedSketchesCountTheUnion() {
+        HyperLogLog merged = sketch(0, 60_000);
+        merged.merge(sketch(40_000, 100_000));
+
+        assertEquals(sketch(0, 100_000).estimate(), merged.estimate());
+    }
+
+    @Test
+    void savedSketchLoadsWithTheSameEstimate() throws Exception {
+        HyperLogLog sketch = sketch(0, 5_000);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.save(new DataOutputStream(bytes));
+
+        HyperLogLog loaded = new HyperLogLog();
+        loaded.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.estimate(), loaded.estimate());
+    }
+}
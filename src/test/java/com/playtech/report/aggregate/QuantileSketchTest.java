@@ -0,0 +1,89 @@
+package com.playtech.report.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+    private static final double[] QUANTILES = {0, 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99, 1};
+
+    // the values from until to of a fixed shuffle of 0 to 19999
+    private static QuantileSketch sketch(int from, int to, int exactLimit) {
+        QuantileSketch sketch = new QuantileSketch(100, exactLimit);
+        for (int i = from; i < to; i++) {
+            sketch.add(i * 7919L % 20_000);
+        }
+        return sketch;
+    }
+
+    private static void assertSameQuantiles(QuantileSketch expected, QuantileSketch actual) {
+        for (double q : QUANTILES) {
+            assertEquals(expected.quantile(q), actual.quantile(q), "quantile " + q);
+        }
+    }
+
+    @Test
+    void quantilesBelowTheExactLimitAreExactHoweverTheValuesAreSplit() {
+        for (int split : new int[]{0, 1, 37, 64, 100}) {
+            QuantileSketch first = new QuantileSketch(100, 1000);
+            QuantileSketch second = new QuantileSketch(100, 1000);
+            for (int value = 100; value >= 1; value--) {
+                (value % 100 < split ? first : second).add(value);
+            }
+            second.merge(first);
+
+            assertEquals(50.5, second.quantile(0.5));
+            assertEquals(90.1, second.quantile(0.9), 1e-12);
+            assertEquals(1, second.quantile(0));
+            assertEquals(100, second.quantile(1));
+        }
+        assertTrue(Double.isNaN(new QuantileSketch(100, 1000).quantile(0.5)));
+    }
+
+    @Test
+    void mergeDoesNotDependOnWhichSketchIsMergedIntoWhich() {
+        // digests on both sides, a digest and exact values, and an empty sketch
+        int[][] splits = {{0, 8_000, 20_000}, {0, 500, 20_000}, {0, 0, 20_000}, {0, 600, 1_200}};
+        for (int[] split : splits) {
+            QuantileSketch left = sketch(split[0], split[1], 1000);
+            left.merge(sketch(split[1], split[2], 1000));
+            QuantileSketch right = sketch(split[1], split[2], 1000);
+            right.merge(sketch(split[0], split[1], 1000));
+
+            assertSameQuantiles(left, right);
+        }
+    }
+
+    @Test
+    void digestStaysCloseToTheExactQuantiles() {
+        QuantileSketch merged = sketch(0, 5_000, 1000);
+        merged.merge(sketch(5_000, 12_000, 1000));
+        merged.merge(sketch(12_000, 20_000, 1000));
+
+        // the values are 0 to 19999 once each, the tails are within 0.1% of the range
+        assertEquals(0, merged.quantile(0));
+        assertEquals(19_999, merged.quantile(1));
+        assertEquals(199.99, merged.quantile(0.01), 20);
+        assertEquals(9_999.5, merged.quantile(0.5), 100);
+        assertEquals(19_799.01, merged.quantile(0.99), 20);
+    }
+
+    @Test
+    void savedSketchLoadsWithTheSameQuantiles() throws Exception {
+        for (QuantileSketch sketch : new QuantileSketch[]{sketch(0, 500, 1000), sketch(0, 20_000, 1000)}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            sketch.save(new DataOutputStream(bytes));
+
+            QuantileSketch loaded = new QuantileSketch(100, 1000);
+            loaded.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+            assertSameQuantiles(sketch, loaded);
+        }
+    }
+}
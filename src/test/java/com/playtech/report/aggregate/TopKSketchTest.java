@@ -0,0 +1,73 @@
+package com.playtech.report.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TopKSketchTest {
+    private static TopKSketch sketch(int capacity, String... values) {
+        TopKSketch sketch = new TopKSketch(capacity);
+        for (String value : values) {
+            sketch.add(value, 1);
+        }
+        return sketch;
+    }
+
+    @Test
+    void countsAreExactWhileNoCounterWasTakenOver() {
+        TopKSketch sketch = sketch(10, "slots", "poker", "slots", "roulette", "poker", "slots");
+        sketch.add("roulette", 2.5);
+
+        assertEquals("roulette=3.5;slots=3", sketch.top(2));
+        assertEquals("roulette=3.5;slots=3;poker=2", sketch.top(5));
+    }
+
+    @Test
+    void valuesWithTheSameCountAreInTextOrder() {
+        assertEquals("a=2;b=2;c=2", sketch(10, "c", "b", "a", "a", "b", "c").top(3));
+    }
+
+    @Test
+    void mergeKeepsTheSameValuesWhicheverSideItIsOn() {
+        // three values with the same count for two counters
+        TopKSketch left = sketch(2, "y", "x", "y", "x");
+        left.merge(sketch(2, "z", "z"));
+        TopKSketch right = sketch(2, "z", "z");
+        right.merge(sketch(2, "y", "x", "y", "x"));
+
+        assertEquals("x=2;y=2", left.top(2));
+        assertEquals(left.top(2), right.top(2));
+    }
+
+    @Test
+    void heavyHitterIsFoundPastTheCapacity() {
+        TopKSketch sketch = new TopKSketch(20);
+        for (int i = 0; i < 10_000; i++) {
+            sketch.add(i % 3 == 0 ? "jackpot" : "game" + i, 1);
+        }
+
+        String top = sketch.top(1);
+        assertTrue(top.startsWith("jackpot="), top);
+        // the count is an upper bound that is off by at most the total over the counters
+        long count = Long.parseLong(top.substring("jackpot=".length()));
+        assertTrue(count >= 3_334 && count <= 3_334 + 10_000 / 20, top);
+    }
+
+    @Test
+    void savedSketchLoadsWithTheSameCounts() throws Exception {
+        TopKSketch sketch = sketch(3, "a", "b", "a", "c", "d", "a");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.save(new DataOutputStream(bytes));
+
+        TopKSketch loaded = new TopKSketch(3);
+        loaded.load(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.top(3), loaded.top(3));
+    }
+}
@@ -0,0 +1,50 @@
+package com.playtech.report.batch;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecimalVectorTest {
+    @Test
+    void valuesAreKeptAtTheScaleOfTheColumn() {
+        DecimalVector decimals = new DecimalVector(2, 2);
+        decimals.set(0, new BigDecimal("90071992547409.93"));
+        decimals.set(1, new BigDecimal("1.5"));
+
+        assertTrue(decimals.fits(0));
+        assertEquals(9007199254740993L, decimals.getUnscaled(0));
+        assertEquals(new BigDecimal("90071992547409.93"), decimals.get(0));
+        assertEquals(150, decimals.getUnscaled(1));
+        assertEquals(new BigDecimal("1.50"), decimals.get(1));
+    }
+
+    @Test
+    void valuesThatDoNotFitALongStayExact() {
+        DecimalVector decimals = new DecimalVector(2, 2);
+        decimals.set(0, new BigDecimal("123456789012345678901.01"));
+        // more digits after the point than the scale
+        decimals.set(1, new BigDecimal("0.125"));
+
+        assertFalse(decimals.fits(0));
+        assertEquals(new BigDecimal("123456789012345678901.01"), decimals.get(0));
+        assertFalse(decimals.fits(1));
+        assertEquals(new BigDecimal("0.125"), decimals.get(1));
+    }
+
+    @Test
+    void copiesKeepWideValues() {
+        DecimalVector decimals = new DecimalVector(2, 2);
+        decimals.set(0, new BigDecimal("123456789012345678901.01"));
+        decimals.setUnscaled(1, 9007199254740993L);
+        DecimalVector copy = (DecimalVector) decimals.newVector(2);
+        decimals.copyTo(0, copy, 1);
+        decimals.copyTo(1, copy, 0);
+
+        assertEquals(new BigDecimal("90071992547409.93"), copy.get(0));
+        assertEquals(new BigDecimal("123456789012345678901.01"), copy.get(1));
+    }
+}
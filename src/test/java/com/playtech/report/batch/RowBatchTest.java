@@ -0,0 +1,88 @@
+package com.playtech.report.batch;
+
+import com.playtech.report.column.Column;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RowBatchTest {
+
+    @Test
+    void rowsSurviveTheRoundTripThroughVectors() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("Player", "alice");
+        first.put("Bet", 1.5);
+        first.put("Games", 3L);
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("Player", "bob");
+        second.put("Games", 7L);
+
+        RowBatch batch = RowBatch.fromRows(List.of(first, second));
+
+        assertEquals(2, batch.size());
+        assertEquals(Column.DataType.DOUBLE, batch.vector("Bet").getType());
+        assertTrue(batch.vector("Bet").isNull(1));
+        assertEquals(List.of(first, second), batch.toRows());
+    }
+
+    @Test
+    void stringsOfABatchShareOneDictionaryEntry() {
+        StringVector strings = new StringVector(4);
+        strings.set(0, "Slot");
+        strings.set(1, "Poker");
+        strings.set(2, "Slot");
+        strings.setNull(3);
+
+        assertEquals(2, strings.dictionarySize());
+        assertEquals(strings.getCode(0), strings.getCode(2));
+        assertEquals("Slot", strings.get(2));
+        assertNull(strings.get(3));
+    }
+
+    @Test
+    void removedRowsKeepTheOrderOfTheOthers() {
+        RowBatch batch = new RowBatch(4);
+        LongVector days = new LongVector(Column.DataType.DATE, 4);
+        StringVector names = new StringVector(4);
+        for (int row = 0; row < 4; row++) {
+            days.set(row, row);
+            names.set(row, "n" + row);
+        }
+        batch.put("Day", days);
+        batch.put("Name", names);
+        batch.setSize(4);
+
+        batch.removeRows(new boolean[]{true, false, true, false});
+
+        assertEquals(2, batch.size());
+        assertEquals(LocalDate.ofEpochDay(1), batch.vector("Day").getObject(0));
+        assertEquals("n3", batch.vector("Name").getObject(1));
+    }
+
+    @Test
+    void copiedRowsKeepTheirNulls() {
+        RowBatch batch = new RowBatch(2);
+        DoubleVector amounts = new DoubleVector(2);
+        amounts.set(0, 2.5);
+        amounts.setNull(1);
+        batch.put("Amount", amounts);
+        batch.setSize(2);
+
+        RowBatch copy = batch.newBatch(2);
+        batch.copyRow(1, copy, 0);
+        batch.copyRow(0, copy, 1);
+        copy.setSize(2);
+
+        assertTrue(copy.vector("Amount").isNull(0));
+        assertFalse(copy.vector("Amount").isNull(1));
+        assertEquals(2.5, copy.vector("Amount").getDouble(1));
+    }
+}
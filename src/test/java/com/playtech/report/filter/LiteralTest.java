@@ -0,0 +1,50 @@
+package com.playtech.report.filter;
+
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.column.Column;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// values past 2^53, where the nearest double of the literal or of the row would make them equal
+class LiteralTest {
+    @Test
+    void integerRowsCompareExactlyWithALiteralWithAFraction() {
+        LongVector longs = new LongVector(Column.DataType.INTEGER, 2);
+        longs.set(0, 9007199254740993L);
+        longs.set(1, 9007199254740994L);
+        Literal literal = new Literal("9007199254740993.5");
+
+        assertEquals(-1, Integer.signum(literal.compareTo(longs, 0)));
+        assertEquals(1, Integer.signum(literal.compareTo(longs, 1)));
+    }
+
+    @Test
+    void integerRowsCompareExactlyWithALiteralPastTheRangeOfALong() {
+        LongVector longs = new LongVector(Column.DataType.INTEGER, 1);
+        longs.set(0, Long.MAX_VALUE);
+
+        assertEquals(-1, Integer.signum(new Literal("9223372036854775808").compareTo(longs, 0)));
+    }
+
+    @Test
+    void decimalRowsCompareExactly() {
+        DecimalVector decimals = new DecimalVector(2, 3);
+        decimals.set(0, new BigDecimal("12345678901234567.89"));
+        decimals.set(1, new BigDecimal("12345678901234567.88"));
+        // too wide for a long at scale 2
+        decimals.set(2, new BigDecimal("123456789012345678901.01"));
+
+        Literal literal = new Literal("12345678901234567.89");
+        assertTrue(literal.matches(decimals, 0));
+        assertFalse(literal.matches(decimals, 1));
+        assertEquals(-1, Integer.signum(literal.compareTo(decimals, 1)));
+        assertEquals(1, Integer.signum(new Literal("123456789012345678901.00").compareTo(decimals, 2)));
+        assertTrue(new Literal("123456789012345678901.010").matches(decimals, 2));
+    }
+}
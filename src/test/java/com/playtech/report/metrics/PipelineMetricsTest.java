@@ -0,0 +1,35 @@
+package com.playtech.report.metrics;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PipelineMetricsTest {
+
+    @Test
+    void metricsFileCountsTheRowsOfEveryStage(@TempDir Path output) throws Exception {
+        Report report = XmlParser.parseReport("input/DailyBetWinLossReport.xml");
+
+        ReportGenerator.transformCsv("input/casino_gaming_results.csv", output + "/", report, 4, 64 * 1024, true, new Rejections());
+        String json = Files.readString(output.resolve("DailyBetWinLossReport.metrics.json"));
+
+        // 10000 csv lines fold into 1878 days
+        assertTrue(json.contains("\"threads\":4,"), json);
+        assertTrue(has(json, "\"name\":\"Read CSV\",\"calls\":\\d+,\"rowsIn\":10000,\"rowsOut\":10000,"), json);
+        assertTrue(has(json, "\"name\":\"Aggregator [^\"]*\",\"calls\":\\d+,\"rowsIn\":10000,\"rowsOut\":1878,"), json);
+        assertTrue(has(json, "\"name\":\"Ordering StartDate ASC\",\"calls\":\\d+,\"rowsIn\":1878,\"rowsOut\":1878,"), json);
+    }
+
+    private static boolean has(String json, String regex) {
+        return Pattern.compile(regex).matcher(json).find();
+    }
+}
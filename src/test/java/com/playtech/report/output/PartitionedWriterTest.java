@@ -0,0 +1,144 @@
+package com.playtech.report.output;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionedWriterTest {
+    // %s are the extra elements of <outputPartitioning>
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Parts</reportName>
+                <outputs>
+                    <output><name>Player</name><type>STRING</type></output>
+                    <output><name>Country</name><type>STRING</type></output>
+                </outputs>
+                <outputFormat>CSV</outputFormat>
+                <outputPartitioning>
+                    <column>Country</column>
+                    %s
+                </outputPartitioning>
+            </report>
+            """;
+    private static final String[] COUNTRIES = {"EE", "LV", null, "a/b"};
+
+    @TempDir
+    Path directory;
+
+    // rows of the countries in turn, written in batches of batchSize rows
+    private Map<String, List<String>> write(String partitioning, int threads, int batchSize) throws Exception {
+        Path xml = directory.resolve("parts.xml");
+        Files.writeString(xml, REPORT.formatted(partitioning));
+        Report report = XmlParser.parseReport(xml.toString());
+
+        Map<String, List<String>> expected = new HashMap<>();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        try (PartitionedWriter writer = new PartitionedWriter(directory.resolve("Parts"), report, threads)) {
+            for (int i = 0; i < 400; i++) {
+                String country = COUNTRIES[i * 7 % 9 % COUNTRIES.length];
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("Player", "p" + i);
+                row.put("Country", country);
+                rows.add(row);
+                expected.computeIfAbsent(country == null ? "__NULL__" : country.replace("/", "%2F"), c -> new ArrayList<>())
+                        .add("p" + i + "," + (country == null ? "" : country));
+                if (rows.size() == batchSize) {
+                    writer.write(RowBatch.fromRows(rows));
+                    rows.clear();
+                }
+            }
+            if (!rows.isEmpty()) {
+                writer.write(RowBatch.fromRows(rows));
+            }
+        }
+        return expected;
+    }
+
+    private List<Path> parts(String value) throws Exception {
+        List<Path> parts = new ArrayList<>();
+        for (int number = 0; Files.exists(part(value, number)); number++) {
+            parts.add(part(value, number));
+        }
+        return parts;
+    }
+
+    private Path part(String value, int number) {
+        return directory.resolve("Parts").resolve("Country=" + value).resolve("part-" + number + ".CSV");
+    }
+
+    // the rows of all parts of a partition in part order, without their headers
+    private List<String> rows(List<Path> parts) throws Exception {
+        List<String> rows = new ArrayList<>();
+        for (Path part : parts) {
+            List<String> lines = Files.readAllLines(part);
+            assertEquals("Player,Country", lines.get(0));
+            rows.addAll(lines.subList(1, lines.size()));
+        }
+        return rows;
+    }
+
+    @Test
+    void everyPartitionKeepsItsRowsInInputOrder() throws Exception {
+        Map<String, List<String>> expected = write("", 3, 64);
+
+        assertEquals(4, expected.size());
+        for (Map.Entry<String, List<String>> partition : expected.entrySet()) {
+            List<Path> parts = parts(partition.getKey());
+            assertEquals(1, parts.size(), partition.getKey());
+            assertEquals(partition.getValue(), rows(parts));
+        }
+    }
+
+    @Test
+    void partsRollOverOnceTheyReachTheMaxFileSize() throws Exception {
+        Map<String, List<String>> expected = write("<maxFileSize>100</maxFileSize>", 2, 5);
+
+        for (Map.Entry<String, List<String>> partition : expected.entrySet()) {
+            List<Path> parts = parts(partition.getKey());
+            assertTrue(parts.size() > 1, partition.getKey());
+            // a part is closed with the batch that takes it to the size, only the last one may be smaller
+            for (Path part : parts.subList(0, parts.size() - 1)) {
+                assertTrue(Files.size(part) >= 100, part.toString());
+            }
+            assertEquals(partition.getValue(), rows(parts));
+        }
+    }
+
+    @Test
+    void partitionWhosePartWasClosedContinuesInANewPart() throws Exception {
+        // one open file for four partitions that come in turn, so every batch closes the part of another one
+        Map<String, List<String>> expected = write("<maxOpenFiles>1</maxOpenFiles>", 4, 10);
+
+        for (Map.Entry<String, List<String>> partition : expected.entrySet()) {
+            List<Path> parts = parts(partition.getKey());
+            assertTrue(parts.size() > 1, partition.getKey());
+            assertEquals(partition.getValue(), rows(parts));
+        }
+    }
+
+    @Test
+    void partsOfAnEarlierRunAreRemoved() throws Exception {
+        write("<maxFileSize>100</maxFileSize>", 1, 5);
+        assertTrue(Files.exists(part("EE", 3)));
+
+        write("", 1, 400);
+
+        assertTrue(Files.exists(part("EE", 0)));
+        assertFalse(Files.exists(part("EE", 1)));
+    }
+}
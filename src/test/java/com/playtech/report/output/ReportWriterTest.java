@@ -0,0 +1,73 @@
+package com.playtech.report.output;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReportWriterTest {
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Notes</reportName>
+                <outputs>
+                    <output><name>Note</name><type>STRING</type></output>
+                    <output><name>Games</name><type>INTEGER</type></output>
+                    <output><name>Day</name><type>DATE</type></output>
+                </outputs>
+                <outputFormat>%s</outputFormat>
+            </report>
+            """;
+
+    @TempDir
+    Path directory;
+
+    private String write(String format) throws Exception {
+        Path xml = directory.resolve("notes.xml");
+        Files.writeString(xml, REPORT.formatted(format));
+        Report report = XmlParser.parseReport(xml.toString());
+
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("Note", "say \"hi\", then\nleave");
+        first.put("Games", 3L);
+        first.put("Day", LocalDate.of(2024, 2, 29));
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("Note", "plain\ttab");
+        second.put("Games", null);
+        second.put("Day", null);
+
+        Path file = directory.resolve("notes." + format.toLowerCase());
+        try (ReportWriter writer = ReportWriter.open(file, report)) {
+            writer.write(RowBatch.fromRows(List.of(first, second)));
+        }
+        return Files.readString(file);
+    }
+
+    @Test
+    void csvQuotesOnlyFieldsThatNeedIt() throws Exception {
+        assertEquals("""
+                Note,Games,Day
+                "say ""hi"", then
+                leave",3,2024-02-29
+                plain\ttab,,
+                """, write("CSV"));
+    }
+
+    @Test
+    void jsonlEscapesStringsAndWritesNulls() throws Exception {
+        assertEquals("""
+                {"Note":"say \\"hi\\", then\\nleave","Games":3,"Day":"2024-02-29"}
+                {"Note":"plain\\ttab","Games":null,"Day":null}
+                """, write("JSONL"));
+    }
+}
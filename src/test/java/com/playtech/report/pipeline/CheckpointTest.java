@@ -0,0 +1,211 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.plan.ExecutionPlan;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.PersistentState;
+import com.playtech.report.transformer.TransformerState;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+    private static final Path CSV = Path.of("input/casino_gaming_results.csv");
+    private static final Path EXAMPLE = Path.of("output/DailyBetWinLossReportExample.jsonl");
+
+    @TempDir
+    Path directory;
+
+    // state that saves a fixed number of bytes
+    private static class BytesState implements PersistentState {
+        private byte[] bytes;
+
+        BytesState(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void save(DataOutput out) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public void load(DataInput in) throws IOException {
+            bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+        }
+
+        @Override
+        public void accept(RowBatch batch) {
+        }
+
+        @Override
+        public void merge(TransformerState other) {
+        }
+
+        @Override
+        public void finish(Consumer<RowBatch> downstream) {
+        }
+    }
+
+    @Test
+    void savedCheckpointIsOnlyReadForTheSameFingerprint() throws Exception {
+        Path csv = directory.resolve("data.csv");
+        Files.writeString(csv, "a,b\n1,2\n3,4\n");
+        Path file = directory.resolve("report.state");
+        Checkpoint.capture(prefix(csv, 8), new BytesState(new byte[]{1, 2, 3})).write(file, "report");
+
+        Checkpoint read = Checkpoint.read(file, "report");
+        BytesState restored = new BytesState(new byte[0]);
+        read.restore(restored);
+
+        assertEquals(8, read.offset());
+        assertArrayEquals(new byte[]{1, 2, 3}, restored.bytes);
+        assertTrue(read.matches(new Checkpoint.Prefix(csv), Files.size(csv)));
+        assertNull(Checkpoint.read(file, "other report"));
+        assertNull(Checkpoint.read(directory.resolve("missing.state"), "report"));
+
+        // same size, but the lines before the offset were replaced
+        Files.writeString(csv, "a,b\n9,9\n3,4\n");
+        assertFalse(read.matches(new Checkpoint.Prefix(csv), Files.size(csv)));
+    }
+
+    @Test
+    void editFarBeforeTheOffsetIsNoticed() throws Exception {
+        Path csv = directory.resolve("data.csv");
+        StringBuilder lines = new StringBuilder("a,b\n");
+        for (int i = 0; i < 1000; i++) {
+            lines.append(i).append(",1\n");
+        }
+        Files.writeString(csv, lines);
+        Checkpoint checkpoint = Checkpoint.capture(prefix(csv, Files.size(csv)), new BytesState(new byte[0]));
+
+        Checkpoint.Prefix resumed = new Checkpoint.Prefix(csv);
+        assertTrue(checkpoint.matches(resumed, Files.size(csv)));
+        assertEquals(Files.size(csv), resumed.length());
+
+        // a fixed width correction at the start keeps the size and the last lines
+        Files.writeString(csv, lines.toString().replace("\n5,1\n", "\n5,2\n"));
+        assertFalse(checkpoint.matches(new Checkpoint.Prefix(csv), Files.size(csv)));
+    }
+
+    @Test
+    void fingerprintChangesWithTheDimensionOfALookup() throws Exception {
+        Path games = directory.resolve("games.csv");
+        Files.writeString(games, "GameID,GameName\n1,Slots\n");
+        Files.setLastModifiedTime(games, FileTime.from(Instant.parse("2024-01-01T00:00:00Z")));
+        Path xml = directory.resolve("lookup.xml");
+        Files.writeString(xml, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <report>
+                    <reportName>Games</reportName>
+                    <inputs>
+                        <input><name>GameID</name><type>INTEGER</type></input>
+                        <input><name>BetAmount</name><type>DOUBLE</type></input>
+                    </inputs>
+                    <outputs>
+                        <output><name>GameName</name><type>STRING</type></output>
+                        <output><name>Bets</name><type>DOUBLE</type></output>
+                    </outputs>
+                    <outputFormat>JSONL</outputFormat>
+                    <transformers>
+                        <transformer>
+                            <name>Aggregator</name>
+                            <parameters>
+                                <groupBy>GameID</groupBy>
+                                <aggregateBys>
+                                    <aggregateBy><input>BetAmount</input><method>SUM</method><output>Bets</output></aggregateBy>
+                                </aggregateBys>
+                            </parameters>
+                        </transformer>
+                        <transformer>
+                            <name>Lookup</name>
+                            <parameters>
+                                <input>GameID</input>
+                                <file>%s</file>
+                                <select>GameName</select>
+                            </parameters>
+                        </transformer>
+                    </transformers>
+                </report>
+                """.formatted(games));
+        String[] headers = {"GameID", "BetAmount"};
+        ExecutionPlan plan = ExecutionPlan.compile(XmlParser.parseReport(xml.toString()), headers);
+        String fingerprint = Checkpoint.fingerprint(headers, plan);
+
+        assertEquals(fingerprint, Checkpoint.fingerprint(headers, plan));
+        Files.setLastModifiedTime(games, FileTime.from(Instant.parse("2024-01-02T00:00:00Z")));
+        String touched = Checkpoint.fingerprint(headers, plan);
+        assertNotEquals(fingerprint, touched);
+        Files.writeString(games, "GameID,GameName\n1,Poker\n2,Slots\n");
+        Files.setLastModifiedTime(games, FileTime.from(Instant.parse("2024-01-02T00:00:00Z")));
+        assertNotEquals(touched, Checkpoint.fingerprint(headers, plan));
+    }
+
+    private static Checkpoint.Prefix prefix(Path csv, long length) throws IOException {
+        Checkpoint.Prefix prefix = new Checkpoint.Prefix(csv);
+        prefix.extend(length);
+        return prefix;
+    }
+
+    @Test
+    void recordThatIsStillBeingWrittenIsLeftForTheNextRun() throws Exception {
+        Path csv = directory.resolve("notes.csv");
+        String complete = "id,note\n1,\"two\nlines\"\n";
+        Files.writeString(csv, complete + "2,\"cut\nin the middle");
+        long size = Files.size(csv);
+
+        assertEquals(complete.length(), Checkpoint.completeLinesEnd(csv, 8, size));
+        assertEquals(8, Checkpoint.completeLinesEnd(csv, 8, 15));
+        assertEquals(complete.length(), Checkpoint.completeLinesEnd(csv, complete.length(), size));
+
+        Files.writeString(csv, complete + "2,\"cut\nin the middle\"\n");
+        assertEquals(Files.size(csv), Checkpoint.completeLinesEnd(csv, 8, Files.size(csv)));
+    }
+
+    @Test
+    void incrementalRunsOverAnAppendedCsvWriteTheFullOutput() throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("et-EE"));
+        try {
+            byte[] all = Files.readAllBytes(CSV);
+            // about a third of the file, the cut is in the middle of a line
+            int cut = all.length / 3;
+            Path csv = directory.resolve("appended.csv");
+            Files.write(csv, Arrays.copyOf(all, cut));
+            Report report = XmlParser.parseReport("input/DailyBetWinLossReport.xml");
+            String output = directory + "/";
+
+            ReportGenerator.transformCsvIncrementally(csv.toString(), output, report, 1, 1 << 20, false, new Rejections());
+            Files.write(csv, Arrays.copyOfRange(all, cut, all.length), StandardOpenOption.APPEND);
+            ReportGenerator.transformCsvIncrementally(csv.toString(), output, report, 2, 16 * 1024, false, new Rejections());
+
+            assertArrayEquals(Files.readAllBytes(EXAMPLE), Files.readAllBytes(ReportGenerator.outputPath(output, report)));
+            assertTrue(Files.exists(Path.of(output, "DailyBetWinLossReport.state")));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColumnCacheTest {
+    private static final Path CSV = Path.of("input/casino_gaming_results.csv");
+    private static final Path REPORT = Path.of("input/DailyBetWinLossReport.xml");
+    private static final Path EXAMPLE = Path.of("output/DailyBetWinLossReportExample.jsonl");
+    private static final String ROWS_REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Rows</reportName>
+                <inputs>
+                    <input><name>Row</name><type>INTEGER</type></input>
+                    <input><name>Name</name><type>STRING</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>Row</name><type>INTEGER</type></output>
+                    <output><name>Name</name><type>STRING</type></output>
+                </outputs>
+                <outputFormat>CSV</outputFormat>
+            </report>
+            """;
+
+    @TempDir
+    Path directory;
+
+    private byte[] run(Path csv, Report report, int threads, ColumnCache.Mode cache) throws Exception {
+        Path output = Files.createDirectories(directory.resolve("out" + threads + cache));
+        ReportGenerator.transformCsv(csv.toString(), output + "/", report, threads, 64 * 1024, false, new Rejections(), cache);
+        return Files.readAllBytes(ReportGenerator.outputPath(output + "/", report));
+    }
+
+    private Report rowsReport() throws Exception {
+        Path xml = directory.resolve("rows.xml");
+        Files.writeString(xml, ROWS_REPORT);
+        return XmlParser.parseReport(xml.toString());
+    }
+
+    @Test
+    void reportReadFromTheCacheIsTheExampleOutput() throws Exception {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("et-EE"));
+        try {
+            Path csv = Files.copy(CSV, directory.resolve("results.csv"));
+            Report report = XmlParser.parseReport(REPORT.toString());
+
+            // the first run builds the cache, the later ones only read it
+            assertArrayEquals(Files.readAllBytes(EXAMPLE), run(csv, report, 1, ColumnCache.Mode.ON));
+            Path cache = ColumnCache.pathFor(csv);
+            FileTime built = Files.getLastModifiedTime(cache);
+            assertArrayEquals(Files.readAllBytes(EXAMPLE), run(csv, report, 4, ColumnCache.Mode.ON));
+            assertEquals(built, Files.getLastModifiedTime(cache));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void rejectedLinesAndValuesAreRejectedFromTheCacheToo() throws Exception {
+        Path csv = directory.resolve("rows.csv");
+        Files.writeString(csv, "Row,Name\n1,a\n2\nthree,c\n4,\"d\ne\"\n5,f,extra\n6,g\n");
+        Report report = rowsReport();
+
+        Path output = Files.createDirectories(directory.resolve("counted"));
+        int withoutCache = ReportGenerator.transformCsv(csv.toString(), output + "/", report, 1, 1 << 20, false, new Rejections(), ColumnCache.Mode.OFF);
+        int withCache = ReportGenerator.transformCsv(csv.toString(), output + "/", report, 1, 1 << 20, false, new Rejections(), ColumnCache.Mode.ON);
+
+        assertEquals(withoutCache, withCache);
+        assertArrayEquals(run(csv, report, 1, ColumnCache.Mode.OFF), run(csv, report, 1, ColumnCache.Mode.ON));
+    }
+
+    @Test
+    void blocksKeepTheSmallestAndLargestValueOfEveryColumn() throws Exception {
+        Path csv = directory.resolve("rows.csv");
+        StringBuilder rows = new StringBuilder("Row,Name\n");
+        int count = 2 * ColumnCache.BLOCK_ROWS + 10;
+        for (int row = 0; row < count; row++) {
+            rows.append(row).append(",n").append(row % 7).append('\n');
+        }
+        Files.writeString(csv, rows);
+        Map<String, Column> columns = Columns.byName(rowsReport().getInputs());
+        String[] headers = {"Row", "Name"};
+
+        try (ColumnCache cache = ColumnCache.load(csv, headers, new int[]{0, 1}, columns)) {
+            assertEquals(3, cache.blockCount());
+            assertEquals(10, cache.blockRows(2));
+            LongVector bounds = (LongVector) cache.bounds(1, 0);
+            assertEquals(ColumnCache.BLOCK_ROWS, bounds.get(0));
+            assertEquals(2 * ColumnCache.BLOCK_ROWS - 1, bounds.get(1));
+        }
+
+        // a changed csv is not read from the old cache
+        Files.writeString(csv, count + ",last\n", StandardOpenOption.APPEND);
+        try (ColumnCache cache = ColumnCache.load(csv, headers, new int[]{0, 1}, columns)) {
+            assertEquals(11, cache.blockRows(2));
+        }
+    }
+
+    @Test
+    void editInTheMiddleThatKeepsSizeAndTimeIsOnlyNoticedWhenVerified() throws Exception {
+        Path csv = directory.resolve("rows.csv");
+        StringBuilder rows = new StringBuilder("Row,Name\n");
+        for (int row = 0; row < 40_000; row++) {
+            rows.append(row).append(",old\n");
+        }
+        Files.writeString(csv, rows);
+        Report report = rowsReport();
+        run(csv, report, 1, ColumnCache.Mode.ON);
+
+        // the edited line is far from the first and last bytes the cheap check hashes
+        FileTime modified = Files.getLastModifiedTime(csv);
+        Files.writeString(csv, rows.toString().replace("\n20000,old\n", "\n20000,new\n"));
+        Files.setLastModifiedTime(csv, modified);
+
+        assertFalse(new String(run(csv, report, 1, ColumnCache.Mode.ON)).contains("new"));
+        assertTrue(new String(run(csv, report, 1, ColumnCache.Mode.VERIFY)).contains("20000,new"));
+    }
+}
@@ -0,0 +1,128 @@
+package com.playtech.report.pipeline;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelIngestTest {
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Notes</reportName>
+                <inputs>
+                    <input><name>PlayerID</name><type>INTEGER</type></input>
+                    <input><name>Note</name><type>STRING</type></input>
+                    <input><name>Amount</name><type>DOUBLE</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>PlayerID</name><type>INTEGER</type></output>
+                    <output><name>Note</name><type>STRING</type></output>
+                    <output><name>Amount</name><type>DOUBLE</type></output>
+                </outputs>
+                <outputFormat>JSONL</outputFormat>
+            </report>
+            """;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void quotedLineBreaksAcrossChunkBoundariesGiveTheSerialOutput() throws Exception {
+        // with 50 byte chunks many chunk boundaries fall inside of the notes that span several lines
+        Path file = directory.resolve("notes.csv");
+        Files.writeString(file, notes(), StandardCharsets.UTF_8);
+        Path xml = directory.resolve("notes.xml");
+        Files.writeString(xml, REPORT);
+
+        String serial = run(file, xml, 1, 1 << 20, "serial");
+        assertTrue(serial.contains("\"Note\":\"line one\\nline two, \\\"quoted\\\"\\nline 3\""), serial.substring(0, 200));
+        assertEquals(500, serial.lines().count());
+        for (long chunkSize : new long[]{50, 97, 256}) {
+            assertEquals(serial, run(file, xml, 4, chunkSize, "parallel" + chunkSize));
+        }
+    }
+
+    @Test
+    void compressedCsvIsSplitOutsideOfQuotedValuesToo() throws Exception {
+        Path plain = directory.resolve("notes.csv");
+        Files.writeString(plain, notes(), StandardCharsets.UTF_8);
+        Path compressed = directory.resolve("notes.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            out.write(notes().getBytes(StandardCharsets.UTF_8));
+        }
+        Path xml = directory.resolve("notes.xml");
+        Files.writeString(xml, REPORT);
+        Path gzipXml = directory.resolve("gzip.xml");
+        Files.writeString(gzipXml, REPORT.replace("<outputFormat>JSONL</outputFormat>",
+                "<outputFormat>JSONL</outputFormat><outputCompression>GZIP</outputCompression>"));
+
+        String serial = run(plain, xml, 1, 1 << 20, "serial");
+        for (long chunkSize : new long[]{50, 97, 256}) {
+            assertEquals(serial, run(compressed, xml, 4, chunkSize, "compressed" + chunkSize));
+        }
+
+        // gzip output is written in members on several threads and reads back as one stream
+        Report report = XmlParser.parseReport(gzipXml.toString());
+        Path output = Files.createDirectories(directory.resolve("gzip"));
+        ReportGenerator.transformCsv(compressed.toString(), output + "/", report, 4, 97, false, new Rejections());
+        Path written = ReportGenerator.outputPath(output + "/", report);
+        assertTrue(written.toString().endsWith(".gz"), written.toString());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(written))) {
+            assertEquals(serial, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void loneCarriageReturnsEndLinesInEveryWayOfReading() throws Exception {
+        // old mac line breaks, inside of the quoted notes as well
+        String notes = notes().replace("\r\n", "\n").replace('\n', '\r');
+        Path plain = directory.resolve("notes.csv");
+        Files.writeString(plain, notes, StandardCharsets.UTF_8);
+        Path compressed = directory.resolve("notes.csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            out.write(notes.getBytes(StandardCharsets.UTF_8));
+        }
+        Path xml = directory.resolve("notes.xml");
+        Files.writeString(xml, REPORT);
+
+        String serial = run(plain, xml, 1, 1 << 20, "serial");
+        assertTrue(serial.contains("\"Note\":\"line one\\rline two, \\\"quoted\\\"\\rline 3\""), serial.substring(0, 200));
+        assertEquals(500, serial.lines().count());
+        for (long chunkSize : new long[]{50, 97, 256}) {
+            assertEquals(serial, run(plain, xml, 4, chunkSize, "parallel" + chunkSize));
+            assertEquals(serial, run(compressed, xml, 4, chunkSize, "compressed" + chunkSize));
+        }
+    }
+
+    // every third note spans several lines and holds commas and quotes, some lines end in \r\n
+    private static String notes() {
+        StringBuilder csv = new StringBuilder("PlayerID,Note,Amount\n");
+        for (int row = 0; row < 500; row++) {
+            String note = row % 3 == 0 ? "\"line one\nline two, \"\"quoted\"\"\nline " + row + "\"" : "plain " + row;
+            csv.append(row).append(',').append(note).append(',').append(row / 4.0).append(row % 7 == 0 ? "\r\n" : "\n");
+        }
+        return csv.toString();
+    }
+
+    private String run(Path csv, Path xml, int threads, long chunkSize, String name) throws Exception {
+        Report report = XmlParser.parseReport(xml.toString());
+        Path output = Files.createDirectories(directory.resolve(name));
+        int skipped = ReportGenerator.transformCsv(csv.toString(), output + "/", report, threads, chunkSize, false, new Rejections());
+        assertEquals(0, skipped);
+        return Files.readString(ReportGenerator.outputPath(output + "/", report));
+    }
+}
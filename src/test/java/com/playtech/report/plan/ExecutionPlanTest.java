@@ -0,0 +1,214 @@
+package com.playtech.report.plan;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionPlanTest {
+    private static final String[] HEADERS = ("PlayerID,GameID,BetAmount,WinAmount,LossAmount,GameType,Location,Device,SessionID,"
+            + "StartDateTime,EndDateTime,BetCount,WinCount,LossCount,JackpotWin,BonusWin,FreeSpins,Multiplier").split(",");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void exampleReportReadsOnlyTheColumnsItUses() throws Exception {
+        Report report = XmlParser.parseReport("input/DailyBetWinLossReport.xml");
+
+        ExecutionPlan plan = ExecutionPlan.compile(report, HEADERS);
+
+        // BetAmount, WinAmount, LossAmount and StartDateTime
+        assertArrayEquals(new int[]{2, 3, 4, 9}, plan.getIngestFields());
+        List<PlanStep> steps = plan.getSteps();
+        assertEquals(4, steps.size());
+        assertEquals(1, assertInstanceOf(FusedPass.class, steps.get(0)).transformers().size());
+        assertInstanceOf(BlockingStep.class, steps.get(1));
+        assertEquals(6, assertInstanceOf(FusedPass.class, steps.get(2)).transformers().size());
+        assertEquals(List.of("StartDate", "BetAmountSum", "WinAmountSum", "LossAmountSum", "PlayersProfit"), steps.get(3).outputSchema());
+    }
+
+    @Test
+    void transformerWhoseOutputIsNotUsedIsDropped() throws Exception {
+        // Net is computed but not written and a bad value only empties it, so the transformer is not run and its
+        // inputs are not read
+        Path xml = directory.resolve("unused.xml");
+        Files.writeString(xml, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <report>
+                    <reportName>Unused</reportName>
+                    <inputs>
+                        <input><name>BetAmount</name><type>DOUBLE</type></input>
+                        <input><name>WinAmount</name><type>DOUBLE</type></input>
+                        <input><name>PlayerID</name><type>STRING</type></input>
+                        <input><name>Net</name><type>DOUBLE</type></input>
+                    </inputs>
+                    <outputs>
+                        <output><name>PlayerID</name><type>STRING</type></output>
+                    </outputs>
+                    <outputFormat>JSONL</outputFormat>
+                    <transformers>
+                        <transformer>
+                            <name>MathOperation</name>
+                            <parameters>
+                                <inputs><input>WinAmount</input><input>BetAmount</input></inputs>
+                                <operation>SUBTRACT</operation>
+                                <output>Net</output>
+                                <onError>NULL</onError>
+                            </parameters>
+                        </transformer>
+                    </transformers>
+                </report>
+                """);
+
+        ExecutionPlan plan = ExecutionPlan.compile(XmlParser.parseReport(xml.toString()), HEADERS);
+
+        assertArrayEquals(new int[]{0}, plan.getIngestFields());
+        assertTrue(plan.getSteps().isEmpty());
+        assertTrue(plan.explain().contains("Dropped, output not used: MathOperation"), plan.explain());
+    }
+
+    @Test
+    void transformerThatSkipsRowsRunsEvenWhenItsOutputIsNotUsed() throws Exception {
+        Path xml = directory.resolve("skip.xml");
+        Files.writeString(xml, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <report>
+                    <reportName>Skip</reportName>
+                    <inputs>
+                        <input><name>BetAmount</name><type>DOUBLE</type></input>
+                        <input><name>WinAmount</name><type>DOUBLE</type></input>
+                        <input><name>PlayerID</name><type>STRING</type></input>
+                        <input><name>Net</name><type>DOUBLE</type></input>
+                    </inputs>
+                    <outputs>
+                        <output><name>PlayerID</name><type>STRING</type></output>
+                    </outputs>
+                    <outputFormat>JSONL</outputFormat>
+                    <transformers>
+                        <transformer>
+                            <name>MathOperation</name>
+                            <parameters>
+                                <inputs><input>WinAmount</input><input>BetAmount</input></inputs>
+                                <operation>SUBTRACT</operation>
+                                <output>Net</output>
+                                <onError>SKIP</onError>
+                            </parameters>
+                        </transformer>
+                    </transformers>
+                </report>
+                """);
+        Report report = XmlParser.parseReport(xml.toString());
+        Path csv = directory.resolve("bets.csv");
+        Files.writeString(csv, """
+                PlayerID,BetAmount,WinAmount
+                ann,1.5,2
+                bob,oops,3
+                cid,2,0
+                """);
+
+        ExecutionPlan plan = ExecutionPlan.compile(report, new String[]{"PlayerID", "BetAmount", "WinAmount"});
+        assertArrayEquals(new int[]{0, 1, 2}, plan.getIngestFields());
+        assertEquals(List.of("PlayerID"), assertInstanceOf(FusedPass.class, plan.getSteps().get(0)).outputSchema());
+        assertFalse(plan.explain().contains("Dropped"), plan.explain());
+
+        Rejections rejections = new Rejections();
+        ReportGenerator.transformCsv(csv.toString(), directory + "/", report, 1, 1 << 20, false, rejections);
+
+        assertEquals(List.of("{\"PlayerID\":\"ann\"}", "{\"PlayerID\":\"cid\"}"), Files.readAllLines(ReportGenerator.outputPath(directory + "/", report)));
+        assertEquals(1, rejections.errorCount());
+    }
+
+    @Test
+    void arithmeticOnADateColumnFailsBeforeTheCsvIsRead() throws Exception {
+        Path xml = directory.resolve("dates.xml");
+        Files.writeString(xml, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <report>
+                    <reportName>Dates</reportName>
+                    <inputs>
+                        <input><name>BetAmount</name><type>DOUBLE</type></input>
+                        <input><name>StartDateTime</name><type>DATETIME</type></input>
+                    </inputs>
+                    <outputs>
+                        <output><name>Sum</name><type>DOUBLE</type></output>
+                    </outputs>
+                    <outputFormat>JSONL</outputFormat>
+                    <transformers>
+                        <transformer>
+                            <name>MathOperation</name>
+                            <parameters>
+                                <inputs><input>BetAmount</input><input>StartDateTime</input></inputs>
+                                <operation>ADD</operation>
+                                <output>Sum</output>
+                            </parameters>
+                        </transformer>
+                    </transformers>
+                </report>
+                """);
+        Report report = XmlParser.parseReport(xml.toString());
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> ExecutionPlan.compile(report, HEADERS));
+        assertTrue(error.getMessage().contains("needs a number, but column StartDateTime is a DATETIME"), error.getMessage());
+    }
+
+    @Test
+    void onlyFiltersInFrontOfEveryOtherTransformerArePushedIntoTheReader() throws Exception {
+        String filter = """
+                <transformer>
+                    <name>Filter</name>
+                    <parameters>
+                        <compare><input>%s</input><operator>GREATER_THAN</operator><value>0</value></compare>
+                    </parameters>
+                </transformer>
+                """;
+        Path xml = directory.resolve("filters.xml");
+        Files.writeString(xml, """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <report>
+                    <reportName>Filters</reportName>
+                    <inputs>
+                        <input><name>BetAmount</name><type>DOUBLE</type></input>
+                        <input><name>WinAmount</name><type>DOUBLE</type></input>
+                        <input><name>Net</name><type>DOUBLE</type></input>
+                    </inputs>
+                    <outputs>
+                        <output><name>Net</name><type>DOUBLE</type></output>
+                    </outputs>
+                    <outputFormat>JSONL</outputFormat>
+                    <transformers>
+                        %s
+                        <transformer>
+                            <name>MathOperation</name>
+                            <parameters>
+                                <inputs><input>WinAmount</input><input>BetAmount</input></inputs>
+                                <operation>SUBTRACT</operation>
+                                <output>Net</output>
+                            </parameters>
+                        </transformer>
+                        %s
+                    </transformers>
+                </report>
+                """.formatted(filter.formatted("BetAmount"), filter.formatted("Net")));
+
+        ExecutionPlan plan = ExecutionPlan.compile(XmlParser.parseReport(xml.toString()), HEADERS);
+
+        assertEquals(1, plan.getIngestFilters().size());
+        assertTrue(plan.explain().contains("In the csv reader: Filter BetAmount > '0'"), plan.explain());
+        // the filter on the computed column stays in the pass after the reader
+        assertEquals(2, assertInstanceOf(FusedPass.class, plan.getSteps().get(0)).transformers().size());
+    }
+}
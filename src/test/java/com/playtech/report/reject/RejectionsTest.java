@@ -0,0 +1,77 @@
+package com.playtech.report.reject;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RejectionsTest {
+
+    private static String report(Rejections rejections) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        rejections.report(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        return bytes.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void rejectionsAreCountedByReasonAndColumnWithASample() throws Exception {
+        Rejections rejections = new Rejections(2, 1, null);
+        rejections.rowsRead(10);
+        rejections.rejectLine(RejectReason.TYPE_MISMATCH, "BetAmount", "line 3", "1,x");
+        rejections.rejectLine(RejectReason.TYPE_MISMATCH, "BetAmount", "line 5", "2,y");
+        rejections.rejectLine(RejectReason.COLUMN_COUNT, null, "line 7", "3");
+        rejections.rejectValue(RejectReason.NOT_A_NUMBER, "Profit", "abc");
+
+        String report = report(rejections);
+
+        assertEquals(4, rejections.errorCount());
+        assertTrue(report.contains("Rejected 4 of 13 rows:"), report);
+        assertTrue(report.contains("  2 x Value does not match the column type in BetAmount"), report);
+        assertTrue(report.contains("  1 x Incorrect column count\n"), report);
+        assertTrue(report.contains("First 2:\n  line 3: Value does not match the column type in BetAmount: 1,x\n  line 5:"), report);
+    }
+
+    @Test
+    void nothingIsPrintedWithoutRejections() throws Exception {
+        Rejections rejections = new Rejections();
+        rejections.rowsRead(100);
+
+        assertEquals("", report(rejections));
+    }
+
+    @Test
+    void runStopsOnceTheErrorRateIsOverTheLimit() {
+        Rejections rejections = new Rejections(10, 0.01, null);
+        // far over the rate, but too few rows to judge it
+        for (int i = 0; i < 20; i++) {
+            rejections.rejectValue(RejectReason.NOT_A_NUMBER, "Bet", i);
+        }
+
+        assertThrows(RejectionLimitException.class, () -> rejections.rowsRead(Rejections.MIN_ROWS_FOR_RATE));
+        assertThrows(IllegalArgumentException.class, () -> new Rejections(10, 1.5, null));
+    }
+
+    @Test
+    void rejectedLinesGoToTheSideFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("rejects.csv");
+        Rejections rejections = new Rejections(10, 1, file);
+        List<String> pending = new ArrayList<>(List.of("1,x", "2,\"y\""));
+
+        rejections.flush(pending);
+        rejections.flush(new ArrayList<>(List.of("3,z")));
+        report(rejections);
+
+        assertTrue(pending.isEmpty());
+        assertEquals(List.of("1,x", "2,\"y\"", "3,z"), Files.readAllLines(file));
+    }
+}
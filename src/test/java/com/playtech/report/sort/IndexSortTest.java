@@ -0,0 +1,55 @@
+package com.playtech.report.sort;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class IndexSortTest {
+
+    @Test
+    void equalKeysKeepTheirOrder() {
+        int[] keys = new Random(7).ints(1000, 0, 20).toArray();
+        int[] indexes = IntStream.range(0, keys.length).toArray();
+
+        IndexSort.sort(indexes, indexes.length, (a, b) -> Integer.compare(keys[a], keys[b]));
+
+        // boxed sort of the JDK is stable as well
+        int[] expected = IntStream.range(0, keys.length).boxed()
+                .sorted(Comparator.comparingInt(index -> keys[index]))
+                .mapToInt(Integer::intValue).toArray();
+        assertArrayEquals(expected, indexes);
+    }
+
+    @Test
+    void onlyTheGivenSizeIsSorted() {
+        int[] indexes = {3, 1, 2, 0, 9, 8};
+
+        IndexSort.sort(indexes, 4, Integer::compare);
+
+        assertArrayEquals(new int[]{0, 1, 2, 3, 9, 8}, indexes);
+    }
+
+    @Test
+    void presortedAndReversedInputsAreSorted() {
+        int[] ascending = IntStream.range(0, 500).toArray();
+        int[] descending = IntStream.range(0, 500).map(i -> 499 - i).toArray();
+
+        IndexSort.sort(ascending, ascending.length, Integer::compare);
+        IndexSort.sort(descending, descending.length, Integer::compare);
+
+        assertArrayEquals(IntStream.range(0, 500).toArray(), ascending);
+        assertArrayEquals(ascending, descending);
+        assertArrayEquals(new int[0], sortedCopy(new int[0]));
+    }
+
+    private static int[] sortedCopy(int[] values) {
+        int[] copy = Arrays.copyOf(values, values.length);
+        IndexSort.sort(copy, copy.length, Integer::compare);
+        return copy;
+    }
+}
@@ -0,0 +1,169 @@
+package com.playtech.report.sort;
+
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.column.Column;
+import com.playtech.report.column.Columns;
+import com.playtech.report.transformer.TransformerState;
+import com.playtech.report.transformer.impl.OrderingTransformer;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// ExternalSort and TopNSort against a stable sort of the same rows
+class SortTest {
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Bets</reportName>
+                <inputs>
+                    <input><name>Player</name><type>STRING</type></input>
+                    <input><name>Bet</name><type>DOUBLE</type></input>
+                    <input><name>Day</name><type>INTEGER</type></input>
+                    <input><name>Amount</name><type>DECIMAL</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>Player</name><type>STRING</type></output>
+                </outputs>
+                <outputFormat>JSONL</outputFormat>
+            </report>
+            """;
+
+    @TempDir
+    Path directory;
+
+    private Map<String, Column> columns;
+    private List<OrderingTransformer.OrderBy> orderBys;
+    private final List<Map<String, Object>> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path xml = directory.resolve("bets.xml");
+        Files.writeString(xml, REPORT);
+        Report report = XmlParser.parseReport(xml.toString());
+        columns = Columns.byName(report.getInputs());
+        // bet descending and day ascending leave many ties, which have to keep the input order
+        orderBys = List.of(new OrderingTransformer.OrderBy(columns.get("Bet"), OrderingTransformer.Order.DESC),
+                new OrderingTransformer.OrderBy(columns.get("Day"), OrderingTransformer.Order.ASC));
+
+        for (int i = 0; i < 1000; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("Player", "p" + i);
+            row.put("Bet", i % 13 == 0 ? null : (i * 37 % 11) - 5.5);
+            row.put("Day", (long) (i * 7 % 3));
+            rows.add(row);
+        }
+    }
+
+    // nulls sort first, descending reverses that
+    private List<Object> expected() {
+        Comparator<Map<String, Object>> byBet = Comparator.comparing(row -> (Double) row.get("Bet"), Comparator.nullsFirst(Comparator.naturalOrder()));
+        return rows.stream()
+                .sorted(byBet.reversed().thenComparing(row -> (Long) row.get("Day")))
+                .map(row -> row.get("Player"))
+                .toList();
+    }
+
+    private void feed(TransformerState state, int from, int to) {
+        for (int first = from; first < to; first += 64) {
+            state.accept(RowBatch.fromRows(rows.subList(first, Math.min(first + 64, to))));
+        }
+    }
+
+    private static List<Object> players(TransformerState state) {
+        List<Object> players = new ArrayList<>();
+        state.finish(batch -> batch.toRows().forEach(row -> players.add(row.get("Player"))));
+        return players;
+    }
+
+    @Test
+    void sortInMemoryIsStable() {
+        ExternalSort sort = new ExternalSort(orderBys, Long.MAX_VALUE);
+        feed(sort, 0, rows.size());
+
+        assertEquals(expected(), players(sort));
+    }
+
+    @Test
+    void spilledRunsMergeInInputOrder() {
+        // every batch goes over the limit and becomes a run of its own
+        ExternalSort sort = new ExternalSort(orderBys, 1);
+        feed(sort, 0, rows.size());
+
+        assertEquals(expected(), players(sort));
+    }
+
+    @Test
+    void mergedPartialsKeepTheOrderOfTheInput() {
+        ExternalSort first = new ExternalSort(orderBys, 1);
+        feed(first, 0, 500);
+        ExternalSort second = new ExternalSort(orderBys, Long.MAX_VALUE);
+        feed(second, 500, 700);
+        ExternalSort third = new ExternalSort(orderBys, 1);
+        feed(third, 700, rows.size());
+
+        first.merge(second);
+        first.merge(third);
+
+        assertEquals(expected(), players(first));
+    }
+
+    @Test
+    void topNKeepsTheFirstRowsOfTheStableOrder() {
+        TopNSort first = new TopNSort(orderBys, 25);
+        feed(first, 0, 600);
+        TopNSort second = new TopNSort(orderBys, 25);
+        feed(second, 600, rows.size());
+        first.merge(second);
+
+        assertEquals(expected().subList(0, 25), players(first));
+    }
+
+    @Test
+    void topNWithMoreRoomThanRowsReturnsThemAll() {
+        TopNSort sort = new TopNSort(orderBys, 5000);
+        feed(sort, 0, rows.size());
+
+        assertEquals(expected(), players(sort));
+    }
+
+    // amounts that are equal as doubles, and ones too wide for a long, in batches of decimals and of text
+    @Test
+    void decimalsSortExactly() {
+        List<String> amounts = List.of("12345678901234567.89", "-123456789012345678901.5", "12345678901234567.88", "90071992547409.93",
+                "123456789012345678901.5", "90071992547409.92", "12345678901234567.9", "-90071992547409.93");
+        List<OrderingTransformer.OrderBy> byAmount = List.of(new OrderingTransformer.OrderBy(columns.get("Amount"), OrderingTransformer.Order.ASC));
+        List<Object> expected = amounts.stream().sorted(Comparator.comparing(BigDecimal::new)).map(amount -> (Object) amount).toList();
+
+        ExternalSort decimals = new ExternalSort(byAmount, 1);
+        ExternalSort texts = new ExternalSort(byAmount, 1);
+        TopNSort top = new TopNSort(byAmount, 3);
+        for (int first = 0; first < amounts.size(); first += 3) {
+            List<Map<String, Object>> decimalRows = new ArrayList<>();
+            List<Map<String, Object>> textRows = new ArrayList<>();
+            for (String amount : amounts.subList(first, Math.min(first + 3, amounts.size()))) {
+                decimalRows.add(new LinkedHashMap<>(Map.of("Player", amount, "Amount", new BigDecimal(amount))));
+                textRows.add(new LinkedHashMap<>(Map.of("Player", amount, "Amount", amount)));
+            }
+            decimals.accept(RowBatch.fromRows(decimalRows));
+            texts.accept(RowBatch.fromRows(textRows));
+            top.accept(RowBatch.fromRows(decimalRows));
+        }
+
+        assertEquals(expected, players(decimals));
+        assertEquals(expected, players(texts));
+        assertEquals(expected.subList(0, 3), players(top));
+    }
+}
@@ -0,0 +1,255 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.reject.Rejections;
+import com.playtech.report.transformer.BlockingTransformer;
+import com.playtech.report.transformer.PersistentState;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AggregatorTransformerTest {
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Players</reportName>
+                <inputs>
+                    <input><name>Player</name><type>STRING</type></input>
+                    <input><name>Bet</name><type>DOUBLE</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>%s</name><type>STRING</type></output>
+                    <output><name>BetSum</name><type>DOUBLE</type></output>
+                    <output><name>BetMax</name><type>DOUBLE</type></output>
+                    <output><name>Bets</name><type>INTEGER</type></output>
+                </outputs>
+                <outputFormat>JSONL</outputFormat>
+                <transformers>
+                    <transformer>
+                        <name>Aggregator</name>
+                        <parameters>
+                            <groupBy>%s</groupBy>
+                            <aggregateBys>
+                                <aggregateBy><input>Bet</input><method>SUM</method><output>BetSum</output></aggregateBy>
+                                <aggregateBy><input>Bet</input><method>MAX</method><output>BetMax</output></aggregateBy>
+                                <aggregateBy><input>Bet</input><method>COUNT</method><output>Bets</output></aggregateBy>
+                            </aggregateBys>
+                        </parameters>
+                    </transformer>
+                </transformers>
+            </report>
+            """;
+
+    private static final String DECIMAL_REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Amounts</reportName>
+                <inputs>
+                    <input><name>Player</name><type>STRING</type></input>
+                    <input><name>Amount</name><type>DECIMAL</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>Player</name><type>STRING</type></output>
+                    <output><name>AmountSum</name><type>DECIMAL</type></output>
+                    <output><name>AmountMin</name><type>DECIMAL</type></output>
+                    <output><name>AmountMax</name><type>DECIMAL</type></output>
+                </outputs>
+                <outputFormat>JSONL</outputFormat>
+                <transformers>
+                    <transformer>
+                        <name>Aggregator</name>
+                        <parameters>
+                            <groupBy>Player</groupBy>
+                            <aggregateBys>
+                                <aggregateBy><input>Amount</input><method>SUM</method><output>AmountSum</output></aggregateBy>
+                                <aggregateBy><input>Amount</input><method>MIN</method><output>AmountMin</output></aggregateBy>
+                                <aggregateBy><input>Amount</input><method>MAX</method><output>AmountMax</output></aggregateBy>
+                            </aggregateBys>
+                        </parameters>
+                    </transformer>
+                </transformers>
+            </report>
+            """;
+
+    private static final String SKETCH_REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Games</reportName>
+                <inputs>
+                    <input><name>Player</name><type>STRING</type></input>
+                    <input><name>Game</name><type>STRING</type></input>
+                    <input><name>Bet</name><type>DOUBLE</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>Player</name><type>STRING</type></output>
+                    <output><name>TopGames</name><type>STRING</type></output>
+                    <output><name>MedianBet</name><type>DOUBLE</type></output>
+                </outputs>
+                <outputFormat>JSONL</outputFormat>
+                <transformers>
+                    <transformer>
+                        <name>Aggregator</name>
+                        <parameters>
+                            <groupBy>Player</groupBy>
+                            <aggregateBys>
+                                <aggregateBy><input>Game</input><method>TOP_K</method><output>TopGames</output><k>2</k><weight>Bet</weight></aggregateBy>
+                                <aggregateBy><input>Bet</input><method>QUANTILE</method><output>MedianBet</output><quantile>0.5</quantile><exactLimit>2000</exactLimit></aggregateBy>
+                            </aggregateBys>
+                        </parameters>
+                    </transformer>
+                </transformers>
+            </report>
+            """;
+
+    @TempDir
+    Path directory;
+
+    private Report report(String extraOutput, String groupBy) throws Exception {
+        Path xml = directory.resolve("players.xml");
+        Files.writeString(xml, REPORT.formatted(extraOutput, groupBy));
+        return XmlParser.parseReport(xml.toString());
+    }
+
+    private static Map<String, Object> row(String player, Double bet) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("Player", player);
+        row.put("Bet", bet);
+        return row;
+    }
+
+    @Test
+    void rowsAreFoldedIntoOneRowPerGroupInFirstSeenOrder() throws Exception {
+        Report report = report("Player", "Player");
+        List<Map<String, Object>> rows = new ArrayList<>(List.of(row("bob", 2.5), row("ann", 1.0), row("bob", 4.0), row("ann", null)));
+
+        report.getTransformers().get(0).transform(report, rows);
+
+        assertEquals(2, rows.size());
+        assertEquals("bob", rows.get(0).get("Player"));
+        assertEquals(6.5, rows.get(0).get("BetSum"));
+        assertEquals(4.0, rows.get(0).get("BetMax"));
+        assertEquals("ann", rows.get(1).get("Player"));
+        assertEquals(1.0, rows.get(1).get("BetSum"));
+    }
+
+    @Test
+    void groupByColumnThatIsNotComputedBeforeItIsRejected() throws Exception {
+        // Team is a report output that no transformer before the aggregator computes
+        Report report = report("Team", "Team");
+        BlockingTransformer aggregator = (BlockingTransformer) report.getTransformers().get(0);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> aggregator.createState(report));
+        assertTrue(error.getMessage().contains("groups by Team"), error.getMessage());
+    }
+
+    // amounts that are equal as doubles keep their last digits in sums, minimums and maximums
+    @Test
+    void decimalsPast2To53AreAggregatedExactly() throws Exception {
+        Path xml = directory.resolve("amounts.xml");
+        Files.writeString(xml, DECIMAL_REPORT);
+        Report report = XmlParser.parseReport(xml.toString());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (String amount : List.of("90071992547409.93", "90071992547409.92", "123456789012345678901.01", "-90071992547409.93")) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("Player", amount.length() > 20 ? "wide" : "bob");
+            row.put("Amount", new BigDecimal(amount));
+            rows.add(row);
+        }
+
+        report.getTransformers().get(0).transform(report, rows);
+
+        assertEquals(2, rows.size());
+        assertEquals(0, new BigDecimal("90071992547409.92").compareTo((BigDecimal) rows.get(0).get("AmountSum")));
+        assertEquals(0, new BigDecimal("-90071992547409.93").compareTo((BigDecimal) rows.get(0).get("AmountMin")));
+        assertEquals(0, new BigDecimal("90071992547409.93").compareTo((BigDecimal) rows.get(0).get("AmountMax")));
+        assertEquals(0, new BigDecimal("123456789012345678901.01").compareTo((BigDecimal) rows.get(1).get("AmountSum")));
+        assertEquals(0, new BigDecimal("123456789012345678901.01").compareTo((BigDecimal) rows.get(1).get("AmountMax")));
+    }
+
+    private static List<Map<String, Object>> bets(int count) {
+        String[] games = {"Slots", "Poker", "Roulette"};
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("Player", i % 2 == 0 ? "ann" : "bob");
+            row.put("Game", games[i % 3]);
+            row.put("Bet", (double) (i % 7));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // a checkpoint of the weighted top k is loaded with its weight column, and the run goes on with the same result
+    @Test
+    void weightedTopKIsTheSameAfterACheckpoint() throws Exception {
+        Path xml = directory.resolve("games.xml");
+        Files.writeString(xml, SKETCH_REPORT);
+        Report report = XmlParser.parseReport(xml.toString());
+        BlockingTransformer aggregator = (BlockingTransformer) report.getTransformers().get(0);
+        List<Map<String, Object>> rows = bets(30);
+
+        PersistentState before = (PersistentState) aggregator.createState(report);
+        before.accept(RowBatch.fromRows(rows.subList(0, 17)));
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        before.save(new DataOutputStream(saved));
+        PersistentState after = (PersistentState) aggregator.createState(report);
+        after.load(new DataInputStream(new ByteArrayInputStream(saved.toByteArray())));
+        after.accept(RowBatch.fromRows(rows.subList(17, 30)));
+
+        PersistentState whole = (PersistentState) aggregator.createState(report);
+        whole.accept(RowBatch.fromRows(rows));
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        after.finish(batch -> result.addAll(batch.toRows()));
+        List<Map<String, Object>> expected = new ArrayList<>();
+        whole.finish(batch -> expected.addAll(batch.toRows()));
+        assertEquals(expected, result);
+        assertEquals("Slots=18;Roulette=14", result.get(0).get("TopGames"));
+        assertEquals("Poker=16;Roulette=15", result.get(1).get("TopGames"));
+        assertEquals(3.0, result.get(0).get("MedianBet"));
+    }
+
+    // below the exact limit and the counters the sketches give the same result however the csv is split
+    @Test
+    void sketchesBelowTheirLimitsDoNotDependOnTheChunks() throws Exception {
+        Path xml = directory.resolve("games.xml");
+        Files.writeString(xml, SKETCH_REPORT);
+        StringBuilder csv = new StringBuilder("Player,Game,Bet\n");
+        for (Map<String, Object> row : bets(3000)) {
+            csv.append(row.get("Player")).append(',').append(row.get("Game")).append(',').append(row.get("Bet")).append('\n');
+        }
+        Path file = directory.resolve("games.csv");
+        Files.writeString(file, csv);
+
+        for (int threads : new int[]{1, 4}) {
+            for (long chunkSize : new long[]{1 << 20, 1000, 4096}) {
+                Report report = XmlParser.parseReport(xml.toString());
+                Path output = Files.createDirectories(directory.resolve("out" + threads + "-" + chunkSize));
+                ReportGenerator.transformCsv(file.toString(), output + "/", report, threads, chunkSize, false, new Rejections());
+
+                assertEquals(List.of(
+                        "{\"Player\":\"ann\",\"TopGames\":\"Slots=1502;Poker=1500\",\"MedianBet\":3.0}",
+                        "{\"Player\":\"bob\",\"TopGames\":\"Roulette=1503;Poker=1498\",\"MedianBet\":3.0}"),
+                        Files.readAllLines(ReportGenerator.outputPath(output + "/", report)), threads + " threads, chunks of " + chunkSize);
+            }
+        }
+    }
+}
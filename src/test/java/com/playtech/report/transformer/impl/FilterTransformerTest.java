@@ -0,0 +1,124 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FilterTransformerTest {
+    // the example of the readme, %s is where other transformers go in front of it
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Filtered</reportName>
+                <inputs>
+                    <input><name>PlayerID</name><type>STRING</type></input>
+                    <input><name>BetAmount</name><type>DOUBLE</type></input>
+                    <input><name>WinAmount</name><type>DOUBLE</type></input>
+                    <input><name>Location</name><type>STRING</type></input>
+                    <input><name>StartDateTime</name><type>DATETIME</type></input>
+                    <input><name>Net</name><type>DOUBLE</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>PlayerID</name><type>STRING</type></output>
+                </outputs>
+                <outputFormat>JSONL</outputFormat>
+                <transformers>
+                    %s
+                    <transformer>
+                        <name>Filter</name>
+                        <parameters>
+                            <and>
+                                <compare>
+                                    <input>BetAmount</input>
+                                    <operator>GREATER_THAN</operator>
+                                    <value>0</value>
+                                </compare>
+                                <or>
+                                    <in>
+                                        <input>Location</input>
+                                        <values>
+                                            <value>Las Vegas</value>
+                                            <value>Monte Carlo</value>
+                                        </values>
+                                    </in>
+                                    <between>
+                                        <input>StartDateTime</input>
+                                        <from>2024-01-01</from>
+                                        <to>2024-01-31T23:59:59Z</to>
+                                    </between>
+                                </or>
+                            </and>
+                        </parameters>
+                    </transformer>
+                </transformers>
+            </report>
+            """;
+
+    private static final String MATH = """
+            <transformer>
+                <name>MathOperation</name>
+                <parameters>
+                    <inputs><input>WinAmount</input><input>BetAmount</input></inputs>
+                    <operation>SUBTRACT</operation>
+                    <output>Net</output>
+                </parameters>
+            </transformer>
+            """;
+
+    private static final String CSV = """
+            PlayerID,BetAmount,WinAmount,Location,StartDateTime
+            vegas,10.5,1,Las Vegas,2023-05-01T10:00:00Z
+            noBet,0,1,Las Vegas,2023-05-01T10:00:00Z
+            january,1,1,Tallinn,2024-01-01T00:00:00Z
+            february,1,1,Tallinn,2024-02-01T00:00:00Z
+            lastSecond,1,1,Tallinn,2024-01-31T23:59:59Z
+            noLocation,1,1,,2023-05-01T10:00:00Z
+            monaco,0.01,1,Monte Carlo,
+            missingBet,,1,Monte Carlo,2024-01-10T00:00:00Z
+            """;
+
+    @TempDir
+    Path directory;
+
+    private List<String> players(String transformers) throws Exception {
+        Path xml = directory.resolve("filtered.xml");
+        Files.writeString(xml, REPORT.formatted(transformers));
+        Path csv = directory.resolve("bets.csv");
+        Files.writeString(csv, CSV);
+        Report report = XmlParser.parseReport(xml.toString());
+
+        ReportGenerator.transformCsv(csv.toString(), directory + "/", report, 1, 1 << 20, false, new Rejections());
+        return Files.readAllLines(ReportGenerator.outputPath(directory + "/", report)).stream()
+                .map(line -> line.substring(line.indexOf(":\"") + 2, line.lastIndexOf('"')))
+                .toList();
+    }
+
+    @Test
+    void rowsThatMatchAreKept() throws Exception {
+        assertEquals(List.of("vegas", "january", "lastSecond", "monaco"), players(""));
+    }
+
+    @Test
+    void filterAfterAnotherTransformerKeepsTheSameRows() throws Exception {
+        // not in front of every other transformer, so it runs after the reader
+        assertEquals(List.of("vegas", "january", "lastSecond", "monaco"), players(MATH));
+    }
+
+    @Test
+    void valueOfAnotherTypeThanTheColumnIsRejected() throws Exception {
+        Path xml = directory.resolve("wrong.xml");
+        Files.writeString(xml, REPORT.formatted("").replace("<value>0</value>", "<value>zero</value>"));
+
+        assertThrows(IllegalArgumentException.class, () -> XmlParser.parseReport(xml.toString()));
+    }
+}
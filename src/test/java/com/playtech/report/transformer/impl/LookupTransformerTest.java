@@ -0,0 +1,135 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LookupTransformerTest {
+    // %s is the input column, %s the dimension file and %s further parameters
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Joined</reportName>
+                <inputs>
+                    <input><name>Player</name><type>STRING</type></input>
+                    <input><name>GameID</name><type>INTEGER</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>Player</name><type>STRING</type></output>
+                    <output><name>GameID</name><type>INTEGER</type></output>
+                    <output><name>GameName</name><type>STRING</type></output>
+                    <output><name>Rtp</name><type>DOUBLE</type></output>
+                </outputs>
+                <outputFormat>CSV</outputFormat>
+                <transformers>
+                    <transformer>
+                        <name>Lookup</name>
+                        <parameters>
+                            <input>%s</input>
+                            <file>%s</file>
+                            %s
+                            <select>GameName</select>
+                            <select>Rtp</select>
+                        </parameters>
+                    </transformer>
+                </transformers>
+            </report>
+            """;
+
+    private static final String GAMES = """
+            GameID,Provider,GameName,Rtp
+            7,acme,Roulette,0.97
+            3,beta,Poker,
+            12,other,Slots,0.95
+            """;
+
+    @TempDir
+    Path directory;
+
+    private Report report(String input, String file, String parameters) throws Exception {
+        Path xml = directory.resolve("joined.xml");
+        Files.writeString(xml, REPORT.formatted(input, file, parameters));
+        return XmlParser.parseReport(xml.toString());
+    }
+
+    private List<String> run(Report report, String csv) throws Exception {
+        Path file = directory.resolve("bets.csv");
+        Files.writeString(file, csv);
+        ReportGenerator.transformCsv(file.toString(), directory + "/", report, 1, 1 << 20, false, new Rejections());
+        List<String> lines = Files.readAllLines(ReportGenerator.outputPath(directory + "/", report));
+        return lines.subList(1, lines.size());
+    }
+
+    private Path games() throws Exception {
+        Path games = directory.resolve("games.csv");
+        Files.writeString(games, GAMES);
+        return games;
+    }
+
+    @Test
+    void rowsGetTheColumnsOfTheMatchingDimensionRowAndNullsWithoutOne() throws Exception {
+        Report report = report("GameID", games().toString(), "");
+
+        assertEquals(List.of("ann,12,Slots,0.95", "bob,5,,", "cid,7,Roulette,0.97", "ann,3,Poker,"),
+                run(report, "Player,GameID\nann,12\nbob,5\ncid,7\nann,3\n"));
+    }
+
+    @Test
+    void textKeysCanHaveAnotherNameInTheDimension() throws Exception {
+        Report report = report("Player", games().toString(), "<key>Provider</key>");
+
+        assertEquals(List.of("beta,1,Poker,", "other,2,Slots,0.95", "none,3,,"),
+                run(report, "Player,GameID\nbeta,1\nother,2\nnone,3\n"));
+    }
+
+    @Test
+    void keyThatIsInTheDimensionTwiceFailsTheRun() throws Exception {
+        Path games = directory.resolve("twice.csv");
+        Files.writeString(games, GAMES + "8,acme,Blackjack,0.99\n");
+        Report report = report("Player", games.toString(), "<key>Provider</key>");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> run(report, "Player,GameID\nacme,1\n"));
+        assertTrue(error.getMessage().contains("has the key acme more than once"), error.getMessage());
+    }
+
+    @Test
+    void dimensionOverTheMemoryLimitIsJoinedFromPartitionsInInputOrder() throws Exception {
+        StringBuilder games = new StringBuilder("GameID,Provider,GameName,Rtp\n");
+        StringBuilder bets = new StringBuilder("Player,GameID\n");
+        for (int game = 0; game < 5000; game++) {
+            games.append(game * 3).append(",p,game").append(game).append(',').append(game % 100 / 100.0).append('\n');
+        }
+        for (int bet = 0; bet < 3000; bet++) {
+            bets.append('p').append(bet).append(',').append(bet * 7 % 16000).append('\n');
+        }
+        Path dimension = directory.resolve("many.csv");
+        Files.writeString(dimension, games);
+
+        List<String> inMemory = run(report("GameID", dimension.toString(), ""), bets.toString());
+        List<String> spilled = run(report("GameID", dimension.toString(), "<memoryLimit>1</memoryLimit>"), bets.toString());
+
+        assertEquals(3000, inMemory.size());
+        assertEquals("p3,21,game7,0.07", inMemory.get(3));
+        assertEquals("p1,7,,", inMemory.get(1));
+        assertEquals(inMemory, spilled);
+    }
+
+    @Test
+    void missingDimensionFailsTheRun() throws Exception {
+        Report report = report("GameID", directory.resolve("missing.csv").toString(), "");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> run(report, "Player,GameID\nann,1\n"));
+        assertTrue(error.getMessage().contains("does not exist"), error.getMessage());
+    }
+}
@@ -0,0 +1,48 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.RowBatch;
+import com.playtech.report.batch.StringVector;
+import org.junit.jupiter.api.Test;
+
+import java.util.IllegalFormatConversionException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StringFormatterTransformerTest {
+
+    private static RowBatch batch(DoubleVector amounts) {
+        RowBatch batch = new RowBatch(amounts.capacity());
+        batch.put("Amount", amounts);
+        batch.setSize(amounts.capacity());
+        return batch;
+    }
+
+    @Test
+    void everyRowIsFormatted() {
+        DoubleVector amounts = new DoubleVector(2);
+        amounts.set(0, 2.5);
+        amounts.setNull(1);
+        StringFormatterTransformer transformer = new StringFormatterTransformer(List.of(), "%s EUR", null);
+
+        StringVector formatted = (StringVector) transformer.compute(batch(amounts), new ColumnVector[]{amounts});
+
+        assertEquals("2.5 EUR", formatted.get(0));
+        assertEquals("null EUR", formatted.get(1));
+    }
+
+    @Test
+    void formatThatDoesNotFitTheInputKeepsTheCause() {
+        DoubleVector amounts = new DoubleVector(1);
+        amounts.set(0, 2.5);
+        StringFormatterTransformer transformer = new StringFormatterTransformer(List.of(), "%d", null);
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> transformer.compute(batch(amounts), new ColumnVector[]{amounts}));
+        assertInstanceOf(IllegalFormatConversionException.class, error.getCause());
+    }
+}
@@ -0,0 +1,132 @@
+package com.playtech.report.transformer.impl;
+
+import com.playtech.ReportGenerator;
+import com.playtech.report.Report;
+import com.playtech.report.reject.Rejections;
+import com.playtech.util.xml.XmlParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WindowTransformerTest {
+    // %s is the frame and %s the order column
+    private static final String REPORT = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <report>
+                <reportName>Rolling</reportName>
+                <inputs>
+                    <input><name>Player</name><type>STRING</type></input>
+                    <input><name>Day</name><type>DATE</type></input>
+                    <input><name>Round</name><type>INTEGER</type></input>
+                    <input><name>Bet</name><type>DECIMAL</type></input>
+                </inputs>
+                <outputs>
+                    <output><name>Player</name><type>STRING</type></output>
+                    <output><name>Bet</name><type>DECIMAL</type></output>
+                    <output><name>BetSum</name><type>DECIMAL</type></output>
+                    <output><name>BetMax</name><type>DECIMAL</type></output>
+                    <output><name>Bets</name><type>INTEGER</type></output>
+                </outputs>
+                <outputFormat>CSV</outputFormat>
+                <transformers>
+                    <transformer>
+                        <name>Window</name>
+                        <parameters>
+                            <partitionBy>Player</partitionBy>
+                            <orderBy>%s</orderBy>
+                            %s
+                            <aggregateBys>
+                                <aggregateBy><input>Bet</input><method>SUM</method><output>BetSum</output></aggregateBy>
+                                <aggregateBy><input>Bet</input><method>MAX</method><output>BetMax</output></aggregateBy>
+                                <aggregateBy><input>Bet</input><method>COUNT</method><output>Bets</output></aggregateBy>
+                            </aggregateBys>
+                        </parameters>
+                    </transformer>
+                </transformers>
+            </report>
+            """;
+
+    // the partitions are interleaved, every one is ordered by day and round
+    private static final String CSV = """
+            Player,Day,Round,Bet
+            ann,2024-01-01,1,1.50
+            bob,2024-01-01,1,10
+            ann,2024-01-02,2,2
+            ann,2024-01-04,3,4
+            bob,2024-01-02,2,
+            ann,2024-01-05,4,0.25
+            """;
+
+    @TempDir
+    Path directory;
+
+    private Report report(String orderBy, String frame) throws Exception {
+        Path xml = directory.resolve("rolling.xml");
+        Files.writeString(xml, REPORT.formatted(orderBy, frame));
+        return XmlParser.parseReport(xml.toString());
+    }
+
+    private List<String> run(Report report, String csv) throws Exception {
+        Path file = directory.resolve("bets.csv");
+        Files.writeString(file, csv);
+        ReportGenerator.transformCsv(file.toString(), directory + "/", report, 1, 1 << 20, false, new Rejections());
+        List<String> lines = Files.readAllLines(ReportGenerator.outputPath(directory + "/", report));
+        return lines.subList(1, lines.size());
+    }
+
+    @Test
+    void withoutPrecedingTheAggregatesAreRunningTotals() throws Exception {
+        assertEquals(List.of(
+                "ann,1.50,1.50,1.50,1",
+                "bob,10.00,10.00,10.00,1",
+                "ann,2.00,3.50,2.00,2",
+                "ann,4.00,7.50,4.00,3",
+                "bob,,10.00,10.00,1",
+                "ann,0.25,7.75,4.00,4"), run(report("Round", ""), CSV));
+    }
+
+    @Test
+    void rowsFrameHoldsTheRowAndTheRowsBeforeIt() throws Exception {
+        assertEquals(List.of(
+                "ann,1.50,1.50,1.50,1",
+                "bob,10.00,10.00,10.00,1",
+                "ann,2.00,3.50,2.00,2",
+                "ann,4.00,6.00,4.00,2",
+                "bob,,10.00,10.00,1",
+                "ann,0.25,4.25,4.00,2"), run(report("Round", "<frame><unit>ROWS</unit><preceding>1</preceding></frame>"), CSV));
+    }
+
+    @Test
+    void rangeFrameHoldsTheRowsWithinTheDurationBeforeTheRow() throws Exception {
+        // the day before 2024-01-04 has no rows, so that row is alone in its frame
+        assertEquals(List.of(
+                "ann,1.50,1.50,1.50,1",
+                "bob,10.00,10.00,10.00,1",
+                "ann,2.00,3.50,2.00,2",
+                "ann,4.00,4.00,4.00,1",
+                "bob,,10.00,10.00,1",
+                "ann,0.25,4.25,4.00,2"), run(report("Day", "<frame><unit>RANGE</unit><preceding>P1D</preceding></frame>"), CSV));
+    }
+
+    @Test
+    void rowsOutOfOrderWithinAPartitionFailTheRun() throws Exception {
+        Report report = report("Round", "");
+        String unordered = CSV.replace("ann,2024-01-05,4,0.25", "ann,2024-01-05,0,0.25");
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> run(report, unordered));
+        assertTrue(error.getMessage().contains("needs its input ordered by Round"), error.getMessage());
+    }
+
+    @Test
+    void durationFrameOverANumberColumnIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> run(report("Round", "<frame><unit>RANGE</unit><preceding>P1D</preceding></frame>"), CSV));
+    }
+}
@@ -0,0 +1,52 @@
+package com.playtech.server;
+
+import com.playtech.report.Report;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReportCacheTest {
+
+    @Test
+    void reportIsParsedAgainOnlyAfterTheFileChanged(@TempDir Path directory) throws Exception {
+        Path xml = directory.resolve("daily.xml");
+        Files.copy(Path.of("input/DailyBetWinLossReport.xml"), xml);
+        Files.setLastModifiedTime(xml, FileTime.from(Instant.parse("2024-01-01T00:00:00Z")));
+        ReportCache cache = new ReportCache();
+
+        Report first = cache.get(xml);
+        assertSame(first, cache.get(directory.resolve(".").resolve("daily.xml")));
+
+        Files.writeString(xml, Files.readString(xml).replace("DailyBetWinLossReport", "Renamed"));
+        Files.setLastModifiedTime(xml, FileTime.from(Instant.parse("2024-01-02T00:00:00Z")));
+        Report changed = cache.get(xml);
+
+        assertNotSame(first, changed);
+        assertEquals("Renamed", changed.getReportName());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void memoryLimitOfAJobLeavesTheCachedReportAsItIs(@TempDir Path directory) throws Exception {
+        Path xml = directory.resolve("daily.xml");
+        Files.copy(Path.of("input/DailyBetWinLossReport.xml"), xml);
+        ReportCache cache = new ReportCache();
+        Report shared = cache.get(xml);
+
+        Report job = shared.withMemoryLimit(1L << 20);
+
+        assertEquals(1L << 20, job.getMemoryLimit());
+        assertSame(shared.getTransformers(), job.getTransformers());
+        assertNull(shared.getMemoryLimit());
+        assertNull(cache.get(xml).getMemoryLimit());
+    }
+}
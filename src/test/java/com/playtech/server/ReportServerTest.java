@@ -0,0 +1,84 @@
+package com.playtech.server;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReportServerTest {
+
+    @Test
+    void jobDirectoryIsDeletedWithTheDirectoriesInIt(@TempDir Path directory) throws Exception {
+        Path job = directory.resolve("report-1");
+        Path part = job.resolve("Daily").resolve("Location=EU").resolve("part-0.CSV");
+        Files.createDirectories(part.getParent());
+        Files.writeString(part, "a\n");
+        Files.writeString(job.resolve("Daily.metrics.json"), "{}");
+
+        ReportServer.deleteTree(job);
+
+        assertFalse(Files.exists(job));
+    }
+
+    @Test
+    void pathsAreConfinedToTheirRoot(@TempDir Path directory) throws Exception {
+        Path root = directory.resolve("reports").toAbsolutePath();
+        Files.createDirectories(root.resolve("daily"));
+        Files.createSymbolicLink(root.resolve("escape"), directory);
+
+        assertEquals(root.resolve("daily/report.xml"), ReportServer.confine(root, "daily/report.xml"));
+        assertEquals(root.resolve("report.xml"), ReportServer.confine(root, "daily/../report.xml"));
+        assertEquals(root.resolve("new/out"), ReportServer.confine(root, "new/out"));
+        assertNull(ReportServer.confine(root, "../secret.xml"));
+        assertNull(ReportServer.confine(root, directory.resolve("secret.xml").toString()));
+        assertNull(ReportServer.confine(root, "escape/secret.xml"));
+    }
+
+    @Test
+    void jobsWithPathsOutsideOfTheRootsAreRejected(@TempDir Path directory) throws Exception {
+        Path data = Files.createDirectories(directory.resolve("data"));
+        Path reports = Files.createDirectories(directory.resolve("reports"));
+        Path outputs = Files.createDirectories(directory.resolve("outputs"));
+        Files.createDirectories(outputs.resolve("daily"));
+        Files.copy(Path.of("input/casino_gaming_results.csv"), data.resolve("bets.csv"));
+        Files.copy(Path.of("input/DailyBetWinLossReport.xml"), reports.resolve("daily.xml"));
+        ReportServer server = new ReportServer(0, 1, 1, 1, 1 << 20, ReportServer.NO_JOB_MEMORY, false, new ReportServer.Roots(data, reports, outputs));
+        server.start();
+        try {
+            HttpResponse<String> outside = post(server, "bets.csv", "daily.xml", "../../elsewhere");
+            assertEquals(403, outside.statusCode());
+            assertTrue(outside.body().contains("output root"), outside.body());
+            assertEquals(403, post(server, "bets.csv", "../../input/DailyBetWinLossReport.xml", "daily").statusCode());
+            assertEquals(403, post(server, "/etc/hosts", "daily.xml", "daily").statusCode());
+            assertFalse(Files.exists(directory.getParent().resolve("elsewhere")));
+
+            HttpResponse<String> inside = post(server, "bets.csv", "daily.xml", "daily");
+            assertEquals(200, inside.statusCode(), inside.body());
+            assertTrue(Files.exists(outputs.resolve("daily/DailyBetWinLossReport.JSONL")));
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static HttpResponse<String> post(ReportServer server, String csv, String report, String output) throws Exception {
+        URI uri = URI.create("http://localhost:" + server.port() + "/reports?csv=" + encode(csv) + "&report=" + encode(report) + "&output=" + encode(output));
+        return HttpClient.newHttpClient().send(HttpRequest.newBuilder(uri).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,38 @@
+package com.playtech.util.collection;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LongCacheTest {
+
+    @Test
+    void cachedValuesAreComputedOnce() {
+        LongCache<String> cache = new LongCache<>(4096);
+        AtomicInteger computed = new AtomicInteger();
+
+        for (int round = 0; round < 3; round++) {
+            for (long key = 0; key < 10; key++) {
+                assertEquals("v" + key, cache.get(key, k -> {
+                    computed.incrementAndGet();
+                    return "v" + k;
+                }));
+            }
+        }
+
+        assertEquals(10, computed.get());
+    }
+
+    @Test
+    void aCollidingKeyReplacesTheEntry() {
+        // two slots for many keys
+        LongCache<Long> cache = new LongCache<>(2);
+
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(key * 2, cache.get(key, k -> k * 2));
+        }
+        assertEquals(998L, cache.get(499, k -> k * 2));
+    }
+}
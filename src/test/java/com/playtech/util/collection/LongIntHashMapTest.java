@@ -0,0 +1,40 @@
+package com.playtech.util.collection;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LongIntHashMapTest {
+
+    @Test
+    void keysKeepTheirValuesWhileTheTableGrows() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 10_000; i++) {
+            map.put(i * 7919L - 5_000_000, i);
+        }
+
+        assertEquals(10_000, map.size());
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(i, map.get(i * 7919L - 5_000_000));
+        }
+        assertEquals(-1, map.get(1));
+    }
+
+    @Test
+    void puttingAKeyAgainReplacesItsValue() {
+        LongIntHashMap map = new LongIntHashMap(1);
+        map.put(Long.MIN_VALUE, 1);
+        map.put(0, 2);
+        map.put(Long.MIN_VALUE, 3);
+
+        assertEquals(2, map.size());
+        assertEquals(3, map.get(Long.MIN_VALUE));
+        assertEquals(2, map.get(0));
+    }
+
+    @Test
+    void negativeValuesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new LongIntHashMap().put(1, -1));
+    }
+}
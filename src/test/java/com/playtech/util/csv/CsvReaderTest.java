@@ -0,0 +1,77 @@
+package com.playtech.util.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvReaderTest {
+
+    private static CsvReader reader(String csv) {
+        return new CsvReader(ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void quotedFieldsMayHoldCommasQuotesAndLineBreaks() throws IOException {
+        CsvReader reader = reader("a,b,c\n\"x,y\",\"say \"\"hi\"\"\",\"two\nlines\"\nplain,,last\n");
+
+        assertTrue(reader.next());
+        assertEquals(3, reader.fieldCount());
+        assertTrue(reader.next());
+        assertEquals("x,y", reader.getString(0));
+        assertEquals("say \"hi\"", reader.getString(1));
+        assertEquals("two\nlines", reader.getString(2));
+        assertTrue(reader.next());
+        assertEquals("plain", reader.getString(0));
+        assertTrue(reader.isEmpty(1));
+        assertEquals("last", reader.getString(2));
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void crlfByteOrderMarkAndAMissingLastLineBreakAreAccepted() throws IOException {
+        CsvReader reader = reader("\uFEFFid,name\r\n1,a\r\n2,b");
+
+        assertTrue(reader.next());
+        assertEquals("id", reader.getString(0));
+        assertTrue(reader.next());
+        assertEquals("a", reader.getString(1));
+        assertTrue(reader.next());
+        assertEquals(2, reader.getLong(0));
+        assertEquals("b", reader.getString(1));
+        assertEquals(3, reader.recordNumber());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void numbersAndDatesAreParsedFromTheBytes() throws IOException {
+        CsvReader reader = reader("-9223372036854775808,51.1,1e3,12.30,2021-04-15,2021-04-15T13:09:45Z\n");
+
+        assertTrue(reader.next());
+        assertEquals(Long.MIN_VALUE, reader.getLong(0));
+        assertEquals(51.1, reader.getDouble(1));
+        assertEquals(1000.0, reader.getDouble(2));
+        assertEquals(1230, reader.getUnscaled(3, 2));
+        assertEquals(CsvReader.INEXACT, reader.getUnscaled(1, 0));
+        assertEquals(LocalDate.of(2021, 4, 15).toEpochDay(), reader.getEpochDay(4));
+        assertEquals(Instant.parse("2021-04-15T13:09:45Z").getEpochSecond(), reader.getEpochSecond(5));
+    }
+
+    @Test
+    void badNumbersThrow() throws IOException {
+        CsvReader reader = reader("12a,,9223372036854775808\n");
+
+        assertTrue(reader.next());
+        assertThrows(NumberFormatException.class, () -> reader.getLong(0));
+        assertThrows(NumberFormatException.class, () -> reader.getLong(1));
+        assertThrows(NumberFormatException.class, () -> reader.getLong(2));
+    }
+}
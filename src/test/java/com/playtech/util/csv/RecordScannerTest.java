@@ -0,0 +1,120 @@
+package com.playtech.util.csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RecordScannerTest {
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void lineBreaksInsideQuotesDoNotEndARecord() {
+        ByteBuffer csv = bytes("1,\"a\nb\",c\n2,x\n");
+        RecordScanner scanner = new RecordScanner();
+
+        assertEquals(10, scanner.recordEnd(csv, 0, csv.limit()));
+        assertEquals(14, scanner.recordEnd(csv, 10, csv.limit()));
+    }
+
+    @Test
+    void escapedQuotesKeepTheValueOpen() {
+        ByteBuffer csv = bytes("\"say \"\"\n\"\"\",1\nnext\n");
+        RecordScanner scanner = new RecordScanner();
+
+        assertEquals(14, scanner.recordEnd(csv, 0, csv.limit()));
+    }
+
+    @Test
+    void aQuoteInsideAnUnquotedValueIsJustACharacter() {
+        ByteBuffer csv = bytes("5\" screen,1\nnext,2\n");
+        RecordScanner scanner = new RecordScanner();
+
+        assertEquals(12, scanner.recordEnd(csv, 0, csv.limit()));
+    }
+
+    @Test
+    void theStateCarriesOverBetweenCalls() {
+        ByteBuffer csv = bytes("1,\"a\nb\"\n2\n");
+        RecordScanner scanner = new RecordScanner();
+
+        scanner.skip(csv, 0, 4);
+        assertEquals(8, scanner.recordEnd(csv, 4, csv.limit()));
+    }
+
+    @Test
+    void scansOfPartsChainedInFileOrderSkipLineBreaksOfQuotedValues(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("quoted.csv");
+        Files.writeString(file, "h\n\"x\ny\nz\"\nlast\n");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            RangeScanner first = CsvReader.scan(channel, 2, 5);
+            RangeScanner second = CsvReader.scan(channel, 5, 15);
+
+            // the line break at 4 is inside the value, so the first part ends no record
+            int start = RangeScanner.recordStartState();
+            assertEquals(-1, first.firstRecordEnd(start));
+            assertEquals(10, second.firstRecordEnd(first.endState(start)));
+            assertEquals(start, second.endState(first.endState(start)));
+            // outside of a quoted value the line break at 6 would end a record
+            assertEquals(7, second.firstRecordEnd(start));
+        }
+    }
+
+    @Test
+    void recordsEndWhereTheReaderEndsThem() throws Exception {
+        // a lone \r ends a record like \n and \r\n do, outside of quotes
+        ByteBuffer csv = bytes("1,a\r2,b\r\n3,\"c\rd\"\r\r4\"x\r\n5,\"e\"f\r6\n");
+        RecordScanner scanner = new RecordScanner();
+        try (CsvReader reader = new CsvReader(csv.duplicate())) {
+            int end = 0;
+            while (reader.next()) {
+                end = scanner.recordEnd(csv, end, csv.limit());
+                assertEquals(reader.offset(), end, "record " + reader.recordNumber());
+            }
+        }
+    }
+
+    @Test
+    void aRecordEndingInALoneCarriageReturnEndsBeforeTheNextByte() {
+        ByteBuffer csv = bytes("1,a\r2\r");
+        RecordScanner scanner = new RecordScanner();
+
+        // whether the \r is lone is only known at the next call
+        assertEquals(-1, scanner.recordEnd(csv, 0, 4));
+        assertEquals(4, scanner.recordEnd(csv, 4, csv.limit()));
+        assertEquals(-1, scanner.recordEnd(csv, 4, csv.limit()));
+    }
+
+    @Test
+    void scanOfAPartMatchesAScannerFromTheRecordStart() {
+        for (String csv : new String[]{"a,\"b\"\"\nc\",d\n\"e\"x,f\n5\" g,\"\"\n", "a,\"b\rc\"\rd\r\ne\r\"f\"\r\rg,h\r"}) {
+            scanParts(csv);
+        }
+    }
+
+    private static void scanParts(String csv) {
+        ByteBuffer bytes = bytes(csv);
+        for (int split = 0; split <= bytes.limit(); split++) {
+            RecordScanner serial = new RecordScanner();
+            serial.skip(bytes, 0, split);
+            int expected = serial.recordEnd(bytes, split, bytes.limit());
+
+            RangeScanner head = new RangeScanner(0);
+            head.scan(bytes, 0, split);
+            RangeScanner tail = new RangeScanner(split);
+            tail.scan(bytes, split, bytes.limit());
+            assertEquals(expected, tail.firstRecordEnd(head.endState(RangeScanner.recordStartState())), "split at " + split);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.playtech.util.format;
+
+import com.playtech.report.batch.ColumnVector;
+import com.playtech.report.batch.DecimalVector;
+import com.playtech.report.batch.DoubleVector;
+import com.playtech.report.batch.LongVector;
+import com.playtech.report.batch.StringVector;
+import com.playtech.report.column.Column;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.IllegalFormatConversionException;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompiledFormatTest {
+    private static final Locale ESTONIAN = Locale.forLanguageTag("et-EE");
+    private static final double[] DOUBLES = {0, -0.0, 1.005, 2.675, -1.125, 0.5, 1234567.891, 999999.995, 1e12 + 0.125, -3.3e-7,
+            Double.NaN, Double.NEGATIVE_INFINITY, Double.MAX_VALUE};
+
+    private static String format(CompiledFormat format, ColumnVector... inputs) {
+        StringBuilder out = new StringBuilder();
+        format.format(out, inputs, 0);
+        return out.toString();
+    }
+
+    private static DoubleVector doubles(double value) {
+        DoubleVector vector = new DoubleVector(1);
+        vector.set(0, value);
+        return vector;
+    }
+
+    @Test
+    void fixedPointMatchesTheFormatter() {
+        for (Locale locale : new Locale[]{Locale.US, ESTONIAN}) {
+            for (String pattern : new String[]{"%.2f EUR", "%f", "%.0f", "%.9f"}) {
+                CompiledFormat format = CompiledFormat.compile(pattern, locale);
+                assertTrue(format.isCompiled(), pattern);
+                for (double value : DOUBLES) {
+                    assertEquals(String.format(locale, pattern, value), format(format, doubles(value)), pattern + " " + value);
+                }
+            }
+        }
+    }
+
+    @Test
+    void decimalsRoundHalfUpFromTheirExactDigits() {
+        CompiledFormat format = CompiledFormat.compile("%.1f", Locale.US);
+        for (String text : new String[]{"0.05", "-0.05", "2.25", "92233720368547758.07", "-0.01"}) {
+            DecimalVector decimals = new DecimalVector(2, 1);
+            decimals.set(0, new BigDecimal(text));
+            assertEquals(String.format(Locale.US, "%.1f", new BigDecimal(text)), format(format, decimals), text);
+        }
+    }
+
+    @Test
+    void stringsIntegersDatesAndNulls() {
+        CompiledFormat format = CompiledFormat.compile("%s played %d on %s, %s%%", Locale.US);
+        StringVector names = new StringVector(1);
+        names.set(0, "ann");
+        LongVector games = new LongVector(Column.DataType.INTEGER, 1);
+        games.set(0, -42);
+        LongVector days = new LongVector(Column.DataType.DATE, 1);
+        days.set(0, 19782);
+        DoubleVector missing = new DoubleVector(1);
+        missing.setNull(0);
+
+        assertEquals("ann played -42 on 2024-02-29, null%", format(format, names, games, days, missing));
+    }
+
+    @Test
+    void patternsWithFlagsGoThroughTheFormatterInTheGivenLocale() {
+        Locale previous = Locale.getDefault(Locale.Category.FORMAT);
+        Locale.setDefault(Locale.Category.FORMAT, Locale.US);
+        try {
+            CompiledFormat format = CompiledFormat.compile("%8.2f|%,d", ESTONIAN);
+            LongVector count = new LongVector(Column.DataType.INTEGER, 1);
+            count.set(0, 1234567);
+
+            assertFalse(format.isCompiled());
+            assertEquals(String.format(ESTONIAN, "%8.2f|%,d", 1.5, 1234567L), format(format, doubles(1.5), count));
+        } finally {
+            Locale.setDefault(Locale.Category.FORMAT, previous);
+        }
+    }
+
+    @Test
+    void wrongTypesFailLikeTheFormatter() {
+        CompiledFormat format = CompiledFormat.compile("%d", Locale.US);
+
+        assertThrows(IllegalFormatConversionException.class, () -> format(format, doubles(1.5)));
+    }
+}
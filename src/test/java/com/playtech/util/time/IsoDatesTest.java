@@ -0,0 +1,37 @@
+package com.playtech.util.time;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IsoDatesTest {
+
+    @Test
+    void epochDaysMatchLocalDate() {
+        for (long epochDay = LocalDate.of(1600, 1, 1).toEpochDay(); epochDay <= LocalDate.of(2500, 12, 31).toEpochDay(); epochDay += 13) {
+            LocalDate date = LocalDate.ofEpochDay(epochDay);
+            assertEquals(epochDay, IsoDates.parseEpochDay(date.toString()), date.toString());
+            assertEquals(date.getYear() * 10000L + date.getMonthValue() * 100L + date.getDayOfMonth(), IsoDates.yearMonthDay(epochDay));
+        }
+    }
+
+    @Test
+    void epochSecondsMatchInstant() {
+        for (String text : new String[]{"1970-01-01T00:00:00Z", "2024-02-29T23:59:59Z", "1969-12-31T12:30:05Z", "2000-03-01T00:00:01Z"}) {
+            assertEquals(Instant.parse(text).getEpochSecond(), IsoDates.parseEpochSecond(text), text);
+        }
+    }
+
+    @Test
+    void otherShapesAreInvalid() {
+        for (String text : new String[]{"2023-02-29", "2024-13-01", "2024-1-01", "2024/01/01", "20240101", "2024-01-0a"}) {
+            assertEquals(IsoDates.INVALID, IsoDates.parseEpochDay(text), text);
+        }
+        for (String text : new String[]{"2024-01-01T24:00:00Z", "2024-01-01T10:00:00", "2024-01-01 10:00:00Z", "2024-01-01T10:60:00Z"}) {
+            assertEquals(IsoDates.INVALID, IsoDates.parseEpochSecond(text), text);
+        }
+    }
+}